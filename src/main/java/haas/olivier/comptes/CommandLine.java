@@ -0,0 +1,379 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import haas.olivier.comptes.ctrl.EcritureController;
+import haas.olivier.comptes.ctrl.SituationCritique;
+import haas.olivier.comptes.ctrl.SituationsCritiques;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.comptes.dao.cache.CacheDAOFactory;
+import haas.olivier.comptes.dao.csv.CsvDAO;
+import haas.olivier.util.Month;
+
+/**
+ * Le mode sans interface graphique de l'application.
+ * <p>
+ * Usage :
+ * <pre>
+ * Comptes -batch [-out fichier] archive commande...
+ * </pre>
+ * L'archive est ouverte, puis les commandes sont exécutées dans l'ordre :
+ * <ul>
+ * <li>	<code>suivis [AAAA-MM]</code> : recalcule les suivis à partir du mois
+ * 		spécifié, par défaut depuis le début ;
+ * <li>	<code>permanents AAAA-MM AAAA-MM</code> : génère les écritures des
+ * 		opérations permanentes pour les mois spécifiés (inclus) ;
+ * <li>	<code>soldes [AAAA-MM]</code> : affiche le solde théorique et le solde
+ * 		à vue de chaque compte bancaire non clôturé à la fin du mois
+ * 		spécifié, par défaut le mois en cours ;
+ * <li>	<code>critiques [AAAA-MM-JJ]</code> : affiche la situation critique de
+ * 		chaque compte bancaire non clôturé à partir de la date spécifiée, par
+ * 		défaut aujourd'hui ;
+ * <li>	<code>save</code> : sauvegarde l'archive.
+ * </ul>
+ * Les états sont écrits au format CSV (séparateur point-virgule) sur la
+ * sortie standard, ou dans le fichier spécifié par l'option
+ * <code>-out</code>.
+ * <p>
+ * Le code de sortie vaut 0 en cas de succès, 2 en cas d'erreur, 64 si les
+ * arguments sont invalides et 66 si l'archive n'existe pas. Si une opération
+ * permanente ne peut pas être générée, aucune écriture n'est générée et les
+ * commandes suivantes ne sont pas exécutées.
+ * <p>
+ * Aucun composant graphique n'est initialisé dans ce mode.
+ *
+ * @author Olivier HAAS
+ */
+public class CommandLine {
+
+	/**
+	 * L'option de la ligne de commande qui active ce mode.
+	 */
+	public static final String MODE = "-batch";
+
+	/**
+	 * Code de sortie en cas d'erreur.
+	 */
+	static final int EXIT_ERROR = 2;
+
+	/**
+	 * Code de sortie en cas d'arguments invalides.
+	 */
+	static final int EXIT_USAGE = 64;
+
+	/**
+	 * Code de sortie si l'archive n'existe pas.
+	 */
+	static final int EXIT_NO_INPUT = 66;
+
+	/**
+	 * Le message d'utilisation.
+	 */
+	private static final String USAGE = "Usage : Comptes " + MODE
+			+ " [-out fichier] archive [suivis [AAAA-MM]]"
+			+ " [permanents AAAA-MM AAAA-MM] [soldes [AAAA-MM]]"
+			+ " [critiques [AAAA-MM-JJ]] [save]";
+
+	/**
+	 * Le séparateur des états CSV.
+	 */
+	private static final char DELIMITER = ';';
+
+	/**
+	 * Le Logger de cette classe.
+	 */
+	private static final Logger LOGGER =
+			Logger.getLogger(CommandLine.class.getName());
+
+	/**
+	 * Le flux dans lequel écrire les états.
+	 */
+	private final PrintWriter out;
+
+	/**
+	 * Le format des dates dans les arguments et les états.
+	 */
+	private final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+	/**
+	 * Exécute les commandes spécifiées.
+	 *
+	 * @param args	Les arguments de la ligne de commande, sans l'option
+	 * 				{@link #MODE}.
+	 *
+	 * @return		Le code de sortie.
+	 */
+	public static int run(String[] args) {
+		return run(args, System.out);
+	}
+
+	/**
+	 * Exécute les commandes spécifiées.
+	 *
+	 * @param args		Les arguments de la ligne de commande, sans l'option
+	 * 					{@link #MODE}.
+	 * @param stdout	Le flux dans lequel écrire les états si aucun fichier
+	 * 					n'est spécifié.
+	 *
+	 * @return			Le code de sortie.
+	 */
+	static int run(String[] args, PrintStream stdout) {
+		List<String> commands = new ArrayList<>();
+		File output = null;
+		for (int i = 0; i < args.length; i++) {
+			if ("-out".equals(args[i]) && commands.isEmpty()) {
+				if (++i == args.length) {
+					System.err.println(USAGE);
+					return EXIT_USAGE;
+				}
+				output = new File(args[i]);
+			} else {
+				commands.add(args[i]);
+			}
+		}
+		if (commands.isEmpty()) {
+			System.err.println(USAGE);
+			return EXIT_USAGE;
+		}
+
+		// Ouvrir l'archive
+		File file = new File(commands.remove(0));
+		if (!file.exists()) {
+			System.err.println("Fichier introuvable : " + file);
+			return EXIT_NO_INPUT;
+		}
+
+		try (Writer writer = (output == null)
+				? new OutputStreamWriter(stdout, StandardCharsets.UTF_8) {
+					@Override
+					public void close() throws IOException {
+						flush();			// Ne pas fermer la sortie standard
+					}
+				}
+				: new OutputStreamWriter(new FileOutputStream(output),
+						StandardCharsets.UTF_8)) {
+			DAOFactory.setFactory(
+					new CacheDAOFactory(CsvDAO.newInstance(file)), false);
+			CommandLine commandLine = new CommandLine(new PrintWriter(writer));
+			boolean success = commandLine.execute(commands.listIterator());
+			commandLine.out.flush();
+			return success ? 0 : EXIT_ERROR;
+
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			return EXIT_USAGE;
+
+		} catch (IOException e) {
+			LOGGER.log(Level.SEVERE,
+					"Erreur lors du traitement de " + file, e);
+			return EXIT_ERROR;
+		}
+	}
+
+	/**
+	 * Construit un interpréteur de commandes.
+	 *
+	 * @param out	Le flux dans lequel écrire les états.
+	 */
+	private CommandLine(PrintWriter out) {
+		this.out = out;
+	}
+
+	/**
+	 * Exécute les commandes dans l'ordre.
+	 *
+	 * @param commands	Les commandes et leurs arguments.
+	 *
+	 * @return			<code>false</code> si une commande a échoué, auquel cas
+	 * 					les commandes suivantes n'ont pas été exécutées.
+	 *
+	 * @throws IllegalArgumentException
+	 * 					Si une commande ou un argument n'est pas valide.
+	 *
+	 * @throws IOException
+	 */
+	private boolean execute(ListIterator<String> commands) throws IOException {
+		while (commands.hasNext()) {
+			String command = commands.next();
+			switch (command) {
+			case "suivis":
+				Month debut = nextMonth(commands);
+				EcritureController.updateSuivis((debut == null)
+						? DAOFactory.getFactory().getDebut() : debut);
+				break;
+
+			case "permanents":
+				Month from = nextMonth(commands);
+				Month to = nextMonth(commands);
+				if (from == null || to == null) {
+					throw new IllegalArgumentException(
+							"La commande permanents attend deux mois");
+				}
+				if (!Permanent.createAllEcritures(from, to).isEmpty())
+					return false;			// Échecs déjà signalés
+				break;
+
+			case "soldes":
+				Month month = nextMonth(commands);
+				printSoldes((month == null) ? Month.getInstance() : month);
+				break;
+
+			case "critiques":
+				Date date = nextDate(commands);
+				printSituationsCritiques((date == null) ? new Date() : date);
+				break;
+
+			case "save":
+				DAOFactory.getFactory().save();
+				break;
+
+			default:
+				throw new IllegalArgumentException(
+						"Commande inconnue : " + command);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Lit le prochain argument s'il désigne un mois.
+	 *
+	 * @param args	Les arguments restants.
+	 *
+	 * @return		Le mois, ou <code>null</code> si l'argument suivant n'est
+	 * 				pas un mois. Dans ce cas, l'argument n'est pas consommé.
+	 */
+	private static Month nextMonth(ListIterator<String> args) {
+		if (!args.hasNext())
+			return null;
+		try {
+			YearMonth month = YearMonth.parse(args.next());
+			return Month.getInstance(month.getYear(), month.getMonthValue());
+		} catch (DateTimeException e) {
+			args.previous();
+			return null;
+		}
+	}
+
+	/**
+	 * Lit le prochain argument s'il désigne une date.
+	 *
+	 * @param args	Les arguments restants.
+	 *
+	 * @return		La date, ou <code>null</code> si l'argument suivant n'est
+	 * 				pas une date. Dans ce cas, l'argument n'est pas consommé.
+	 */
+	private Date nextDate(ListIterator<String> args) {
+		if (!args.hasNext())
+			return null;
+		String arg = args.next();
+		try {
+			if (arg.matches("\\d{4}-\\d{2}-\\d{2}"))
+				return dateFormat.parse(arg);
+		} catch (ParseException e) {
+			// Pas une date
+		}
+		args.previous();
+		return null;
+	}
+
+	/**
+	 * Écrit les soldes des comptes bancaires non clôturés.
+	 *
+	 * @param month	Le mois à la fin duquel lire les soldes.
+	 *
+	 * @throws IOException
+	 */
+	private void printSoldes(Month month) throws IOException {
+		printLine("compte", "mois", "solde theorique", "solde a vue");
+		for (Compte compte : getComptesBancaires()) {
+			printLine(compte.getNom(), YearMonth.of(
+					month.getYear(), month.getNumInYear()),
+					compte.getHistorique(month), compte.getSoldeAVue(month));
+		}
+	}
+
+	/**
+	 * Écrit les situations critiques des comptes bancaires non clôturés,
+	 * calculées ensemble en tenant compte des opérations permanentes du mois
+	 * suivant.
+	 *
+	 * @param today	La date à partir de laquelle examiner les comptes.
+	 *
+	 * @throws IOException
+	 */
+	private void printSituationsCritiques(Date today) throws IOException {
+		printLine("compte", "date critique", "solde minimum");
+		SituationsCritiques situations = SituationsCritiques.forBancaires(today);
+		for (Compte compte : getComptesBancaires()) {
+			SituationCritique situation = situations.get(compte);
+			Date date = situation.getDateCritique();
+			printLine(compte.getNom(),
+					(date == null) ? "" : dateFormat.format(date),
+					situation.getSoldeMini());
+		}
+	}
+
+	/**
+	 * Renvoie les comptes bancaires non clôturés, dans l'ordre naturel.
+	 *
+	 * @throws IOException
+	 */
+	private static List<Compte> getComptesBancaires() throws IOException {
+		List<Compte> comptes = new ArrayList<>();
+		for (Compte compte : DAOFactory.getFactory().getCompteDAO().getAll()) {
+			if (compte.getType().isBancaire() && compte.getCloture() == null)
+				comptes.add(compte);
+		}
+		comptes.sort(null);
+		return comptes;
+	}
+
+	/**
+	 * Écrit une ligne CSV.
+	 * <p>
+	 * Les montants sont écrits sans notation exponentielle, et les valeurs
+	 * contenant le séparateur ou des guillemets sont mises entre guillemets.
+	 *
+	 * @param values	Les valeurs de la ligne.
+	 */
+	private void printLine(Object... values) {
+		StringBuilder line = new StringBuilder();
+		for (Object value : values) {
+			if (line.length() > 0)
+				line.append(DELIMITER);
+			String s = (value == null) ? ""
+					: (value instanceof BigDecimal)
+					? ((BigDecimal) value).toPlainString()
+					: value.toString();
+			if (s.indexOf(DELIMITER) >= 0 || s.indexOf('"') >= 0) {
+				s = '"' + s.replace("\"", "\"\"") + '"';
+			}
+			line.append(s);
+		}
+		out.println(line);
+	}
+}
@@ -16,6 +16,7 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.Random;
 
+import javax.persistence.Cacheable;
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
@@ -24,12 +25,22 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+
 /**
  * Un compte.
+ * <p>
+ * Les comptes étant peu nombreux, souvent lus et rarement modifiés, ils sont
+ * gardés dans le cache de second niveau d'Hibernate lorsque celui-ci est
+ * activé.
  * 
  * @author Olivier HAAS
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "comptes")
 public class Compte implements Comparable<Compte>, Serializable {
 	private static final long serialVersionUID = 445986158370514520L;
 	
@@ -85,7 +96,10 @@ public class Compte implements Comparable<Compte>, Serializable {
 	 * @see {@link haas.olivier.comptes.gui.diagram.ComptesDiagramFactory#newModel()}
 	 */
 	@Id
-	@GeneratedValue
+	@GeneratedValue(generator = "compte_ids")
+	@GenericGenerator(name = "compte_ids",
+			strategy = "haas.olivier.comptes.dao.cache.hibernate."
+			+ "AssignedOrIncrementGenerator")
 	private Integer id;
 	
 	/**
@@ -300,6 +314,20 @@ public class Compte implements Comparable<Compte>, Serializable {
 				month);
 	}
 	
+	/**
+	 * Renvoie les soldes théoriques du compte à la fin de plusieurs mois
+	 * consécutifs.
+	 * 
+	 * @param from	Le premier mois.
+	 * @param count	Le nombre de mois.
+	 * @return		Les soldes théoriques à la fin de chaque mois, dans l'ordre
+	 * 				chronologique.
+	 */
+	public double[] getHistoriques(Month from, int count) {
+		return state.getSuivis(this,
+				DAOFactory.getFactory().getHistoriqueDAO(), from, count);
+	}
+	
 	/**
 	 * Renvoie les soldes théoriques de chaque jour pour le mois spécifié.
 	 * 
@@ -324,6 +352,20 @@ public class Compte implements Comparable<Compte>, Serializable {
 				month);
 	}
 	
+	/**
+	 * Renvoie les soldes réels du compte à la fin de plusieurs mois
+	 * consécutifs.
+	 * 
+	 * @param from	Le premier mois.
+	 * @param count	Le nombre de mois.
+	 * @return		Les soldes réels à la fin de chaque mois, dans l'ordre
+	 * 				chronologique.
+	 */
+	public double[] getSoldesAVue(Month from, int count) {
+		return state.getSuivis(this,
+				DAOFactory.getFactory().getSoldeAVueDAO(), from, count);
+	}
+	
 	/**
 	 * Renvoie les soldes à vue de chaque jour pour le mois spécifié.<br>
 	 * Cette méthode n'a de sens que pour les comptes bancaires.
@@ -351,6 +393,20 @@ public class Compte implements Comparable<Compte>, Serializable {
 				month);
 	}
 	
+	/**
+	 * Renvoie les moyennes sur 12 mois glissants pour plusieurs mois
+	 * consécutifs.<br>
+	 * Cette méthode n'a de sens que pour les comptes budgétaires.
+	 * 
+	 * @param from	Le premier mois.
+	 * @param count	Le nombre de mois.
+	 * @return		Les moyennes de chaque mois, dans l'ordre chronologique.
+	 */
+	public double[] getMoyennes(Month from, int count) {
+		return state.getSuivis(this, DAOFactory.getFactory().getMoyenneDAO(),
+				from, count);
+	}
+	
 	/** 
 	 * Modifie l'historique du compte au titre d'un mois en lui ajoutant un
 	 * montant spécifié.
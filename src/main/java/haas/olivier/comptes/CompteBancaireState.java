@@ -104,6 +104,34 @@ class CompteBancaireState extends CompteState {
 		return BigDecimal.ZERO;
 	}
 
+	/**
+	 * Reporte le dernier solde connu sur les mois qui n'en ont pas, au lieu de
+	 * remonter l'historique pour chacun d'eux.
+	 */
+	@Override
+	double[] getSuivis(Compte compte, SuiviDAO dao, Month from, int count) {
+		Date ouverture = compte.getOuverture();
+		if (ouverture == null)
+			ouverture = DAOFactory.getFactory().getDebut().getFirstDay();
+		
+		// Le solde connu avant le premier mois
+		BigDecimal solde = getSuivi(compte, dao, from.getPrevious());
+		
+		BigDecimal[] serie = dao.getSerie(compte, from, count);
+		double[] soldes = new double[count];
+		Month month = from;
+		for (int i = 0; i < count; i++) {
+			if (month.before(ouverture)) {
+				solde = BigDecimal.ZERO;			// Compte pas encore ouvert
+			} else if (serie[i] != null) {
+				solde = serie[i];
+			}
+			soldes[i] = solde.doubleValue();
+			month = month.getNext();
+		}
+		return soldes;
+	}
+
 	@Override
 	public void addHistorique(Compte compte, Month month, BigDecimal delta) {
 		addSuivi(compte, DAOFactory.getFactory().getHistoriqueDAO(), month,
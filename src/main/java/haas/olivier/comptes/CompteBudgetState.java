@@ -68,6 +68,17 @@ class CompteBudgetState extends CompteState {
 		return (solde == null) ? BigDecimal.ZERO : solde;
 	}
 
+	@Override
+	double[] getSuivis(Compte compte, SuiviDAO suivi, Month from, int count) {
+		BigDecimal[] serie = suivi.getSerie(compte, from, count);
+		double[] soldes = new double[count];
+		for (int i = 0; i < count; i++) {
+			if (serie[i] != null)
+				soldes[i] = serie[i].doubleValue();
+		}
+		return soldes;
+	}
+
 	/**
 	 * Modifie le solde du compte en sens inverse de <code>delta</code>, puisque
 	 * les comptes budgétaires présentent des soldes en miroir.
@@ -6,12 +6,16 @@ package haas.olivier.comptes;
 import java.io.Serializable;
 import java.math.BigDecimal;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 import haas.olivier.comptes.dao.SuiviDAO;
 import haas.olivier.util.Month;
 
@@ -25,6 +29,8 @@ import haas.olivier.util.Month;
  */
 @Entity
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "comptes")
 abstract class CompteState implements Serializable {
 	private static final long serialVersionUID = 6193837940341269422L;
 	
@@ -76,6 +82,23 @@ abstract class CompteState implements Serializable {
 	 */
 	abstract BigDecimal getSuivi(Compte compte, SuiviDAO suivi, Month month);
 	
+	/**
+	 * Renvoie les soldes du compte pour une suite de mois consécutifs, en un
+	 * seul passage.
+	 * <p>
+	 * Chaque élément a la même valeur que
+	 * {@link #getSuivi(Compte, SuiviDAO, Month)} pour le mois correspondant.
+	 * 
+	 * @param compte	Le compte dont on veut les soldes.
+	 * @param suivi		Le suivi à utiliser.
+	 * @param from		Le premier mois.
+	 * @param count		Le nombre de mois.
+	 * 
+	 * @return			Un tableau de <code>count</code> soldes.
+	 */
+	abstract double[] getSuivis(Compte compte, SuiviDAO suivi, Month from,
+			int count);
+	
 	/**
 	 * Modifie l'historique du compte au titre d'un mois, en lui ajoutant le
 	 * montant spécifié.
@@ -24,8 +24,37 @@ import haas.olivier.util.NullPreferences;
 
 public class Comptes implements Runnable {
 	
-	// Spécifier le Look&Feel
-	static {
+	/**
+	 * Nom de la clé déterminant le fichier (ou autre source) à utiliser.
+	 */
+	public static final String SOURCE_NAME_PROPERTY = "source";
+
+	public static void main(String[] args) {
+		
+		// Mode sans interface graphique
+		if (args.length > 0 && CommandLine.MODE.equals(args[0])) {
+			System.setProperty("java.awt.headless", "true");
+			System.exit(CommandLine.run(
+					Arrays.copyOfRange(args, 1, args.length)));
+		}
+		
+		// Spécifier le Look&Feel
+		setLookAndFeel();
+		
+		// Afficher les erreurs à l'écran
+		displayUncaughtExceptions();
+		
+		// Lancer une nouvelle instance de l'application
+		SwingUtilities.invokeLater(new Comptes(args));
+	}
+	
+	/**
+	 * Spécifie le Look&Feel.
+	 * <p>
+	 * Cette méthode n'est appelée qu'au lancement de l'interface graphique,
+	 * pour que le mode sans interface graphique n'initialise pas AWT.
+	 */
+	private static void setLookAndFeel() {
 		Logger logger = Logger.getLogger(Comptes.class.getName());
 		try {
 			// CrossPlatform (Metal)
@@ -73,20 +102,6 @@ public class Comptes implements Runnable {
 		}
 	}
 
-	/**
-	 * Nom de la clé déterminant le fichier (ou autre source) à utiliser.
-	 */
-	public static final String SOURCE_NAME_PROPERTY = "source";
-
-	public static void main(String[] args) {
-		
-		// Afficher les erreurs à l'écran
-		displayUncaughtExceptions();
-		
-		// Lancer une nouvelle instance de l'application
-		SwingUtilities.invokeLater(new Comptes(args));
-	}
-	
 	/**
 	 * Met en place un affichage des exceptions dans des boîtes de dialogue et
 	 * un renvoi des exceptions non traitées vers le système de logs.
@@ -18,11 +18,18 @@ import javax.persistence.CascadeType;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedSubgraph;
+import javax.persistence.Table;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 import javax.persistence.Transient;
 
+import org.hibernate.annotations.GenericGenerator;
+
 /**
  * Une écriture comptable.
  * <p>
@@ -33,8 +40,23 @@ import javax.persistence.Transient;
  * @author Olivier Haas
  */
 @Entity
+@NamedEntityGraph(name = Ecriture.GRAPHE_COMPTES,
+		attributeNodes = {
+				@NamedAttributeNode(value = "debit", subgraph = "compte"),
+				@NamedAttributeNode(value = "credit", subgraph = "compte")},
+		subgraphs = @NamedSubgraph(name = "compte",
+				attributeNodes = @NamedAttributeNode("state")))
+@Table(indexes = {
+		@Index(name = "ecriture_date", columnList = "date"),
+		@Index(name = "ecriture_pointage", columnList = "pointage")})
 public class Ecriture implements Comparable<Ecriture>, Serializable {
 	private static final long serialVersionUID = 6211208191867018351L;
+	
+	/**
+	 * Le nom du graphe JPA chargeant les écritures avec leurs comptes et les
+	 * états de ceux-ci, en une seule requête.
+	 */
+	public static final String GRAPHE_COMPTES = "Ecriture.comptes";
 
 	/**
 	 * Comparateur d'écritures selon les dates de pointages plutôt que selon
@@ -116,7 +138,10 @@ public class Ecriture implements Comparable<Ecriture>, Serializable {
 	 * Identifiant unique.
 	 */
 	@Id
-	@GeneratedValue
+	@GeneratedValue(generator = "ecriture_ids")
+	@GenericGenerator(name = "ecriture_ids",
+			strategy = "haas.olivier.comptes.dao.cache.hibernate."
+			+ "AssignedOrIncrementGenerator")
 	public Integer id;
 	
 	/**
@@ -128,13 +153,13 @@ public class Ecriture implements Comparable<Ecriture>, Serializable {
 	/**
 	 * Compte débité.
 	 */
-	@ManyToOne(cascade = CascadeType.ALL)
+	@ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
 	public Compte debit;
 	
 	/**
 	 * Compte crédité.
 	 */
-	@ManyToOne(cascade = CascadeType.ALL)
+	@ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE})
 	public Compte credit;
 	
 	/**
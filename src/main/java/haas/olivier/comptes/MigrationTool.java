@@ -0,0 +1,176 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import haas.olivier.comptes.dao.cache.CacheableDAOFactory;
+import haas.olivier.comptes.dao.cache.Migration;
+import haas.olivier.comptes.dao.cache.hibernate.HibernateCacheableDAO;
+import haas.olivier.comptes.dao.csv.CsvDAO;
+
+/**
+ * Le point d'entrée en ligne de commande de la migration des données d'une
+ * source vers une autre.
+ * <p>
+ * Usage :
+ * <pre>
+ * MigrationTool [-batch n] [-checkpoint fichier] [-verify] source destination
+ * </pre>
+ * Une source commençant par <code>jdbc:</code> désigne une base de données,
+ * accessible par défaut avec le pilote HSQLDB (voir l'option
+ * <code>-driver</code>). Toute autre source désigne une archive CSV.
+ * <p>
+ * Sauf si l'option <code>-batch</code> est spécifiée, les écritures sont
+ * enregistrées par lots de {@value Migration#DEFAULT_BATCH_SIZE} dans une base
+ * de données, et en une seule fois dans une archive CSV, qui est réécrite
+ * entièrement à chaque sauvegarde.
+ * <p>
+ * Le code de sortie vaut 0 en cas de succès, 1 si la vérification a trouvé
+ * des différences, 2 en cas d'erreur et 64 si les arguments sont invalides.
+ *
+ * @see Migration
+ *
+ * @author Olivier HAAS
+ */
+public class MigrationTool {
+
+	/**
+	 * Le pilote JDBC utilisé par défaut.
+	 */
+	private static final String DEFAULT_DRIVER = "org.hsqldb.jdbc.JDBCDriver";
+
+	/**
+	 * Le message d'utilisation.
+	 */
+	private static final String USAGE = "Usage : MigrationTool [-batch n] "
+			+ "[-checkpoint fichier] [-driver classe] [-verify] "
+			+ "source destination";
+
+	/**
+	 * Le Logger de cette classe.
+	 */
+	private static final Logger LOGGER =
+			Logger.getLogger(MigrationTool.class.getName());
+
+	public static void main(String[] args) {
+		System.exit(run(args));
+	}
+
+	/**
+	 * Exécute une migration.
+	 *
+	 * @param args	Les arguments de la ligne de commande.
+	 *
+	 * @return		Le code de sortie.
+	 */
+	static int run(String[] args) {
+		Integer batchSize = null;
+		File checkpoint = null;
+		String driver = DEFAULT_DRIVER;
+		boolean verify = false;
+		String from = null, to = null;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+				case "-batch":
+					batchSize = Integer.parseInt(args[++i]);
+					break;
+				case "-checkpoint":
+					checkpoint = new File(args[++i]);
+					break;
+				case "-driver":
+					driver = args[++i];
+					break;
+				case "-verify":
+					verify = true;
+					break;
+				default:
+					if (from == null) {
+						from = args[i];
+					} else if (to == null) {
+						to = args[i];
+					} else {
+						throw new IllegalArgumentException(args[i]);
+					}
+				}
+			}
+		} catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+			System.err.println(USAGE);
+			return 64;
+		}
+		if (to == null) {
+			System.err.println(USAGE);
+			return 64;
+		}
+
+		try {
+			try (CacheableDAOFactory source = open(from, driver);
+					CacheableDAOFactory destination = open(to, driver)) {
+				Migration migration = new Migration(source, destination);
+				if (batchSize != null) {
+					migration.setBatchSize(batchSize);
+				} else if (!isDatabase(to)) {
+					migration.setBatchSize(0);		// Une seule sauvegarde
+				}
+				migration.setCheckpoint(checkpoint);
+				migration.run();
+			}
+
+			if (verify) {
+
+				// Rouvrir les sources pour relire les données enregistrées
+				List<String> differences;
+				try (CacheableDAOFactory source = open(from, driver);
+						CacheableDAOFactory destination = open(to, driver)) {
+					differences = Migration.verify(source, destination);
+				}
+				for (String difference : differences)
+					System.out.println(difference);
+				return differences.isEmpty() ? 0 : 1;
+			}
+			return 0;
+
+		} catch (IOException | RuntimeException e) {
+			LOGGER.log(Level.SEVERE, "Échec de la migration", e);
+			return 2;
+		}
+	}
+
+	/**
+	 * Ouvre une source de données.
+	 *
+	 * @param name		Une URL JDBC ou le chemin d'une archive CSV.
+	 * @param driver	Le nom qualifié du pilote JDBC.
+	 *
+	 * @throws IOException
+	 */
+	private static CacheableDAOFactory open(String name, String driver)
+			throws IOException {
+		if (isDatabase(name)) {
+			HibernateCacheableDAO dao = new HibernateCacheableDAO(name, driver);
+			dao.setName("Base de données");
+			dao.setSource(name);
+			dao.setSourceFullName(name);
+			return dao;
+		}
+		return CsvDAO.newInstance(new File(name));
+	}
+
+	/**
+	 * Indique si une source de données désigne une base de données.
+	 *
+	 * @param name	Une URL JDBC ou le chemin d'une archive CSV.
+	 *
+	 * @return		<code>true</code> s'il s'agit d'une URL JDBC.
+	 */
+	private static boolean isDatabase(String name) {
+		return name.startsWith("jdbc:");
+	}
+}
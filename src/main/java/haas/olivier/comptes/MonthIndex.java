@@ -0,0 +1,118 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes;
+
+import haas.olivier.util.Month;
+
+import java.time.YearMonth;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Un index trié d'un planning mensuel, permettant de trouver par dichotomie
+ * la valeur applicable à un mois.
+ * <p>
+ * Les mois sont indexés par un entier (année * 12 + mois - 1), ce qui évite
+ * toute conversion de date lors des recherches. L'index est une copie figée
+ * du planning : il doit être reconstruit lorsque le planning est modifié.
+ *
+ * @author Olivier HAAS
+ */
+final class MonthIndex<T> {
+
+	/**
+	 * Renvoie la clé numérique d'un mois.
+	 *
+	 * @param year	L'année.
+	 * @param month	Le numéro du mois, de 1 à 12.
+	 */
+	static int keyOf(int year, int month) {
+		return year * 12 + month - 1;
+	}
+
+	/**
+	 * Le planning indexé.
+	 */
+	private final Map<YearMonth, T> plan;
+
+	/**
+	 * Les clés numériques des mois, triées par ordre croissant.
+	 */
+	private final int[] keys;
+
+	/**
+	 * Les mois, dans le même ordre que {@link #keys}.
+	 */
+	private final Month[] months;
+
+	/**
+	 * Les valeurs, dans le même ordre que {@link #keys}.
+	 */
+	private final Object[] values;
+
+	/**
+	 * Construit l'index d'un planning.
+	 *
+	 * @param plan	Le planning à indexer.
+	 */
+	MonthIndex(Map<YearMonth, T> plan) {
+		this.plan = plan;
+		YearMonth[] sorted = plan.keySet().toArray(new YearMonth[plan.size()]);
+		Arrays.sort(sorted);
+
+		keys = new int[sorted.length];
+		months = new Month[sorted.length];
+		values = new Object[sorted.length];
+		for (int i = 0; i < sorted.length; i++) {
+			YearMonth m = sorted[i];
+			keys[i] = keyOf(m.getYear(), m.getMonthValue());
+			months[i] = Month.getInstance(m.getYear(), m.getMonthValue());
+			values[i] = plan.get(m);
+		}
+	}
+
+	/**
+	 * Indique si l'index a été construit à partir du planning spécifié.
+	 */
+	boolean isIndexOf(Map<YearMonth, ?> plan) {
+		return this.plan == plan;
+	}
+
+	/**
+	 * Renvoie la position du mois le plus récent antérieur ou égal au mois
+	 * spécifié.
+	 *
+	 * @param month	Un mois.
+	 *
+	 * @return		La position du mois dans l'index, ou -1 si aucun mois de
+	 * 				l'index n'est antérieur ou égal à <code>month</code>.
+	 */
+	int floorIndex(Month month) {
+		int pos = Arrays.binarySearch(keys,
+				keyOf(month.getYear(), month.getNumInYear()));
+		return (pos >= 0) ? pos : -pos - 2;
+	}
+
+	/**
+	 * Renvoie le nombre de mois indexés.
+	 */
+	int size() {
+		return keys.length;
+	}
+
+	/**
+	 * Renvoie le mois à une position de l'index.
+	 */
+	Month getMonth(int i) {
+		return months[i];
+	}
+
+	/**
+	 * Renvoie la valeur à une position de l'index.
+	 */
+	@SuppressWarnings("unchecked")
+	T getValue(int i) {
+		return (T) values[i];
+	}
+}
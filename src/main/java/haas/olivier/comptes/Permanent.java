@@ -5,6 +5,7 @@ package haas.olivier.comptes;
 
 import haas.olivier.comptes.ctrl.EcritureController;
 import haas.olivier.comptes.ctrl.EcritureDraft;
+import haas.olivier.comptes.ctrl.Previsions;
 import haas.olivier.comptes.dao.DAOFactory;
 import haas.olivier.util.Month;
 
@@ -22,7 +23,9 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,8 +35,12 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.ManyToOne;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
 import javax.persistence.OneToOne;
 
+import org.hibernate.annotations.GenericGenerator;
+
 /**
  * Une opération récurrente capable de générer une écriture pré-définie.
  * <p>
@@ -49,9 +56,20 @@ import javax.persistence.OneToOne;
  * @author Olivier Haas
  */
 @Entity
+@NamedEntityGraph(name = Permanent.GRAPHE_COMPLET, attributeNodes = {
+		@NamedAttributeNode("jours"),
+		@NamedAttributeNode("debit"),
+		@NamedAttributeNode("credit"),
+		@NamedAttributeNode("state")})
 public class Permanent implements Comparable<Permanent>, Serializable {
 	private static final long serialVersionUID = 8897891019381288870L;
 	
+	/**
+	 * Le nom du graphe JPA chargeant les opérations permanentes avec leurs
+	 * plannings, leurs comptes et leurs états, en une seule requête.
+	 */
+	public static final String GRAPHE_COMPLET = "Permanent.complet";
+	
 	/**
 	 * Le Logger de cette classe.
 	 */
@@ -59,7 +77,8 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 			Logger.getLogger(Permanent.class.getName());
 
 	/**
-	 * Génère pour ce mois les écritures de toutes les instances.
+	 * Génère pour ce mois les écritures de toutes les instances, puis purge
+	 * leurs plannings obsolètes.
 	 */
 	public static void createAllEcritures(Month month) {
 		Permanent cursor = null;
@@ -82,6 +101,10 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 			
 			// Ajouter au modèle en mettant à jour les données de suivi
 			EcritureController.add(generated);
+			
+			// Oublier les plannings obsolètes
+			for (Permanent p : permanents)
+				p.purge(month);
 
 		} catch (IOException e1) {
 			LOGGER.log(Level.SEVERE,
@@ -96,11 +119,80 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 		}
 	}
 
+	/**
+	 * Génère en une seule fois les écritures de toutes les instances pour
+	 * plusieurs mois consécutifs.
+	 * <p>
+	 * Toutes les écritures sont calculées en mémoire avant d'être ajoutées :
+	 * les montants des opérations proportionnelles et de celles qui soldent un
+	 * compte tiennent compte des écritures générées pour les mois précédents.
+	 * Les données de suivi ne sont ensuite mises à jour qu'une seule fois.
+	 * Les opérations déjà générées pour l'un de ces mois ne le sont pas une
+	 * seconde fois.
+	 * <p>
+	 * Comme pour un seul mois, la génération est interrompue au moindre
+	 * problème : si une des écritures ne peut pas être générée, aucune n'est
+	 * ajoutée et toutes celles qui posent problème sont signalées ensemble.
+	 *
+	 * @param from	Le premier mois au titre duquel générer les écritures.
+	 * @param to	Le dernier mois au titre duquel générer les écritures.
+	 * 
+	 * @return		Les descriptions des écritures qui n'ont pas pu être
+	 * 				générées ou de l'erreur survenue. La liste est vide si
+	 * 				toutes les écritures ont été générées.
+	 */
+	public static List<String> createAllEcritures(Month from, Month to) {
+		List<String> echecs = new ArrayList<>();
+		int count = (to.getYear() - from.getYear()) * 12
+				+ to.getNumInYear() - from.getNumInYear() + 1;
+		if (count <= 0)
+			return echecs;
+
+		try {
+			Previsions previsions = Previsions.forBancaires(from, count);
+			echecs.addAll(previsions.getEchecs());
+			if (!echecs.isEmpty()) {
+				LOGGER.severe("Aucune écriture n'a été générée. "
+						+ "Impossible de générer les écritures :\n"
+						+ String.join("\n", echecs));
+				return echecs;
+			}
+
+			// Toutes les écritures générées, mois par mois
+			List<Ecriture> generated = new ArrayList<>();
+			for (Month month = from; !month.after(to); month = month.getNext())
+				generated.addAll(previsions.getEcritures(month));
+
+			// Ajouter au modèle en mettant à jour les données de suivi
+			if (!generated.isEmpty())
+				EcritureController.add(generated);
+			
+			// Oublier les plannings obsolètes
+			for (Permanent p : DAOFactory.getFactory().getPermanentDAO()
+					.getAll())
+				p.purge(to);
+
+		} catch (IOException e1) {
+			LOGGER.log(Level.SEVERE,
+					"Impossible d'enregistrer une des écritures générées", e1);
+			echecs.add(String.valueOf(e1.getMessage()));
+
+		} catch (Exception e1) {
+			LOGGER.log(Level.SEVERE,
+					"Impossible de générer les écritures", e1);
+			echecs.add(String.valueOf(e1.getMessage()));
+		}
+		return echecs;
+	}
+
 	/**
 	 * L'identifiant de l'opération permanente.
 	 */
 	@Id
-	@GeneratedValue
+	@GeneratedValue(generator = "permanent_ids")
+	@GenericGenerator(name = "permanent_ids",
+			strategy = "haas.olivier.comptes.dao.cache.hibernate."
+			+ "AssignedOrIncrementGenerator")
 	private Integer id;
 	
 	/**
@@ -114,6 +206,11 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 	@ElementCollection
 	private Map<YearMonth, Integer> jours;
 	
+	/**
+	 * L'index des jours, construit à la première recherche.
+	 */
+	private transient MonthIndex<Integer> joursIndex;
+	
 	/**
 	 * Le compte à débiter par les écritures générées.
 	 */
@@ -204,34 +301,31 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 	}
 	
 	/**
-	 * Renvoie le mois le plus récent contenu dans la Map, et antérieur ou égal
-	 * au mois spécifié.
+	 * Convertit un mois en <code>java.time.YearMonth</code>.
 	 * 
-	 * @param plan	Un planning dont les clés sont des mois.
 	 * @param month	Un mois.
 	 * 
-	 * @return		Le mois le plus élevé antérieur ou égal à <code>month</code>
-	 * 				parmi les clés de <code>plan</code>, à défaut
-	 * 				<code>null</code>.
+	 * @return		Le <code>YearMonth</code> correspondant.
 	 */
-	static YearMonth getFloor(Map<YearMonth, ?> plan, Month month) {
-		YearMonth target = YearMonth.of(month.getYear(), month.getNumInYear());
-		YearMonth floor = null;
-		for (YearMonth m : plan.keySet()) {
-			if (!target.isBefore(m)) { // Mois antérieur à la cible
-				if (floor == null) {
-					// Rien de défini: prendre ce mois par défaut
-					floor = m;
-
-				} else if (floor.isBefore(m)) {
-					// m est plus récent que le max actuel
-
-					floor = m; // m est le nouveau max
-
-				}
-			}
-		}
-		return floor;
+	static YearMonth toYearMonth(Month month) {
+		return YearMonth.of(month.getYear(), month.getNumInYear());
+	}
+	
+	/**
+	 * Renvoie l'index d'un planning, en réutilisant si possible l'index
+	 * existant.
+	 * 
+	 * @param index	L'index existant, ou <code>null</code>.
+	 * @param plan	Le planning.
+	 * 
+	 * @return		<code>index</code> s'il a été construit à partir de
+	 * 				<code>plan</code>, sinon un nouvel index.
+	 */
+	static <T> MonthIndex<T> getIndex(MonthIndex<T> index,
+			Map<YearMonth, T> plan) {
+		return (index != null && index.isIndexOf(plan))
+				? index
+				: new MonthIndex<>(plan);
 	}
 	
 	/**
@@ -241,9 +335,12 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 	 * @param plan	La map à modifier.
 	 * @param month	Le mois le plus ancien à garder même s'il est vieux de plus
 	 * 				d'un an par rapport à la date du jour.
+	 * 
+	 * @return		<code>true</code> si des entrées ont été supprimées.
 	 */
-	static void purgeMapBefore(Map<YearMonth, ?> plan, YearMonth month) {
+	static boolean purgeMapBefore(Map<YearMonth, ?> plan, YearMonth month) {
 		YearMonth today = YearMonth.now();
+		boolean purged = false;
 		Iterator<YearMonth> it = plan.keySet().iterator();
 		while (it.hasNext()) {
 
@@ -251,8 +348,10 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 			YearMonth m2 = it.next().plusYears(1);
 			if (m2.isBefore(month) && m2.isBefore(today)) {
 				it.remove();					// Supprimer
+				purged = true;
 			}
 		}
+		return purged;
 	}
 	
 	/**
@@ -260,19 +359,39 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 	 * dans une Map dont les clés sont des <code>haas.olivier.util.Month</code>.
 	 * Il s'agit d'une vue d'une Map sur une autre ; les modifications sont donc
 	 * répercutées de l'une sur l'autre.
+	 * <p>
+	 * Les parcours s'appuient sur l'index du planning, qui fournit les mois
+	 * déjà convertis et triés par ordre chronologique.
 	 * 
-	 * @param map	La map à envelopper.
+	 * @param map		La map à envelopper.
+	 * @param index		Fournit l'index à jour de <code>map</code>.
+	 * @param onChange	Action à exécuter après chaque modification de
+	 * 					<code>map</code>, pour invalider son index.
 	 *  
-	 * @return		Une Map enveloppante.
+	 * @return			Une Map enveloppante.
 	 */
-	static <T> Map<Month, T> wrapWithMonth(Map<YearMonth, T> map) {
+	static <T> Map<Month, T> wrapWithMonth(Map<YearMonth, T> map,
+			Supplier<MonthIndex<T>> index, Runnable onChange) {
 		return new AbstractMap<Month, T>() {
 			
+			@Override
+			public T get(Object key) {
+				return (key instanceof Month)
+						? map.get(toYearMonth((Month) key))
+						: null;
+			}
+			
+			@Override
+			public boolean containsKey(Object key) {
+				return (key instanceof Month)
+						&& map.containsKey(toYearMonth((Month) key));
+			}
+			
 			@Override
 			public T put(Month key, T value) {
-				return map.put(
-						YearMonth.of(key.getYear(), key.getNumInYear()),
-						value);
+				T old = map.put(toYearMonth(key), value);
+				onChange.run();
+				return old;
 			}
 
 			@Override
@@ -281,29 +400,35 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 					
 					@Override
 					public Iterator<Entry<Month, T>> iterator() {
-						final Iterator<Entry<YearMonth, T>> it =
-								map.entrySet().iterator();
+						final MonthIndex<T> snapshot = index.get();
 						return new Iterator<Entry<Month, T>>() {
+							
+							/** La position de la prochaine entrée. */
+							private int next = 0;
 
 							@Override
 							public boolean hasNext() {
-								return it.hasNext();
+								return next < snapshot.size();
 							}
 
 							@Override
 							public Entry<Month, T> next() {
-								Entry<YearMonth, T> entry = it.next();
-								YearMonth yearMonth = entry.getKey();
-								return new SimpleEntry<Month, T>(
-										Month.getInstance(
-												yearMonth.getYear(),
-												yearMonth.getMonthValue()),
-										entry.getValue());
+								if (!hasNext())
+									throw new NoSuchElementException();
+								Entry<Month, T> entry = new SimpleEntry<>(
+										snapshot.getMonth(next),
+										snapshot.getValue(next));
+								next++;
+								return entry;
 							}
 							
 							@Override
 							public void remove() {
-								it.remove();
+								if (next == 0)
+									throw new IllegalStateException();
+								map.remove(toYearMonth(
+										snapshot.getMonth(next - 1)));
+								onChange.run();
 							}
 							
 						};
@@ -320,9 +445,6 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 
 	/**
 	 * Génère une écriture au titre du mois donné.
-	 * <p>
-	 * La méthode purge aussi les occurrences de jours et de montants obsolètes
-	 * de plus de 12 mois.
 	 * 
 	 * @return	Une écriture, ou <code>null</code> si les données ne permettent
 	 * 			pas de générer une écriture valide.
@@ -336,34 +458,41 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 	 */
 	public Ecriture createEcriture(Month month)
 			throws EcritureMissingArgumentException, InconsistentArgumentsException {
+		return createEcriture(month, null);
+	}
 
-		// Trouver la date
-		YearMonth maxMonth = getFloor(jours, month);
-
-		// Si pas de date antérieure définie, lever une exception
-		if (maxMonth == null) {
-			throw new InconsistentArgumentsException(
-					"Opération permanente  " + nom
-					+ ": pas de date trouvée avant le mois spécifié");
-		}
+	/**
+	 * Génère une écriture au titre du mois donné, éventuellement dans le
+	 * cadre d'une simulation.
+	 * 
+	 * @param month			Le mois au titre duquel générer l'écriture.
+	 * @param previsions	Les prévisions en cours de calcul, qui fournissent
+	 * 						le montant de l'écriture, ou <code>null</code> pour
+	 * 						utiliser les données enregistrées.
+	 * 
+	 * @return	Une nouvelle écriture, qui n'est pas enregistrée.
+	 * 
+	 * @throws EcritureMissingArgumentException
+	 * 			Si les données sont insuffisantes pour instancier une écriture.
+	 * 
+	 * @throws InconsistentArgumentsException
+	 * 			Si aucune date ou aucun montant n'est spécifié ni pour le mois
+	 * 			concerné ni pour un mois antérieur.
+	 */
+	public Ecriture createEcriture(Month month, Previsions previsions)
+			throws EcritureMissingArgumentException, InconsistentArgumentsException {
 
 		// Déterminer la date
-		Calendar cal = Calendar.getInstance();	// Calendrier
-		Integer jour = jours.get(maxMonth);		// Le quantième voulu
-		cal.setTime(month.getFirstDay());		// Partir du mois spécifié
-		cal.setLenient(true);		// Accepter les quantièmes hors champ (1-31)
-		cal.set(Calendar.DAY_OF_MONTH, jour);	// Changer le jour du mois
-		Date date = cal.getTime();				// Date définitive
-
-		// Purger la liste des dates
-		purgeMapBefore(jours, maxMonth);
+		Date date = getDatePrevue(month);
 
 		// Créer l'écriture
 		EcritureDraft draft = new EcritureDraft();
 		draft.date = date;
 		draft.debit = debit;
 		draft.credit = credit;
-		draft.montant = getMontant(month);
+		draft.montant = (previsions == null)
+				? getMontant(month)
+				: previsions.getMontant(this, month);
 		draft.libelle = libelle;
 		draft.tiers = tiers;
 		if (pointer)
@@ -372,6 +501,66 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 		return draft.createEcriture();
 	}
 	
+	/**
+	 * Renvoie la date de l'écriture à générer au titre du mois donné, sans
+	 * rien modifier.
+	 * 
+	 * @param month	Le mois au titre duquel générer l'écriture.
+	 * 
+	 * @return		La date de l'écriture.
+	 * 
+	 * @throws InconsistentArgumentsException
+	 * 				Si aucune date n'est spécifiée ni pour le mois concerné ni
+	 * 				pour un mois antérieur.
+	 */
+	public Date getDatePrevue(Month month)
+			throws InconsistentArgumentsException {
+
+		// Trouver la date
+		MonthIndex<Integer> index = getJoursIndex();
+		int maxMonth = index.floorIndex(month);
+
+		// Si pas de date antérieure définie, lever une exception
+		if (maxMonth == -1) {
+			throw new InconsistentArgumentsException(
+					"Opération permanente  " + nom
+					+ ": pas de date trouvée avant le mois spécifié");
+		}
+
+		// Déterminer la date
+		Calendar cal = Calendar.getInstance();	// Calendrier
+		Integer jour = index.getValue(maxMonth);// Le quantième voulu
+		cal.setTime(month.getFirstDay());		// Partir du mois spécifié
+		cal.setLenient(true);		// Accepter les quantièmes hors champ (1-31)
+		cal.set(Calendar.DAY_OF_MONTH, jour);	// Changer le jour du mois
+		return cal.getTime();					// Date définitive
+	}
+	
+	/**
+	 * Supprime des plannings les jours et les montants obsolètes de plus de 12
+	 * mois, qui ne servent plus pour générer les écritures à partir du mois
+	 * spécifié.
+	 * 
+	 * @param month	Le mois à partir duquel les plannings doivent rester
+	 * 				utilisables.
+	 */
+	public void purge(Month month) {
+		MonthIndex<Integer> index = getJoursIndex();
+		int floor = index.floorIndex(month);
+		if (floor != -1
+				&& purgeMapBefore(jours, toYearMonth(index.getMonth(floor))))
+			joursIndex = null;
+		state.purge(month);
+	}
+	
+	/**
+	 * Renvoie l'index du planning des jours.
+	 */
+	private MonthIndex<Integer> getJoursIndex() {
+		joursIndex = getIndex(joursIndex, jours);
+		return joursIndex;
+	}
+	
 	/**
 	 * Renvoie l'identifiant de l'opération permanente.
 	 * 
@@ -535,7 +724,8 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 	 * @return	Les dates des écritures à générer en fonction des mois.
 	 */
 	public Map<Month, Integer> getJours() {
-		return wrapWithMonth(jours);
+		return wrapWithMonth(jours, this::getJoursIndex,
+				() -> joursIndex = null);
 	}
 
 	/**
@@ -558,6 +748,29 @@ public class Permanent implements Comparable<Permanent>, Serializable {
 		return state.getMontant(month);
 	}
 
+	/**
+	 * Renvoie le montant prévisionnel de l'écriture à générer, sans rien
+	 * modifier.
+	 * 
+	 * @param month		Le mois au titre duquel générer l'écriture.
+	 * @param previsions	Les prévisions en cours de calcul, qui fournissent
+	 * 						les soldes et les montants prévus des autres
+	 * 						opérations.
+	 * 
+	 * @throws EcritureMissingArgumentException
+	 * 				Si les données sont insuffisantes pour instancier
+	 * 				l'écriture.
+	 * 
+	 * @throws InconsistentArgumentException
+	 * 				Si des informations manquent pour définir le montant au
+	 * 				titre de ce mois.
+	 */
+	public BigDecimal getMontantPrevu(Month month, Previsions previsions)
+			throws EcritureMissingArgumentException,
+			InconsistentArgumentsException {
+		return state.getMontantPrevu(month, previsions);
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		
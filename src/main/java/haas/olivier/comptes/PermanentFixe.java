@@ -3,6 +3,7 @@
  */
 package haas.olivier.comptes;
 
+import haas.olivier.comptes.ctrl.Previsions;
 import haas.olivier.util.Month;
 
 import java.math.BigDecimal;
@@ -26,6 +27,11 @@ public class PermanentFixe extends PermanentState {
 	 */
 	@ElementCollection
 	private Map<YearMonth, BigDecimal> montants;
+	
+	/**
+	 * L'index des montants, construit à la première recherche.
+	 */
+	private transient MonthIndex<BigDecimal> montantsIndex;
 
 	protected PermanentFixe() {
 	}
@@ -55,19 +61,48 @@ public class PermanentFixe extends PermanentState {
 	@Override
 	public BigDecimal getMontant(Month month)
 			throws InconsistentArgumentsException {
-		YearMonth maxMonthAmount = Permanent.getFloor(montants, month);
+		MonthIndex<BigDecimal> index = getMontantsIndex();
+		int maxMonthAmount = index.floorIndex(month);
 
 		// Si pas de date antérieure définie, lever une exception
-		if (maxMonthAmount == null) {
+		if (maxMonthAmount == -1) {
 			throw new InconsistentArgumentsException(
 					"Pas de montant trouvé avant le mois spécifié");
 		}
-
-		// Purger la liste des mois
-		Permanent.purgeMapBefore(montants, maxMonthAmount);
 		
 		// Montant à retenir
-		return montants.get(maxMonthAmount);
+		return index.getValue(maxMonthAmount);
+	}
+	
+	/**
+	 * Renvoie le montant prédéfini pour le mois spécifié ou le mois le plus
+	 * proche avant lui, comme {@link #getMontant(Month)}.
+	 * 
+	 * @throws InconsistentArgumentsException 
+	 * 			Si aucun montant n'a été spécifié, ni au titre du mois concerné,
+	 * 			ni au titre des mois antérieurs.
+	 */
+	@Override
+	BigDecimal getMontantPrevu(Month month, Previsions previsions)
+			throws InconsistentArgumentsException {
+		return getMontant(month);
+	}
+	
+	@Override
+	void purge(Month month) {
+		MonthIndex<BigDecimal> index = getMontantsIndex();
+		int floor = index.floorIndex(month);
+		if (floor != -1 && Permanent.purgeMapBefore(montants,
+				Permanent.toYearMonth(index.getMonth(floor))))
+			montantsIndex = null;
+	}
+	
+	/**
+	 * Renvoie l'index du planning des montants.
+	 */
+	private MonthIndex<BigDecimal> getMontantsIndex() {
+		montantsIndex = Permanent.getIndex(montantsIndex, montants);
+		return montantsIndex;
 	}
 	
 	/**
@@ -78,6 +113,7 @@ public class PermanentFixe extends PermanentState {
 	 * 			<code>haas.olivier.util.Month</code>.
 	 */
 	public Map<Month, BigDecimal> getMontantsByMonth() {
-		return Permanent.wrapWithMonth(montants);
+		return Permanent.wrapWithMonth(montants, this::getMontantsIndex,
+				() -> montantsIndex = null);
 	}
 }
@@ -3,6 +3,7 @@
  */
 package haas.olivier.comptes;
 
+import haas.olivier.comptes.ctrl.Previsions;
 import haas.olivier.util.Month;
 
 import java.math.BigDecimal;
@@ -58,5 +59,15 @@ public class PermanentProport extends PermanentState {
 				.movePointLeft(2)					// %: Diviser par 100
 				.setScale(2, RoundingMode.HALF_UP); // Arrondir au centime
 	}
+	
+	@Override
+	BigDecimal getMontantPrevu(Month month, Previsions previsions)
+			throws EcritureMissingArgumentException,
+			InconsistentArgumentsException {
+		return previsions.getMontant(dependance, month)	// Montant de base
+				.multiply(taux)						// Multiplier par le taux
+				.movePointLeft(2)					// %: Diviser par 100
+				.setScale(2, RoundingMode.HALF_UP); // Arrondir au centime
+	}
 
 }
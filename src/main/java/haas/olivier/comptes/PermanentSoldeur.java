@@ -3,6 +3,7 @@
  */
 package haas.olivier.comptes;
 
+import haas.olivier.comptes.ctrl.Previsions;
 import haas.olivier.util.Month;
 
 import java.math.BigDecimal;
@@ -44,5 +45,15 @@ public class PermanentSoldeur extends PermanentState {
 	public BigDecimal getMontant(Month month) {
 		return permanent.getDebit().getSoldeAVue(month.getPrevious());
 	}
+	
+	/**
+	 * Renvoie le solde à vue prévu du compte à débiter à la fin du mois
+	 * précédent.
+	 */
+	@Override
+	BigDecimal getMontantPrevu(Month month, Previsions previsions) {
+		return previsions.getSoldeAVue(permanent.getDebit(),
+				month.getPrevious());
+	}
 
 }
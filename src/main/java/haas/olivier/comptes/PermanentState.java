@@ -12,6 +12,7 @@ import javax.persistence.Id;
 import javax.persistence.Inheritance;
 import javax.persistence.InheritanceType;
 
+import haas.olivier.comptes.ctrl.Previsions;
 import haas.olivier.util.Month;
 
 /**
@@ -66,4 +67,37 @@ public abstract class PermanentState implements Serializable {
 	abstract BigDecimal getMontant(Month month)
 			throws EcritureMissingArgumentException,
 			InconsistentArgumentsException;
+	
+	/**
+	 * Renvoie le montant prévisionnel de l'écriture à générer.
+	 * <p>
+	 * Contrairement à {@link #getMontant(Month)}, cette méthode s'appuie sur
+	 * les prévisions en cours de calcul plutôt que sur les soldes enregistrés.
+	 * 
+	 * @param month			Le mois au titre duquel générer l'écriture.
+	 * @param previsions	Les prévisions en cours de calcul.
+	 * 
+	 * @throws EcritureMissingArgumentException
+	 * 				Si les données sont insuffisantes pour instancier
+	 * 				l'écriture.
+	 * 
+	 * @throws InconsistentArgumentException
+	 * 				Si des informations manquent pour définir le montant au
+	 * 				titre de ce mois.
+	 */
+	abstract BigDecimal getMontantPrevu(Month month, Previsions previsions)
+			throws EcritureMissingArgumentException,
+			InconsistentArgumentsException;
+	
+	/**
+	 * Supprime les données obsolètes de plus de 12 mois, qui ne servent plus
+	 * pour générer les écritures à partir du mois spécifié.
+	 * <p>
+	 * Par défaut, cette méthode ne fait rien.
+	 * 
+	 * @param month	Le mois à partir duquel les données doivent rester
+	 * 				utilisables.
+	 */
+	void purge(Month month) {
+	}
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.dao.DAOFactory;
+
+/**
+ * Les soldes quotidiens de plusieurs comptes sur une longue période,
+ * calculés ensemble.
+ * <p>
+ * Contrairement à <code>DailySolde</code>, qui relit toutes les écritures
+ * pour chaque compte et chaque mois, cette classe parcourt une seule fois
+ * l'ensemble des écritures. Les mouvements de chaque compte sont cumulés par
+ * jour dans une colonne de centimes, puis transformés en soldes de fin de
+ * journée par une simple somme cumulée.
+ * <p>
+ * Les instances sont immuables et peuvent être partagées entre plusieurs fils
+ * d'exécution.
+ *
+ * @author Olivier Haas
+ */
+public class DailySoldes {
+
+	/**
+	 * Calcule les soldes quotidiens de tous les comptes bancaires.
+	 *
+	 * @param from		Le premier jour souhaité.
+	 * @param to		Le dernier jour souhaité.
+	 * @param pointages	<code>true</code> si on veut les soldes réels basés sur
+	 * 					les pointages, <code>false</code> si on souhaite les
+	 * 					soldes théoriques basés sur les dates d'écritures.
+	 *
+	 * @return			Les soldes quotidiens de tous les comptes bancaires.
+	 *
+	 * @throws IOException
+	 */
+	public static DailySoldes forBancaires(Date from, Date to,
+			boolean pointages) throws IOException {
+		return new DailySoldes(getBancaires(), from, to, pointages);
+	}
+
+	/**
+	 * Calcule les soldes quotidiens de tous les comptes bancaires, depuis
+	 * l'ouverture du plus ancien.
+	 * <p>
+	 * Les jours antérieurs, où aucun compte bancaire n'existait, ne sont pas
+	 * calculés. Si aucun compte n'a de date d'ouverture, le calcul commence
+	 * au début des données.
+	 *
+	 * @param to		Le dernier jour souhaité.
+	 * @param pointages	<code>true</code> si on veut les soldes réels basés sur
+	 * 					les pointages, <code>false</code> si on souhaite les
+	 * 					soldes théoriques basés sur les dates d'écritures.
+	 *
+	 * @return			Les soldes quotidiens de tous les comptes bancaires.
+	 *
+	 * @throws IOException
+	 */
+	public static DailySoldes forBancaires(Date to, boolean pointages)
+			throws IOException {
+		Collection<Compte> bancaires = getBancaires();
+		Date from = null;
+		for (Compte compte : bancaires) {
+			Date ouverture = compte.getOuverture();
+			if (ouverture != null && (from == null || ouverture.before(from)))
+				from = ouverture;
+		}
+		if (from == null)
+			from = DAOFactory.getFactory().getDebut().getFirstDay();
+		return new DailySoldes(bancaires, from, to, pointages);
+	}
+
+	/**
+	 * Renvoie tous les comptes bancaires.
+	 *
+	 * @throws IOException
+	 */
+	private static Collection<Compte> getBancaires() throws IOException {
+		Collection<Compte> bancaires = new ArrayList<>();
+		for (Compte compte : DAOFactory.getFactory().getCompteDAO().getAll()) {
+			if (compte.getType().isBancaire())
+				bancaires.add(compte);
+		}
+		return bancaires;
+	}
+
+	/**
+	 * Renvoie le jour d'une date, sans tenir compte de l'heure.
+	 *
+	 * @param date	Une date.
+	 *
+	 * @return		Le jour de la date, dans le fuseau horaire par défaut.
+	 */
+	private static LocalDate toLocalDate(Date date) {
+		return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+	}
+
+	/**
+	 * Le premier jour de la période.
+	 */
+	private final LocalDate start;
+
+	/**
+	 * Le nombre de jours de la période.
+	 */
+	private final int dayCount;
+
+	/**
+	 * L'index de la colonne de chaque compte.
+	 */
+	private final Map<Compte, Integer> columns = new HashMap<>();
+
+	/**
+	 * Les soldes de fin de journée de chaque compte, en centimes.
+	 */
+	private final long[][] soldes;
+
+	/**
+	 * Calcule les soldes quotidiens de plusieurs comptes.
+	 *
+	 * @param comptes	Les comptes souhaités.
+	 * @param from		Le premier jour souhaité.
+	 * @param to		Le dernier jour souhaité.
+	 * @param pointages	<code>true</code> si on veut les soldes réels basés sur
+	 * 					les pointages, <code>false</code> si on souhaite les
+	 * 					soldes théoriques basés sur les dates d'écritures.
+	 *
+	 * @throws IOException
+	 */
+	public DailySoldes(Iterable<Compte> comptes, Date from, Date to,
+			boolean pointages) throws IOException {
+		start = toLocalDate(from);
+		dayCount = (int) Math.max(0,
+				toLocalDate(to).toEpochDay() - start.toEpochDay() + 1);
+
+		for (Compte compte : comptes)
+			columns.put(compte, columns.size());
+		soldes = new long[columns.size()][dayCount];
+
+		// Solde de départ de chaque compte (mouvements antérieurs)
+		long[] initial = new long[columns.size()];
+
+		// Cumuler les mouvements de chaque jour, en un seul passage
+		for (Ecriture e : DAOFactory.getFactory().getEcritureDAO().getAll()) {
+			Date date = pointages ? e.pointage : e.date;
+			if (date == null)
+				continue;						// Pas encore pointée
+
+			long day = toLocalDate(date).toEpochDay() - start.toEpochDay();
+			if (day >= dayCount)
+				continue;						// Après la période
+
+			add(e, e.debit, (int) day, initial);
+			if (e.credit != e.debit)
+				add(e, e.credit, (int) day, initial);
+		}
+
+		// Transformer les mouvements en soldes de fin de journée
+		for (int col = 0; col < soldes.length; col++) {
+			long solde = initial[col];
+			long[] column = soldes[col];
+			for (int day = 0; day < dayCount; day++) {
+				solde += column[day];
+				column[day] = solde;
+			}
+		}
+	}
+
+	/**
+	 * Ajoute l'effet d'une écriture sur un compte, si ce compte fait partie
+	 * des comptes souhaités.
+	 *
+	 * @param e			L'écriture.
+	 * @param compte	Le compte mouvementé par l'écriture.
+	 * @param day		L'index du jour de l'écriture. Négatif si l'écriture
+	 * 					précède la période.
+	 * @param initial	Les soldes des comptes avant la période.
+	 */
+	private void add(Ecriture e, Compte compte, int day, long[] initial) {
+		Integer col = columns.get(compte);
+		if (col == null)
+			return;
+
+		long cents = compte.getImpactOf(e).movePointRight(2)
+				.setScale(0, RoundingMode.HALF_UP).longValue();
+		if (day < 0) {
+			initial[col] += cents;
+		} else {
+			soldes[col][day] += cents;
+		}
+	}
+
+	/**
+	 * Renvoie le nombre de jours de la période.
+	 */
+	public int getDayCount() {
+		return dayCount;
+	}
+
+	/**
+	 * Renvoie la date d'un jour de la période.
+	 *
+	 * @param day	L'index du jour, à partir de zéro.
+	 *
+	 * @return		La date du jour, à minuit.
+	 */
+	public Date getDate(int day) {
+		return Date.from(start.plusDays(day)
+				.atStartOfDay(ZoneId.systemDefault()).toInstant());
+	}
+
+	/**
+	 * Renvoie les soldes de fin de journée d'un compte sur toute la période.
+	 *
+	 * @param compte	Le compte souhaité.
+	 *
+	 * @return			Un nouveau tableau contenant le solde de chaque jour,
+	 * 					ou <code>null</code> si le compte ne fait pas partie
+	 * 					des comptes calculés.
+	 */
+	public double[] getSoldes(Compte compte) {
+		Integer col = columns.get(compte);
+		if (col == null)
+			return null;
+
+		double[] result = new double[dayCount];
+		for (int day = 0; day < dayCount; day++)
+			result[day] = soldes[col][day] / 100.0;
+		return result;
+	}
+
+	/**
+	 * Renvoie le solde d'un compte à la fin d'une journée.
+	 *
+	 * @param compte	Le compte souhaité.
+	 * @param date		La date souhaitée.
+	 *
+	 * @return			Le solde du compte à la fin de cette journée, ou
+	 * 					<code>null</code> si le compte ne fait pas partie des
+	 * 					comptes calculés ou si la date est hors de la période.
+	 */
+	public BigDecimal getSoldeAt(Compte compte, Date date) {
+		Integer col = columns.get(compte);
+		long day = toLocalDate(date).toEpochDay() - start.toEpochDay();
+		if (col == null || day < 0 || day >= dayCount)
+			return null;
+		return BigDecimal.valueOf(soldes[col][(int) day], 2);
+	}
+}
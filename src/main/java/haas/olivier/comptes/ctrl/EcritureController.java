@@ -13,6 +13,7 @@ import haas.olivier.util.Month;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Date;
 import java.util.Deque;
 import java.util.LinkedList;
 
@@ -108,6 +109,37 @@ public class EcritureController {
 		updateSuivis(month);
 	}
 	
+	/**
+	 * Met à jour plusieurs écritures existantes dans le modèle et met à jour
+	 * les données de suivi après l'ensemble des modifications, à partir du
+	 * mois le plus ancien des écritures modifiées ou remplacées.
+	 *
+	 * @param ecritures	Les nouvelles versions des écritures. Elles doivent
+	 * 					avoir l'identifiant d'une écriture existante.
+	 *
+	 * @throws IOException
+	 */
+	public static void update(Iterable<Ecriture> ecritures)
+			throws IOException {
+		EcritureDAO eDAO = DAOFactory.getFactory().getEcritureDAO();
+		Month month = null;
+
+		// Trouver le mois le plus ancien, avant ou après modification
+		for (Ecriture e : ecritures) {
+			Date old = eDAO.get(e.id).date;
+			Date date = old.before(e.date) ? old : e.date;
+			if (month == null || month.after(date))
+				month = Month.getInstance(date);
+		}
+
+		// Mettre à jour toutes les écritures en une fois
+		eDAO.updateAll(ecritures);
+
+		// Mettre à jour les données de suivi
+		if (month != null)
+			updateSuivis(month);
+	}
+
 	/**
 	 * Ajoute une nouvelle écriture dans le modèle de données et met à jour les
 	 * suivis à partir du mois de l'écriture.
@@ -166,31 +198,45 @@ public class EcritureController {
 	/**
 	 * Met à jour l'historique, les soldes à vue et les moyennes des comptes à
 	 * partir du mois spécifié.
+	 * <p>
+	 * Les nouveaux suivis sont publiés en une seule fois, à la fin du calcul.
 	 * 
 	 * @param debut	Le mois à partir duquel mettre à jour les suivis.
 	 * 
 	 * @throws IOException
 	 */
 	public static void updateSuivis(Month debut) throws IOException {
-		EcritureDAO ecritureDAO = DAOFactory.getFactory().getEcritureDAO();
-
-		// Effacer les données de suivi actuelles à compter du mois debut
-		Compte.removeSuiviFrom(debut);
+		DAOFactory factory = DAOFactory.getFactory();
+		EcritureDAO ecritureDAO = factory.getEcritureDAO();
+		SuiviDAO[] suivis = {factory.getHistoriqueDAO(),
+				factory.getSoldeAVueDAO(), factory.getMoyenneDAO()};
 		
-		// Mettre à jour l'historique
-		updateHistoriqueAndEpargne(debut, ecritureDAO);
+		for (SuiviDAO suivi : suivis)
+			suivi.beginBatch();
+		try {
 
-		/*
-		 * Mettre à jour les pointages. On part du principe que le pointage
-		 * intervenant APRÈS l'écriture elle-même, les pointages antérieurs à
-		 * debut ne sont pas modifiés.
-		 */
-		updatePointages(debut, ecritureDAO);
-		
-		// Mettre à jour les moyennes
-		for (Compte compte : DAOFactory.getFactory().getCompteDAO().getAll())
-			updateMoyennes(compte, debut);
-		updateMoyennes(Compte.COMPTE_EPARGNE, debut);	// Compte virtuel
+			// Effacer les données de suivi actuelles à compter du mois debut
+			Compte.removeSuiviFrom(debut);
+			
+			// Mettre à jour l'historique
+			updateHistoriqueAndEpargne(debut, ecritureDAO);
+	
+			/*
+			 * Mettre à jour les pointages. On part du principe que le pointage
+			 * intervenant APRÈS l'écriture elle-même, les pointages antérieurs
+			 * à debut ne sont pas modifiés.
+			 */
+			updatePointages(debut, ecritureDAO);
+			
+			// Mettre à jour les moyennes
+			for (Compte compte : factory.getCompteDAO().getAll())
+				updateMoyennes(compte, debut);
+			updateMoyennes(Compte.COMPTE_EPARGNE, debut);	// Compte virtuel
+			
+		} finally {
+			for (SuiviDAO suivi : suivis)
+				suivi.endBatch();
+		}
 	}
 	
 	/**
@@ -0,0 +1,480 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.EcritureMissingArgumentException;
+import haas.olivier.comptes.InconsistentArgumentsException;
+import haas.olivier.comptes.Permanent;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.util.Month;
+
+/**
+ * Les soldes prévisionnels de plusieurs comptes, obtenus en simulant les
+ * opérations permanentes sur plusieurs mois.
+ * <p>
+ * Les écritures que généreraient les opérations permanentes sont calculées en
+ * mémoire, mois par mois, sans être enregistrées ni modifier les opérations
+ * permanentes. Les montants des opérations proportionnelles s'appuient sur
+ * les montants prévus des opérations dont elles dépendent, et ceux des
+ * opérations soldant un compte sur le solde à vue prévu de ce compte à la fin
+ * du mois précédent.
+ * <p>
+ * Le solde prévu d'un mois est le solde enregistré pour ce mois, augmenté des
+ * écritures prévues depuis le début de la période. Les écritures réelles déjà
+ * saisies sur la période sont donc prises en compte.
+ * <p>
+ * Les opérations permanentes qui ont déjà été générées pour un mois de la
+ * période ne sont pas simulées une seconde fois, puisque leurs écritures
+ * figurent déjà dans les soldes enregistrés. Une opération est considérée
+ * comme générée lorsqu'une écriture du mois mouvemente les mêmes comptes avec
+ * le même libellé et le même tiers. Le montant de cette écriture sert alors
+ * aux opérations qui en dépendent.
+ *
+ * @author Olivier Haas
+ */
+public class Previsions {
+
+	/**
+	 * Le Logger de cette classe.
+	 */
+	private static final Logger LOGGER =
+			Logger.getLogger(Previsions.class.getName());
+
+	/**
+	 * Calcule les prévisions de tous les comptes bancaires à partir de toutes
+	 * les opérations permanentes.
+	 *
+	 * @param debut	Le premier mois à prévoir.
+	 * @param count	Le nombre de mois à prévoir.
+	 *
+	 * @return		Les prévisions des comptes bancaires.
+	 *
+	 * @throws IOException
+	 */
+	public static Previsions forBancaires(Month debut, int count)
+			throws IOException {
+		DAOFactory factory = DAOFactory.getFactory();
+		Collection<Compte> bancaires = new ArrayList<>();
+		for (Compte compte : factory.getCompteDAO().getAll()) {
+			if (compte.getType().isBancaire())
+				bancaires.add(compte);
+		}
+		return new Previsions(bancaires,
+				factory.getPermanentDAO().getAll(), debut, count,
+				factory.getEcritureDAO().getAllBetween(
+						debut, debut.getTranslated(count - 1)));
+	}
+
+	/**
+	 * Le premier mois prévu.
+	 */
+	private final Month debut;
+
+	/**
+	 * Le nombre de mois prévus.
+	 */
+	private final int count;
+
+	/**
+	 * Les soldes théoriques prévus de chaque compte à la fin de chaque mois.
+	 * L'index 0 correspond au mois précédant la période.
+	 */
+	private final Map<Compte, BigDecimal[]> historiques = new HashMap<>();
+
+	/**
+	 * Les soldes à vue prévus de chaque compte à la fin de chaque mois.
+	 * L'index 0 correspond au mois précédant la période.
+	 */
+	private final Map<Compte, BigDecimal[]> soldesAVue = new HashMap<>();
+
+	/**
+	 * Les écritures prévues pour chaque mois.
+	 */
+	private final List<List<Ecriture>> ecritures = new ArrayList<>();
+
+	/**
+	 * Les montants déjà calculés pour le mois en cours de calcul.
+	 */
+	private final Map<Permanent, BigDecimal> montants = new HashMap<>();
+
+	/**
+	 * Les opérations dont le montant est en cours de calcul, pour détecter les
+	 * dépendances circulaires.
+	 */
+	private final Set<Permanent> pending = new HashSet<>();
+
+	/**
+	 * Les descriptions des écritures qui n'ont pas pu être prévues.
+	 */
+	private final List<String> echecs = new ArrayList<>();
+
+	/**
+	 * Calcule des prévisions en supposant qu'aucune opération permanente n'a
+	 * encore été générée pour les mois de la période.
+	 *
+	 * @param comptes		Les comptes dont on souhaite les soldes prévus.
+	 * @param permanents	Les opérations permanentes à simuler.
+	 * @param debut			Le premier mois à prévoir.
+	 * @param count			Le nombre de mois à prévoir.
+	 */
+	public Previsions(Iterable<Compte> comptes, Iterable<Permanent> permanents,
+			Month debut, int count) {
+		this(comptes, permanents, debut, count,
+				Collections.<Ecriture>emptyList());
+	}
+
+	/**
+	 * Calcule des prévisions en tenant compte des opérations permanentes déjà
+	 * générées.
+	 *
+	 * @param comptes		Les comptes dont on souhaite les soldes prévus.
+	 * @param permanents	Les opérations permanentes à simuler.
+	 * @param debut			Le premier mois à prévoir.
+	 * @param count			Le nombre de mois à prévoir.
+	 * @param existantes	Les écritures enregistrées pour les mois de la
+	 * 						période, parmi lesquelles celles qui ont déjà été
+	 * 						générées par les opérations permanentes.
+	 */
+	public Previsions(Iterable<Compte> comptes, Iterable<Permanent> permanents,
+			Month debut, int count, Iterable<Ecriture> existantes) {
+		this.debut = debut;
+		this.count = count;
+
+		// Partir des soldes enregistrés pour chaque mois
+		Map<Compte, BigDecimal[]> historiquesEnregistres = new HashMap<>();
+		Map<Compte, BigDecimal[]> soldesAVueEnregistres = new HashMap<>();
+		for (Compte compte : comptes) {
+			BigDecimal[] historique = new BigDecimal[count + 1];
+			BigDecimal[] aVue = new BigDecimal[count + 1];
+			Month month = debut.getPrevious();
+			for (int i = 0; i <= count; i++) {
+				historique[i] = compte.getHistorique(month);
+				aVue[i] = compte.getSoldeAVue(month);
+				month = month.getNext();
+			}
+			historiquesEnregistres.put(compte, historique);
+			soldesAVueEnregistres.put(compte, aVue);
+			historiques.put(compte, historique.clone());
+			soldesAVue.put(compte, aVue.clone());
+		}
+
+		// Les écritures enregistrées, par mois
+		Map<Month, List<Ecriture>> existantesByMonth = new HashMap<>();
+		for (Ecriture e : existantes) {
+			existantesByMonth.computeIfAbsent(
+					Month.getInstance(e.date), m -> new ArrayList<>()).add(e);
+		}
+
+		// Simuler chaque mois
+		Month month = debut;
+		for (int i = 1; i <= count; i++) {
+			reporter(historiques, historiquesEnregistres, i);
+			reporter(soldesAVue, soldesAVueEnregistres, i);
+			ecritures.add(simulate(permanents, month, i,
+					existantesByMonth.get(month)));
+			month = month.getNext();
+		}
+		montants.clear();
+	}
+
+	/**
+	 * Reporte sur un mois les écritures prévues jusqu'au mois précédent.
+	 *
+	 * @param soldes		Les soldes prévus, théoriques ou à vue.
+	 * @param enregistres	Les soldes enregistrés correspondants.
+	 * @param index			L'index du mois dans les tableaux de soldes.
+	 */
+	private static void reporter(Map<Compte, BigDecimal[]> soldes,
+			Map<Compte, BigDecimal[]> enregistres, int index) {
+		for (Map.Entry<Compte, BigDecimal[]> entry : soldes.entrySet()) {
+			BigDecimal[] prevus = entry.getValue();
+			BigDecimal[] reels = enregistres.get(entry.getKey());
+			prevus[index] = reels[index]
+					.add(prevus[index-1].subtract(reels[index-1]));
+		}
+	}
+
+	/**
+	 * Simule les opérations permanentes d'un mois et reporte leurs effets sur
+	 * les soldes prévus.
+	 *
+	 * @param permanents	Les opérations permanentes.
+	 * @param month			Le mois à simuler.
+	 * @param index			L'index du mois dans les tableaux de soldes.
+	 * @param existantes	Les écritures enregistrées pour ce mois, ou
+	 * 						<code>null</code>.
+	 *
+	 * @return				Les écritures prévues pour ce mois.
+	 */
+	private List<Ecriture> simulate(Iterable<Permanent> permanents,
+			Month month, int index, List<Ecriture> existantes) {
+		montants.clear();
+
+		// Écarter les opérations déjà générées, en retenant leurs montants
+		Set<Permanent> generees = new HashSet<>();
+		if (existantes != null) {
+			List<Ecriture> candidates = new ArrayList<>(existantes);
+			for (Permanent p : permanents) {
+				Ecriture e = retirer(candidates, p);
+				if (e != null) {
+					generees.add(p);
+					montants.put(p, e.montant);
+				}
+			}
+		}
+
+		List<Ecriture> generated = new ArrayList<>();
+		for (Permanent p : permanents) {
+			if (generees.contains(p))
+				continue;
+			Ecriture e;
+			try {
+				e = p.createEcriture(month, this);
+			} catch (EcritureMissingArgumentException
+					| InconsistentArgumentsException e1) {
+				LOGGER.log(Level.FINE, "Pas d'écriture prévue pour " + p
+						+ " en " + month, e1);
+				echecs.add(p + " (" + month + ") : " + e1.getMessage());
+				continue;
+			}
+			generated.add(e);
+		}
+
+		// Reporter les écritures une fois tous les montants calculés
+		for (Ecriture e : generated) {
+			apply(e, e.debit, index);
+			if (e.credit != e.debit)
+				apply(e, e.credit, index);
+		}
+		return Collections.unmodifiableList(generated);
+	}
+
+	/**
+	 * Retire d'une liste la première écriture qui semble avoir été générée par
+	 * une opération permanente.
+	 *
+	 * @param ecritures	Les écritures candidates.
+	 * @param p			L'opération permanente.
+	 *
+	 * @return			L'écriture retirée, ou <code>null</code> si aucune
+	 * 					écriture ne correspond à l'opération.
+	 */
+	private static Ecriture retirer(List<Ecriture> ecritures, Permanent p) {
+		Iterator<Ecriture> it = ecritures.iterator();
+		while (it.hasNext()) {
+			Ecriture e = it.next();
+			if (Objects.equals(e.debit, p.getDebit())
+					&& Objects.equals(e.credit, p.getCredit())
+					&& Objects.equals(e.libelle, p.getLibelle())
+					&& Objects.equals(e.tiers, p.getTiers())) {
+				it.remove();
+				return e;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Reporte l'effet d'une écriture sur les soldes prévus d'un compte, si ce
+	 * compte fait partie des comptes prévus.
+	 *
+	 * @param e			L'écriture.
+	 * @param compte	Le compte mouvementé.
+	 * @param index		L'index du mois dans les tableaux de soldes.
+	 */
+	private void apply(Ecriture e, Compte compte, int index) {
+		BigDecimal[] historique = historiques.get(compte);
+		if (historique == null)
+			return;
+
+		BigDecimal impact = compte.getImpactOf(e);
+		historique[index] = historique[index].add(impact);
+		if (e.pointage != null) {
+			BigDecimal[] aVue = soldesAVue.get(compte);
+			aVue[index] = aVue[index].add(impact);
+		}
+	}
+
+	/**
+	 * Renvoie le montant prévu d'une opération permanente pour le mois en
+	 * cours de simulation.
+	 * <p>
+	 * Cette méthode est destinée aux opérations qui dépendent d'autres
+	 * opérations. Les montants sont calculés une seule fois par mois.
+	 *
+	 * @param p		L'opération permanente.
+	 * @param month	Le mois en cours de simulation.
+	 *
+	 * @return		Le montant prévu.
+	 *
+	 * @throws EcritureMissingArgumentException
+	 * @throws InconsistentArgumentsException
+	 * 				Si le montant ne peut pas être déterminé, notamment en cas
+	 * 				de dépendance circulaire.
+	 */
+	public BigDecimal getMontant(Permanent p, Month month)
+			throws EcritureMissingArgumentException,
+			InconsistentArgumentsException {
+		BigDecimal montant = montants.get(p);
+		if (montant != null)
+			return montant;
+
+		if (!pending.add(p)) {
+			throw new InconsistentArgumentsException(
+					"Dépendance circulaire de l'opération permanente " + p);
+		}
+		try {
+			montant = p.getMontantPrevu(month, this);
+		} finally {
+			pending.remove(p);
+		}
+		montants.put(p, montant);
+		return montant;
+	}
+
+	/**
+	 * Renvoie l'index d'un mois dans les tableaux de soldes.
+	 *
+	 * @param month	Le mois.
+	 *
+	 * @return		L'index du mois, ou -1 si le mois précède la période.
+	 */
+	private int indexOf(Month month) {
+		Month previous = debut.getPrevious();
+		int index = (month.getYear() - previous.getYear()) * 12
+				+ month.getNumInYear() - previous.getNumInYear();
+		return (index < 0) ? -1 : index;
+	}
+
+	/**
+	 * Renvoie le solde à vue prévu d'un compte à la fin d'un mois.
+	 * <p>
+	 * Pour les mois antérieurs à la période, ou les comptes qui ne sont pas
+	 * prévus, il s'agit du solde enregistré.
+	 *
+	 * @param compte	Le compte.
+	 * @param month		Le mois.
+	 *
+	 * @return			Le solde à vue prévu à la fin du mois.
+	 */
+	public BigDecimal getSoldeAVue(Compte compte, Month month) {
+		return getSolde(soldesAVue, compte, month, false);
+	}
+
+	/**
+	 * Renvoie le solde théorique prévu d'un compte à la fin d'un mois.
+	 * <p>
+	 * Pour les mois antérieurs à la période, ou les comptes qui ne sont pas
+	 * prévus, il s'agit du solde enregistré.
+	 *
+	 * @param compte	Le compte.
+	 * @param month		Le mois.
+	 *
+	 * @return			Le solde théorique prévu à la fin du mois.
+	 */
+	public BigDecimal getHistorique(Compte compte, Month month) {
+		return getSolde(historiques, compte, month, true);
+	}
+
+	/**
+	 * Renvoie un solde prévu.
+	 *
+	 * @param soldes		Les soldes prévus, théoriques ou à vue.
+	 * @param compte		Le compte.
+	 * @param month			Le mois.
+	 * @param historique	<code>true</code> s'il s'agit des soldes
+	 * 						théoriques.
+	 */
+	private BigDecimal getSolde(Map<Compte, BigDecimal[]> soldes,
+			Compte compte, Month month, boolean historique) {
+		BigDecimal[] values = soldes.get(compte);
+		int index = indexOf(month);
+		if (values == null || index == -1) {
+			return historique
+					? compte.getHistorique(month)
+					: compte.getSoldeAVue(month);
+		}
+
+		// Au-delà de la période ou du mois en cours : dernier solde prévu
+		for (int i = Math.min(index, values.length - 1); i >= 0; i--) {
+			if (values[i] != null)
+				return values[i];
+		}
+		return values[0];
+	}
+
+	/**
+	 * Renvoie les soldes théoriques prévus d'un compte à la fin de chaque mois
+	 * de la période.
+	 *
+	 * @param compte	Le compte.
+	 *
+	 * @return			Un nouveau tableau des soldes de chaque mois, ou
+	 * 					<code>null</code> si le compte n'est pas prévu.
+	 */
+	public double[] getHistoriques(Compte compte) {
+		BigDecimal[] values = historiques.get(compte);
+		if (values == null)
+			return null;
+		double[] result = new double[count];
+		for (int i = 0; i < count; i++)
+			result[i] = values[i+1].doubleValue();
+		return result;
+	}
+
+	/**
+	 * Renvoie les écritures prévues pour un mois.
+	 *
+	 * @param month	Le mois.
+	 *
+	 * @return		Les écritures que généreraient les opérations permanentes
+	 * 				ce mois-là, ou une liste vide si le mois est hors de la
+	 * 				période.
+	 */
+	public List<Ecriture> getEcritures(Month month) {
+		int index = indexOf(month);
+		return (index < 1 || index > count)
+				? Collections.emptyList()
+				: ecritures.get(index - 1);
+	}
+
+	/**
+	 * Renvoie les descriptions des écritures qui n'ont pas pu être prévues,
+	 * faute de données suffisantes ou à cause d'une dépendance circulaire.
+	 */
+	public List<String> getEchecs() {
+		return Collections.unmodifiableList(echecs);
+	}
+
+	/**
+	 * Renvoie le premier mois prévu.
+	 */
+	public Month getDebut() {
+		return debut;
+	}
+
+	/**
+	 * Renvoie le nombre de mois prévus.
+	 */
+	public int getCount() {
+		return count;
+	}
+}
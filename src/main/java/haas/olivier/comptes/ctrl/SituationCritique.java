@@ -65,6 +65,23 @@ public class SituationCritique {
 		explore(compte.getHistoriqueIn(month.getNext()).iterator());
 	}
 	
+	/**
+	 * Construit une situation critique à partir de valeurs déjà calculées.
+	 * 
+	 * @param soldeMini		Le solde le plus faible sur la période.
+	 * @param dateCreditMini
+	 * 						La date à laquelle le solde le plus faible est
+	 * 						atteint.
+	 * @param dateDebit		La date à laquelle le compte est débiteur pour la
+	 * 						première fois, ou <code>null</code>.
+	 */
+	SituationCritique(BigDecimal soldeMini, Date dateCreditMini,
+			Date dateDebit) {
+		this.soldeMini = soldeMini;
+		this.dateCreditMini = dateCreditMini;
+		this.dateDebit = dateDebit;
+	}
+	
 	/**
 	 * Renvoie une date égale au jour de la date spécifiée sans tenir compte des
 	 * heures, minutes, secondes et millisecondes.
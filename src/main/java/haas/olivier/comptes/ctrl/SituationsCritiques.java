@@ -0,0 +1,331 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.util.Month;
+
+/**
+ * Les situations critiques de plusieurs comptes, calculées ensemble.
+ * <p>
+ * Contrairement à <code>SituationCritique</code>, qui construit pour chaque
+ * compte les soldes journaliers de deux mois à partir de toutes les écritures
+ * antérieures, cette classe parcourt une seule fois les écritures de la
+ * période examinée, c'est-à-dire du jour spécifié jusqu'à la fin du mois
+ * suivant. Les soldes de tous les comptes sont reconstitués en même temps, en
+ * remontant jour par jour depuis leurs soldes théoriques de fin de période.
+ * <p>
+ * Les instances sont immuables et peuvent être partagées entre plusieurs fils
+ * d'exécution.
+ *
+ * @author Olivier Haas
+ */
+public class SituationsCritiques {
+	
+	/**
+	 * Calcule les situations critiques de tous les comptes bancaires.
+	 * <p>
+	 * Les écritures que généreront les opérations permanentes le mois
+	 * suivant sont prises en compte, comme dans le diagramme prévisionnel.
+	 * Celles qui ont déjà été générées ne sont comptées qu'une fois.
+	 * 
+	 * @param today	La date à partir de laquelle examiner la situation des
+	 * 				comptes.
+	 * 
+	 * @return		Les situations critiques de tous les comptes bancaires.
+	 * 
+	 * @throws IOException
+	 */
+	public static SituationsCritiques forBancaires(Date today)
+			throws IOException {
+		DAOFactory factory = DAOFactory.getFactory();
+		Month next = Month.getInstance(today).getNext();
+		Collection<Compte> bancaires = new ArrayList<>();
+		for (Compte compte : factory.getCompteDAO().getAll()) {
+			if (compte.getType().isBancaire())
+				bancaires.add(compte);
+		}
+		Previsions previsions = new Previsions(bancaires,
+				factory.getPermanentDAO().getAll(), next, 1,
+				factory.getEcritureDAO().getAllBetween(next, next));
+		return new SituationsCritiques(bancaires, today, previsions);
+	}
+	
+	/**
+	 * La date à partir de laquelle les situations ont été examinées, sans
+	 * heures ni minutes.
+	 */
+	private final Date start;
+	
+	/**
+	 * Les situations critiques, par compte.
+	 */
+	private final Map<Compte, SituationCritique> situations = new HashMap<>();
+
+	/**
+	 * Calcule les situations critiques de plusieurs comptes.
+	 * 
+	 * @param comptes	Les comptes à examiner.
+	 * @param today		La date à partir de laquelle examiner la situation des
+	 * 					comptes.
+	 * 
+	 * @throws IOException
+	 */
+	public SituationsCritiques(Iterable<Compte> comptes, Date today)
+			throws IOException {
+		this(comptes, today, null);
+	}
+	
+	/**
+	 * Calcule les situations critiques de plusieurs comptes en tenant compte
+	 * des écritures prévues par les opérations permanentes.
+	 * 
+	 * @param comptes		Les comptes à examiner.
+	 * @param today			La date à partir de laquelle examiner la situation
+	 * 						des comptes.
+	 * @param previsions	Les prévisions dont les écritures s'ajoutent à
+	 * 						celles qui sont enregistrées. Peut être
+	 * 						<code>null</code>.
+	 * 
+	 * @throws IOException
+	 */
+	public SituationsCritiques(Iterable<Compte> comptes, Date today,
+			Previsions previsions) throws IOException {
+		Month month = Month.getInstance(today);
+		Month next = month.getNext();
+		start = getMidnight(today);
+		
+		// Partir des soldes de fin de période
+		Map<Compte, Tracker> trackers = new HashMap<>();
+		for (Compte compte : comptes)
+			trackers.put(compte, new Tracker(compte.getHistorique(next)));
+		
+		// Les écritures de la période, par jour
+		Map<Date, Collection<Ecriture>> ecrituresByDay = new HashMap<>();
+		for (Ecriture e : DAOFactory.getFactory().getEcritureDAO()
+				.getAllBetween(month, next)) {
+			if (!e.date.before(start)) {
+				ecrituresByDay.computeIfAbsent(e.date, d -> new ArrayList<>())
+				.add(e);
+			}
+		}
+		
+		// Les écritures prévues, qui modifient aussi les soldes de fin de
+		// période
+		if (previsions != null) {
+			List<Ecriture> prevues = new ArrayList<>();
+			prevues.addAll(previsions.getEcritures(month));
+			prevues.addAll(previsions.getEcritures(next));
+			for (Ecriture e : prevues) {
+				if (e.date.before(start))
+					continue;
+				ecrituresByDay.computeIfAbsent(e.date, d -> new ArrayList<>())
+				.add(e);
+				add(e, e.debit, trackers);
+				if (e.credit != e.debit)
+					add(e, e.credit, trackers);
+			}
+		}
+		
+		// Remonter les jours depuis la fin du mois suivant
+		explore(new ReverseDaysIterator(next), trackers, ecrituresByDay);
+		explore(new ReverseDaysIterator(month), trackers, ecrituresByDay);
+		
+		for (Map.Entry<Compte, Tracker> entry : trackers.entrySet())
+			situations.put(entry.getKey(), entry.getValue().getSituation());
+	}
+	
+	/**
+	 * Renvoie une date égale au jour de la date spécifiée sans tenir compte des
+	 * heures, minutes, secondes et millisecondes.
+	 * 
+	 * @param date	Une date.
+	 * 
+	 * @return		Une date égale au jour de <code>date</code> à minuit.
+	 */
+	private static Date getMidnight(Date date) {
+		Calendar cal = Calendar.getInstance();
+		cal.setTime(date);
+		cal.set(Calendar.HOUR_OF_DAY, 0);
+		cal.set(Calendar.MINUTE, 0);
+		cal.set(Calendar.SECOND, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		return cal.getTime();
+	}
+	
+	/**
+	 * Parcourt les jours d'un mois à rebours jusqu'à la date de départ, en
+	 * relevant les soldes de fin de journée de chaque compte puis en retirant
+	 * l'effet des écritures de la journée.
+	 * 
+	 * @param reverseDays		Les jours du mois, à rebours.
+	 * @param trackers			Les soldes des comptes.
+	 * @param ecrituresByDay	Les écritures de la période, par jour.
+	 */
+	private void explore(Iterator<Date> reverseDays,
+			Map<Compte, Tracker> trackers,
+			Map<Date, Collection<Ecriture>> ecrituresByDay) {
+		while (reverseDays.hasNext()) {
+			Date date = reverseDays.next();
+			if (date.before(start))
+				return;							// Avant la période
+			
+			// Soldes en fin de journée
+			for (Tracker tracker : trackers.values())
+				tracker.record(date);
+			
+			// Traiter les écritures de cette journée
+			Collection<Ecriture> ecritures = ecrituresByDay.get(date);
+			if (ecritures == null)
+				continue;
+			for (Ecriture e : ecritures) {
+				cancel(e, e.debit, trackers);
+				if (e.credit != e.debit)
+					cancel(e, e.credit, trackers);
+			}
+		}
+	}
+	
+	/**
+	 * Retire l'effet d'une écriture sur le solde d'un compte, si ce compte
+	 * fait partie des comptes examinés.
+	 * 
+	 * @param e			L'écriture.
+	 * @param compte	Le compte mouvementé par l'écriture.
+	 * @param trackers	Les soldes des comptes.
+	 */
+	private static void cancel(Ecriture e, Compte compte,
+			Map<Compte, Tracker> trackers) {
+		Tracker tracker = trackers.get(compte);
+		if (tracker != null)
+			tracker.solde = tracker.solde.subtract(compte.getImpactOf(e));
+	}
+	
+	/**
+	 * Ajoute l'effet d'une écriture au solde de fin de période d'un compte, si
+	 * ce compte fait partie des comptes examinés.
+	 * 
+	 * @param e			L'écriture.
+	 * @param compte	Le compte mouvementé par l'écriture.
+	 * @param trackers	Les soldes des comptes.
+	 */
+	private static void add(Ecriture e, Compte compte,
+			Map<Compte, Tracker> trackers) {
+		Tracker tracker = trackers.get(compte);
+		if (tracker != null)
+			tracker.solde = tracker.solde.add(compte.getImpactOf(e));
+	}
+	
+	/**
+	 * Renvoie la date à partir de laquelle les situations ont été examinées.
+	 * 
+	 * @return	La date de départ, sans heures ni minutes.
+	 */
+	public Date getStart() {
+		return start;
+	}
+	
+	/**
+	 * Indique si les situations ont été examinées à partir du jour de la date
+	 * spécifiée.
+	 * 
+	 * @param date	Une date.
+	 * 
+	 * @return		<code>true</code> si la date de départ est le même jour que
+	 * 				<code>date</code>.
+	 */
+	public boolean isStartedOn(Date date) {
+		return start.equals(getMidnight(date));
+	}
+	
+	/**
+	 * Renvoie la situation critique d'un compte.
+	 * 
+	 * @param compte	Le compte souhaité.
+	 * 
+	 * @return			La situation critique du compte, ou <code>null</code>
+	 * 					si le compte ne fait pas partie des comptes examinés.
+	 */
+	public SituationCritique get(Compte compte) {
+		return situations.get(compte);
+	}
+	
+	/**
+	 * Le solde courant d'un compte pendant le parcours à rebours, et les
+	 * valeurs critiques relevées.
+	 *
+	 * @author Olivier Haas
+	 */
+	private static class Tracker {
+		
+		/**
+		 * Le solde en fin de journée, pour le jour en cours d'examen.
+		 */
+		private BigDecimal solde;
+		
+		/**
+		 * Le solde le plus faible relevé.
+		 */
+		private BigDecimal soldeMini;
+		
+		/**
+		 * La plus ancienne date à laquelle le solde le plus faible est
+		 * atteint.
+		 */
+		private Date dateCreditMini;
+		
+		/**
+		 * La plus ancienne date à laquelle le solde est débiteur, ou
+		 * <code>null</code>.
+		 */
+		private Date dateDebit;
+		
+		/**
+		 * Construit un relevé des soldes.
+		 * 
+		 * @param solde	Le solde en fin de période.
+		 */
+		private Tracker(BigDecimal solde) {
+			this.solde = solde;
+		}
+		
+		/**
+		 * Relève le solde en fin de journée.
+		 * <p>
+		 * Les jours étant parcourus à rebours, une égalité ou un découvert
+		 * remplace toujours la date précédemment retenue, de façon à garder la
+		 * date la plus ancienne.
+		 * 
+		 * @param date	La date du jour.
+		 */
+		private void record(Date date) {
+			if (soldeMini == null || solde.compareTo(soldeMini) <= 0) {
+				soldeMini = solde;
+				dateCreditMini = date;
+			}
+			if (solde.signum() < 0)
+				dateDebit = date;
+		}
+		
+		/**
+		 * Renvoie la situation critique correspondant aux valeurs relevées.
+		 */
+		private SituationCritique getSituation() {
+			return new SituationCritique(soldeMini, dateCreditMini, dateDebit);
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl.releve;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.List;
+
+import com.csvreader.CsvReader;
+
+/**
+ * Un lecteur de relevé bancaire au format CSV.
+ * <p>
+ * Le relevé commence par une ligne d'en-têtes. Les colonnes sont reconnues
+ * d'après leur nom, sans tenir compte de la casse ni des accents. Le montant
+ * figure soit dans une colonne signée "montant", soit dans deux colonnes
+ * "débit" et "crédit".
+ *
+ * @author Olivier HAAS
+ */
+public class CsvReleveParser extends ReleveParser {
+
+	/**
+	 * Les noms reconnus pour chaque colonne, normalisés.
+	 */
+	private static final List<String>
+	DATE = Arrays.asList("DATE", "DATE OPERATION", "DATE D OPERATION"),
+	MONTANT = Arrays.asList("MONTANT", "AMOUNT"),
+	DEBIT = Arrays.asList("DEBIT"),
+	CREDIT = Arrays.asList("CREDIT"),
+	TIERS = Arrays.asList("TIERS", "BENEFICIAIRE", "PAYEE"),
+	LIBELLE = Arrays.asList("LIBELLE", "DESCRIPTION", "MEMO"),
+	CHEQUE = Arrays.asList("CHEQUE", "NUMERO DE CHEQUE", "CHECK");
+
+	/**
+	 * Le lecteur CSV.
+	 */
+	private final CsvReader csv;
+
+	/**
+	 * Le format des dates.
+	 */
+	private final DateFormat dateFormat;
+
+	/**
+	 * Les index des colonnes, ou -1 pour les colonnes absentes.
+	 */
+	private int date = -1, montant = -1, debit = -1, credit = -1, tiers = -1,
+			libelle = -1, cheque = -1;
+
+	/**
+	 * Indique si les en-têtes ont été lus.
+	 */
+	private boolean headers = false;
+
+	/**
+	 * Construit un lecteur de relevé au format CSV.
+	 *
+	 * @param reader		Le flux à lire.
+	 * @param delimiter		Le séparateur des colonnes.
+	 * @param datePattern	Le format des dates, au sens de
+	 * 						{@link SimpleDateFormat}.
+	 */
+	public CsvReleveParser(Reader reader, char delimiter, String datePattern) {
+		super(reader);
+		csv = new CsvReader(this.reader, delimiter);
+		dateFormat = new SimpleDateFormat(datePattern);
+		dateFormat.setLenient(false);
+	}
+
+	@Override
+	protected LigneReleve readNext() throws ParseException, IOException {
+		if (!headers) {
+			readHeaders();
+		}
+		while (csv.readRecord()) {
+			String dateText = clean(csv.get(date));
+			BigDecimal montantLigne = readMontant();
+			if (dateText == null || montantLigne == null)
+				continue;							// Ligne de total ou vide
+
+			return new LigneReleve(dateFormat.parse(dateText), montantLigne,
+					clean(csv.get(tiers)), clean(csv.get(libelle)),
+					parseCheque(csv.get(cheque)));
+		}
+		return null;
+	}
+
+	/**
+	 * Lit les en-têtes et repère les colonnes.
+	 *
+	 * @throws ParseException
+	 * 			Si la date ou le montant ne figurent pas dans les en-têtes.
+	 */
+	private void readHeaders() throws ParseException, IOException {
+		headers = true;
+		if (!csv.readHeaders())
+			return;
+		String[] names = csv.getHeaders();
+		for (int i = 0; i < names.length; i++) {
+			String name = ReleveImporter.normalize(names[i]);
+			if (DATE.contains(name) && date < 0) {
+				date = i;
+			} else if (MONTANT.contains(name)) {
+				montant = i;
+			} else if (DEBIT.contains(name)) {
+				debit = i;
+			} else if (CREDIT.contains(name)) {
+				credit = i;
+			} else if (TIERS.contains(name)) {
+				tiers = i;
+			} else if (LIBELLE.contains(name)) {
+				libelle = i;
+			} else if (CHEQUE.contains(name)) {
+				cheque = i;
+			}
+		}
+		if (date < 0 || (montant < 0 && debit < 0 && credit < 0))
+			throw new ParseException(
+					"Colonnes de date ou de montant introuvables", 0);
+	}
+
+	/**
+	 * Lit le montant signé de la ligne courante.
+	 *
+	 * @return	Le montant, positif pour une somme reçue, ou <code>null</code>
+	 * 			si la ligne n'en contient pas.
+	 */
+	private BigDecimal readMontant() throws ParseException, IOException {
+		try {
+			if (montant >= 0)
+				return parseMontant(csv.get(montant));
+
+			BigDecimal sortie = parseMontant(csv.get(debit));
+			BigDecimal entree = parseMontant(csv.get(credit));
+			if (sortie == null)
+				return entree;
+			sortie = sortie.abs().negate();
+			return (entree == null) ? sortie : sortie.add(entree.abs());
+
+		} catch (NumberFormatException e) {
+			throw new ParseException("Montant illisible à la ligne "
+					+ csv.getCurrentRecord(), 0);
+		}
+	}
+
+	/**
+	 * Renvoie le numéro de la ligne de l'enregistrement en cours, en supposant
+	 * une ligne d'en-têtes et aucune valeur sur plusieurs lignes. Le lecteur
+	 * CSV lisant le flux par blocs, le nombre de lignes lues ne convient pas.
+	 */
+	@Override
+	protected int getLineNumber() {
+		return (int) csv.getCurrentRecord() + 2;
+	}
+
+	@Override
+	public void close() {
+		csv.close();
+		super.close();
+	}
+}
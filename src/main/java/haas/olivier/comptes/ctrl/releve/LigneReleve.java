@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl.releve;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+/**
+ * Une opération lue dans un relevé bancaire.
+ *
+ * @author Olivier HAAS
+ */
+public class LigneReleve {
+
+	/**
+	 * La date de l'opération.
+	 */
+	public final Date date;
+
+	/**
+	 * Le montant, positif pour une somme reçue et négatif pour une somme
+	 * payée.
+	 */
+	public final BigDecimal montant;
+
+	/**
+	 * Le tiers, ou <code>null</code>.
+	 */
+	public final String tiers;
+
+	/**
+	 * Le libellé, ou <code>null</code>.
+	 */
+	public final String libelle;
+
+	/**
+	 * Le numéro de chèque, ou <code>null</code>.
+	 */
+	public final Integer cheque;
+
+	/**
+	 * Construit une opération de relevé bancaire.
+	 *
+	 * @param date		La date de l'opération.
+	 * @param montant	Le montant, positif pour une somme reçue et négatif
+	 * 					pour une somme payée.
+	 * @param tiers		Le tiers, ou <code>null</code>.
+	 * @param libelle	Le libellé, ou <code>null</code>.
+	 * @param cheque	Le numéro de chèque, ou <code>null</code>.
+	 */
+	public LigneReleve(Date date, BigDecimal montant, String tiers,
+			String libelle, Integer cheque) {
+		this.date = date;
+		this.montant = montant;
+		this.tiers = tiers;
+		this.libelle = libelle;
+		this.cheque = cheque;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%tF %s %s", date, montant.toPlainString(),
+				(tiers == null) ? libelle : tiers);
+	}
+}
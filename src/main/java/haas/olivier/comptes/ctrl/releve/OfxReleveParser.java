@@ -0,0 +1,123 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl.releve;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+
+/**
+ * Un lecteur de relevé bancaire au format OFX.
+ * <p>
+ * Les balises sont lues au fil de l'eau, sans construire d'arbre : seules
+ * les opérations (<code>STMTTRN</code>) sont retenues. Le lecteur accepte
+ * aussi bien l'OFX 1.x, de type SGML et dont les balises de valeur ne sont
+ * pas fermées, que l'OFX 2.x au format XML.
+ *
+ * @author Olivier HAAS
+ */
+public class OfxReleveParser extends ReleveParser {
+
+	/**
+	 * Le format des dates OFX, dont seuls les 8 premiers caractères sont
+	 * retenus.
+	 */
+	private final DateFormat dateFormat = new SimpleDateFormat("yyyyMMdd");
+
+	/**
+	 * Le tampon de lecture des balises et des valeurs.
+	 */
+	private final StringBuilder buffer = new StringBuilder();
+
+	/**
+	 * Construit un lecteur de relevé au format OFX.
+	 *
+	 * @param reader	Le flux à lire.
+	 */
+	public OfxReleveParser(Reader reader) {
+		super(reader);
+		dateFormat.setLenient(false);
+	}
+
+	@Override
+	protected LigneReleve readNext() throws ParseException, IOException {
+
+		// Chercher le début de la prochaine opération
+		String tag;
+		do {
+			tag = nextTag();
+			if (tag == null)
+				return null;
+		} while (!"STMTTRN".equals(tag));
+
+		String date = null, montant = null, name = null, memo = null,
+				checknum = null;
+		while ((tag = nextTag()) != null && !"/STMTTRN".equals(tag)) {
+			switch (tag) {
+			case "DTPOSTED":	date = readValue();		break;
+			case "TRNAMT":		montant = readValue();	break;
+			case "NAME":		name = readValue();		break;
+			case "MEMO":		memo = readValue();		break;
+			case "CHECKNUM":	checknum = readValue();	break;
+			default:
+			}
+		}
+		if (date == null || date.length() < 8 || montant == null)
+			throw new ParseException("Opération incomplète dans le relevé", 0);
+
+		BigDecimal amount;
+		try {
+			amount = parseMontant(montant);
+		} catch (NumberFormatException e) {
+			throw new ParseException("Montant illisible : " + montant, 0);
+		}
+		return new LigneReleve(dateFormat.parse(date.substring(0, 8)),
+				amount, clean(name), clean(memo), parseCheque(checknum));
+	}
+
+	/**
+	 * Lit jusqu'à la prochaine balise et renvoie son nom en majuscules,
+	 * précédé de '/' pour une balise fermante.
+	 *
+	 * @return	Le nom de la balise, ou <code>null</code> à la fin du flux.
+	 */
+	private String nextTag() throws IOException {
+		int c;
+		while ((c = reader.read()) != '<') {
+			if (c < 0)
+				return null;
+		}
+		buffer.setLength(0);
+		while ((c = reader.read()) != '>') {
+			if (c < 0)
+				return null;
+			buffer.append((char) c);
+		}
+		return buffer.toString().trim().toUpperCase(Locale.ROOT);
+	}
+
+	/**
+	 * Lit la valeur qui suit une balise, jusqu'à la balise suivante ou la fin
+	 * de la ligne. Les entités XML usuelles sont décodées.
+	 */
+	private String readValue() throws IOException {
+		buffer.setLength(0);
+		int c;
+		reader.mark(1);
+		while ((c = reader.read()) >= 0 && c != '<' && c != '\n' && c != '\r') {
+			buffer.append((char) c);
+			reader.mark(1);
+		}
+		if (c == '<')
+			reader.reset();							// Rendre le début de balise
+		return buffer.toString().trim()
+				.replace("&lt;", "<").replace("&gt;", ">")
+				.replace("&quot;", "\"").replace("&apos;", "'")
+				.replace("&amp;", "&");
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl.releve;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+/**
+ * Un lecteur de relevé bancaire au format QIF.
+ * <p>
+ * Chaque ligne commence par un code : <code>D</code> pour la date,
+ * <code>T</code> ou <code>U</code> pour le montant, <code>P</code> pour le
+ * tiers, <code>M</code> pour le libellé, <code>N</code> pour le numéro de
+ * chèque. Une opération se termine par une ligne <code>^</code>. Les autres
+ * codes sont ignorés.
+ *
+ * @author Olivier HAAS
+ */
+public class QifReleveParser extends ReleveParser {
+
+	/**
+	 * Le format des dates le plus courant dans les relevés français.
+	 */
+	public static final String DEFAULT_DATE_PATTERN = "dd/MM/yyyy";
+
+	/**
+	 * Le format des dates.
+	 */
+	private final DateFormat dateFormat;
+
+	/**
+	 * Construit un lecteur de relevé au format QIF, avec des dates au format
+	 * {@link #DEFAULT_DATE_PATTERN}.
+	 *
+	 * @param reader	Le flux à lire.
+	 */
+	public QifReleveParser(Reader reader) {
+		this(reader, DEFAULT_DATE_PATTERN);
+	}
+
+	/**
+	 * Construit un lecteur de relevé au format QIF.
+	 *
+	 * @param reader		Le flux à lire.
+	 * @param datePattern	Le format des dates, au sens de
+	 * 						{@link SimpleDateFormat}. Les apostrophes
+	 * 						séparant parfois l'année sont lues comme des
+	 * 						barres obliques.
+	 */
+	public QifReleveParser(Reader reader, String datePattern) {
+		super(reader);
+		dateFormat = new SimpleDateFormat(datePattern);
+		dateFormat.setLenient(false);
+	}
+
+	@Override
+	protected LigneReleve readNext() throws ParseException, IOException {
+		String date = null, montant = null, tiers = null, libelle = null,
+				cheque = null;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (line.isEmpty())
+				continue;
+			String value = line.substring(1).trim();
+			switch (line.charAt(0)) {
+			case 'D':	date = value.replace('\'', '/');	break;
+			case 'T':
+			case 'U':	montant = value;					break;
+			case 'P':	tiers = value;						break;
+			case 'M':	libelle = value;					break;
+			case 'N':	cheque = value;						break;
+			case '^':
+				if (date == null || montant == null) {
+					date = montant = tiers = libelle = cheque = null;
+					continue;					// Pas une opération
+				}
+				return toLigne(date, montant, tiers, libelle, cheque);
+			default:							// En-têtes, catégories...
+			}
+		}
+
+		// Dernière opération sans terminateur
+		return (date == null || montant == null)
+				? null : toLigne(date, montant, tiers, libelle, cheque);
+	}
+
+	/**
+	 * Construit une opération à partir des valeurs lues.
+	 */
+	private LigneReleve toLigne(String date, String montant, String tiers,
+			String libelle, String cheque) throws ParseException {
+		BigDecimal amount;
+		try {
+			amount = parseMontant(montant);
+		} catch (NumberFormatException e) {
+			throw new ParseException("Montant illisible : " + montant, 0);
+		}
+		return new LigneReleve(dateFormat.parse(date), amount, clean(tiers),
+				clean(libelle), parseCheque(cheque));
+	}
+}
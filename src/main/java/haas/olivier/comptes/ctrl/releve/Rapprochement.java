@@ -0,0 +1,274 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl.releve;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.EcritureMissingArgumentException;
+import haas.olivier.comptes.InconsistentArgumentsException;
+import haas.olivier.comptes.ctrl.EcritureController;
+import haas.olivier.comptes.ctrl.EcritureDraft;
+
+/**
+ * Un outil de pointage automatique d'un compte bancaire à partir d'un relevé.
+ * <p>
+ * Chaque opération du relevé est rapprochée d'une écriture non pointée du
+ * compte, de même montant et de date proche. Les candidates sont cherchées
+ * dans un index construit une seule fois, par montant en centimes. Si
+ * plusieurs écritures conviennent, la préférence va à celle dont le numéro de
+ * chèque est le même, puis à celle dont le tiers ou le libellé ressemblent le
+ * plus à ceux de l'opération, enfin à la plus proche en date. Deux numéros de
+ * chèque différents excluent le rapprochement. Un chèque pouvant être
+ * encaissé longtemps après son émission, une écriture portant le même numéro
+ * de chèque que l'opération est retenue jusqu'à {@link #FENETRE_CHEQUE}
+ * jours d'écart.
+ * <p>
+ * Le rapprochement ne modifie rien : les pointages proposés sont appliqués
+ * ensuite en une seule fois par {@link #appliquer(Resultat)}, avec une seule
+ * mise à jour des suivis.
+ *
+ * @author Olivier HAAS
+ */
+public class Rapprochement {
+
+	/**
+	 * Le Logger de cette classe.
+	 */
+	private static final Logger LOGGER =
+			Logger.getLogger(Rapprochement.class.getName());
+
+	/**
+	 * L'écart maximal entre la date d'une opération et celle d'une écriture
+	 * portant le même numéro de chèque, en jours.
+	 */
+	public static final int FENETRE_CHEQUE = 60;
+
+	/**
+	 * Le rapprochement d'une opération du relevé et d'une écriture.
+	 */
+	public static class Correspondance {
+
+		/**
+		 * L'opération du relevé.
+		 */
+		public final LigneReleve ligne;
+
+		/**
+		 * L'écriture non pointée correspondante.
+		 */
+		public final Ecriture ecriture;
+
+		private Correspondance(LigneReleve ligne, Ecriture ecriture) {
+			this.ligne = ligne;
+			this.ecriture = ecriture;
+		}
+	}
+
+	/**
+	 * Le résultat d'un rapprochement.
+	 */
+	public static class Resultat {
+
+		/**
+		 * Les opérations rapprochées d'une écriture.
+		 */
+		public final List<Correspondance> correspondances = new ArrayList<>();
+
+		/**
+		 * Les opérations pour lesquelles aucune écriture n'a été trouvée.
+		 */
+		public final List<LigneReleve> orphelines = new ArrayList<>();
+
+		private Resultat() {
+		}
+	}
+
+	/**
+	 * Le compte bancaire à pointer.
+	 */
+	private final Compte compte;
+
+	/**
+	 * L'écart maximal entre la date d'une opération et celle d'une écriture,
+	 * en jours.
+	 */
+	private int fenetre = ReleveImporter.DEFAULT_FENETRE;
+
+	/**
+	 * Construit un outil de pointage automatique.
+	 *
+	 * @param compte	Le compte bancaire à pointer.
+	 */
+	public Rapprochement(Compte compte) {
+		this.compte = compte;
+	}
+
+	/**
+	 * Modifie l'écart de dates toléré entre une opération et une écriture.
+	 *
+	 * @param jours	L'écart maximal, en jours.
+	 */
+	public void setFenetre(int jours) {
+		if (jours < 0)
+			throw new IllegalArgumentException(
+					"Fenêtre négative : " + jours);
+		fenetre = jours;
+	}
+
+	/**
+	 * Rapproche les opérations d'un relevé des écritures non pointées du
+	 * compte, sans rien modifier.
+	 *
+	 * @param lignes	Les opérations du relevé, par exemple lues par un
+	 * 					{@link ReleveParser}.
+	 *
+	 * @return			Le résultat du rapprochement.
+	 *
+	 * @throws ReleveFormatException
+	 * 					Si une opération du relevé ne peut pas être lue.
+	 *
+	 * @throws IOException
+	 */
+	public Resultat rapprocher(Iterator<LigneReleve> lignes)
+			throws IOException {
+		Resultat resultat = new Resultat();
+		Releve releve = new Releve(lignes);
+
+		// Les écritures non pointées, par montant signé en centimes
+		Map<Long, List<Ecriture>> index = releve.index(compte,
+				Math.max(fenetre, FENETRE_CHEQUE), fenetre,
+				(montant, e) -> (e.pointage == null) ? cents(montant) : null);
+
+		for (LigneReleve ligne : releve.lignes) {
+			Ecriture e = consume(index.get(cents(ligne.montant)), ligne);
+			if (e == null) {
+				resultat.orphelines.add(ligne);
+			} else {
+				resultat.correspondances.add(new Correspondance(ligne, e));
+			}
+		}
+		return resultat;
+	}
+
+	/**
+	 * Pointe les écritures rapprochées à la date des opérations du relevé, ou
+	 * à la date de l'écriture si elle est postérieure. Les suivis sont mis à
+	 * jour une seule fois, après l'ensemble des pointages.
+	 *
+	 * @param resultat	Le résultat d'un rapprochement.
+	 *
+	 * @return			Le nombre d'écritures pointées.
+	 *
+	 * @throws IOException
+	 */
+	public int appliquer(Resultat resultat) throws IOException {
+		List<Ecriture> pointees = new ArrayList<>();
+		for (Correspondance c : resultat.correspondances) {
+			EcritureDraft draft = new EcritureDraft(c.ecriture);
+			draft.pointage = c.ligne.date.before(c.ecriture.date)
+					? c.ecriture.date : c.ligne.date;
+			try {
+				pointees.add(draft.createEcriture());
+
+			} catch (EcritureMissingArgumentException
+					| InconsistentArgumentsException e) {
+				LOGGER.log(Level.WARNING,
+						"Impossible de pointer l'écriture " + c.ecriture.id, e);
+			}
+		}
+		EcritureController.update(pointees);
+		return pointees.size();
+	}
+
+	/**
+	 * Choisit parmi des écritures de même montant celle qui correspond le
+	 * mieux à une opération, et la retire des candidates.
+	 *
+	 * @param candidates	Les écritures de même montant, ou <code>null</code>.
+	 * @param ligne			L'opération du relevé.
+	 *
+	 * @return				L'écriture retenue, ou <code>null</code>.
+	 */
+	private Ecriture consume(List<Ecriture> candidates, LigneReleve ligne) {
+		if (candidates == null)
+			return null;
+		Set<String> mots = mots(ligne.tiers, ligne.libelle);
+		int best = -1;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < candidates.size(); i++) {
+			Ecriture e = candidates.get(i);
+			boolean memeCheque = false;
+			if (e.cheque != null && ligne.cheque != null) {
+				if (!e.cheque.equals(ligne.cheque))
+					continue;					// Deux chèques différents
+				memeCheque = true;
+			}
+
+			// Un chèque peut être encaissé bien après son émission
+			long jours = Releve.jours(e.date, ligne.date);
+			if (jours > (memeCheque
+					? Math.max(fenetre, FENETRE_CHEQUE) : fenetre))
+				continue;
+
+			double score = -jours;
+			if (memeCheque)
+				score += 1000;
+			score += 100 * similarite(mots, mots(e.tiers, e.libelle));
+			if (score > bestScore) {
+				best = i;
+				bestScore = score;
+			}
+		}
+		return (best < 0) ? null : candidates.remove(best);
+	}
+
+	/**
+	 * Renvoie un montant en centimes.
+	 */
+	private static Long cents(BigDecimal montant) {
+		return montant.setScale(2, RoundingMode.HALF_UP).unscaledValue()
+				.longValue();
+	}
+
+	/**
+	 * Renvoie les mots normalisés d'un tiers et d'un libellé.
+	 */
+	private static Set<String> mots(String tiers, String libelle) {
+		Set<String> mots = new HashSet<>();
+		for (String s : new String[] {tiers, libelle}) {
+			String normalized = ReleveImporter.normalize(s);
+			if (!normalized.isEmpty())
+				mots.addAll(Arrays.asList(normalized.split(" ")));
+		}
+		return mots;
+	}
+
+	/**
+	 * Renvoie la proportion de mots communs à deux ensembles (indice de
+	 * Jaccard), ou zéro si l'un d'eux est vide.
+	 */
+	private static double similarite(Set<String> a, Set<String> b) {
+		if (a.isEmpty() || b.isEmpty())
+			return 0;
+		int communs = 0;
+		for (String mot : a) {
+			if (b.contains(mot))
+				communs++;
+		}
+		return communs / (double) (a.size() + b.size() - communs);
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl.releve;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.util.Month;
+
+/**
+ * Les opérations d'un relevé bancaire et la période qu'elles couvrent.
+ * <p>
+ * Cette classe regroupe ce que l'import et le pointage des relevés ont en
+ * commun : la lecture complète du relevé, et l'index des écritures du compte
+ * sur la période du relevé, par montant signé.
+ *
+ * @author Olivier HAAS
+ */
+final class Releve {
+
+	/**
+	 * Le nombre de millisecondes dans une journée.
+	 */
+	static final long DAY = 86_400_000L;
+
+	/**
+	 * Les opérations du relevé, dans l'ordre de lecture.
+	 */
+	final List<LigneReleve> lignes;
+
+	/**
+	 * La date de la plus ancienne et de la plus récente opération, ou
+	 * <code>null</code> si le relevé est vide.
+	 */
+	private final Date debut, fin;
+
+	/**
+	 * Lit toutes les opérations d'un relevé.
+	 *
+	 * @param it	Les opérations du relevé, par exemple lues par un
+	 * 				{@link ReleveParser}.
+	 *
+	 * @throws ReleveFormatException
+	 * 				Si une opération ne peut pas être lue.
+	 */
+	Releve(Iterator<LigneReleve> it) {
+		List<LigneReleve> list = new ArrayList<>();
+		Date first = null, last = null;
+		while (it.hasNext()) {
+			LigneReleve ligne = it.next();
+			list.add(ligne);
+			if (first == null || ligne.date.before(first))
+				first = ligne.date;
+			if (last == null || ligne.date.after(last))
+				last = ligne.date;
+		}
+		lignes = Collections.unmodifiableList(list);
+		debut = first;
+		fin = last;
+	}
+
+	/**
+	 * Indique si le relevé ne contient aucune opération.
+	 */
+	boolean isEmpty() {
+		return lignes.isEmpty();
+	}
+
+	/**
+	 * Indexe les écritures d'un compte sur la période du relevé, élargie
+	 * d'un certain nombre de jours.
+	 *
+	 * @param compte	Le compte bancaire du relevé.
+	 * @param avant		Le nombre de jours à ajouter avant la période.
+	 * @param apres		Le nombre de jours à ajouter après la période.
+	 * @param key		La clé d'index d'une écriture en fonction de son
+	 * 					montant signé, ou <code>null</code> pour ignorer
+	 * 					l'écriture.
+	 *
+	 * @return			Les écritures par clé, ou un index vide si le relevé
+	 * 					est vide.
+	 *
+	 * @throws IOException
+	 */
+	<K> Map<K, List<Ecriture>> index(Compte compte, int avant, int apres,
+			BiFunction<BigDecimal, Ecriture, K> key) throws IOException {
+		Map<K, List<Ecriture>> index = new HashMap<>();
+		if (isEmpty())
+			return index;
+
+		for (Ecriture e : DAOFactory.getFactory().getEcritureDAO()
+				.getAllBetween(
+						Month.getInstance(
+								new Date(debut.getTime() - avant * DAY)),
+						Month.getInstance(
+								new Date(fin.getTime() + apres * DAY)))) {
+			BigDecimal montant;
+			if (compte.equals(e.credit)) {
+				montant = e.montant;
+			} else if (compte.equals(e.debit)) {
+				montant = e.montant.negate();
+			} else {
+				continue;
+			}
+			K k = key.apply(montant, e);
+			if (k != null)
+				index.computeIfAbsent(k, x -> new ArrayList<>()).add(e);
+		}
+		return index;
+	}
+
+	/**
+	 * Renvoie l'écart entre deux dates, arrondi au jour pour ignorer les
+	 * changements d'heure.
+	 *
+	 * @return	Le nombre de jours, positif ou nul.
+	 */
+	static long jours(Date a, Date b) {
+		return Math.round(Math.abs(a.getTime() - b.getTime()) / (double) DAY);
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl.releve;
+
+import java.text.ParseException;
+
+/**
+ * Une exception levée lorsqu'une opération d'un relevé bancaire ne peut pas
+ * être lue.
+ * <p>
+ * Les relevés étant parcourus par un itérateur, cette exception n'est pas
+ * vérifiée. Elle indique la ligne du relevé à laquelle l'erreur a été
+ * constatée.
+ *
+ * @author Olivier HAAS
+ */
+public class ReleveFormatException extends RuntimeException {
+	private static final long serialVersionUID = 2716053420876718251L;
+
+	/**
+	 * Le numéro de la ligne, à partir de 1.
+	 */
+	private final int lineNumber;
+
+	/**
+	 * Construit une exception indiquant une erreur de format dans un relevé.
+	 *
+	 * @param lineNumber	Le numéro de la ligne, à partir de 1.
+	 * @param cause			L'erreur de lecture.
+	 */
+	public ReleveFormatException(int lineNumber, ParseException cause) {
+		super("Erreur de format à la ligne " + lineNumber + " du relevé : "
+				+ cause.getMessage(), cause);
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * Renvoie le numéro de la ligne à laquelle l'erreur a été constatée, à
+	 * partir de 1.
+	 */
+	public int getLineNumber() {
+		return lineNumber;
+	}
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl.releve;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.EcritureMissingArgumentException;
+import haas.olivier.comptes.InconsistentArgumentsException;
+import haas.olivier.comptes.ctrl.EcritureController;
+import haas.olivier.comptes.ctrl.EcritureDraft;
+
+/**
+ * Un outil d'import d'un relevé bancaire dans un compte.
+ * <p>
+ * Les opérations du relevé qui figurent déjà dans le compte sont écartées.
+ * Une opération est considérée comme déjà saisie si le compte contient une
+ * écriture de même montant, dont le tiers est le même une fois normalisé, et
+ * dont la date est proche à quelques jours près. Chaque écriture existante ne
+ * peut servir qu'une fois, de sorte que deux opérations identiques le même
+ * jour ne sont pas confondues.
+ * <p>
+ * La recherche passe par un index construit une seule fois à partir des
+ * écritures de la période du relevé. Les nouvelles écritures sont ensuite
+ * ajoutées en une seule fois, avec une seule mise à jour des suivis.
+ *
+ * @author Olivier HAAS
+ */
+public class ReleveImporter {
+
+	/**
+	 * Le Logger de cette classe.
+	 */
+	private static final Logger LOGGER =
+			Logger.getLogger(ReleveImporter.class.getName());
+
+	/**
+	 * La fenêtre de dates par défaut, en jours.
+	 */
+	public static final int DEFAULT_FENETRE = 3;
+
+	/**
+	 * Le résultat d'un import.
+	 */
+	public static class Resultat {
+
+		/**
+		 * Les écritures ajoutées, telles que transmises au modèle, donc sans
+		 * identifiant.
+		 */
+		public final List<Ecriture> importees = new ArrayList<>();
+
+		/**
+		 * Les opérations écartées parce qu'elles étaient déjà saisies.
+		 */
+		public final List<LigneReleve> doublons = new ArrayList<>();
+
+		/**
+		 * Les opérations qui n'ont pas pu être transformées en écritures.
+		 */
+		public final List<LigneReleve> rejetees = new ArrayList<>();
+
+		private Resultat() {
+		}
+	}
+
+	/**
+	 * Le compte bancaire du relevé.
+	 */
+	private final Compte compte;
+
+	/**
+	 * Le compte utilisé comme contrepartie des écritures importées.
+	 */
+	private final Compte contrepartie;
+
+	/**
+	 * L'écart maximal entre la date d'une opération et celle d'une écriture
+	 * existante, en jours.
+	 */
+	private int fenetre = DEFAULT_FENETRE;
+
+	/**
+	 * Construit un outil d'import.
+	 *
+	 * @param compte		Le compte bancaire du relevé.
+	 * @param contrepartie	Le compte à utiliser comme contrepartie des
+	 * 						écritures importées, par exemple un compte
+	 * 						d'attente à ventiler ensuite.
+	 */
+	public ReleveImporter(Compte compte, Compte contrepartie) {
+		this.compte = compte;
+		this.contrepartie = contrepartie;
+	}
+
+	/**
+	 * Modifie l'écart de dates toléré pour reconnaître une opération déjà
+	 * saisie.
+	 *
+	 * @param jours	L'écart maximal, en jours.
+	 */
+	public void setFenetre(int jours) {
+		if (jours < 0)
+			throw new IllegalArgumentException(
+					"Fenêtre négative : " + jours);
+		fenetre = jours;
+	}
+
+	/**
+	 * Importe les opérations d'un relevé.
+	 *
+	 * @param lignes	Les opérations du relevé, par exemple lues par un
+	 * 					{@link ReleveParser}.
+	 *
+	 * @return			Le résultat de l'import.
+	 *
+	 * @throws ReleveFormatException
+	 * 					Si une opération du relevé ne peut pas être lue. Rien
+	 * 					n'est alors importé.
+	 *
+	 * @throws IOException
+	 */
+	public Resultat importer(Iterator<LigneReleve> lignes) throws IOException {
+		Resultat resultat = new Resultat();
+		Releve releve = new Releve(lignes);
+		Map<String, List<Ecriture>> index = releve.index(compte, fenetre,
+				fenetre, (montant, e) -> key(montant, e.tiers));
+
+		// Écarter les doublons et préparer les nouvelles écritures
+		for (LigneReleve ligne : releve.lignes) {
+			if (consume(index, ligne)) {
+				resultat.doublons.add(ligne);
+				continue;
+			}
+			try {
+				resultat.importees.add(toDraft(ligne).createEcriture());
+
+			} catch (EcritureMissingArgumentException
+					| InconsistentArgumentsException e) {
+				LOGGER.log(Level.WARNING,
+						"Opération non importée : " + ligne, e);
+				resultat.rejetees.add(ligne);
+			}
+		}
+
+		// Un seul ajout groupé, avec une seule mise à jour des suivis
+		if (!resultat.importees.isEmpty())
+			EcritureController.add(resultat.importees);
+		return resultat;
+	}
+
+	/**
+	 * Cherche dans l'index une écriture correspondant à une opération, et la
+	 * retire de l'index si elle est trouvée.
+	 * <p>
+	 * Les écritures dont le tiers n'est pas renseigné correspondent à toutes
+	 * les opérations de même montant.
+	 *
+	 * @param index	Les écritures existantes, par montant signé et par tiers.
+	 * @param ligne	L'opération du relevé.
+	 *
+	 * @return	<code>true</code> si l'opération est déjà saisie.
+	 */
+	private boolean consume(Map<String, List<Ecriture>> index,
+			LigneReleve ligne) {
+		String tiers = tiersOf(ligne);
+		return consume(index.get(key(ligne.montant, tiers)), ligne.date)
+				|| (tiers != null
+				&& consume(index.get(key(ligne.montant, null)), ligne.date));
+	}
+
+	/**
+	 * Retire d'une liste d'écritures la plus proche d'une date donnée, si
+	 * elle est dans la fenêtre.
+	 *
+	 * @return	<code>true</code> si une écriture a été retirée.
+	 */
+	private boolean consume(List<Ecriture> ecritures, Date date) {
+		if (ecritures == null)
+			return false;
+		int best = -1;
+		long bestEcart = Long.MAX_VALUE;
+		for (int i = 0; i < ecritures.size(); i++) {
+			long ecart = Math.abs(
+					ecritures.get(i).date.getTime() - date.getTime());
+			if (ecart < bestEcart) {
+				best = i;
+				bestEcart = ecart;
+			}
+		}
+
+		if (best < 0
+				|| Releve.jours(ecritures.get(best).date, date) > fenetre)
+			return false;
+		Collections.swap(ecritures, best, ecritures.size() - 1);
+		ecritures.remove(ecritures.size() - 1);
+		return true;
+	}
+
+	/**
+	 * Transforme une opération du relevé en brouillon d'écriture, pointée à
+	 * la date de l'opération.
+	 */
+	private EcritureDraft toDraft(LigneReleve ligne) {
+		EcritureDraft draft = new EcritureDraft();
+		draft.date = ligne.date;
+		draft.pointage = ligne.date;
+		draft.tiers = tiersOf(ligne);
+		draft.libelle = (ligne.tiers == null) ? null : ligne.libelle;
+		draft.cheque = ligne.cheque;
+		draft.montant = ligne.montant.abs();
+		if (ligne.montant.signum() < 0) {
+			draft.debit = compte;
+			draft.credit = contrepartie;
+		} else {
+			draft.debit = contrepartie;
+			draft.credit = compte;
+		}
+		return draft;
+	}
+
+	/**
+	 * Renvoie le tiers d'une opération, ou à défaut son libellé.
+	 */
+	private static String tiersOf(LigneReleve ligne) {
+		return (ligne.tiers == null) ? ligne.libelle : ligne.tiers;
+	}
+
+	/**
+	 * Renvoie la clé d'index d'un montant signé et d'un tiers.
+	 */
+	private static String key(BigDecimal montant, String tiers) {
+		return montant.stripTrailingZeros().toPlainString() + '|'
+				+ normalize(tiers);
+	}
+
+	/**
+	 * Normalise un texte pour le comparer : majuscules sans accents, suites
+	 * de caractères non alphanumériques remplacées par une espace.
+	 *
+	 * @param s	Le texte, ou <code>null</code>.
+	 *
+	 * @return	Le texte normalisé, vide si <code>s</code> est
+	 * 			<code>null</code>.
+	 */
+	static String normalize(String s) {
+		if (s == null)
+			return "";
+		return Normalizer.normalize(s, Normalizer.Form.NFD)
+				.replaceAll("\\p{M}", "")
+				.toUpperCase(Locale.ROOT)
+				.replaceAll("[^A-Z0-9]+", " ")
+				.trim();
+	}
+}
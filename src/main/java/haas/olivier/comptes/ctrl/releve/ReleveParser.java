@@ -0,0 +1,188 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.ctrl.releve;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import haas.olivier.util.ReadOnlyIterator;
+
+/**
+ * Un lecteur de relevé bancaire.
+ * <p>
+ * Les opérations sont lues une par une, au fil du parcours, sans charger le
+ * relevé entier en mémoire. Une erreur de lecture interrompt le parcours,
+ * ferme le flux et se propage à l'appelant : une erreur de format sous la
+ * forme d'une {@link ReleveFormatException} indiquant la ligne fautive, une
+ * erreur d'entrée-sortie sous la forme d'une
+ * {@link UncheckedIOException}.
+ *
+ * @author Olivier HAAS
+ */
+public abstract class ReleveParser extends ReadOnlyIterator<LigneReleve>
+implements Closeable {
+
+	/**
+	 * Le Logger de cette classe.
+	 */
+	private static final Logger LOGGER =
+			Logger.getLogger(ReleveParser.class.getName());
+
+	/**
+	 * Le flux de lecture, qui compte les lignes lues.
+	 */
+	protected final LineNumberReader reader;
+
+	/**
+	 * La prochaine opération à renvoyer, ou <code>null</code>.
+	 */
+	private LigneReleve next = null;
+
+	/**
+	 * Indique si la fin du relevé a été atteinte.
+	 */
+	private boolean done = false;
+
+	/**
+	 * Construit un lecteur de relevé bancaire.
+	 *
+	 * @param reader	Le flux à lire.
+	 */
+	protected ReleveParser(Reader reader) {
+		this.reader = (reader instanceof LineNumberReader)
+				? (LineNumberReader) reader : new LineNumberReader(reader);
+	}
+
+	/**
+	 * @throws ReleveFormatException
+	 * 			Si l'opération suivante ne peut pas être lue.
+	 *
+	 * @throws UncheckedIOException
+	 * 			En cas d'erreur de lecture du flux.
+	 */
+	@Override
+	public boolean hasNext() {
+		if (next == null && !done) {
+			try {
+				next = readNext();
+
+			} catch (ParseException e) {
+				throw new ReleveFormatException(getLineNumber(), e);
+
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+
+			} finally {
+				if (next == null) {				// Fin du relevé ou erreur
+					done = true;
+					close();
+				}
+			}
+		}
+		return next != null;
+	}
+
+	/**
+	 * @throws ReleveFormatException
+	 * 			Si l'opération suivante ne peut pas être lue.
+	 *
+	 * @throws UncheckedIOException
+	 * 			En cas d'erreur de lecture du flux.
+	 */
+	@Override
+	public LigneReleve next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		LigneReleve result = next;
+		next = null;
+		return result;
+	}
+
+	/**
+	 * Lit l'opération suivante.
+	 *
+	 * @return	L'opération suivante, ou <code>null</code> à la fin du relevé.
+	 *
+	 * @throws ParseException
+	 * 			En cas d'erreur de lecture d'une date.
+	 *
+	 * @throws IOException
+	 */
+	protected abstract LigneReleve readNext()
+			throws ParseException, IOException;
+
+	/**
+	 * Renvoie le numéro de la ligne en cours de lecture, à partir de 1.
+	 * <p>
+	 * Par défaut, il s'agit du nombre de lignes lues dans le flux.
+	 */
+	protected int getLineNumber() {
+		return Math.max(1, reader.getLineNumber());
+	}
+
+	/**
+	 * Convertit un montant écrit avec une virgule ou un point décimal, et
+	 * éventuellement des séparateurs de milliers.
+	 *
+	 * @param s	Le montant lu.
+	 *
+	 * @return	Le montant, ou <code>null</code> si <code>s</code> est vide.
+	 *
+	 * @throws NumberFormatException
+	 */
+	static BigDecimal parseMontant(String s) {
+		if (s == null)
+			return null;
+		String montant = s.replaceAll("[\\s\\u00a0+]", "");
+		if (montant.isEmpty())
+			return null;
+
+		int virgule = montant.lastIndexOf(','), point = montant.lastIndexOf('.');
+		if (virgule > point) {
+			montant = montant.replace(".", "").replace(',', '.');
+		} else {
+			montant = montant.replace(",", "");
+		}
+		return new BigDecimal(montant);
+	}
+
+	/**
+	 * Renvoie une chaîne nettoyée, ou <code>null</code> si elle est vide.
+	 */
+	static String clean(String s) {
+		if (s == null)
+			return null;
+		s = s.trim();
+		return s.isEmpty() ? null : s;
+	}
+
+	/**
+	 * Renvoie un numéro de chèque, ou <code>null</code> s'il n'est pas
+	 * numérique.
+	 */
+	static Integer parseCheque(String s) {
+		s = clean(s);
+		return (s != null && s.matches("\\d{1,9}")) ? Integer.valueOf(s) : null;
+	}
+
+	/**
+	 * Ferme le flux de lecture.
+	 */
+	@Override
+	public void close() {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			LOGGER.log(Level.FINE, "Impossible de fermer le relevé", e);
+		}
+	}
+}
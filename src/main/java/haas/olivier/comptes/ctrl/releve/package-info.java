@@ -0,0 +1,6 @@
+/**
+ * Import des relevés bancaires aux formats CSV, OFX et QIF.
+ *
+ * @author Olivier HAAS
+ */
+package haas.olivier.comptes.ctrl.releve;
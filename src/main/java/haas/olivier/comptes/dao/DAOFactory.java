@@ -30,28 +30,36 @@ public abstract class DAOFactory {
 
 	/**
 	 * L'instance en cours d'utilisation.
+	 * <p>
+	 * Le champ est volatile pour que les traitements en tâche de fond voient
+	 * immédiatement la source de données mise en place depuis un autre thread.
 	 */
-	private static DAOFactory factory;
+	private static volatile DAOFactory factory;
 	
 	/**
 	 * Renvoie l'instance en cours d'utilisation.
 	 */
 	public static DAOFactory getFactory() {
+		DAOFactory current = factory;
+		if (current != null)
+			return current;
 		
 		// Vérifier qu'il existe une implémentation
-		if (factory == null) {
-			try {
-				factory = new CacheDAOFactory(new EmptyCacheableDAOFactory());
-				
-			} catch (Exception e) {
-				Logger.getLogger(DAOFactory.class.getName()).log(
-					Level.SEVERE,
-					"Impossible de créer un modèle de données vide.",
-					e);
+		synchronized (DAOFactory.class) {
+			if (factory == null) {
+				try {
+					factory =
+							new CacheDAOFactory(new EmptyCacheableDAOFactory());
+					
+				} catch (Exception e) {
+					Logger.getLogger(DAOFactory.class.getName()).log(
+						Level.SEVERE,
+						"Impossible de créer un modèle de données vide.",
+						e);
+				}
 			}
+			return factory;
 		}
-		
-		return factory;
 	}
 	
 	/**
@@ -88,12 +88,42 @@ public interface EcritureDAO {
 	 */
 	void add(Ecriture e) throws IOException;
 	
+	/**
+	 * Ajoute plusieurs écritures.
+	 * <p>
+	 * L'implémentation par défaut appelle {@link #add(Ecriture)} pour chaque
+	 * écriture. Les implémentations peuvent la redéfinir pour publier tous les
+	 * ajouts en une seule fois.
+	 * 
+	 * @param ecritures	Les écritures à ajouter.
+	 * 
+	 * @throws IOException
+	 */
+	default void addAll(Iterable<Ecriture> ecritures) throws IOException {
+		for (Ecriture e : ecritures)
+			add(e);
+	}
+	
 	/** Modifie une écriture.
 	 * 
 	 * @param e	La nouvelle version de l'écriture à modifier.
 	 */
 	void update(Ecriture e);
 	
+	/**
+	 * Modifie plusieurs écritures.
+	 * <p>
+	 * L'implémentation par défaut appelle {@link #update(Ecriture)} pour
+	 * chaque écriture. Les implémentations peuvent la redéfinir pour publier
+	 * toutes les modifications en une seule fois.
+	 * 
+	 * @param ecritures	Les nouvelles versions des écritures à modifier.
+	 */
+	default void updateAll(Iterable<Ecriture> ecritures) {
+		for (Ecriture e : ecritures)
+			update(e);
+	}
+	
 	/** Supprime une écriture.
 	 * 
 	 * @param id	L'identifiant de l'écriture à supprimer.
@@ -33,6 +33,34 @@ public interface SuiviDAO {
 	 */
 	public BigDecimal get(Compte compte, Month month);
 	
+	/**
+	 * Renvoie les suivis d'un compte pour une suite de mois consécutifs.
+	 * <p>
+	 * L'implémentation par défaut appelle {@link #get(Compte, Month)} pour
+	 * chaque mois. Les implémentations peuvent la redéfinir pour lire toute la
+	 * série en un seul passage.
+	 * 
+	 * @param compte	Le compte.
+	 * @param from		Le premier mois de la série.
+	 * @param count		Le nombre de mois de la série.
+	 * 
+	 * @return			Un tableau de <code>count</code> montants, dont
+	 * 					l'élément d'index <code>i</code> est le suivi au titre
+	 * 					du <code>i</code>-ème mois après <code>from</code>, ou
+	 * 					<code>null</code> si aucun suivi n'est défini pour ce
+	 * 					mois.
+	 */
+	public default BigDecimal[] getSerie(Compte compte, Month from,
+			int count) {
+		BigDecimal[] serie = new BigDecimal[count];
+		Month month = from;
+		for (int i = 0; i < count; i++) {
+			serie[i] = get(compte, month);
+			month = month.getNext();
+		}
+		return serie;
+	}
+	
 	/**
 	 * Définit ou modifie le suivi d'un compte pour un mois donné.
 	 * 
@@ -56,4 +84,26 @@ public interface SuiviDAO {
 	 */
 	public void removeFrom(Month debut);
 
+	/**
+	 * Commence une série de modifications, qui ne seront visibles des autres
+	 * threads qu'à l'appel de {@link #endBatch()}.
+	 * <p>
+	 * Les séries peuvent être imbriquées : les modifications sont publiées à
+	 * la fin de la série la plus externe. Le thread qui modifie les données
+	 * voit ses propres modifications au fur et à mesure.
+	 * <p>
+	 * L'implémentation par défaut ne fait rien.
+	 */
+	public default void beginBatch() {
+	}
+
+	/**
+	 * Termine une série de modifications commencée par
+	 * {@link #beginBatch()}.
+	 * <p>
+	 * L'implémentation par défaut ne fait rien.
+	 */
+	public default void endBatch() {
+	}
+
 }
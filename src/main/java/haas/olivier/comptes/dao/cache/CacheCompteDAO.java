@@ -7,10 +7,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -31,10 +31,19 @@ class CacheCompteDAO implements CompteDAO {
 	 */
 	private boolean mustBeSaved;
 	
+	/**
+	 * Le journal des modifications depuis la dernière sauvegarde.
+	 */
+	private final ChangeLog changes = new ChangeLog();
+	
 	/**
 	 * Les instances existantes, et leurs identifiants.
+	 * <p>
+	 * L'ensemble peut être parcouru par un thread pendant qu'un autre le
+	 * modifie.
 	 */
-	private final HashSet<Compte> instances = new HashSet<>();
+	private final Set<Compte> instances =
+			Collections.newSetFromMap(new ConcurrentHashMap<>());
 	
 	/**
 	 * Construit un objet d'accès aux comptes.
@@ -43,8 +52,9 @@ class CacheCompteDAO implements CompteDAO {
 		while (it.hasNext())
 			add(it.next());
 		
-		// Remettre à false car rien n'a changé pour l'instant
+		// Remettre à zéro car rien n'a changé pour l'instant
 		mustBeSaved = false;
+		changes.clear();
 	}
 
 	@Override
@@ -78,18 +88,22 @@ class CacheCompteDAO implements CompteDAO {
 	@Override
 	public void add(Compte compte) {
 		instances.add(compte);
+		if (compte.getId() != null)
+			changes.added(compte.getId());
 		mustBeSaved = true;
 	}
 	
 	@Override
 	public void remove(Compte compte) throws IOException {
-		instances.remove(compte);
+		if (instances.remove(compte) && compte.getId() != null)
+			changes.removed(compte.getId());
 		mustBeSaved = true;
 	}
 	
 	@Override
 	public void erase() {
 		instances.clear();
+		changes.erased();
 		mustBeSaved = true;
 	}
 	
@@ -105,5 +119,16 @@ class CacheCompteDAO implements CompteDAO {
 	 */
 	public void setSaved() {
 		mustBeSaved = false;
+		changes.clear();
+	}
+	
+	/**
+	 * Renvoie le journal des modifications depuis la dernière sauvegarde.
+	 * <p>
+	 * Les comptes étant modifiés directement, le journal ne recense que les
+	 * ajouts et les suppressions.
+	 */
+	ChangeLog getChanges() {
+		return changes;
 	}
 }
\ No newline at end of file
@@ -147,6 +147,40 @@ public class CacheDAOFactory extends DAOFactory {
 		return propsDAO;
 	}
 
+	/**
+	 * Retire du cache toutes les écritures, sans les supprimer de la source.
+	 * <p>
+	 * Cette méthode ne doit être appelée qu'après une sauvegarde partielle
+	 * (voir {@link CacheableDAOFactory#beginBatch()}).
+	 */
+	void evictEcritures() {
+		eDAO.evictAll();
+	}
+
+	/**
+	 * Renvoie le journal des comptes ajoutés ou supprimés depuis la dernière
+	 * sauvegarde.
+	 */
+	public ChangeLog getCompteChanges() {
+		return cDAO.getChanges();
+	}
+	
+	/**
+	 * Renvoie le journal des écritures ajoutées, modifiées ou supprimées
+	 * depuis la dernière sauvegarde.
+	 */
+	public ChangeLog getEcritureChanges() {
+		return eDAO.getChanges();
+	}
+	
+	/**
+	 * Renvoie le journal des opérations permanentes ajoutées, modifiées ou
+	 * supprimées depuis la dernière sauvegarde.
+	 */
+	public ChangeLog getPermanentChanges() {
+		return pDAO.getChanges();
+	}
+
 	@Override
 	public boolean canBeSaved() {
 		return dao.canBeSaved();
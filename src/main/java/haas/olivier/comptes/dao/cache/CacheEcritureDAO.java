@@ -3,14 +3,21 @@
  */
 package haas.olivier.comptes.dao.cache;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import java.util.NavigableSet;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import haas.olivier.comptes.Ecriture;
 import haas.olivier.comptes.EcritureMissingArgumentException;
@@ -21,6 +28,13 @@ import haas.olivier.util.Month;
 
 /**
  * Un objet d'accès aux données qui garde en cache toutes les écritures.
+ * <p>
+ * Les collections triées sont gérées par copie sur écriture : une collection
+ * publiée n'est plus jamais modifiée, et chaque modification publie une
+ * nouvelle version. Les itérables renvoyés par cet objet parcourent donc une
+ * image figée des écritures, qui reste cohérente même si d'autres threads
+ * modifient les données pendant le parcours.<br>
+ * Les modifications sont sérialisées entre elles.
  * 
  * @author Olivier HAAS
  */
@@ -59,6 +73,65 @@ class CacheEcritureDAO implements EcritureDAO {
 		map.get(month).add(e);
 	}
 	
+	/**
+	 * Renvoie une copie d'une collection à deux niveaux, dans laquelle des
+	 * écritures ont été retirées puis d'autres ajoutées.
+	 * <p>
+	 * La collection d'origine n'est pas modifiée. Chaque collection de
+	 * deuxième niveau concernée n'est recopiée qu'une fois, quel que soit le
+	 * nombre d'écritures qu'elle reçoit ; les autres sont partagées entre
+	 * l'ancienne et la nouvelle version.
+	 * 
+	 * @param map		La collection à deux niveaux d'origine.
+	 * 
+	 * @param removed	Les écritures à retirer.
+	 * 
+	 * @param added		Les écritures à ajouter.
+	 * 
+	 * @param pointages	<code>true</code> si les collections de deuxième
+	 * 					niveau trient les écritures par pointages, et si la
+	 * 					date déterminant la collection concernée est donc la
+	 * 					date de pointage.
+	 * 
+	 * @return			Une nouvelle collection à deux niveaux.
+	 */
+	private static NavigableMap<Month, NavigableSet<Ecriture>> copyWith(
+			NavigableMap<Month, NavigableSet<Ecriture>> map,
+			Collection<Ecriture> removed, Collection<Ecriture> added,
+			boolean pointages) {
+		NavigableMap<Month, NavigableSet<Ecriture>> copy = new TreeMap<>(map);
+		Set<Month> copied = new HashSet<>();
+		
+		for (Ecriture e : removed) {
+			Month month = Month.getInstance(pointages ? e.pointage : e.date);
+			NavigableSet<Ecriture> set = copy.get(month);
+			if (set == null)
+				continue;
+			if (copied.add(month)) {
+				set = new TreeSet<>(set);		// Même comparateur
+				copy.put(month, set);
+			}
+			set.remove(e);
+		}
+		
+		for (Ecriture e : added) {
+			Date date = pointages ? e.pointage : e.date;
+			Month month = Month.getInstance(date);
+			NavigableSet<Ecriture> set = copy.get(month);
+			if (set == null) {
+				insert(e, copy, date, pointages);	// Nouvelle sous-collection
+				copied.add(month);
+			} else {
+				if (copied.add(month)) {
+					set = new TreeSet<>(set);
+					copy.put(month, set);
+				}
+				set.add(e);
+			}
+		}
+		return copy;
+	}
+	
 	/**
 	 * Insère un texte dans un index.
 	 * 
@@ -80,20 +153,24 @@ class CacheEcritureDAO implements EcritureDAO {
 
 	/**
 	 * Les écritures, triées par mois puis par ordre naturel.
+	 * <p>
+	 * Cette collection n'est jamais modifiée après sa publication.
 	 */
-	private final NavigableMap<Month, NavigableSet<Ecriture>> ecritures =
+	private volatile NavigableMap<Month, NavigableSet<Ecriture>> ecritures =
 			new TreeMap<>();
 	
 	/**
 	 * Les écritures, triées par mois de pointage puis par date de pointage.
+	 * <p>
+	 * Cette collection n'est jamais modifiée après sa publication.
 	 */
-	private final NavigableMap<Month, NavigableSet<Ecriture>> pointages =
+	private volatile NavigableMap<Month, NavigableSet<Ecriture>> pointages =
 			new TreeMap<>();
 			
 	/**
 	 * Les écritures en fonction de leur identifiant.
 	 */
-	private final Map<Integer, Ecriture> nums = new HashMap<>();
+	private final Map<Integer, Ecriture> nums = new ConcurrentHashMap<>();
 	
 	/**
 	 * Le générateur d'identifiants.
@@ -104,7 +181,12 @@ class CacheEcritureDAO implements EcritureDAO {
 	 * Drapeau indiquant si les données ont été modifiées depuis la dernière
 	 * sauvegarde.
 	 */
-	private boolean mustBeSaved;
+	private volatile boolean mustBeSaved;
+	
+	/**
+	 * Le journal des modifications depuis la dernière sauvegarde.
+	 */
+	private final ChangeLog changes = new ChangeLog();
 	
 	/**
 	 * Construit un objet d'accès aux données qui garde en cache toutes les
@@ -113,10 +195,21 @@ class CacheEcritureDAO implements EcritureDAO {
 	 * @param ecritures	Un itérable de toutes les écritures.
 	 */
 	public CacheEcritureDAO(Iterator<Ecriture> ecritures) {
-		while (ecritures.hasNext())
-			add(ecritures.next());
 		
-		// Rien n'a changé pour l'instant (même si on vient d'appeler add() !)
+		// Remplir directement les collections, qui ne sont pas encore publiées
+		NavigableMap<Month, NavigableSet<Ecriture>> byDate = new TreeMap<>();
+		NavigableMap<Month, NavigableSet<Ecriture>> byPointage =
+				new TreeMap<>();
+		while (ecritures.hasNext()) {
+			Ecriture e = withId(ecritures.next());
+			insert(e, byDate, e.date, false);
+			insert(e, byPointage, e.pointage, true);
+			nums.put(e.id, e);
+		}
+		this.ecritures = byDate;
+		this.pointages = byPointage;
+		
+		// Rien n'a changé pour l'instant
 		mustBeSaved = false;
 	}
 	
@@ -158,6 +251,50 @@ class CacheEcritureDAO implements EcritureDAO {
 
 	@Override
 	public void add(Ecriture e) {
+		addAll(Collections.singleton(e));
+	}
+	
+	/**
+	 * Ajoute toutes les écritures et publie les nouvelles versions des
+	 * collections en une seule fois.
+	 */
+	@Override
+	public synchronized void addAll(Iterable<Ecriture> ecritures) {
+		List<Ecriture> added = new ArrayList<>();
+		for (Ecriture e : ecritures)
+			added.add(withId(e));
+		publish(Collections.emptyList(), added);
+		
+		for (Ecriture e : added) {
+			nums.put(e.id, e);					// Collection par numéros
+			changes.added(e.id);				// Journal
+		}
+		mustBeSaved = true;						// Sauvegarde attendue
+	}
+	
+	/**
+	 * Publie les nouvelles versions des collections triées, dans lesquelles
+	 * des écritures ont été retirées puis d'autres ajoutées.
+	 */
+	private void publish(Collection<Ecriture> removed,
+			Collection<Ecriture> added) {
+		NavigableMap<Month, NavigableSet<Ecriture>> byDate =
+				copyWith(ecritures, removed, added, false);
+		NavigableMap<Month, NavigableSet<Ecriture>> byPointage =
+				copyWith(pointages, removed, added, true);
+		ecritures = byDate;
+		pointages = byPointage;
+	}
+	
+	/**
+	 * Vérifie que l'écriture a un identifiant.
+	 * 
+	 * @param e	L'écriture.
+	 * 
+	 * @return	L'écriture elle-même si elle avait un identifiant, ou une
+	 * 			nouvelle écriture identique munie d'un nouvel identifiant.
+	 */
+	private Ecriture withId(Ecriture e) {
 		
 		// S'il n'y a pas d'identifiant
 		if (e.id == null) {
@@ -179,24 +316,20 @@ class CacheEcritureDAO implements EcritureDAO {
 			idGen.addId(e.id);
 		}// if id
 		
-		// Ajouter l'écriture
-		insert(e, ecritures, e.date, false);	// Collection ordre naturel
-		insert(e, pointages, e.pointage, true);	// Collection ordre de pointage
-		nums.put(e.id, e);						// Collection par numéros
-		mustBeSaved = true;						// Sauvegarde attendue
+		return e;
 	}
 	
 	@Override
-	public void remove(int id) {
+	public synchronized void remove(int id) {
 		
 		// Supprimer de la collection par identifiants
 		Ecriture e = nums.remove(id);
 		
-		// Supprimer de la collection triée par ordre naturel
-		ecritures.get(Month.getInstance(e.date)).remove(e);
+		// Supprimer des collections triées
+		publish(Collections.singleton(e), Collections.emptyList());
 		
-		// Supprimer de la collection triée par ordre de pointage
-		pointages.get(Month.getInstance(e.pointage)).remove(e);
+		// Noter la suppression dans le journal
+		changes.removed(id);
 		
 		// Marquer qu'une sauvegarde est attendue
 		mustBeSaved = true;
@@ -204,23 +337,41 @@ class CacheEcritureDAO implements EcritureDAO {
 	
 	@Override
 	public void update(Ecriture e) {
+		updateAll(Collections.singleton(e));
+	}
+	
+	/**
+	 * Remplace les écritures existantes portant les mêmes identifiants, et
+	 * publie les nouvelles versions des collections en une seule fois : une
+	 * écriture modifiée n'est jamais absente des collections publiées.
+	 */
+	@Override
+	public synchronized void updateAll(Iterable<Ecriture> ecritures) {
+		List<Ecriture> removed = new ArrayList<>();
+		List<Ecriture> added = new ArrayList<>();
+		for (Ecriture e : ecritures) {
+			Ecriture old = nums.get(e.id);
+			if (old != null)
+				removed.add(old);
+			added.add(e);
+		}
+		publish(removed, added);
 		
-		// Supprimer l'écriture existante portant cet identifiant
-		remove(e.id);
-		
-		// Ajouter la nouvelle écriture à la place
-		add(e);
-		
+		for (Ecriture e : added) {
+			nums.put(e.id, e);
+			changes.updated(e.id);
+		}
 		mustBeSaved = true;
 	}
 	
 	/**
 	 * Efface toutes les données.
 	 */
-	void erase() {
-		ecritures.clear();
-		pointages.clear();
+	synchronized void erase() {
+		ecritures = new TreeMap<>();
+		pointages = new TreeMap<>();
 		nums.clear();
+		changes.erased();
 		mustBeSaved = true;
 		idGen = new IdGenerator();
 	}
@@ -244,7 +395,20 @@ class CacheEcritureDAO implements EcritureDAO {
 	 * @return	Un mois, ou <code>null</code> s'il n'y a aucune écriture.
 	 */
 	Month getDebut() {
-		return ecritures.isEmpty() ? null : ecritures.firstKey();
+		NavigableMap<Month, NavigableSet<Ecriture>> snapshot = ecritures;
+		return snapshot.isEmpty() ? null : snapshot.firstKey();
+	}
+	
+	/**
+	 * Retire toutes les écritures, sans noter leur suppression dans le
+	 * journal.
+	 * <p>
+	 * Les identifiants restent réservés.
+	 */
+	synchronized void evictAll() {
+		nums.clear();
+		ecritures = new TreeMap<>();
+		pointages = new TreeMap<>();
 	}
 	
 	/**
@@ -260,6 +424,17 @@ class CacheEcritureDAO implements EcritureDAO {
 	 */
 	void setSaved() {
 		mustBeSaved = false;
+		changes.clear();
+	}
+	
+	/**
+	 * Renvoie le journal des modifications depuis la dernière sauvegarde.
+	 * <p>
+	 * Une écriture modifiée étant remplacée par une nouvelle instance, le
+	 * journal recense toutes les modifications.
+	 */
+	ChangeLog getChanges() {
+		return changes;
 	}
 
 }
@@ -36,6 +36,11 @@ public class CachePermanentDAO implements PermanentDAO {
 	 */
 	private boolean mustBeSaved = false;
 	
+	/**
+	 * Le journal des modifications depuis la dernière sauvegarde.
+	 */
+	private final ChangeLog changes = new ChangeLog();
+	
 	/**
 	 * Le générateur d'identifiants.
 	 */
@@ -124,6 +129,7 @@ public class CachePermanentDAO implements PermanentDAO {
 		}
 		
 		permanents.put(p.getId(), p);
+		changes.added(p.getId());					// Journal
 		mustBeSaved = true;							// Sauvegarde attendue
 	}
 
@@ -135,12 +141,14 @@ public class CachePermanentDAO implements PermanentDAO {
 	 */
 	@Override
 	public void update(Permanent p) {
+		changes.updated(p.getId());
 		mustBeSaved = true;
 	}
 
 	@Override
 	public void remove(int id) {
 		permanents.remove(id);						// Supprimer du cache
+		changes.removed(id);						// Journal
 		mustBeSaved = true;							// Sauvegarde attendue
 	}
 	
@@ -150,6 +158,7 @@ public class CachePermanentDAO implements PermanentDAO {
 	void erase() {
 		permanents.clear();
 		idGen = new IdGenerator();
+		changes.erased();
 		mustBeSaved = true;
 	}
 	
@@ -166,5 +175,18 @@ public class CachePermanentDAO implements PermanentDAO {
 	 */
 	void setSaved() {
 		mustBeSaved = false;
+		changes.clear();
+	}
+	
+	/**
+	 * Renvoie le journal des modifications depuis la dernière sauvegarde.
+	 * <p>
+	 * Les opérations permanentes pouvant être modifiées directement, sans
+	 * appel à {@link #update(Permanent)}, le journal ne recense pas
+	 * nécessairement toutes les modifications : seuls les ajouts et les
+	 * suppressions sont fiables.
+	 */
+	ChangeLog getChanges() {
+		return changes;
 	}
 }
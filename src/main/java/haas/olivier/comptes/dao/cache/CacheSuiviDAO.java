@@ -6,11 +6,14 @@ package haas.olivier.comptes.dao.cache;
 import java.math.BigDecimal;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 import haas.olivier.comptes.Compte;
@@ -19,6 +22,18 @@ import haas.olivier.util.Month;
 
 /**
  * Un objet d'accès aux données qui garde en cache tous les suivi des comptes.
+ * <p>
+ * Les données sont gérées par copie sur écriture : les collections publiées ne
+ * sont plus jamais modifiées, et chaque modification publie une nouvelle
+ * version. Un parcours entamé par un thread reste donc cohérent même si un
+ * autre thread modifie les suivis en même temps.<br>
+ * Les modifications sont sérialisées entre elles.
+ * <p>
+ * Entre {@link #beginBatch()} et {@link #endBatch()}, les modifications sont
+ * appliquées à une copie de travail, dont chaque mois n'est recopié qu'une
+ * fois. Cette copie est publiée en une seule fois à la fin de la série : les
+ * autres threads ne voient jamais d'état intermédiaire, par exemple des suivis
+ * effacés mais pas encore recalculés.
  * 
  * @author Olivier HAAS
  */
@@ -26,8 +41,36 @@ public class CacheSuiviDAO implements SuiviDAO {
 	
 	/**
 	 * Les suivis des comptes.
+	 * <p>
+	 * Ni cette collection, ni les collections qu'elle contient ne sont
+	 * modifiées après leur publication.
 	 */
-	private final Map<Month, Map<Compte, BigDecimal>> suivis = new HashMap<>();
+	private volatile Map<Month, Map<Compte, BigDecimal>> suivis =
+			new HashMap<>();
+	
+	/**
+	 * Le verrou des modifications, détenu pendant toute une série de
+	 * modifications.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+	
+	/**
+	 * La copie de travail non publiée, ou <code>null</code>.
+	 * <p>
+	 * Elle n'est accessible qu'au thread qui détient {@link #lock}.
+	 */
+	private Map<Month, Map<Compte, BigDecimal>> pending = null;
+	
+	/**
+	 * Les mois dont les montants ont déjà été recopiés dans la copie de
+	 * travail, et peuvent donc y être modifiés directement.
+	 */
+	private final Set<Month> copied = new HashSet<>();
+	
+	/**
+	 * Le niveau d'imbrication des séries de modifications en cours.
+	 */
+	private int depth = 0;
 
 	/**
 	 * Construit un objet d'accès aux données qui garde en cache tous les suivis
@@ -36,8 +79,15 @@ public class CacheSuiviDAO implements SuiviDAO {
 	 * @param soldes	Un itérateur de soldes.
 	 */
 	public CacheSuiviDAO(Iterator<Solde> soldes){
-		while (soldes.hasNext())
-			set(soldes.next());
+		
+		// Remplir directement la collection, qui n'est pas encore publiée
+		Map<Month, Map<Compte, BigDecimal>> map = new HashMap<>();
+		while (soldes.hasNext()) {
+			Solde solde = soldes.next();
+			map.computeIfAbsent(solde.month, m -> new HashMap<>())
+			.put(solde.compte, solde.montant);
+		}
+		suivis = map;
 	}
 	
 	@Override
@@ -47,14 +97,89 @@ public class CacheSuiviDAO implements SuiviDAO {
 
 	@Override
 	public void set(Compte compte, Month month, BigDecimal montant) {
-		if (!suivis.containsKey(month))
-			suivis.put(month, new HashMap<>());
-		suivis.get(month).put(compte, montant);
+		lock.lock();
+		try {
+			workingMonth(month).put(compte, montant);
+			publish();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	@Override
+	public void beginBatch() {
+		lock.lock();
+		depth++;
+	}
+	
+	@Override
+	public void endBatch() {
+		try {
+			depth--;
+			publish();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Renvoie la copie de travail, en la créant si besoin.
+	 * <p>
+	 * Le verrou doit être détenu.
+	 */
+	private Map<Month, Map<Compte, BigDecimal>> working() {
+		if (pending == null) {
+			pending = new HashMap<>(suivis);
+			copied.clear();
+		}
+		return pending;
+	}
+	
+	/**
+	 * Renvoie les montants d'un mois dans la copie de travail, recopiés au
+	 * premier accès.
+	 * <p>
+	 * Le verrou doit être détenu.
+	 */
+	private Map<Compte, BigDecimal> workingMonth(Month month) {
+		Map<Month, Map<Compte, BigDecimal>> work = working();
+		Map<Compte, BigDecimal> montantsByCompte = work.get(month);
+		if (copied.add(month)) {
+			montantsByCompte = (montantsByCompte == null)
+					? new HashMap<>()
+					: new HashMap<>(montantsByCompte);
+			work.put(month, montantsByCompte);
+		}
+		return montantsByCompte;
+	}
+	
+	/**
+	 * Publie la copie de travail, sauf au milieu d'une série de
+	 * modifications.
+	 * <p>
+	 * Le verrou doit être détenu.
+	 */
+	private void publish() {
+		if (depth == 0 && pending != null) {
+			suivis = pending;
+			pending = null;
+			copied.clear();
+		}
+	}
+	
+	/**
+	 * Renvoie la version des suivis à lire : la copie de travail pour le
+	 * thread qui modifie les données, sinon la dernière version publiée.
+	 */
+	private Map<Month, Map<Compte, BigDecimal>> snapshot() {
+		if (lock.isHeldByCurrentThread() && pending != null)
+			return pending;
+		return suivis;
 	}
 	
 	@Override
 	public Iterator<Solde> getAll() {
-		return new SoldeIterator();
+		return new SoldeIterator(snapshot());
 	}
 	
 	/**
@@ -64,35 +189,57 @@ public class CacheSuiviDAO implements SuiviDAO {
 	 * 			dans la liste. Cette liste n'est pas triée.
 	 */
 	public List<Compte> getComptes() {
-		return suivis.values().stream()
+		return snapshot().values().stream()
 				.flatMap(map -> map.keySet().stream())
 				.distinct()
 				.collect(Collectors.toList());
 	}
 
 	public Iterable<Month> getMonths() {
-		return Collections.unmodifiableSet(suivis.keySet());
+		return Collections.unmodifiableSet(snapshot().keySet());
 	}
 	
 	@Override
 	public BigDecimal get(Compte compte, Month month) {
-		if (!suivis.containsKey(month))
-			return null;
-		
-		Map<Compte, BigDecimal> montantsByCompte = suivis.get(month);
-		if (!montantsByCompte.containsKey(compte))
+		Map<Compte, BigDecimal> montantsByCompte = snapshot().get(month);
+		if (montantsByCompte == null)
 			return null;
 		
 		return montantsByCompte.get(compte);
 	}
 
+	/**
+	 * Lit toute la série dans une même version des suivis.
+	 */
+	@Override
+	public BigDecimal[] getSerie(Compte compte, Month from, int count) {
+		Map<Month, Map<Compte, BigDecimal>> snapshot = snapshot();
+		BigDecimal[] serie = new BigDecimal[count];
+		Month month = from;
+		for (int i = 0; i < count; i++) {
+			Map<Compte, BigDecimal> montantsByCompte = snapshot.get(month);
+			if (montantsByCompte != null)
+				serie[i] = montantsByCompte.get(compte);
+			month = month.getNext();
+		}
+		return serie;
+	}
+
 	@Override
 	public void removeFrom(Month debut) {
-		Iterator<Month> it = suivis.keySet().iterator();
-		while (it.hasNext()) {
-			if (!debut.after(it.next())) {
-				it.remove();
+		lock.lock();
+		try {
+			Iterator<Month> it = working().keySet().iterator();
+			while (it.hasNext()) {
+				Month month = it.next();
+				if (!debut.after(month)) {
+					it.remove();
+					copied.remove(month);
+				}
 			}
+			publish();
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -100,21 +247,32 @@ public class CacheSuiviDAO implements SuiviDAO {
 	 * Efface toutes les données.
 	 */
 	public void erase() {
-		suivis.clear();
+		lock.lock();
+		try {
+			pending = new HashMap<>();
+			copied.clear();
+			publish();
+		} finally {
+			lock.unlock();
+		}
 	}
 	
 	/**
-	 * Un itérateur de soldes.
+	 * Un itérateur de soldes, qui parcourt une version figée des suivis.
 	 * 
 	 * @author Olivier Haas
 	 */
-	private class SoldeIterator implements Iterator<Solde> {
+	private static class SoldeIterator implements Iterator<Solde> {
 
+		/**
+		 * La version des suivis parcourue.
+		 */
+		private final Map<Month, Map<Compte, BigDecimal>> snapshot;
+		
 		/**
 		 * Un itérateur sur les mois et leurs données.
 		 */
-		private final Iterator<Month> monthIterator =
-				suivis.keySet().iterator();
+		private final Iterator<Month> monthIterator;
 		
 		/**
 		 * Le mois actuel.
@@ -128,8 +286,12 @@ public class CacheSuiviDAO implements SuiviDAO {
 		
 		/**
 		 * Construit un itérateur de soldes.
+		 * 
+		 * @param snapshot	La version des suivis à parcourir.
 		 */
-		private SoldeIterator() {
+		private SoldeIterator(Map<Month, Map<Compte, BigDecimal>> snapshot) {
+			this.snapshot = snapshot;
+			monthIterator = snapshot.keySet().iterator();
 			if (monthIterator.hasNext()) {
 				nextMonth();
 			} else {
@@ -157,7 +319,7 @@ public class CacheSuiviDAO implements SuiviDAO {
 		 */
 		private void nextMonth() {
 			month = monthIterator.next();
-			compteIterator = suivis.get(month).entrySet().iterator();
+			compteIterator = snapshot.get(month).entrySet().iterator();
 		}
 
 		@Override
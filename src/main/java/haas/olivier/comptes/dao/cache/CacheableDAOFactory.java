@@ -89,6 +89,37 @@ public interface CacheableDAOFactory extends Closeable {
 	 */
 	void save(CacheDAOFactory cache) throws IOException;
 	
+	/**
+	 * Commence une série de sauvegardes partielles.
+	 * <p>
+	 * Pendant la série, chaque sauvegarde n'enregistre que les modifications
+	 * notées dans les journaux du cache, sans recalculer les suivis. Les
+	 * écritures déjà sauvegardées peuvent donc être retirées du cache sans
+	 * être supprimées de la source.
+	 * <p>
+	 * L'implémentation par défaut ne le permet pas.
+	 * 
+	 * @return	<code>true</code> si la source permet les sauvegardes
+	 * 			partielles, <code>false</code> si chaque sauvegarde doit porter
+	 * 			sur toutes les données.
+	 */
+	default boolean beginBatch() {
+		return false;
+	}
+	
+	/**
+	 * Termine une série de sauvegardes partielles commencée par
+	 * {@link #beginBatch()}, et calcule les suivis.
+	 * <p>
+	 * L'implémentation par défaut ne fait rien.
+	 * 
+	 * @param cache	Le cache sauvegardé.
+	 * 
+	 * @throws IOException
+	 */
+	default void endBatch(CacheDAOFactory cache) throws IOException {
+	}
+	
 	/**
 	 * Renvoie le type de modèle pour affichage utilisateur.
 	 */
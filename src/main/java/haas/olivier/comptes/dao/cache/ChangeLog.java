@@ -0,0 +1,132 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Un journal des identifiants ajoutés, modifiés ou supprimés depuis la
+ * dernière sauvegarde.
+ * <p>
+ * Le journal ne garde que le bilan des opérations sur chaque identifiant :
+ * un objet ajouté puis supprimé n'apparaît plus, un objet supprimé puis
+ * ajouté de nouveau est considéré comme modifié, et un objet ajouté puis
+ * modifié reste simplement ajouté.
+ * <p>
+ * Après un effacement complet des données, le journal ne permet plus de
+ * savoir ce qui a été supprimé. Il est alors marqué comme incomplet jusqu'à
+ * la prochaine sauvegarde, et la source doit enregistrer toutes les données.
+ *
+ * @author Olivier HAAS
+ */
+public class ChangeLog {
+
+	/**
+	 * Les identifiants ajoutés.
+	 */
+	private final Set<Integer> added = new LinkedHashSet<>();
+
+	/**
+	 * Les identifiants modifiés.
+	 */
+	private final Set<Integer> updated = new LinkedHashSet<>();
+
+	/**
+	 * Les identifiants supprimés.
+	 */
+	private final Set<Integer> removed = new LinkedHashSet<>();
+
+	/**
+	 * Drapeau indiquant que les données ont été intégralement effacées depuis
+	 * la dernière sauvegarde.
+	 */
+	private boolean erased = false;
+
+	/**
+	 * Note l'ajout d'un objet.
+	 *
+	 * @param id	L'identifiant de l'objet.
+	 */
+	synchronized void added(Integer id) {
+		if (removed.remove(id)) {
+			updated.add(id);
+		} else {
+			added.add(id);
+		}
+	}
+
+	/**
+	 * Note la modification d'un objet.
+	 *
+	 * @param id	L'identifiant de l'objet.
+	 */
+	synchronized void updated(Integer id) {
+		if (!added.contains(id))
+			updated.add(id);
+	}
+
+	/**
+	 * Note la suppression d'un objet.
+	 *
+	 * @param id	L'identifiant de l'objet.
+	 */
+	synchronized void removed(Integer id) {
+		if (!added.remove(id)) {
+			updated.remove(id);
+			removed.add(id);
+		}
+	}
+
+	/**
+	 * Note l'effacement de toutes les données.
+	 */
+	synchronized void erased() {
+		clear();
+		erased = true;
+	}
+
+	/**
+	 * Vide le journal, après une sauvegarde.
+	 */
+	synchronized void clear() {
+		added.clear();
+		updated.clear();
+		removed.clear();
+		erased = false;
+	}
+
+	/**
+	 * Indique si le journal décrit toutes les modifications depuis la
+	 * dernière sauvegarde.
+	 *
+	 * @return	<code>false</code> si les données ont été intégralement
+	 * 			effacées depuis la dernière sauvegarde.
+	 */
+	public synchronized boolean isComplete() {
+		return !erased;
+	}
+
+	/**
+	 * Renvoie une copie des identifiants ajoutés.
+	 */
+	public synchronized Set<Integer> getAdded() {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(added));
+	}
+
+	/**
+	 * Renvoie une copie des identifiants modifiés.
+	 */
+	public synchronized Set<Integer> getUpdated() {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(updated));
+	}
+
+	/**
+	 * Renvoie une copie des identifiants supprimés.
+	 */
+	public synchronized Set<Integer> getRemoved() {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(removed));
+	}
+}
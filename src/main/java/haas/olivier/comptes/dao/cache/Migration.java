@@ -0,0 +1,564 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+
+import haas.olivier.comptes.Banque;
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.EcritureMissingArgumentException;
+import haas.olivier.comptes.InconsistentArgumentsException;
+import haas.olivier.comptes.Permanent;
+import haas.olivier.comptes.dao.EcritureDAO;
+
+/**
+ * Une migration des données d'une source vers une autre, sans interface
+ * graphique.
+ * <p>
+ * Les banques, les comptes, les opérations permanentes, les suivis et les
+ * propriétés sont repris en une fois. Les écritures sont lues au fil de
+ * l'eau et enregistrées dans la destination par lots, dont la taille est
+ * paramétrable. La progression et le débit sont consignés dans les logs à
+ * chaque lot.
+ * <p>
+ * Si la destination permet les sauvegardes partielles (base de données),
+ * chaque lot n'est gardé en mémoire que le temps de l'enregistrer, et les
+ * suivis ne sont calculés qu'une fois, à la fin de la migration.
+ * <p>
+ * Si un fichier de reprise est spécifié, il est mis à jour après chaque lot.
+ * Une migration interrompue peut alors être relancée : les données déjà
+ * enregistrées sont relues depuis la destination, et les écritures déjà
+ * présentes ne sont pas reprises. Le fichier de reprise est supprimé à la fin
+ * de la migration.
+ * <p>
+ * Une vérification peut être lancée ensuite pour comparer le nombre de
+ * comptes, d'écritures et d'opérations permanentes ainsi que le solde de
+ * chaque compte dans les deux sources.
+ *
+ * @author Olivier HAAS
+ */
+public class Migration {
+
+	/**
+	 * La taille des lots par défaut.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	/**
+	 * Clé du fichier de reprise désignant la source.
+	 */
+	private static final String SOURCE_KEY = "source";
+
+	/**
+	 * Clé du fichier de reprise désignant la destination.
+	 */
+	private static final String DESTINATION_KEY = "destination";
+
+	/**
+	 * Clé du fichier de reprise indiquant le nombre d'écritures enregistrées.
+	 */
+	private static final String ECRITURES_KEY = "ecritures";
+
+	/**
+	 * Le Logger de cette classe.
+	 */
+	private static final Logger LOGGER =
+			Logger.getLogger(Migration.class.getName());
+
+	/**
+	 * La source de données à lire.
+	 */
+	private final CacheableDAOFactory source;
+
+	/**
+	 * La source de données dans laquelle écrire.
+	 */
+	private final CacheableDAOFactory destination;
+
+	/**
+	 * Le nombre d'écritures enregistrées par lot. Zéro ou une valeur négative
+	 * signifie que tout est enregistré en une fois.
+	 */
+	private int batchSize = DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Le fichier de reprise, ou <code>null</code>.
+	 */
+	private File checkpoint = null;
+
+	/**
+	 * Construit une migration.
+	 * <p>
+	 * Les sources ne sont pas fermées par la migration.
+	 *
+	 * @param source		La source de données à lire.
+	 * @param destination	La source de données dans laquelle écrire.
+	 */
+	public Migration(CacheableDAOFactory source,
+			CacheableDAOFactory destination) {
+		this.source = Objects.requireNonNull(source);
+		this.destination = Objects.requireNonNull(destination);
+	}
+
+	/**
+	 * Modifie le nombre d'écritures enregistrées par lot.
+	 *
+	 * @param batchSize	Le nombre d'écritures par lot. Zéro ou une valeur
+	 * 					négative pour tout enregistrer en une fois, ce qui est
+	 * 					préférable lorsque la destination réécrit toutes les
+	 * 					données à chaque sauvegarde (archive CSV).
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Spécifie le fichier de reprise.
+	 *
+	 * @param checkpoint	Le fichier de reprise, ou <code>null</code> pour
+	 * 						une migration non reprenable.
+	 */
+	public void setCheckpoint(File checkpoint) {
+		this.checkpoint = checkpoint;
+	}
+
+	/**
+	 * Lance la migration, ou la reprend si le fichier de reprise correspond à
+	 * la même source et à la même destination.
+	 *
+	 * @return	Le nombre d'écritures enregistrées par cette exécution.
+	 *
+	 * @throws IOException
+	 */
+	public int run() throws IOException {
+		Properties state = readCheckpoint();
+		boolean resume = state != null;
+		int done = resume
+				? Integer.parseInt(state.getProperty(ECRITURES_KEY, "0"))
+				: 0;
+		if (resume) {
+			LOGGER.info(String.format(
+					"Reprise de la migration après %d écritures", done));
+		}
+
+		// Enregistrer chaque lot sans le garder, si la destination le permet
+		boolean streaming = batchSize > 0 && destination.beginBatch();
+
+		// Charger tout sauf les écritures, ou reprendre la destination
+		CacheDAOFactory cache = new CacheDAOFactory(new MigrationDAO(
+				resume ? destination : source, resume && !streaming, source,
+				destination));
+		EcritureDAO eDAO = cache.getEcritureDAO();
+		Map<Integer, Compte> comptes = new HashMap<>();
+		for (Compte compte : cache.getCompteDAO().getAll())
+			comptes.put(compte.getId(), compte);
+
+		// Les écritures déjà enregistrées qui ne sont pas chargées
+		Set<Integer> saved = new HashSet<>();
+		if (resume && streaming) {
+			Iterator<Ecriture> it = destination.getEcritures();
+			while (it.hasNext())
+				saved.add(it.next().id);
+		}
+
+		if (!resume) {
+			cache.save();
+			writeCheckpoint(0);
+		}
+
+		// Reporter les écritures par lots
+		long start = System.nanoTime();
+		int count = 0, pending = 0;
+		Iterator<Ecriture> it = source.getEcritures();
+		while (it.hasNext()) {
+			Ecriture e = it.next();
+			if (e.id != null
+					&& (saved.contains(e.id) || eDAO.get(e.id) != null))
+				continue;						// Déjà enregistrée
+
+			eDAO.add(rebind(e, comptes));
+			count++;
+			if (++pending == batchSize) {
+				cache.save();
+				if (streaming)
+					cache.evictEcritures();		// Lot enregistré
+				pending = 0;
+				writeCheckpoint(done + count);
+				logProgress(done + count, count, start);
+			}
+		}
+		if (pending > 0 || cache.mustBeSaved())
+			cache.save();
+		if (streaming)
+			destination.endBatch(cache);
+		logProgress(done + count, count, start);
+
+		if (checkpoint != null)
+			Files.deleteIfExists(checkpoint.toPath());
+		return count;
+	}
+
+	/**
+	 * Renvoie une écriture identique rattachée aux comptes de la destination.
+	 * <p>
+	 * Lors d'une reprise, les comptes sont relus depuis la destination et ne
+	 * sont pas les mêmes instances que ceux de la source.
+	 *
+	 * @param e			L'écriture lue dans la source.
+	 * @param comptes	Les comptes de la destination, par identifiant.
+	 *
+	 * @throws IOException
+	 * 					Si l'écriture fait référence à un compte inconnu.
+	 */
+	private static Ecriture rebind(Ecriture e, Map<Integer, Compte> comptes)
+			throws IOException {
+		Compte debit = comptes.get(e.debit.getId());
+		Compte credit = comptes.get(e.credit.getId());
+		if (debit == e.debit && credit == e.credit)
+			return e;
+		if (debit == null || credit == null) {
+			throw new IOException(
+					"Compte inconnu dans l'écriture n°" + e.id);
+		}
+		try {
+			return new Ecriture(e.id, e.date, e.pointage, debit, credit,
+					e.montant, e.libelle, e.tiers, e.cheque);
+		} catch (EcritureMissingArgumentException
+				| InconsistentArgumentsException e1) {
+			throw new IOException(
+					"Écriture n°" + e.id + " impossible à reprendre", e1);
+		}
+	}
+
+	/**
+	 * Consigne la progression et le débit dans les logs.
+	 *
+	 * @param total	Le nombre total d'écritures enregistrées.
+	 * @param count	Le nombre d'écritures enregistrées par cette exécution.
+	 * @param start	L'instant de départ, en nanosecondes.
+	 */
+	private static void logProgress(int total, int count, long start) {
+		double seconds = (System.nanoTime() - start) / 1e9;
+		LOGGER.info(String.format("%d écritures migrées (%.0f/s)",
+				total, seconds > 0 ? count / seconds : 0.0));
+	}
+
+	/**
+	 * Lit le fichier de reprise.
+	 *
+	 * @return	Les propriétés enregistrées, ou <code>null</code> s'il n'y a pas
+	 * 			de migration à reprendre entre la même source et la même
+	 * 			destination.
+	 *
+	 * @throws IOException
+	 */
+	private Properties readCheckpoint() throws IOException {
+		if (checkpoint == null || !checkpoint.exists())
+			return null;
+
+		Properties state = new Properties();
+		try (InputStream in = new FileInputStream(checkpoint)) {
+			state.load(in);
+		}
+		if (!Objects.equals(state.getProperty(SOURCE_KEY), nameOf(source))
+				|| !Objects.equals(state.getProperty(DESTINATION_KEY),
+						nameOf(destination))) {
+			LOGGER.warning("Le fichier de reprise concerne une autre "
+					+ "migration : il est ignoré");
+			return null;
+		}
+		return state;
+	}
+
+	/**
+	 * Met à jour le fichier de reprise, s'il y en a un.
+	 *
+	 * @param ecritures	Le nombre d'écritures enregistrées.
+	 *
+	 * @throws IOException
+	 */
+	private void writeCheckpoint(int ecritures) throws IOException {
+		if (checkpoint == null)
+			return;
+
+		Properties state = new Properties();
+		state.setProperty(SOURCE_KEY, nameOf(source));
+		state.setProperty(DESTINATION_KEY, nameOf(destination));
+		state.setProperty(ECRITURES_KEY, Integer.toString(ecritures));
+		try (OutputStream out = new FileOutputStream(checkpoint)) {
+			state.store(out, "Reprise de migration");
+		}
+	}
+
+	/**
+	 * Renvoie le nom complet d'une source, ou à défaut son nom.
+	 */
+	private static String nameOf(CacheableDAOFactory dao) {
+		String name = dao.getSourceFullName();
+		if (name == null)
+			name = dao.getSource();
+		return (name == null) ? "" : name;
+	}
+
+	/**
+	 * Compare les données de deux sources.
+	 * <p>
+	 * Les nombres de comptes, d'écritures et d'opérations permanentes doivent
+	 * être égaux, ainsi que le solde de chaque compte (total des crédits moins
+	 * total des débits).
+	 * <p>
+	 * Une archive CSV n'est lue qu'à l'ouverture : pour vérifier une
+	 * destination de ce type après une migration, il faut l'ouvrir de
+	 * nouveau.
+	 *
+	 * @param source		La source de la migration.
+	 * @param destination	La destination de la migration.
+	 *
+	 * @return	Les différences constatées. La liste est vide si les données
+	 * 			sont cohérentes.
+	 *
+	 * @throws IOException
+	 */
+	public static List<String> verify(CacheableDAOFactory source,
+			CacheableDAOFactory destination) throws IOException {
+		Totals expected = new Totals(source);
+		Totals actual = new Totals(destination);
+
+		List<String> differences = new ArrayList<>();
+		compare(differences, "comptes", expected.comptes, actual.comptes);
+		compare(differences, "écritures",
+				expected.ecritures, actual.ecritures);
+		compare(differences, "opérations permanentes",
+				expected.permanents, actual.permanents);
+
+		Map<Integer, BigDecimal> soldes = new TreeMap<>(expected.soldes);
+		for (Integer id : actual.soldes.keySet())
+			soldes.putIfAbsent(id, BigDecimal.ZERO);
+		for (Map.Entry<Integer, BigDecimal> entry : soldes.entrySet()) {
+			BigDecimal attendu = entry.getValue();
+			BigDecimal obtenu =
+					actual.soldes.getOrDefault(entry.getKey(), BigDecimal.ZERO);
+			if (attendu.compareTo(obtenu) != 0) {
+				differences.add(String.format(
+						"Solde du compte n°%d : %s dans la source, "
+						+ "%s dans la destination",
+						entry.getKey(), attendu, obtenu));
+			}
+		}
+
+		for (String difference : differences)
+			LOGGER.warning(difference);
+		return differences;
+	}
+
+	/**
+	 * Ajoute une différence si deux nombres ne sont pas égaux.
+	 */
+	private static void compare(List<String> differences, String what,
+			int expected, int actual) {
+		if (expected != actual) {
+			differences.add(String.format(
+					"Nombre de %s : %d dans la source, %d dans la destination",
+					what, expected, actual));
+		}
+	}
+
+	/**
+	 * Les nombres d'éléments et les soldes d'une source de données.
+	 */
+	private static class Totals {
+
+		/**
+		 * Le nombre de comptes.
+		 */
+		private final int comptes;
+
+		/**
+		 * Le nombre d'écritures.
+		 */
+		private int ecritures;
+
+		/**
+		 * Le nombre d'opérations permanentes.
+		 */
+		private final int permanents;
+
+		/**
+		 * Le solde de chaque compte mouvementé, par identifiant.
+		 */
+		private final Map<Integer, BigDecimal> soldes = new HashMap<>();
+
+		/**
+		 * Lit les totaux d'une source de données.
+		 * <p>
+		 * Les écritures sont parcourues sans être gardées en mémoire.
+		 *
+		 * @throws IOException
+		 */
+		private Totals(CacheableDAOFactory dao) throws IOException {
+			CacheCompteDAO cDAO = new CacheCompteDAO(dao.getComptes());
+			comptes = cDAO.getAll().size();
+			permanents = new CachePermanentDAO(dao, cDAO).getAll().size();
+
+			Iterator<Ecriture> it = dao.getEcritures();
+			while (it.hasNext()) {
+				Ecriture e = it.next();
+				ecritures++;
+				soldes.merge(e.credit.getId(), e.montant, BigDecimal::add);
+				soldes.merge(e.debit.getId(), e.montant.negate(),
+						BigDecimal::add);
+			}
+		}
+	}
+
+	/**
+	 * Une source de données servant à construire le cache de la migration.
+	 * <p>
+	 * Les comptes et les opérations permanentes sont lus dans la source
+	 * spécifiée. Les écritures n'y sont lues qu'en cas de reprise : sinon,
+	 * elles sont ajoutées au fil de la migration. Les autres données sont
+	 * toujours lues dans la source de la migration, et les sauvegardes sont
+	 * faites dans sa destination.
+	 * <p>
+	 * La fermeture est sans effet, car <code>CacheDAOFactory</code> ferme sa
+	 * source dès la fin du chargement alors que la destination doit rester
+	 * ouverte pour les sauvegardes.
+	 */
+	private static class MigrationDAO implements CacheableDAOFactory {
+
+		/**
+		 * La source de données des comptes et des opérations permanentes.
+		 */
+		private final CacheableDAOFactory structure;
+
+		/**
+		 * Indique si les écritures doivent être lues dans
+		 * <code>structure</code>.
+		 */
+		private final boolean ecritures;
+
+		/**
+		 * La source de la migration.
+		 */
+		private final CacheableDAOFactory source;
+
+		/**
+		 * La destination de la migration.
+		 */
+		private final CacheableDAOFactory destination;
+
+		private MigrationDAO(CacheableDAOFactory structure, boolean ecritures,
+				CacheableDAOFactory source, CacheableDAOFactory destination) {
+			this.structure = structure;
+			this.ecritures = ecritures;
+			this.source = source;
+			this.destination = destination;
+		}
+
+		/**
+		 * Renvoie les banques de la source, ou aucune banque si elle ne sait
+		 * pas les lire.
+		 */
+		@Override
+		public Iterator<Banque> getBanques() throws IOException {
+			Iterator<Banque> banques = source.getBanques();
+			return (banques == null) ? Collections.emptyIterator() : banques;
+		}
+
+		@Override
+		public Iterator<Compte> getComptes() throws IOException {
+			return structure.getComptes();
+		}
+
+		@Override
+		public Iterator<Ecriture> getEcritures() throws IOException {
+			return ecritures
+					? structure.getEcritures() : Collections.emptyIterator();
+		}
+
+		@Override
+		public Iterator<Permanent> getPermanents(CachePermanentDAO cache)
+				throws IOException {
+			return structure.getPermanents(cache);
+		}
+
+		@Override
+		public Iterator<Solde> getHistorique() throws IOException {
+			return source.getHistorique();
+		}
+
+		@Override
+		public Iterator<Solde> getSoldesAVue() throws IOException {
+			return source.getSoldesAVue();
+		}
+
+		@Override
+		public Iterator<Solde> getMoyennes() throws IOException {
+			return source.getMoyennes();
+		}
+
+		/**
+		 * Renvoie les propriétés de la source, ou des propriétés vides si
+		 * elle ne sait pas les lire.
+		 */
+		@Override
+		public CacheablePropertiesDAO getProperties() throws IOException {
+			CacheablePropertiesDAO props = source.getProperties();
+			return (props == null) ? Collections::emptyMap : props;
+		}
+
+		@Override
+		public void save(CacheDAOFactory cache) throws IOException {
+			destination.save(cache);
+		}
+
+		@Override
+		public String getName() {
+			return destination.getName();
+		}
+
+		@Override
+		public String getSource() {
+			return destination.getSource();
+		}
+
+		@Override
+		public String getSourceFullName() {
+			return destination.getSourceFullName();
+		}
+
+		@Override
+		public boolean canBeSaved() {
+			return destination.canBeSaved();
+		}
+
+		/**
+		 * Aucune implémentation : les sources sont fermées par l'appelant de
+		 * la migration.
+		 */
+		@Override
+		public void close() {
+		}
+	}
+}
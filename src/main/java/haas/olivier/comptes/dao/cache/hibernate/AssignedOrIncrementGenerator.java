@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.cache.hibernate;
+
+import java.io.Serializable;
+
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Un générateur d'identifiants qui conserve l'identifiant déjà attribué à un
+ * objet, et attribue aux objets qui n'en ont pas le plus grand identifiant
+ * connu plus un.
+ * <p>
+ * Les couches de cache attribuent elles-mêmes les identifiants des comptes,
+ * des écritures et des opérations permanentes, et les autres sources de
+ * données les conservent. Sans ce générateur, Hibernate attribuerait un
+ * nouvel identifiant à chaque objet inconnu de la base, ce qui romprait le
+ * lien avec le cache et dupliquerait les objets à chaque fusion.
+ * <p>
+ * Une séquence ne conviendrait pas : après une migration, elle attribuerait
+ * des identifiants déjà utilisés. Le plus grand identifiant est donc lu dans
+ * la base lors de la première génération, puis tenu à jour en mémoire avec
+ * les identifiants générés ou déjà attribués. Comme la stratégie
+ * <code>increment</code> d'Hibernate, ce générateur suppose que la base n'est
+ * pas modifiée en même temps par une autre application.
+ * <p>
+ * Les entités désignent ce générateur par son nom qualifié,
+ * <code>haas.olivier.comptes.dao.cache.hibernate.AssignedOrIncrementGenerator</code>,
+ * dans leurs annotations <code>@GenericGenerator</code>.
+ *
+ * @author Olivier HAAS
+ */
+public class AssignedOrIncrementGenerator implements IdentifierGenerator {
+
+	/**
+	 * Le plus grand identifiant connu.
+	 */
+	private long max = 0;
+
+	/**
+	 * Indique si le plus grand identifiant a déjà été lu dans la base.
+	 */
+	private boolean initialized = false;
+
+	@Override
+	public synchronized Serializable generate(
+			SharedSessionContractImplementor session, Object object)
+					throws HibernateException {
+		EntityPersister persister = session.getEntityPersister(null, object);
+		Serializable id = persister.getIdentifier(object, session);
+		if (id != null) {
+			max = Math.max(max, ((Number) id).longValue());
+			return id;
+		}
+
+		if (!initialized) {
+			// Ne pas écrire les modifications en attente au milieu d'un ajout
+			Number last = (Number) session.createQuery("select max(e."
+					+ persister.getIdentifierPropertyName() + ") from "
+					+ persister.getEntityName() + " e")
+					.setHibernateFlushMode(FlushMode.MANUAL)
+					.uniqueResult();
+			if (last != null)
+				max = Math.max(max, last.longValue());
+			initialized = true;
+		}
+		return Math.toIntExact(++max);
+	}
+}
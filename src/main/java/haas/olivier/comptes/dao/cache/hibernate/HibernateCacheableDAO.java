@@ -1,25 +1,39 @@
 package haas.olivier.comptes.dao.cache.hibernate;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.Persistence;
 import javax.persistence.PersistenceUnit;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.annotations.QueryHints;
+import org.hibernate.stat.Statistics;
+
 import haas.olivier.comptes.Banque;
 import haas.olivier.comptes.Compte;
 import haas.olivier.comptes.Ecriture;
 import haas.olivier.comptes.Permanent;
+import haas.olivier.comptes.dao.EcritureDAO;
 import haas.olivier.comptes.dao.cache.CacheDAOFactory;
 import haas.olivier.comptes.dao.cache.CachePermanentDAO;
 import haas.olivier.comptes.dao.cache.CacheableDAOFactory;
+import haas.olivier.comptes.dao.cache.ChangeLog;
 import haas.olivier.comptes.dao.cache.CacheablePropertiesDAO;
 import haas.olivier.comptes.dao.cache.Solde;
+import haas.olivier.util.Month;
 
 /**
  * HibernateDAO.java
@@ -29,6 +43,26 @@ import haas.olivier.comptes.dao.cache.Solde;
  */
 public class HibernateCacheableDAO implements CacheableDAOFactory {
 
+	/**
+	 * Le nombre de lignes lues à la fois dans les résultats des requêtes.
+	 */
+	private static final int FETCH_SIZE = 500;
+	
+	/**
+	 * Le nom de l'indication JPA désignant le graphe des entités à charger.
+	 */
+	private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+	
+	/**
+	 * Le nombre d'instructions envoyées à la fois lors des sauvegardes.
+	 */
+	private static final int BATCH_SIZE = 50;
+	
+	/**
+	 * Le nombre maximal d'identifiants par requête.
+	 */
+	private static final int DELETE_CHUNK_SIZE = 1000;
+
 	/**
 	 * Contexte JPA généré dynamiquement.
 	 */
@@ -40,6 +74,16 @@ public class HibernateCacheableDAO implements CacheableDAOFactory {
 	 */
 	private final EntityManager entityManager;
 	
+	/**
+	 * L'objet de calcul des suivis.
+	 */
+	private final SuiviAggregator suivis;
+	
+	/**
+	 * Drapeau indiquant qu'une série de sauvegardes partielles est en cours.
+	 */
+	private boolean batch = false;
+	
 	/**
 	 * Le type de modèle, pour affichage utilisateur.
 	 */
@@ -65,10 +109,15 @@ public class HibernateCacheableDAO implements CacheableDAOFactory {
 		Map<String, String> properties = new HashMap<>();
 		properties.put("javax.persistence.jdbc.url", url);
 		properties.put("javax.persistence.jdbc.driver", driver);
+		properties.put("hibernate.jdbc.batch_size",
+				Integer.toString(BATCH_SIZE));
+		properties.put("hibernate.order_inserts", "true");
+		properties.put("hibernate.order_updates", "true");
 		entityManagerFactory = Persistence.createEntityManagerFactory(
 				"haas.olivier.comptes", properties);
 		entityManager = entityManagerFactory.createEntityManager();
 		entityManager.getTransaction().begin();
+		suivis = new SuiviAggregator(entityManager);
 	}
 	
 	@Override
@@ -76,44 +125,64 @@ public class HibernateCacheableDAO implements CacheableDAOFactory {
 		return null;    // DOCUMENTEZ_MOI Raccord de méthode auto-généré
 	}
 
+	/**
+	 * Renvoie tous les comptes, chargés avec leurs états en une seule
+	 * requête.
+	 */
 	@Override
 	public Iterator<Compte> getComptes() throws IOException {
 		return entityManager.createQuery(
-				"select c from Compte c", Compte.class)
+				"select c from Compte c left join fetch c.state", Compte.class)
 				.getResultList()
 				.iterator();
 	}
 
+	/**
+	 * Renvoie toutes les écritures, lues par paquets au fil du parcours au
+	 * lieu d'être chargées d'un bloc.
+	 * <p>
+	 * Les comptes et leurs états sont lus par la même requête.
+	 */
 	@Override
 	public Iterator<Ecriture> getEcritures() throws IOException {
 		return entityManager.createQuery(
 				"select e from Ecriture e", Ecriture.class)
-				.getResultList()
+				.setHint(FETCH_GRAPH,
+						entityManager.getEntityGraph(Ecriture.GRAPHE_COMPTES))
+				.setHint(QueryHints.FETCH_SIZE, FETCH_SIZE)
+				.getResultStream()
 				.iterator();
 	}
 
+	/**
+	 * Renvoie toutes les opérations permanentes, chargées avec leurs
+	 * plannings, leurs comptes et leurs états en une seule requête.
+	 */
 	@Override
 	public Iterator<Permanent> getPermanents(CachePermanentDAO cache)
 			throws IOException {
 		return entityManager.createQuery(
-				"select p from Permanent p", Permanent.class)
+				"select distinct p from Permanent p", Permanent.class)
+				.setHint(FETCH_GRAPH,
+						entityManager.getEntityGraph(Permanent.GRAPHE_COMPLET))
+				.setHint(QueryHints.PASS_DISTINCT_THROUGH, false)
 				.getResultList()
 				.iterator();
 	}
 
 	@Override
 	public Iterator<Solde> getHistorique() throws IOException {
-		return null;    // DOCUMENTEZ_MOI Raccord de méthode auto-généré
+		return suivis.getHistorique();
 	}
 
 	@Override
 	public Iterator<Solde> getSoldesAVue() throws IOException {
-		return null;    // DOCUMENTEZ_MOI Raccord de méthode auto-généré
+		return suivis.getSoldesAVue();
 	}
 
 	@Override
 	public Iterator<Solde> getMoyennes() throws IOException {
-		return null;    // DOCUMENTEZ_MOI Raccord de méthode auto-généré
+		return suivis.getMoyennes();
 	}
 
 	/** 
@@ -126,13 +195,248 @@ public class HibernateCacheableDAO implements CacheableDAOFactory {
 		return null;    // DOCUMENTEZ_MOI Raccord de méthode auto-généré
 	}
 
+	/**
+	 * Enregistre les données du cache.
+	 * <p>
+	 * Si le cache tient un journal complet des modifications depuis la
+	 * dernière sauvegarde, seules les données modifiées sont enregistrées.
+	 * Sinon, toutes les données sont comparées au contenu de la base.
+	 * <p>
+	 * Les suivis ne sont pas repris du cache : ils sont recalculés par la
+	 * base de données à partir du premier mois concerné par les
+	 * modifications, sauf pendant une série de sauvegardes partielles.
+	 */
 	@Override
 	public void save(CacheDAOFactory cache) throws IOException {
-		savePojos(cache.getCompteDAO().getAll(), getComptes());
-		savePojos(cache.getEcritureDAO().getAll(), getEcritures());
-		savePojos(cache.getPermanentDAO().getAll(), getPermanents(null));
+		ChangeLog compteChanges = cache.getCompteChanges();
+		ChangeLog ecritureChanges = cache.getEcritureChanges();
+		ChangeLog permanentChanges = cache.getPermanentChanges();
+		
+		if (isComplete(compteChanges) && isComplete(ecritureChanges)
+				&& isComplete(permanentChanges)) {
+			
+			// Tout recalculer si des comptes ont été ajoutés ou supprimés
+			boolean all = !compteChanges.getAdded().isEmpty()
+					|| !compteChanges.getRemoved().isEmpty();
+			Month debut = (all || batch) ? null
+					: getFirstMonth(cache.getEcritureDAO(), ecritureChanges);
+			
+			saveChanges(cache, compteChanges, ecritureChanges,
+					permanentChanges);
+			if (!batch && (all || debut != null))
+				suivis.refresh(debut, cache.getCompteDAO().getAll());
+			
+		} else if (batch) {
+			throw new IOException("Sauvegarde partielle impossible : "
+					+ "les données ont été effacées");
+			
+		} else {
+			savePojos(cache.getCompteDAO().getAll(), getComptes());
+			savePojos(cache.getEcritureDAO().getAll(), getEcritures());
+			savePojos(cache.getPermanentDAO().getAll(), getPermanents(null));
+			suivis.refresh(null, cache.getCompteDAO().getAll());
+		}
 		entityManager.getTransaction().commit();
 		entityManager.getTransaction().begin();
+		
+		// Ne pas garder en mémoire les écritures déjà enregistrées
+		if (batch)
+			entityManager.clear();
+	}
+	
+	/**
+	 * Commence une série de sauvegardes partielles.
+	 * 
+	 * @return	<code>true</code>.
+	 */
+	@Override
+	public boolean beginBatch() {
+		batch = true;
+		return true;
+	}
+	
+	/**
+	 * Termine la série de sauvegardes partielles et recalcule tous les
+	 * suivis.
+	 */
+	@Override
+	public void endBatch(CacheDAOFactory cache) throws IOException {
+		batch = false;
+		suivis.refresh(null, cache.getCompteDAO().getAll());
+		entityManager.getTransaction().commit();
+		entityManager.getTransaction().begin();
+	}
+	
+	/**
+	 * Indique si un journal des modifications est utilisable.
+	 * 
+	 * @param changes	Le journal, ou <code>null</code> si le cache n'en
+	 * 					fournit pas.
+	 */
+	private static boolean isComplete(ChangeLog changes) {
+		return changes != null && changes.isComplete();
+	}
+	
+	/**
+	 * Renvoie le premier mois concerné par des modifications d'écritures.
+	 * <p>
+	 * Cette méthode doit être appelée avant d'enregistrer les modifications,
+	 * puisqu'elle tient compte des dates des écritures avant modification ou
+	 * suppression.
+	 * 
+	 * @param eDAO		L'objet d'accès aux écritures du cache.
+	 * @param changes	Le journal des écritures.
+	 * 
+	 * @return			Le premier mois concerné, ou <code>null</code> si
+	 * 					aucune écriture n'a été modifiée.
+	 * 
+	 * @throws IOException
+	 */
+	private Month getFirstMonth(EcritureDAO eDAO, ChangeLog changes)
+			throws IOException {
+		Date[] first = new Date[1];
+		Consumer<Date> min = date -> {
+			if (date != null && (first[0] == null || date.before(first[0])))
+				first[0] = date;
+		};
+		
+		// Dates des nouvelles versions
+		Set<Integer> nouvelles = new LinkedHashSet<>(changes.getAdded());
+		nouvelles.addAll(changes.getUpdated());
+		for (Integer id : nouvelles) {
+			Ecriture e = eDAO.get(id);
+			if (e != null)
+				min.accept(e.date);
+		}
+		
+		// Dates des anciennes versions, encore dans la base
+		Set<Integer> anciennes = new LinkedHashSet<>(changes.getUpdated());
+		anciennes.addAll(changes.getRemoved());
+		forEachChunk(anciennes, chunk -> min.accept(entityManager.createQuery(
+				"select min(e.date) from Ecriture e where e.id in :ids",
+				Date.class)
+				.setParameter("ids", chunk)
+				.getSingleResult()));
+		
+		return first[0] == null ? null : Month.getInstance(first[0]);
+	}
+	
+	/**
+	 * Enregistre les modifications notées dans les journaux, sans relire le
+	 * contenu de la base.
+	 * <p>
+	 * Les comptes et les opérations permanentes, peu nombreux et modifiés
+	 * directement par l'application, sont tous rattachés au contexte : Hibernate
+	 * n'écrit que ceux qui ont réellement changé. Les écritures, elles, ne sont
+	 * enregistrées que si le journal les signale.<br>
+	 * Les instructions sont regroupées par lots JDBC, et les écritures
+	 * supprimées le sont par des requêtes groupées.
+	 * 
+	 * @param cache				Le cache à sauvegarder.
+	 * @param compteChanges		Le journal des comptes.
+	 * @param ecritureChanges	Le journal des écritures.
+	 * @param permanentChanges	Le journal des opérations permanentes.
+	 */
+	private void saveChanges(CacheDAOFactory cache, ChangeLog compteChanges,
+			ChangeLog ecritureChanges, ChangeLog permanentChanges)
+					throws IOException {
+		
+		// Ajouts et modifications, dans l'ordre des dépendances
+		for (Compte compte : cache.getCompteDAO().getAll())
+			attach(compte, compte.getId());
+		
+		EcritureDAO eDAO = cache.getEcritureDAO();
+		Set<Integer> ecritureIds =
+				new LinkedHashSet<>(ecritureChanges.getAdded());
+		ecritureIds.addAll(ecritureChanges.getUpdated());
+		for (Integer id : ecritureIds) {
+			Ecriture e = eDAO.get(id);
+			if (e != null)
+				attach(e, e.id);
+		}
+		
+		for (Permanent p : cache.getPermanentDAO().getAll())
+			attach(p, p.getId());
+		entityManager.flush();
+		
+		// Suppressions, dans l'ordre inverse des dépendances
+		boolean bulk = delete("Ecriture", ecritureChanges.getRemoved());
+		for (Integer id : permanentChanges.getRemoved())
+			remove(Permanent.class, id);
+		for (Integer id : compteChanges.getRemoved())
+			remove(Compte.class, id);
+		entityManager.flush();
+		
+		/* Les suppressions groupées ne mettent pas à jour le contexte, qui
+		 * peut encore contenir les écritures supprimées.
+		 */
+		if (bulk)
+			entityManager.clear();
+	}
+	
+	/**
+	 * Rattache un POJO au contexte s'il ne l'est pas déjà.
+	 * 
+	 * @param pojo	Le POJO.
+	 * @param id	L'identifiant du POJO.
+	 */
+	private void attach(Object pojo, Integer id) {
+		if (entityManager.contains(pojo)) {
+			return;
+		} else if (id == null) {
+			entityManager.persist(pojo);
+		} else {
+			entityManager.merge(pojo);
+		}
+	}
+	
+	/**
+	 * Supprime un POJO de la base, avec les objets qui en dépendent.
+	 * 
+	 * @param type	La classe du POJO.
+	 * @param id	L'identifiant du POJO.
+	 */
+	private <P> void remove(Class<P> type, Integer id) {
+		P pojo = entityManager.find(type, id);
+		if (pojo != null)
+			entityManager.remove(pojo);
+	}
+	
+	/**
+	 * Supprime des entités de la base par des requêtes groupées.
+	 * 
+	 * @param entity	Le nom de l'entité.
+	 * @param ids		Les identifiants des entités à supprimer.
+	 * 
+	 * @return			<code>true</code> si au moins une requête a été
+	 * 					exécutée.
+	 */
+	private boolean delete(String entity, Collection<Integer> ids) {
+		forEachChunk(ids, chunk -> entityManager.createQuery(
+				"delete from " + entity + " x where x.id in :ids")
+				.setParameter("ids", chunk)
+				.executeUpdate());
+		return !ids.isEmpty();
+	}
+	
+	/**
+	 * Découpe des identifiants en paquets, pour limiter le nombre de
+	 * paramètres de chaque requête.
+	 * 
+	 * @param ids		Les identifiants.
+	 * @param action	L'action à exécuter sur chaque paquet.
+	 */
+	private static void forEachChunk(Collection<Integer> ids,
+			Consumer<List<Integer>> action) {
+		List<Integer> chunk = new ArrayList<>(DELETE_CHUNK_SIZE);
+		Iterator<Integer> it = ids.iterator();
+		while (it.hasNext()) {
+			chunk.add(it.next());
+			if (chunk.size() == DELETE_CHUNK_SIZE || !it.hasNext()) {
+				action.accept(chunk);
+				chunk = new ArrayList<>(DELETE_CHUNK_SIZE);
+			}
+		}
 	}
 	
 	/**
@@ -184,21 +488,38 @@ public class HibernateCacheableDAO implements CacheableDAOFactory {
 	
 	/**
 	 * Rétablit l'état des POJOs lors du dernier enregistrement.
+	 * <p>
+	 * Le contexte et le cache de second niveau sont vidés, puis les POJOs
+	 * sont relus avec une requête par type d'entité.
 	 */
 	void reload() throws IOException {
 		entityManager.clear();
-		refreshPojos(getComptes());
-		refreshPojos(getEcritures());
+		entityManagerFactory.getCache().evictAll();
+		load(getComptes());
+		load(getEcritures());
+		load(getPermanents(null));
 	}
 	
 	/**
-	 * Rétablit l'état des POJOs lors du dernier enregistrement.
+	 * Parcourt des POJOs pour les charger dans le contexte.
 	 * 
-	 * @param pojosIterator	Un itérateur des POJOs à rafraîchir.
+	 * @param pojosIterator	Un itérateur des POJOs à charger.
 	 */
-	private <P> void refreshPojos(Iterator<P> pojosIterator) {
+	private static void load(Iterator<?> pojosIterator) {
 		while (pojosIterator.hasNext())
-			entityManager.refresh(pojosIterator.next());
+			pojosIterator.next();
+	}
+
+	/**
+	 * Renvoie les statistiques d'Hibernate.
+	 * <p>
+	 * Elles ne sont tenues que si la propriété
+	 * <code>hibernate.generate_statistics</code> est activée, ou après un
+	 * appel à {@link Statistics#setStatisticsEnabled(boolean)}.
+	 */
+	Statistics getStatistics() {
+		return entityManagerFactory.unwrap(SessionFactory.class)
+				.getStatistics();
 	}
 
 	@Override
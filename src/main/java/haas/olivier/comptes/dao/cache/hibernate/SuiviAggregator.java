@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.cache.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.dao.cache.Solde;
+import haas.olivier.comptes.dao.cache.hibernate.SuiviEntry.Serie;
+import haas.olivier.util.Month;
+
+/**
+ * Recalcule la table des suivis à partir des écritures, au moyen de requêtes
+ * groupées exécutées par la base de données.
+ * <p>
+ * Les calculs reproduisent ceux de
+ * {@link haas.olivier.comptes.ctrl.EcritureController#updateSuivis(Month)} :
+ * <ul>
+ * <li>	l'historique d'un compte bancaire est son solde cumulé à la fin de
+ * 		chaque mois mouvementé ;
+ * <li>	l'historique d'un compte budgétaire est le total des mouvements du
+ * 		mois, de signe inversé ;
+ * <li>	le solde à vue d'un compte bancaire est son solde cumulé par mois de
+ * 		pointage ;
+ * <li>	le suivi de l'épargne retrace, sous l'identifiant <code>-1</code>,
+ * 		les versements et prélèvements entre comptes d'épargne et autres
+ * 		comptes ;
+ * <li>	la moyenne d'un compte budgétaire est la moyenne de son historique sur
+ * 		12 mois glissants, jusqu'au mois en cours. Seules les moyennes non
+ * 		nulles sont retenues.
+ * </ul>
+ * Les cumuls sont obtenus par une jointure de la table des totaux mensuels
+ * avec elle-même, et les moyennes en associant chaque mois d'historique aux
+ * 12 mois dont il fait partie de la moyenne.
+ * <p>
+ * Les suivis calculés sont enregistrés dans la table des suivis, d'où ils
+ * peuvent être relus sans refaire les calculs.
+ *
+ * @author Olivier HAAS
+ */
+public class SuiviAggregator {
+
+	/**
+	 * Durée de la période à retenir pour les moyennes glissantes (en mois).
+	 */
+	private static final int DUREE = 12;
+
+	/**
+	 * Expression de la clé numérique d'un mois à partir d'une date.
+	 */
+	private static final String MOIS = "year(%1$s) * 12 + month(%1$s) - 1";
+
+	/**
+	 * Les mouvements de chaque compte, par mois d'écriture ou de pointage.
+	 * Le paramètre <code>%s</code> désigne la colonne de date utilisée.
+	 */
+	private static final String MOUVEMENTS =
+			"m (compte, mois, delta) as ("
+			+ " select e.credit_id, " + String.format(MOIS, "e.%1$s")
+			+ ", e.montant from Ecriture e where e.%1$s is not null"
+			+ " union all"
+			+ " select e.debit_id, " + String.format(MOIS, "e.%1$s")
+			+ ", -e.montant from Ecriture e where e.%1$s is not null),"
+			+ " g (compte, mois, total) as ("
+			+ " select compte, mois, sum(delta) from m group by compte, mois)";
+
+	/**
+	 * Requête de calcul des soldes cumulés des comptes bancaires.
+	 */
+	private static final String CUMULS =
+			"insert into suivi (serie, compte, mois, montant) with "
+			+ MOUVEMENTS
+			+ " select ?1, a.compte, a.mois, sum(b.total)"
+			+ " from g a join g b on b.compte = a.compte and b.mois <= a.mois"
+			+ " where a.mois >= ?2 and a.compte in (?3)"
+			+ " group by a.compte, a.mois";
+
+	/**
+	 * Requête de calcul des historiques des comptes budgétaires.
+	 */
+	private static final String BUDGETS =
+			"insert into suivi (serie, compte, mois, montant) with "
+			+ String.format(MOUVEMENTS, "date")
+			+ " select ?1, compte, mois, -total from g"
+			+ " where mois >= ?2 and compte in (?3)";
+
+	/**
+	 * Requête de calcul de l'historique du suivi de l'épargne.
+	 */
+	private static final String EPARGNE =
+			"insert into suivi (serie, compte, mois, montant)"
+			+ " select ?1, -1, " + String.format(MOIS, "e.date") + ","
+			+ " sum(case when e.credit_id in (?3) then e.montant"
+			+ " else -e.montant end)"
+			+ " from Ecriture e"
+			+ " where " + String.format(MOIS, "e.date") + " >= ?2"
+			+ " and ((e.credit_id in (?3) and e.debit_id not in (?3))"
+			+ " or (e.debit_id in (?3) and e.credit_id not in (?3)))"
+			+ " group by " + String.format(MOIS, "e.date");
+
+	/**
+	 * Requête de calcul des moyennes glissantes.
+	 */
+	private static final String MOYENNES;
+
+	static {
+		StringBuilder decalages = new StringBuilder();
+		for (int i = 0; i < DUREE; i++)
+			decalages.append(i == 0 ? "" : ", ").append('(').append(i)
+			.append(')');
+		String moyenne = "round(cast(sum(h.montant) as decimal(30,10)) / "
+			+ DUREE + ", 2)";
+		MOYENNES = "insert into suivi (serie, compte, mois, montant)"
+			+ " select ?1, h.compte, h.mois + n.n, " + moyenne
+			+ " from suivi h cross join (values " + decalages + ") as n (n)"
+			+ " where h.serie = ?4 and h.compte in (?3)"
+			+ " and h.mois + n.n between ?2 and ?5"
+			+ " group by h.compte, h.mois + n.n"
+			+ " having " + moyenne + " <> 0";
+	}
+
+	/**
+	 * La session JPA.
+	 */
+	private final EntityManager entityManager;
+
+	/**
+	 * Construit un objet de calcul des suivis.
+	 *
+	 * @param entityManager	La session JPA.
+	 */
+	public SuiviAggregator(EntityManager entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	/**
+	 * Recalcule tous les suivis à partir du mois spécifié.
+	 * <p>
+	 * Les suivis antérieurs ne sont pas modifiés.
+	 *
+	 * @param debut		Le premier mois à recalculer, ou <code>null</code>
+	 * 					pour tout recalculer.
+	 * @param comptes	Tous les comptes.
+	 */
+	public void refresh(Month debut, Collection<Compte> comptes) {
+		int from = (debut == null) ? Integer.MIN_VALUE
+				: SuiviEntry.keyOf(debut);
+
+		// Écrire les modifications en attente, et obtenir les identifiants
+		entityManager.flush();
+
+		// Classer les comptes
+		List<Integer> bancaires = new ArrayList<>();
+		List<Integer> budgets = new ArrayList<>();
+		List<Integer> epargnes = new ArrayList<>();
+		for (Compte compte : comptes) {
+			(compte.getType().isBancaire() ? bancaires : budgets)
+			.add(compte.getId());
+			if (compte.isEpargne())
+				epargnes.add(compte.getId());
+		}
+
+		entityManager.createQuery(
+				"delete from SuiviEntry s where s.mois >= ?1")
+		.setParameter(1, from)
+		.executeUpdate();
+
+		execute(String.format(CUMULS, "date"), Serie.HISTORIQUE, from,
+				bancaires);
+		execute(String.format(CUMULS, "pointage"), Serie.SOLDE_A_VUE, from,
+				bancaires);
+		execute(BUDGETS, Serie.HISTORIQUE, from, budgets);
+		execute(EPARGNE, Serie.HISTORIQUE, from, epargnes);
+
+		// Les moyennes portent aussi sur le suivi de l'épargne
+		budgets.add(Compte.COMPTE_EPARGNE.getId());
+		Query query = entityManager.createNativeQuery(MOYENNES);
+		bind(query, Serie.MOYENNE, from, budgets);
+		query.setParameter(4, Serie.HISTORIQUE.name())
+		.setParameter(5, SuiviEntry.keyOf(Month.getInstance()))
+		.executeUpdate();
+	}
+
+	/**
+	 * Exécute une requête de calcul, sauf si elle ne porte sur aucun compte.
+	 *
+	 * @param sql		La requête.
+	 * @param serie		Le suivi calculé.
+	 * @param from		La clé du premier mois à calculer.
+	 * @param comptes	Les identifiants des comptes concernés.
+	 */
+	private void execute(String sql, Serie serie, int from,
+			List<Integer> comptes) {
+		if (comptes.isEmpty())
+			return;
+		Query query = entityManager.createNativeQuery(sql);
+		bind(query, serie, from, comptes);
+		query.executeUpdate();
+	}
+
+	/**
+	 * Renseigne les paramètres communs aux requêtes de calcul.
+	 */
+	private static void bind(Query query, Serie serie, int from,
+			List<Integer> comptes) {
+		query.setParameter(1, serie.name())
+		.setParameter(2, from)
+		.setParameter(3, comptes);
+	}
+
+	/**
+	 * Renvoie l'historique des comptes, tel que calculé lors du dernier
+	 * recalcul.
+	 */
+	public Iterator<Solde> getHistorique() {
+		return read(Serie.HISTORIQUE);
+	}
+
+	/**
+	 * Renvoie les soldes à vue des comptes, tels que calculés lors du dernier
+	 * recalcul.
+	 */
+	public Iterator<Solde> getSoldesAVue() {
+		return read(Serie.SOLDE_A_VUE);
+	}
+
+	/**
+	 * Renvoie les moyennes des comptes, telles que calculées lors du dernier
+	 * recalcul.
+	 */
+	public Iterator<Solde> getMoyennes() {
+		return read(Serie.MOYENNE);
+	}
+
+	/**
+	 * Renvoie les soldes d'un suivi.
+	 *
+	 * @param serie	Le suivi voulu.
+	 */
+	private Iterator<Solde> read(Serie serie) {
+		List<Solde> soldes = new ArrayList<>();
+		for (SuiviEntry entry : entityManager.createQuery(
+				"select s from SuiviEntry s where s.serie = ?1"
+				+ " order by s.mois, s.compte", SuiviEntry.class)
+				.setParameter(1, serie)
+				.getResultList()) {
+			Compte compte = (entry.getCompte() == Compte.COMPTE_EPARGNE.getId())
+					? Compte.COMPTE_EPARGNE
+					: entityManager.find(Compte.class, entry.getCompte());
+			if (compte != null) {
+				soldes.add(new Solde(
+						entry.getMonth(), compte, entry.getMontant()));
+			}
+		}
+		return soldes.iterator();
+	}
+}
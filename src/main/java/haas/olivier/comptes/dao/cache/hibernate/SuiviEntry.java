@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.cache.hibernate;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Objects;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+
+import haas.olivier.util.Month;
+
+/**
+ * Une ligne de la table des suivis : le montant d'un suivi pour un compte et
+ * un mois.
+ * <p>
+ * Les comptes sont désignés par leur identifiant, et non par une association,
+ * parce que le suivi de l'épargne porte sur un compte virtuel qui n'est pas
+ * enregistré dans la base.<br>
+ * Les mois sont désignés par un entier (année * 12 + mois - 1), ce qui permet
+ * de les comparer et de les décaler directement dans les requêtes.
+ * <p>
+ * Cette table est remplie par des requêtes groupées : voir
+ * {@link SuiviAggregator}.
+ *
+ * @author Olivier HAAS
+ */
+@Entity
+@Table(name = "suivi")
+@IdClass(SuiviEntry.Key.class)
+class SuiviEntry {
+
+	/**
+	 * Les différents suivis.
+	 */
+	enum Serie {
+		HISTORIQUE, SOLDE_A_VUE, MOYENNE;
+	}
+
+	/**
+	 * Renvoie la clé numérique d'un mois.
+	 */
+	static int keyOf(Month month) {
+		return month.getYear() * 12 + month.getNumInYear() - 1;
+	}
+
+	/**
+	 * Renvoie le mois correspondant à une clé numérique.
+	 */
+	static Month monthOf(int key) {
+		return Month.getInstance(Math.floorDiv(key, 12),
+				Math.floorMod(key, 12) + 1);
+	}
+
+	/**
+	 * Le suivi.
+	 */
+	@Id
+	@Enumerated(EnumType.STRING)
+	@Column(name = "serie", length = 20)
+	private Serie serie;
+
+	/**
+	 * L'identifiant du compte.
+	 */
+	@Id
+	@Column(name = "compte")
+	private int compte;
+
+	/**
+	 * La clé numérique du mois.
+	 */
+	@Id
+	@Column(name = "mois")
+	private int mois;
+
+	/**
+	 * Le montant.
+	 */
+	@Column(name = "montant", precision = 19, scale = 2)
+	private BigDecimal montant;
+
+	/**
+	 * Constructeur nécessaire à JPA.
+	 */
+	protected SuiviEntry() {
+	}
+
+	/**
+	 * Renvoie l'identifiant du compte.
+	 */
+	int getCompte() {
+		return compte;
+	}
+
+	/**
+	 * Renvoie le mois.
+	 */
+	Month getMonth() {
+		return monthOf(mois);
+	}
+
+	/**
+	 * Renvoie le montant.
+	 */
+	BigDecimal getMontant() {
+		return montant;
+	}
+
+	/**
+	 * La clé primaire d'une ligne de suivi.
+	 */
+	static class Key implements Serializable {
+		private static final long serialVersionUID = -2470158337146893106L;
+
+		private Serie serie;
+		private int compte;
+		private int mois;
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key key = (Key) o;
+			return serie == key.serie && compte == key.compte
+					&& mois == key.mois;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(serie, compte, mois);
+		}
+	}
+}
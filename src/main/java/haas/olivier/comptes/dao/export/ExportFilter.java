@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.export;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.dao.EcritureDAO;
+import haas.olivier.comptes.dao.SuiviDAO;
+import haas.olivier.comptes.dao.cache.Solde;
+import haas.olivier.util.Month;
+
+/**
+ * Un filtre des écritures et des soldes à exporter.
+ * <p>
+ * Les critères non spécifiés ne filtrent rien. La période est appliquée par
+ * l'objet d'accès aux écritures lui-même, et les autres critères au fil du
+ * parcours : aucune liste intermédiaire n'est constituée.
+ *
+ * @author Olivier HAAS
+ */
+public class ExportFilter implements Predicate<Ecriture> {
+
+	/**
+	 * Le compte dont les mouvements sont retenus, ou <code>null</code>.
+	 */
+	private Compte compte = null;
+
+	/**
+	 * Le premier mois retenu, ou <code>null</code>.
+	 */
+	private Month from = null;
+
+	/**
+	 * Le dernier mois retenu, ou <code>null</code>.
+	 */
+	private Month to = null;
+
+	/**
+	 * <code>true</code> pour ne retenir que les écritures pointées,
+	 * <code>false</code> pour ne retenir que les écritures non pointées, ou
+	 * <code>null</code>.
+	 */
+	private Boolean pointee = null;
+
+	/**
+	 * Le texte recherché dans le libellé ou le tiers, en minuscules, ou
+	 * <code>null</code>.
+	 */
+	private String texte = null;
+
+	/**
+	 * Ne retient que les mouvements d'un compte.
+	 *
+	 * @param compte	Le compte, ou <code>null</code> pour tous les comptes.
+	 *
+	 * @return			Ce filtre.
+	 */
+	public ExportFilter withCompte(Compte compte) {
+		this.compte = compte;
+		return this;
+	}
+
+	/**
+	 * Ne retient qu'une période.
+	 *
+	 * @param from	Le premier mois, ou <code>null</code> pour partir du début.
+	 * @param to	Le dernier mois, ou <code>null</code> pour aller jusqu'à la
+	 * 				fin.
+	 *
+	 * @return		Ce filtre.
+	 */
+	public ExportFilter withPeriode(Month from, Month to) {
+		this.from = from;
+		this.to = to;
+		return this;
+	}
+
+	/**
+	 * Ne retient que les écritures pointées ou non pointées.
+	 *
+	 * @param pointee	<code>true</code> pour les écritures pointées,
+	 * 					<code>false</code> pour les écritures non pointées,
+	 * 					<code>null</code> pour toutes les écritures.
+	 *
+	 * @return			Ce filtre.
+	 */
+	public ExportFilter withPointage(Boolean pointee) {
+		this.pointee = pointee;
+		return this;
+	}
+
+	/**
+	 * Ne retient que les écritures dont le libellé ou le tiers contient un
+	 * texte, sans tenir compte de la casse.
+	 *
+	 * @param texte	Le texte recherché, ou <code>null</code>.
+	 *
+	 * @return		Ce filtre.
+	 */
+	public ExportFilter withTexte(String texte) {
+		this.texte = (texte == null || texte.isEmpty())
+				? null : texte.toLowerCase(Locale.ROOT);
+		return this;
+	}
+
+	/**
+	 * Indique si une écriture satisfait les critères autres que la période.
+	 */
+	@Override
+	public boolean test(Ecriture e) {
+		if (compte != null
+				&& !compte.equals(e.debit) && !compte.equals(e.credit))
+			return false;
+		if (pointee != null && pointee != (e.pointage != null))
+			return false;
+		return texte == null
+				|| contains(e.libelle) || contains(e.tiers);
+	}
+
+	/**
+	 * Indique si un texte contient le texte recherché.
+	 */
+	private boolean contains(String s) {
+		return s != null && s.toLowerCase(Locale.ROOT).contains(texte);
+	}
+
+	/**
+	 * Indique si un solde porte sur le compte et la période retenus.
+	 */
+	public boolean accepts(Solde solde) {
+		return (compte == null || compte.equals(solde.compte))
+				&& (from == null || !solde.month.before(from))
+				&& (to == null || !solde.month.after(to));
+	}
+
+	/**
+	 * Renvoie les écritures retenues, lues au fil de l'eau.
+	 *
+	 * @param eDAO	L'objet d'accès aux écritures.
+	 *
+	 * @throws IOException
+	 */
+	public Stream<Ecriture> select(EcritureDAO eDAO) throws IOException {
+		Iterable<Ecriture> ecritures;
+		if (from != null && to != null) {
+			ecritures = eDAO.getAllBetween(from, to);
+		} else if (from != null) {
+			ecritures = eDAO.getAllSince(from);
+		} else if (to != null) {
+			ecritures = eDAO.getAllTo(to);
+		} else {
+			ecritures = eDAO.getAll();
+		}
+		return StreamSupport.stream(ecritures.spliterator(), false)
+				.filter(this);
+	}
+
+	/**
+	 * Renvoie les soldes retenus d'un suivi, lus au fil de l'eau.
+	 *
+	 * @param suiviDAO	L'objet d'accès au suivi.
+	 */
+	public Stream<Solde> select(SuiviDAO suiviDAO) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+				suiviDAO.getAll(), Spliterator.ORDERED), false)
+				.filter(this::accepts);
+	}
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.export;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import com.csvreader.CsvWriter;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.dao.cache.Solde;
+import haas.olivier.util.Month;
+
+/**
+ * Un flux d'export des écritures et des soldes au format CSV ou JSON Lines.
+ * <p>
+ * Les éléments sont écrits au fur et à mesure de leur lecture, à travers un
+ * unique tampon d'écriture. Les tableaux et le tampon de chaque ligne sont
+ * réutilisés d'un élément à l'autre.
+ * <p>
+ * Au format CSV, chaque export commence par une ligne d'en-têtes. Au format
+ * JSON Lines, chaque élément est un objet JSON sur une ligne, dont les
+ * membres portent les mêmes noms que les colonnes CSV.
+ *
+ * @author Olivier HAAS
+ */
+public class Exporter implements Closeable {
+
+	/**
+	 * Les formats d'export.
+	 */
+	public enum Format {
+		CSV, JSON_LINES;
+	}
+
+	/**
+	 * Les colonnes des écritures.
+	 */
+	private static final String[] ECRITURE_HEADERS = {"id", "date",
+			"pointage", "debit", "credit", "libelle", "tiers", "cheque",
+			"montant"};
+
+	/**
+	 * Les colonnes des soldes.
+	 */
+	private static final String[] SOLDE_HEADERS = {"mois", "compte",
+			"montant"};
+
+	/**
+	 * Le séparateur des colonnes CSV.
+	 */
+	private static final char DELIMITER = ',';
+
+	/**
+	 * Le format d'export.
+	 */
+	private final Format format;
+
+	/**
+	 * Le flux d'écriture, avec tampon.
+	 */
+	private final Writer out;
+
+	/**
+	 * Le flux CSV, ou <code>null</code> au format JSON Lines.
+	 */
+	private final CsvWriter csv;
+
+	/**
+	 * Le format des dates.
+	 */
+	private final DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+
+	/**
+	 * Les valeurs d'une écriture, réutilisées d'une ligne à l'autre.
+	 */
+	private final String[] ecritureValues =
+			new String[ECRITURE_HEADERS.length];
+
+	/**
+	 * Les valeurs d'un solde, réutilisées d'une ligne à l'autre.
+	 */
+	private final String[] soldeValues = new String[SOLDE_HEADERS.length];
+
+	/**
+	 * Le tampon des lignes JSON, réutilisé d'une ligne à l'autre.
+	 */
+	private final StringBuilder line = new StringBuilder();
+
+	/**
+	 * Construit un flux d'export.
+	 *
+	 * @param writer	Le flux dans lequel écrire. Il est enveloppé dans un
+	 * 					tampon s'il n'en a pas déjà un, et fermé avec ce flux
+	 * 					d'export.
+	 * @param format	Le format d'export.
+	 */
+	public Exporter(Writer writer, Format format) {
+		this.format = format;
+		out = (writer instanceof BufferedWriter)
+				? writer : new BufferedWriter(writer);
+		if (format == Format.CSV) {
+			csv = new CsvWriter(out, DELIMITER);
+			csv.setRecordDelimiter('\n');
+		} else {
+			csv = null;
+		}
+	}
+
+	/**
+	 * Exporte des écritures.
+	 *
+	 * @param ecritures	Les écritures à exporter, par exemple sélectionnées
+	 * 					par un {@link ExportFilter}.
+	 *
+	 * @return			Le nombre d'écritures exportées.
+	 *
+	 * @throws IOException
+	 */
+	public long exportEcritures(Stream<Ecriture> ecritures)
+			throws IOException {
+		writeHeaders(ECRITURE_HEADERS);
+		long count = 0;
+		Iterator<Ecriture> it = ecritures.iterator();
+		while (it.hasNext()) {
+			Ecriture e = it.next();
+			ecritureValues[0] = (e.id == null) ? null : e.id.toString();
+			ecritureValues[1] = format(e.date);
+			ecritureValues[2] = format(e.pointage);
+			ecritureValues[3] = nameOf(e.debit);
+			ecritureValues[4] = nameOf(e.credit);
+			ecritureValues[5] = e.libelle;
+			ecritureValues[6] = e.tiers;
+			ecritureValues[7] =
+					(e.cheque == null) ? null : e.cheque.toString();
+			ecritureValues[8] = e.montant.toPlainString();
+			writeRecord(ECRITURE_HEADERS, ecritureValues, 0, 7, 8);
+			count++;
+		}
+		out.flush();
+		return count;
+	}
+
+	/**
+	 * Exporte des soldes.
+	 *
+	 * @param soldes	Les soldes à exporter, par exemple sélectionnés par un
+	 * 					{@link ExportFilter}.
+	 *
+	 * @return			Le nombre de soldes exportés.
+	 *
+	 * @throws IOException
+	 */
+	public long exportSoldes(Stream<Solde> soldes) throws IOException {
+		writeHeaders(SOLDE_HEADERS);
+		long count = 0;
+		Iterator<Solde> it = soldes.iterator();
+		while (it.hasNext()) {
+			Solde solde = it.next();
+			soldeValues[0] = format(solde.month);
+			soldeValues[1] = nameOf(solde.compte);
+			soldeValues[2] = (solde.montant == null)
+					? null : solde.montant.toPlainString();
+			writeRecord(SOLDE_HEADERS, soldeValues, 2);
+			count++;
+		}
+		out.flush();
+		return count;
+	}
+
+	/**
+	 * Écrit la ligne d'en-têtes, au format CSV seulement.
+	 */
+	private void writeHeaders(String[] headers) throws IOException {
+		if (csv != null)
+			csv.writeRecord(headers);
+	}
+
+	/**
+	 * Écrit une ligne.
+	 *
+	 * @param headers	Les noms des colonnes.
+	 * @param values	Les valeurs, éventuellement <code>null</code>.
+	 * @param numbers	Les index des valeurs numériques, écrites sans
+	 * 					guillemets au format JSON.
+	 *
+	 * @throws IOException
+	 */
+	private void writeRecord(String[] headers, String[] values,
+			int... numbers) throws IOException {
+		if (format == Format.CSV) {
+			for (String value : values)
+				csv.write(value == null ? "" : value);
+			csv.endRecord();
+			return;
+		}
+
+		line.setLength(0);
+		line.append('{');
+		for (int i = 0, n = 0; i < values.length; i++) {
+			if (i > 0)
+				line.append(',');
+			line.append('"').append(headers[i]).append("\":");
+			boolean number = n < numbers.length && numbers[n] == i;
+			if (number)
+				n++;
+			if (values[i] == null) {
+				line.append("null");
+			} else if (number) {
+				line.append(values[i]);
+			} else {
+				appendJsonString(values[i]);
+			}
+		}
+		line.append("}\n");
+		out.append(line);
+	}
+
+	/**
+	 * Ajoute une chaîne JSON au tampon de la ligne.
+	 */
+	private void appendJsonString(String s) {
+		line.append('"');
+		for (int i = 0; i < s.length(); i++) {
+			char c = s.charAt(i);
+			switch (c) {
+			case '"':	line.append("\\\"");	break;
+			case '\\':	line.append("\\\\");	break;
+			case '\n':	line.append("\\n");		break;
+			case '\r':	line.append("\\r");		break;
+			case '\t':	line.append("\\t");		break;
+			default:
+				if (c < 0x20) {
+					line.append(String.format("\\u%04x", (int) c));
+				} else {
+					line.append(c);
+				}
+			}
+		}
+		line.append('"');
+	}
+
+	/**
+	 * Renvoie une date au format ISO, ou <code>null</code>.
+	 */
+	private String format(Date date) {
+		return (date == null) ? null : dateFormat.format(date);
+	}
+
+	/**
+	 * Renvoie un mois au format ISO (AAAA-MM).
+	 */
+	private static String format(Month month) {
+		int num = month.getNumInYear();
+		return month.getYear() + (num < 10 ? "-0" : "-") + num;
+	}
+
+	/**
+	 * Renvoie le nom d'un compte, ou <code>null</code>.
+	 */
+	private static String nameOf(Compte compte) {
+		return (compte == null) ? null : compte.getNom();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (csv != null)
+			csv.close();
+		out.close();
+	}
+}
@@ -0,0 +1,6 @@
+/**
+ * Export des écritures et des suivis vers des fichiers CSV ou JSON Lines.
+ * 
+ * @author Olivier HAAS
+ */
+package haas.olivier.comptes.dao.export;
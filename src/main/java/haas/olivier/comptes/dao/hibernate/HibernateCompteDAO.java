@@ -0,0 +1,77 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.hibernate;
+
+import java.util.Collection;
+import java.util.List;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.TypeCompte;
+import haas.olivier.comptes.dao.CompteDAO;
+
+/**
+ * Un objet d'accès aux comptes enregistrés dans une base de données.
+ *
+ * @author Olivier HAAS
+ */
+class HibernateCompteDAO implements CompteDAO {
+
+	/**
+	 * La fabrique à laquelle appartient cet objet.
+	 */
+	private final HibernateDAOFactory factory;
+
+	/**
+	 * Construit un objet d'accès aux comptes.
+	 *
+	 * @param factory	La fabrique à laquelle appartient cet objet.
+	 */
+	HibernateCompteDAO(HibernateDAOFactory factory) {
+		this.factory = factory;
+	}
+
+	@Override
+	public Collection<Compte> getAll() {
+		List<Compte> comptes = factory.getEntityManager().createQuery(
+				"select c from Compte c", Compte.class)
+				.getResultList();
+		comptes.sort(null);
+		return comptes;
+	}
+
+	/**
+	 * Ajoute un compte. Si le compte n'a pas d'identifiant, la base lui en
+	 * attribue un.
+	 */
+	@Override
+	public void add(Compte compte) {
+		if (compte.getId() == null) {
+			factory.getEntityManager().persist(compte);
+		} else {
+			factory.getEntityManager().merge(compte);
+		}
+		factory.setModified();
+	}
+
+	@Override
+	public Compte createAndAdd(TypeCompte type) {
+		Compte compte = new Compte(null, type);
+		add(compte);
+		return compte;
+	}
+
+	@Override
+	public void remove(Compte compte) {
+		if (factory.getEntityManager().contains(compte)) {
+			factory.getEntityManager().remove(compte);
+			factory.setModified();
+		}
+	}
+
+	@Override
+	public void erase() {
+		for (Compte compte : getAll())
+			remove(compte);
+	}
+}
@@ -0,0 +1,312 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.hibernate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import haas.olivier.comptes.Permanent;
+import haas.olivier.comptes.dao.BanqueDAO;
+import haas.olivier.comptes.dao.CompteDAO;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.comptes.dao.EcritureDAO;
+import haas.olivier.comptes.dao.PermanentDAO;
+import haas.olivier.comptes.dao.PropertiesDAO;
+import haas.olivier.comptes.dao.SuiviDAO;
+import haas.olivier.comptes.dao.cache.CacheDAOFactory;
+import haas.olivier.comptes.dao.cache.EmptyCacheableDAOFactory;
+import haas.olivier.comptes.dao.cache.Solde;
+import haas.olivier.comptes.dao.cache.hibernate.SuiviAggregator;
+import haas.olivier.util.Month;
+
+/**
+ * Une fabrique d'accès aux données qui lit et écrit directement dans une base
+ * de données, au moyen d'Hibernate.
+ * <p>
+ * Contrairement à {@link CacheDAOFactory}, les écritures ne sont pas chargées
+ * en mémoire à l'ouverture : chaque recherche est traduite en une requête
+ * portant sur les dates ou les pointages, dont les résultats sont lus au fur
+ * et à mesure du parcours. Il est ainsi possible d'ouvrir des données plus
+ * volumineuses que la mémoire disponible.
+ * <p>
+ * Les modifications sont faites dans une transaction, validée à chaque
+ * sauvegarde.
+ * <p>
+ * Les banques et les propriétés ne sont pas encore enregistrés dans la base :
+ * ils sont gardés en mémoire le temps de la session. Il en va de même des
+ * suivis, qui sont calculés par la base à l'ouverture au moyen de requêtes
+ * groupées, sans lire les écritures.
+ * <p>
+ * Cette classe n'est pas prévue pour être utilisée par plusieurs threads à la
+ * fois.
+ *
+ * @author Olivier HAAS
+ */
+public class HibernateDAOFactory extends DAOFactory implements Closeable {
+
+	/**
+	 * Le nombre de lignes lues à la fois dans les résultats des requêtes.
+	 */
+	static final int FETCH_SIZE = 500;
+
+	/**
+	 * Contexte JPA.
+	 */
+	private final EntityManagerFactory entityManagerFactory;
+
+	/**
+	 * Session JPA.
+	 */
+	private final EntityManager entityManager;
+
+	/**
+	 * L'objet d'accès aux comptes.
+	 */
+	private final HibernateCompteDAO cDAO;
+
+	/**
+	 * L'objet d'accès aux écritures.
+	 */
+	private final HibernateEcritureDAO eDAO;
+
+	/**
+	 * L'objet d'accès aux opérations permanentes.
+	 */
+	private final HibernatePermanentDAO pDAO;
+
+	/**
+	 * Les données qui ne sont pas enregistrées dans la base.
+	 */
+	private final CacheDAOFactory memory;
+
+	/**
+	 * Drapeau indiquant si des modifications n'ont pas encore été validées.
+	 */
+	private boolean mustBeSaved = false;
+
+	/**
+	 * Le nom de la source, pour affichage utilisateur.
+	 */
+	private final String source;
+
+	/**
+	 * La date de la plus ancienne écriture, ou <code>null</code> s'il n'y a
+	 * aucune écriture. N'a de sens que si {@link #firstDateKnown} est vrai.
+	 */
+	private Date firstDate;
+
+	/**
+	 * Indique si la date de la plus ancienne écriture a été lue dans la base
+	 * et est toujours valable.
+	 */
+	private boolean firstDateKnown = false;
+
+	/**
+	 * Construit un accès direct à une base de données.
+	 *
+	 * @param url		L'URL de la base de données.
+	 * @param driver	Le nom qualifié du pilote JDBC.
+	 *
+	 * @throws IOException
+	 */
+	public HibernateDAOFactory(String url, String driver) throws IOException {
+		Map<String, String> properties = new HashMap<>();
+		properties.put("javax.persistence.jdbc.url", url);
+		properties.put("javax.persistence.jdbc.driver", driver);
+		properties.put("hibernate.hbm2ddl.auto", "update");
+		properties.put("hibernate.show_sql", "false");
+		properties.put("hibernate.jdbc.fetch_size",
+				Integer.toString(FETCH_SIZE));
+		entityManagerFactory = Persistence.createEntityManagerFactory(
+				"haas.olivier.comptes", properties);
+		entityManager = entityManagerFactory.createEntityManager();
+		entityManager.getTransaction().begin();
+
+		source = url;
+		cDAO = new HibernateCompteDAO(this);
+		eDAO = new HibernateEcritureDAO(this);
+		pDAO = new HibernatePermanentDAO(this);
+		memory = new CacheDAOFactory(new EmptyCacheableDAOFactory());
+		loadSuivis();
+	}
+
+	/**
+	 * Calcule tous les suivis dans la base et les charge en mémoire.
+	 */
+	private void loadSuivis() {
+		SuiviAggregator aggregator = new SuiviAggregator(entityManager);
+		aggregator.refresh(null, cDAO.getAll());
+		load(aggregator.getHistorique(), memory.getHistoriqueDAO());
+		load(aggregator.getSoldesAVue(), memory.getSoldeAVueDAO());
+		load(aggregator.getMoyennes(), memory.getMoyenneDAO());
+	}
+
+	/**
+	 * Copie des soldes dans un suivi.
+	 *
+	 * @param soldes	Les soldes à copier.
+	 * @param dao		Le suivi dans lequel les copier.
+	 */
+	private static void load(Iterator<Solde> soldes, SuiviDAO dao) {
+		while (soldes.hasNext())
+			dao.set(soldes.next());
+	}
+
+	/**
+	 * Renvoie la session JPA.
+	 */
+	EntityManager getEntityManager() {
+		return entityManager;
+	}
+
+	/**
+	 * Signale que des modifications ont été faites depuis la dernière
+	 * sauvegarde.
+	 */
+	void setModified() {
+		mustBeSaved = true;
+	}
+
+	@Override
+	public BanqueDAO getBanqueDAO() {
+		return memory.getBanqueDAO();
+	}
+
+	@Override
+	public CompteDAO getCompteDAO() {
+		return cDAO;
+	}
+
+	@Override
+	public EcritureDAO getEcritureDAO() {
+		return eDAO;
+	}
+
+	@Override
+	public PermanentDAO getPermanentDAO() {
+		return pDAO;
+	}
+
+	@Override
+	public SuiviDAO getHistoriqueDAO() {
+		return memory.getHistoriqueDAO();
+	}
+
+	@Override
+	public SuiviDAO getSoldeAVueDAO() {
+		return memory.getSoldeAVueDAO();
+	}
+
+	@Override
+	public SuiviDAO getMoyenneDAO() {
+		return memory.getMoyenneDAO();
+	}
+
+	@Override
+	public PropertiesDAO getPropertiesDAO() {
+		return memory.getPropertiesDAO();
+	}
+
+	@Override
+	public boolean canBeSaved() {
+		return true;
+	}
+
+	@Override
+	public boolean mustBeSaved() {
+		return mustBeSaved;
+	}
+
+	/**
+	 * Valide la transaction en cours et en ouvre une nouvelle.
+	 */
+	@Override
+	public void save() throws IOException {
+		entityManager.getTransaction().commit();
+		entityManager.getTransaction().begin();
+		mustBeSaved = false;
+	}
+
+	@Override
+	protected void erase() throws IOException {
+		eDAO.erase();
+		for (Permanent p : pDAO.getAll())
+			entityManager.remove(p);
+		cDAO.erase();
+		entityManager.flush();
+
+		// Vider aussi les suivis gardés en mémoire
+		memory.getHistoriqueDAO().erase();
+		memory.getSoldeAVueDAO().erase();
+		memory.getMoyenneDAO().erase();
+		mustBeSaved = true;
+	}
+
+	/**
+	 * @return	Le mois de la plus ancienne écriture, ou le mois actuel s'il
+	 * 			n'y a aucune écriture.
+	 */
+	@Override
+	public Month getDebut() {
+		if (!firstDateKnown) {
+			firstDate = eDAO.getFirstDate();
+			firstDateKnown = true;
+		}
+		return Month.getInstance(firstDate);
+	}
+
+	/**
+	 * Tient compte d'une écriture ajoutée pour la date de la plus ancienne
+	 * écriture, sans interroger la base.
+	 *
+	 * @param date	La date de l'écriture ajoutée.
+	 */
+	void updateDebut(Date date) {
+		if (firstDateKnown && (firstDate == null || date.before(firstDate)))
+			firstDate = date;
+	}
+
+	/**
+	 * Oublie la date de la plus ancienne écriture, qui sera lue à nouveau
+	 * dans la base lors du prochain appel à {@link #getDebut()}.
+	 */
+	void resetDebut() {
+		firstDateKnown = false;
+	}
+
+	@Override
+	public String getName() {
+		return "Base de données";
+	}
+
+	@Override
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public String getSourceFullName() {
+		return source;
+	}
+
+	/**
+	 * Annule les modifications qui n'ont pas été sauvegardées et ferme la
+	 * connexion.
+	 */
+	@Override
+	public void close() {
+		if (entityManager.getTransaction().isActive())
+			entityManager.getTransaction().rollback();
+		entityManager.close();
+		entityManagerFactory.close();
+	}
+}
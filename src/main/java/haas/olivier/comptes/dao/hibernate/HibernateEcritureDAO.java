@@ -0,0 +1,316 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.hibernate;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.annotations.QueryHints;
+
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.dao.EcritureDAO;
+import haas.olivier.util.Month;
+
+/**
+ * Un objet d'accès aux écritures qui interroge directement la base de
+ * données.
+ * <p>
+ * Les recherches par mois sont des requêtes sur des intervalles de dates ou
+ * de pointages, qui s'appuient sur les index de ces colonnes. Leurs résultats
+ * ne sont pas chargés d'un bloc : ils sont lus par paquets au fil du parcours.
+ * <p>
+ * Les tris reproduisent l'ordre naturel des écritures et l'ordre de
+ * {@link Ecriture.SortPointages}. Comme dans le cache, les écritures non
+ * pointées sont rattachées au mois en cours dans les recherches par
+ * pointages.
+ *
+ * @author Olivier HAAS
+ */
+class HibernateEcritureDAO implements EcritureDAO {
+
+	/**
+	 * L'ordre naturel des écritures.
+	 */
+	private static final String ORDRE_NATUREL =
+			" order by e.date asc, e.cheque asc nulls first,"
+			+ " e.pointage asc nulls last, e.id asc";
+
+	/**
+	 * L'ordre inverse de l'ordre naturel.
+	 */
+	private static final String ORDRE_INVERSE =
+			" order by e.date desc, e.cheque desc nulls last,"
+			+ " e.pointage desc nulls first, e.id desc";
+
+	/**
+	 * L'ordre des pointages.
+	 */
+	private static final String ORDRE_POINTAGES =
+			" order by e.pointage asc nulls last, e.date asc, e.id asc";
+
+	/**
+	 * L'ordre inverse des pointages.
+	 */
+	private static final String ORDRE_POINTAGES_INVERSE =
+			" order by e.pointage desc nulls first, e.date desc, e.id desc";
+
+	/**
+	 * La fabrique à laquelle appartient cet objet.
+	 */
+	private final HibernateDAOFactory factory;
+
+	/**
+	 * Construit un objet d'accès aux écritures.
+	 *
+	 * @param factory	La fabrique à laquelle appartient cet objet.
+	 */
+	HibernateEcritureDAO(HibernateDAOFactory factory) {
+		this.factory = factory;
+	}
+
+	@Override
+	public Ecriture get(Integer id) {
+		return factory.getEntityManager().find(Ecriture.class, id);
+	}
+
+	@Override
+	public Iterable<Ecriture> getAll() {
+		return query("select e from Ecriture e" + ORDRE_INVERSE);
+	}
+
+	@Override
+	public Iterable<Ecriture> getAllBetween(Month from, Month to) {
+		return query("select e from Ecriture e"
+				+ " where e.date >= ?1 and e.date < ?2" + ORDRE_INVERSE,
+				from.getFirstDay(), to.getNext().getFirstDay());
+	}
+
+	@Override
+	public Iterable<Ecriture> getAllSince(Month month) {
+		return query("select e from Ecriture e"
+				+ " where e.date >= ?1" + ORDRE_NATUREL,
+				month.getFirstDay());
+	}
+
+	@Override
+	public Iterable<Ecriture> getPointagesSince(Month month) {
+		String where = month.after(Month.getInstance())
+				? " where e.pointage >= ?1"
+				: " where e.pointage >= ?1 or e.pointage is null";
+		return query("select e from Ecriture e" + where + ORDRE_POINTAGES,
+				month.getFirstDay());
+	}
+
+	@Override
+	public Iterable<Ecriture> getAllTo(Month month) {
+		return query("select e from Ecriture e"
+				+ " where e.date < ?1" + ORDRE_INVERSE,
+				month.getNext().getFirstDay());
+	}
+
+	@Override
+	public Iterable<Ecriture> getPointagesTo(Month month) {
+		String where = month.before(Month.getInstance())
+				? " where e.pointage < ?1"
+				: " where e.pointage < ?1 or e.pointage is null";
+		return query("select e from Ecriture e" + where
+				+ ORDRE_POINTAGES_INVERSE,
+				month.getNext().getFirstDay());
+	}
+
+	/**
+	 * Renvoie un itérable dont chaque parcours exécute une requête et lit ses
+	 * résultats au fur et à mesure.
+	 *
+	 * @param jpql		La requête.
+	 * @param params	Les paramètres de la requête, numérotés à partir de 1.
+	 *
+	 * @return			Un itérable des écritures trouvées.
+	 */
+	private Iterable<Ecriture> query(String jpql, Object... params) {
+		return () -> {
+			TypedQuery<Ecriture> query = factory.getEntityManager()
+					.createQuery(jpql, Ecriture.class)
+					.setHint(QueryHints.FETCH_SIZE,
+							HibernateDAOFactory.FETCH_SIZE);
+			for (int i = 0; i < params.length; i++)
+				query.setParameter(i + 1, params[i]);
+			return new StreamIterator<>(query.getResultStream(),
+					factory.getEntityManager());
+		};
+	}
+
+	/**
+	 * Ajoute une écriture.
+	 * <p>
+	 * Si l'écriture n'a pas d'identifiant, la base lui en attribue un.
+	 */
+	@Override
+	public void add(Ecriture e) {
+		EntityManager entityManager = factory.getEntityManager();
+		if (e.id == null) {
+			entityManager.persist(e);
+		} else {
+			entityManager.merge(e);
+		}
+		factory.updateDebut(e.date);
+		factory.setModified();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * L'ancienne date de l'écriture n'étant pas connue, la date de la plus
+	 * ancienne écriture devra être relue dans la base.
+	 */
+	@Override
+	public void update(Ecriture e) {
+		factory.getEntityManager().merge(e);
+		factory.resetDebut();
+		factory.setModified();
+	}
+
+	@Override
+	public void remove(int id) {
+		EntityManager entityManager = factory.getEntityManager();
+		Ecriture e = entityManager.find(Ecriture.class, id);
+		if (e != null) {
+			entityManager.remove(e);
+			factory.resetDebut();
+			factory.setModified();
+		}
+	}
+
+	/**
+	 * Supprime toutes les écritures.
+	 */
+	void erase() {
+		factory.getEntityManager()
+		.createQuery("delete from Ecriture").executeUpdate();
+		factory.getEntityManager().clear();
+		factory.resetDebut();
+	}
+
+	/**
+	 * Compte les occurrences des libellés et des tiers dans la base, sans lire
+	 * les écritures elles-mêmes.
+	 */
+	@Override
+	public Map<String, Integer> constructCommentIndex() {
+		Map<String, Integer> result = new HashMap<>();
+		EntityManager entityManager = factory.getEntityManager();
+		for (String field : new String[] {"libelle", "tiers"}) {
+			List<Object[]> rows = entityManager.createQuery(
+					"select e." + field + ", count(e) from Ecriture e"
+					+ " group by e." + field, Object[].class)
+					.getResultList();
+			for (Object[] row : rows) {
+				String s = (String) row[0];
+				int n = ((Number) row[1]).intValue();
+				result.merge(s, n, Integer::sum);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Renvoie la date de la plus ancienne écriture.
+	 *
+	 * @return	Une date, ou <code>null</code> s'il n'y a aucune écriture.
+	 */
+	Date getFirstDate() {
+		return factory.getEntityManager().createQuery(
+				"select min(e.date) from Ecriture e", Date.class)
+				.getSingleResult();
+	}
+
+	/**
+	 * Un itérateur qui ferme le flux sous-jacent, et donc le curseur de la
+	 * base de données, dès que le dernier résultat a été lu.
+	 * <p>
+	 * Un flux qui n'est pas parcouru jusqu'au bout est fermé au plus tard à la
+	 * fin de la transaction.
+	 * <p>
+	 * Les résultats déjà lus sont détachés de la session par paquets de
+	 * {@link HibernateDAOFactory#FETCH_SIZE}, pour que la session ne retienne
+	 * pas toutes les écritures parcourues. Les comptes, qui ne sont pas
+	 * détachés en cascade, restent attachés.
+	 */
+	private static class StreamIterator<T> implements Iterator<T> {
+
+		/**
+		 * Le flux des résultats.
+		 */
+		private final Stream<T> stream;
+
+		/**
+		 * La session à laquelle les résultats sont attachés.
+		 */
+		private final EntityManager entityManager;
+
+		/**
+		 * Les résultats du paquet en cours, à détacher de la session.
+		 */
+		private final List<T> page = new ArrayList<>();
+
+		/**
+		 * L'itérateur du flux, ou <code>null</code> si le flux est fermé.
+		 */
+		private Iterator<T> it;
+
+		/**
+		 * Construit un itérateur sur un flux.
+		 *
+		 * @param stream		Le flux à parcourir.
+		 * @param entityManager	La session à laquelle les résultats sont
+		 * 						attachés.
+		 */
+		StreamIterator(Stream<T> stream, EntityManager entityManager) {
+			this.stream = stream;
+			this.entityManager = entityManager;
+			it = stream.iterator();
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (it == null)
+				return false;
+			if (it.hasNext())
+				return true;
+			stream.close();
+			it = null;
+			detach();
+			return false;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			if (page.size() >= HibernateDAOFactory.FETCH_SIZE)
+				detach();
+			T result = it.next();
+			page.add(result);
+			return result;
+		}
+
+		/**
+		 * Détache de la session les résultats du paquet en cours.
+		 */
+		private void detach() {
+			for (T result : page)
+				entityManager.detach(result);
+			page.clear();
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.hibernate;
+
+import java.util.Collection;
+
+import haas.olivier.comptes.Permanent;
+import haas.olivier.comptes.dao.PermanentDAO;
+
+/**
+ * Un objet d'accès aux opérations permanentes enregistrées dans une base de
+ * données.
+ *
+ * @author Olivier HAAS
+ */
+class HibernatePermanentDAO implements PermanentDAO {
+
+	/**
+	 * La fabrique à laquelle appartient cet objet.
+	 */
+	private final HibernateDAOFactory factory;
+
+	/**
+	 * Construit un objet d'accès aux opérations permanentes.
+	 *
+	 * @param factory	La fabrique à laquelle appartient cet objet.
+	 */
+	HibernatePermanentDAO(HibernateDAOFactory factory) {
+		this.factory = factory;
+	}
+
+	@Override
+	public Collection<Permanent> getAll() {
+		return factory.getEntityManager().createQuery(
+				"select p from Permanent p", Permanent.class)
+				.getResultList();
+	}
+
+	@Override
+	public Permanent get(int id) {
+		return factory.getEntityManager().find(Permanent.class, id);
+	}
+
+	/**
+	 * Ajoute une opération permanente. Si elle n'a pas d'identifiant, la base
+	 * lui en attribue un.
+	 */
+	@Override
+	public void add(Permanent p) {
+		if (p.getId() == null) {
+			factory.getEntityManager().persist(p);
+		} else {
+			factory.getEntityManager().merge(p);
+		}
+		factory.setModified();
+	}
+
+	@Override
+	public void update(Permanent p) {
+		factory.getEntityManager().merge(p);
+		factory.setModified();
+	}
+
+	@Override
+	public void remove(int id) {
+		Permanent p = get(id);
+		if (p != null) {
+			factory.getEntityManager().remove(p);
+			factory.setModified();
+		}
+	}
+}
@@ -0,0 +1,7 @@
+/**
+ * Persistance directe dans une base de données avec Hibernate, sans charger
+ * toutes les écritures en mémoire.
+ * 
+ * @author Olivier HAAS
+ */
+package haas.olivier.comptes.dao.hibernate;
@@ -12,6 +12,7 @@ import haas.olivier.comptes.gui.actions.CompteObservable;
 import haas.olivier.comptes.gui.actions.DataObservable;
 import haas.olivier.comptes.gui.actions.DataObserver;
 import haas.olivier.comptes.gui.actions.MonthObservable;
+import haas.olivier.comptes.gui.actions.RefreshScheduler;
 import haas.olivier.comptes.gui.actions.SoldesObservable;
 import haas.olivier.comptes.gui.table.EcrituresTableModel;
 import haas.olivier.comptes.gui.table.FinancialTable;
@@ -345,10 +346,10 @@ public class ComptePanel extends JPanel {
 	 */
 	public void update() throws IOException {
 
-		// Mettre à jour les données des composants du panel
-		modelEcritures.update();
-		modelSuivi.update();
-		modelSynthese.update();
+		// Programmer la mise à jour des données des composants du panel
+		modelEcritures.refresh();
+		modelSuivi.refresh();
+		modelSynthese.refresh();
 		panelSoldes.update();
 
 		// Cas particulier du sélecteur de date
@@ -359,6 +360,28 @@ public class ComptePanel extends JPanel {
 		}
 	}
 
+	/**
+	 * Met à jour le contenu du panel après une modification des opérations
+	 * permanentes.
+	 * 
+	 * @throws IOException
+	 */
+	public void permanentsChanged() throws IOException {
+		panelSoldes.permanentsChanged();
+	}
+
+	/**
+	 * Désinscrit les vues du panel auprès du planificateur des
+	 * rafraîchissements. Cette méthode est appelée lorsque le panel est fermé.
+	 */
+	public void close() {
+		RefreshScheduler scheduler = RefreshScheduler.getInstance();
+		scheduler.unregister(modelEcritures);
+		scheduler.unregister(modelSuivi);
+		scheduler.unregister(modelSynthese);
+		scheduler.unregister(panelSoldes);
+	}
+
 	/**
 	 * Efface l'écriture actuellement sélectionnée.
 	 */
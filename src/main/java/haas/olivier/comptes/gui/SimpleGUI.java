@@ -10,6 +10,7 @@ import haas.olivier.comptes.Permanent;
 import haas.olivier.comptes.TypeCompte;
 import haas.olivier.comptes.dao.DAOFactory;
 import haas.olivier.comptes.gui.actions.DataObserver;
+import haas.olivier.comptes.gui.actions.RefreshScheduler;
 import haas.olivier.comptes.gui.diagram.ComptesDiagramFactory;
 import haas.olivier.comptes.gui.diagram.DiagramFrame;
 import haas.olivier.comptes.gui.settings.SetupCompte;
@@ -33,6 +34,7 @@ import java.awt.event.WindowListener;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Level;
 import java.util.logging.LogManager;
@@ -53,7 +55,6 @@ import javax.swing.JPanel;
 import javax.swing.JTabbedPane;
 import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
-import javax.swing.SwingWorker;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
@@ -166,6 +167,16 @@ ActionListener, PropertiesController {
 	 * Action diagramme patrimoine.
 	 */
 	private Action diagPatrimAction;
+	
+	/**
+	 * Action diagramme patrimoine quotidien.
+	 */
+	private Action diagPatrimQuotidienAction;
+	
+	/**
+	 * Action diagramme prévisionnel.
+	 */
+	private Action diagPrevisionnelAction;
 
 	@SuppressWarnings("serial")
 	public SimpleGUI(Preferences prefs) {
@@ -227,6 +238,44 @@ ActionListener, PropertiesController {
 
 		};// classe anonyme AbstractAction
 		
+		// Action affichant le diagramme quotidien du patrimoine
+		diagPatrimQuotidienAction = new AbstractAction(
+				"Patrimoine au jour le jour",
+				IconLoader.loadIcon("/images/typearea_16.png")) {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				try {
+					new DiagramFrame(
+							ComptesDiagramFactory.newPatrimoineQuotidien());
+					
+				} catch (IOException e1) {
+					LOGGER.log(Level.SEVERE,
+							"Impossible de créer le diagramme quotidien du "
+							+ "patrimoine", e1);
+				}
+			}
+
+		};// classe anonyme AbstractAction
+		
+		// Action affichant le diagramme prévisionnel
+		diagPrevisionnelAction = new AbstractAction("Prévisionnel",
+				IconLoader.loadIcon("/images/typearea_16.png")) {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				try {
+					new DiagramFrame(ComptesDiagramFactory.newPrevisionnel());
+					
+				} catch (IOException e1) {
+					LOGGER.log(Level.SEVERE,
+							"Impossible de créer le diagramme prévisionnel",
+							e1);
+				}
+			}
+
+		};// classe anonyme AbstractAction
+		
 		Component statusBar = createStatusBar();	// Barre d'état
 		JToolBar toolBar = createToolBar();			// Barre d'outils
 		tabs = new JTabbedPane();					// Onglets
@@ -261,7 +310,12 @@ ActionListener, PropertiesController {
 	}
 	
 	public void createTabs() {
-		tabs.removeAll();	// Enlever les onglets actuels s'il y en a
+		// Fermer les onglets actuels s'il y en a
+		for (Component tab : tabs.getComponents()) {
+			if (tab instanceof ComptePanel)
+				((ComptePanel) tab).close();
+		}
+		tabs.removeAll();
 		
 		// Créer un onglet pour chaque type de compte
 		tabs.addTab("Courant", new ComptePanel(
@@ -341,6 +395,8 @@ ActionListener, PropertiesController {
 		menuBar.add(diagrams);
 		diagrams.add(diagMoyAction);
 		diagrams.add(diagPatrimAction);
+		diagrams.add(diagPatrimQuotidienAction);
+		diagrams.add(diagPrevisionnelAction);
 		
 		// Menu  Outils
 		JMenu outils = new JMenu("Outils");
@@ -554,19 +610,20 @@ ActionListener, PropertiesController {
 	 * Met à jour l'onglet sélectionné.
 	 * <p>
 	 * Cette méthode est appelée lorsque l'utilisateur change d'onglet.
-	 * Elle utilise un fil d'exécution à part pour ne pas bloquer la fenêtre.
+	 * Les calculs sont confiés au {@link RefreshScheduler} pour ne pas bloquer
+	 * la fenêtre.
 	 */
 	@Override
 	public void stateChanged(ChangeEvent e) {
-		new SwingWorker<Void,Void>() {
-			public Void doInBackground() throws IOException {
-				Component tab = tabs.getSelectedComponent();
-				if (tab instanceof ComptePanel) {	// Bonne classe et non null 
-					((ComptePanel) tab).update();
-				}
-				return null;
+		Component tab = tabs.getSelectedComponent();
+		if (tab instanceof ComptePanel) {	// Bonne classe et non null 
+			try {
+				((ComptePanel) tab).update();
+			} catch (IOException e1) {
+				Logger.getLogger(getClass().getName()).log(Level.SEVERE,
+						"Impossible de mettre à jour l'onglet", e1);
 			}
-		}.execute();
+		}
 	}
 
 	/**
@@ -581,6 +638,24 @@ ActionListener, PropertiesController {
 		actionSave.setEnabled(DAOFactory.getFactory().mustBeSaved());
 	}
 
+	/**
+	 * Met à jour les onglets après une modification des opérations
+	 * permanentes, dont dépendent les situations critiques.
+	 */
+	public void permanentsModified() {
+		for (Component tab : tabs.getComponents()) {
+			if (tab instanceof ComptePanel) {
+				try {
+					((ComptePanel) tab).permanentsChanged();
+				} catch (IOException e) {
+					LOGGER.log(Level.SEVERE,
+							"Impossible de mettre à jour l'onglet", e);
+				}
+			}
+		}
+		dataModified();
+	}
+
 	/**
 	 * Reçoit les actions de l'utilisateur sur la partie générale de l'interface
 	 * utilisateur.
@@ -598,8 +673,8 @@ ActionListener, PropertiesController {
 
 			Month moisChoisi = (Month) JOptionPane.showInputDialog(
 					frame,							// Frame principal
-					"Choisissez le mois au titre duquel\ngénérer les " +
-					"écritures permanentes",		// Texte du message
+					"Choisissez le premier mois au titre duquel\ngénérer " +
+					"les écritures permanentes",	// Texte du message
 					"Ecritures permanentes",		// Titre de la fenêtre
 					JOptionPane.INFORMATION_MESSAGE,// Type de message
 					null,							// Pas d'icône
@@ -609,10 +684,33 @@ ActionListener, PropertiesController {
 			// Si l'utilisateur n'a pas annulé
 			if (moisChoisi != null) {
 				
+				// Les mois suivants, jusqu'à M+1
+				Month[] suivants = Arrays.copyOf(months,
+						Arrays.asList(months).indexOf(moisChoisi) + 1);
+				Month dernierMois = moisChoisi;
+				if (suivants.length > 1) {
+					dernierMois = (Month) JOptionPane.showInputDialog(
+							frame,
+							"Choisissez le dernier mois au titre duquel\n" +
+							"générer les écritures permanentes",
+							"Ecritures permanentes",
+							JOptionPane.INFORMATION_MESSAGE,
+							null,
+							suivants,
+							moisChoisi);			// Un seul mois par défaut
+				}
+				
 				// Générer les écritures
-				Permanent.createAllEcritures(moisChoisi);
+				if (dernierMois == null) {
+					return;							// Annulé
+				} else if (dernierMois.equals(moisChoisi)) {
+					Permanent.createAllEcritures(moisChoisi);
+				} else {
+					Permanent.createAllEcritures(moisChoisi, dernierMois);
+				}
 				
 				// Mettre à jour l'affichage
+				permanentsModified();
 				stateChanged(null);
 			}// if mois choisi
 
@@ -5,11 +5,13 @@ package haas.olivier.comptes.gui;
 
 import haas.olivier.comptes.Compte;
 import haas.olivier.comptes.ctrl.SituationCritique;
+import haas.olivier.comptes.ctrl.SituationsCritiques;
 import haas.olivier.util.Month;
 import haas.olivier.comptes.gui.actions.CompteObservable;
 import haas.olivier.comptes.gui.actions.CompteObserver;
 import haas.olivier.comptes.gui.actions.MonthObservable;
 import haas.olivier.comptes.gui.actions.MonthObserver;
+import haas.olivier.comptes.gui.actions.RefreshScheduler;
 import haas.olivier.comptes.gui.actions.SoldesObservable;
 import haas.olivier.comptes.gui.actions.SoldesObserver;
 
@@ -116,18 +118,36 @@ public abstract class SoldesPanel extends JPanel implements MonthObserver,
 	}
 
 	/**
-	 * Affiche le solde théorique et solde à vue ou la moyenne à la fin du mois
+	 * Calcule le solde théorique et solde à vue ou la moyenne à la fin du mois
 	 * spécifié.
+	 * <p>
+	 * Cette méthode est appelée en tâche de fond.
+	 * 
+	 * @param compte	Le compte à afficher.
+	 * @param month		Le mois.
+	 * 
+	 * @return			L'affichage des soldes calculés, à exécuter dans le fil
+	 * 					d'événements de Swing.
 	 */
-	protected abstract void setSoldesToMonth(Month month);
+	protected abstract Runnable computeSoldesToMonth(Compte compte,
+			Month month);
 
 	/**
-	 * Affiche le solde théorique et le solde à vue ou la moyenne à la date
+	 * Calcule le solde théorique et le solde à vue ou la moyenne à la date
 	 * spécifiée.
+	 * <p>
+	 * Cette méthode est appelée en tâche de fond.
+	 * 
+	 * @param compte	Le compte à afficher.
+	 * @param date		La date.
+	 * 
+	 * @return			L'affichage des soldes calculés, à exécuter dans le fil
+	 * 					d'événements de Swing.
 	 * 
 	 * @throws IOException
 	 */
-	protected abstract void setSoldesToDate(Date date) throws IOException;
+	protected abstract Runnable computeSoldesToDate(Compte compte, Date date)
+			throws IOException;
 
 	/**
 	 * Met à jour tous les soldes affichés.
@@ -136,23 +156,36 @@ public abstract class SoldesPanel extends JPanel implements MonthObserver,
 	 */
 	public void update() throws IOException {
 		// Mettre à jour solde théorique et solde à vue au mois ou à la date
-		if (MonthObservable.getDate() == null) {
-			setSoldesToMonth(MonthObservable.getMonth());	// Mois sélectionné
-		} else {
-			setSoldesToDate(MonthObservable.getDate());	// Ou Date sélectionnée
-		}
+		refresh(MonthObservable.getMonth(), MonthObservable.getDate());
+	}
+	
+	/**
+	 * Programme le calcul des soldes en tâche de fond, puis leur affichage.
+	 * 
+	 * @param month	Le mois sélectionné.
+	 * @param date	La date sélectionnée, ou <code>null</code> pour afficher les
+	 * 				soldes à la fin du mois.
+	 */
+	private void refresh(Month month, Date date) {
+		Compte compte = this.compte;
+		if (compte == null)			// Rien à afficher s'il n'y a pas de compte
+			return;
+		
+		RefreshScheduler.getInstance().schedule(this,
+				() -> (date == null)
+				? computeSoldesToMonth(compte, month)
+				: computeSoldesToDate(compte, date),
+				Runnable::run);
 	}
 
 	@Override
 	public void monthChanged(Month month) {
-		// Écrire les soldes à ce mois
-		if (compte != null)			// Sauf s'il n'y a pas de compte
-			setSoldesToMonth(month);
+		refresh(month, null);		// Écrire les soldes à ce mois
 	}
 
 	@Override
 	public void dateChanged(Date date) throws IOException {
-		setSoldesToDate(date);		// Écrire les soldes à cette date
+		refresh(Month.getInstance(date), date);	// Écrire les soldes à la date
 	}
 
 	@Override
@@ -165,6 +198,18 @@ public abstract class SoldesPanel extends JPanel implements MonthObserver,
 	public void soldesChanged() throws IOException {
 		update();					// Si les soldesont changé, recalculer tout
 	}
+	
+	/**
+	 * Met à jour l'affichage après une modification des opérations
+	 * permanentes.
+	 * <p>
+	 * Les soldes affichés n'en dépendent pas : l'implémentation par défaut ne
+	 * fait rien.
+	 * 
+	 * @throws IOException
+	 */
+	public void permanentsChanged() throws IOException {
+	}
 }// class SoldesPanel
 
 /**
@@ -202,6 +247,30 @@ class SoldesBancairesPanel extends SoldesPanel {
 	 * Le format de date.
 	 */
 	private final DateFormat dateFormat = new SimpleDateFormat("d MMM");
+	
+	/**
+	 * Le verrou protégeant le cache des situations critiques.
+	 */
+	private final Object cacheLock = new Object();
+	
+	/**
+	 * Le verrou empêchant de calculer plusieurs fois en même temps les
+	 * situations critiques.
+	 */
+	private final Object computeLock = new Object();
+	
+	/**
+	 * Les situations critiques de tous les comptes bancaires, ou
+	 * <code>null</code> si elles doivent être recalculées.
+	 */
+	private SituationsCritiques situations;
+	
+	/**
+	 * Le numéro de version des situations critiques. Il est incrémenté à chaque
+	 * changement de soldes ou d'opérations permanentes, pour écarter les
+	 * situations calculées avant.
+	 */
+	private long version = 0;
 
 	/**
 	 * Construit un panneau des soldes pour les comptes bancaires.
@@ -255,54 +324,149 @@ class SoldesBancairesPanel extends SoldesPanel {
 	}
 
 	@Override
-	protected void setSoldesToMonth(Month month) {
-		theo.setText(NF.format(compte.getHistorique(month)));
-		aVue.setText(NF.format(compte.getSoldeAVue(month)));
-		updateSoldeCritique();
+	protected Runnable computeSoldesToMonth(Compte compte, Month month) {
+		return computeSoldes(compte,
+				compte.getHistorique(month), compte.getSoldeAVue(month));
 	}
 
 	@Override
-	protected void setSoldesToDate(Date date) throws IOException {
+	protected Runnable computeSoldesToDate(Compte compte, Date date)
+			throws IOException {
 		Month month = Month.getInstance(date);
-		theo.setText(NF.format(compte.getHistoriqueIn(month).getSoldeAt(date)));
-		aVue.setText(NF.format(compte.getSoldeAVueIn(month).getSoldeAt(date)));
+		return computeSoldes(compte,
+				compte.getHistoriqueIn(month).getSoldeAt(date),
+				compte.getSoldeAVueIn(month).getSoldeAt(date));
 	}
-
-	@Override
-	public void update() throws IOException {
-		super.update();
-		updateSoldeCritique();
+	
+	/**
+	 * Calcule la situation critique du compte et renvoie l'affichage de
+	 * l'ensemble des soldes.
+	 * 
+	 * @param compte	Le compte.
+	 * @param historique
+	 * 					Le solde théorique à afficher.
+	 * @param soldeAVue	Le solde à vue à afficher.
+	 * 
+	 * @return			L'affichage des soldes, à exécuter dans le fil
+	 * 					d'événements de Swing.
+	 */
+	private Runnable computeSoldes(Compte compte, BigDecimal historique,
+			BigDecimal soldeAVue) {
+		SituationCritique situationCritique = computeSituationCritique(compte);
+		return () -> {
+			theo.setText(NF.format(historique));
+			aVue.setText(NF.format(soldeAVue));
+			updateSoldeCritique(situationCritique);
+		};
 	}
 	
 	/**
-	 * Met à jour les libellés "solde critique...le..." en fontion de la
-	 * situation du compte au cours du mois spécifié. 
+	 * Renvoie la situation critique du compte.
+	 * <p>
+	 * Les situations critiques de tous les comptes bancaires sont calculées
+	 * ensemble, puis gardées en cache jusqu'au prochain changement de soldes ou
+	 * au changement de jour. Un changement de mois ou de compte se contente
+	 * donc de lire le cache.
 	 * <p>
 	 * Si le compte n'est pas un compte bancaire (ce qui ne devrait jamais
-	 * arriver), la méthode ne fait rien.
+	 * arriver), ou en cas d'erreur de lecture, la méthode renvoie
+	 * <code>null</code>.
+	 * 
+	 * @param compte	Le compte.
 	 */
-	private void updateSoldeCritique() {
+	private SituationCritique computeSituationCritique(Compte compte) {
 		if (compte.getType().isBancaire()) {
 			try {
-				SituationCritique situationCritique =
-						compte.getSituationCritique();
-				Date dateCritique =						// Date de la situation
-						situationCritique.getDateCritique();
-				BigDecimal soldeCritique =				// Montant critique
-						situationCritique.getSoldeMini();
-
-				// Convertir au format texte
-				crit.setText(NF.format(soldeCritique));
-				date.setText("le " + dateFormat.format(dateCritique));
+				return getSituations().get(compte);
 				
 			} catch (IOException e) {
-				crit.setText(null);
-				date.setText(null);
 				Logger.getLogger(getClass().getName()).log(Level.SEVERE,
 						"Erreur de lecture des données pour calculer la situation critique",
 						e);
 			}
 		}
+		return null;
+	}
+	
+	/**
+	 * Renvoie les situations critiques de tous les comptes bancaires, en les
+	 * calculant si elles ne sont pas en cache.
+	 * <p>
+	 * Cette méthode est appelée en tâche de fond.
+	 * 
+	 * @throws IOException
+	 */
+	private SituationsCritiques getSituations() throws IOException {
+		synchronized (computeLock) {
+			SituationsCritiques cached;
+			long v;
+			synchronized (cacheLock) {
+				cached = situations;
+				v = version;
+			}
+			
+			Date today = new Date();
+			if (cached != null && cached.isStartedOn(today))
+				return cached;
+			
+			// Calculer en dehors du verrou du cache
+			SituationsCritiques computed =
+					SituationsCritiques.forBancaires(today);
+			
+			// Ne garder en cache que si les soldes n'ont pas changé entre-temps
+			synchronized (cacheLock) {
+				if (v == version)
+					situations = computed;
+			}
+			return computed;
+		}
+	}
+	
+	/**
+	 * Invalide les situations critiques en cache, puis met à jour l'affichage.
+	 * Le nouveau calcul a lieu en tâche de fond.
+	 */
+	@Override
+	public void soldesChanged() throws IOException {
+		synchronized (cacheLock) {
+			situations = null;
+			version++;
+		}
+		super.soldesChanged();
+	}
+	
+	/**
+	 * Invalide les situations critiques en cache, qui tiennent compte des
+	 * opérations permanentes du mois suivant, puis met à jour l'affichage.
+	 */
+	@Override
+	public void permanentsChanged() throws IOException {
+		soldesChanged();
+	}
+	
+	/**
+	 * Met à jour les libellés "solde critique...le..." en fontion de la
+	 * situation du compte au cours du mois spécifié. 
+	 * 
+	 * @param situationCritique
+	 * 			La situation critique du compte, ou <code>null</code> pour
+	 * 			effacer les libellés.
+	 */
+	private void updateSoldeCritique(SituationCritique situationCritique) {
+		if (situationCritique == null) {
+			crit.setText(null);
+			date.setText(null);
+			
+		} else {
+			Date dateCritique =						// Date de la situation
+					situationCritique.getDateCritique();
+			BigDecimal soldeCritique =				// Montant critique
+					situationCritique.getSoldeMini();
+
+			// Convertir au format texte
+			crit.setText(NF.format(soldeCritique));
+			date.setText("le " + dateFormat.format(dateCritique));
+		}
 	}
 }// class SoldesBancairesPanel
 
@@ -366,15 +530,33 @@ class SoldesBudgetPanel extends SoldesPanel {
 	}
 
 	@Override
-	protected void setSoldesToMonth(Month month) {
-		theo.setText(NF.format(compte.getHistorique(month)));
-		moy.setText(NF.format(compte.getMoyenne(month)));
+	protected Runnable computeSoldesToMonth(Compte compte, Month month) {
+		return computeSoldes(
+				compte.getHistorique(month), compte.getMoyenne(month));
 	}
 
 	@Override
-	protected void setSoldesToDate(Date date) throws IOException {
+	protected Runnable computeSoldesToDate(Compte compte, Date date)
+			throws IOException {
 		Month month = Month.getInstance(date);
-		theo.setText(NF.format(compte.getHistoriqueIn(month).getSoldeAt(date)));
-		moy.setText(NF.format(compte.getMoyenne(month)));
+		return computeSoldes(
+				compte.getHistoriqueIn(month).getSoldeAt(date),
+				compte.getMoyenne(month));
+	}
+	
+	/**
+	 * Renvoie l'affichage des soldes.
+	 * 
+	 * @param historique	Le solde théorique à afficher.
+	 * @param moyenne		La moyenne à afficher.
+	 * 
+	 * @return				L'affichage des soldes, à exécuter dans le fil
+	 * 						d'événements de Swing.
+	 */
+	private Runnable computeSoldes(BigDecimal historique, BigDecimal moyenne) {
+		return () -> {
+			theo.setText(NF.format(historique));
+			moy.setText(NF.format(moyenne));
+		};
 	}
 }// class SoldesBudgetPanel
\ No newline at end of file
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.gui.actions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * Un planificateur des rafraîchissements des vues.
+ * <p>
+ * Chaque demande de rafraîchissement se compose d'un calcul, exécuté en tâche
+ * de fond, et d'une publication du résultat, exécutée dans le fil
+ * d'événements de Swing.
+ * <p>
+ * Les demandes sont regroupées par vue : une nouvelle demande pour une vue
+ * annule la précédente si celle-ci n'a pas encore commencé, et rend son
+ * résultat obsolète sinon. Seul le résultat de la dernière demande est donc
+ * publié, ce qui évite les recalculs en rafale quand l'utilisateur fait
+ * défiler les mois.<br>
+ * Les résultats prêts en même temps sont publiés ensemble, en un seul passage
+ * dans le fil d'événements.
+ * <p>
+ * Le planificateur ne garde une référence vers une vue que le temps de traiter
+ * sa dernière demande. Une vue fermée doit néanmoins être désinscrite par
+ * {@link #unregister(Object)}, pour que sa demande en cours ne soit pas
+ * publiée.
+ *
+ * @author Olivier HAAS
+ */
+public class RefreshScheduler {
+
+	/**
+	 * Le délai d'attente avant de lancer un calcul, en millisecondes.
+	 * <p>
+	 * Les demandes qui arrivent pendant ce délai remplacent la demande en
+	 * attente.
+	 */
+	private static final long DELAY = 40;
+
+	/**
+	 * Le nombre de fils d'exécution consacrés aux calculs.
+	 */
+	private static final int THREADS = 2;
+
+	/**
+	 * L'instance unique utilisée par l'interface graphique.
+	 */
+	private static final RefreshScheduler INSTANCE =
+			new RefreshScheduler(DELAY, SwingUtilities::invokeLater);
+
+	/**
+	 * Renvoie l'instance utilisée par l'interface graphique.
+	 */
+	public static RefreshScheduler getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Le délai d'attente avant de lancer un calcul, en millisecondes.
+	 */
+	private final long delay;
+
+	/**
+	 * L'exécuteur des calculs en tâche de fond.
+	 */
+	private final ScheduledExecutorService executor;
+
+	/**
+	 * L'exécuteur des publications, c'est-à-dire normalement le fil
+	 * d'événements de Swing.
+	 */
+	private final Executor publisher;
+
+	/**
+	 * Le compteur des demandes, qui sert à les numéroter.
+	 */
+	private final AtomicLong counter = new AtomicLong();
+
+	/**
+	 * Le numéro de la dernière demande, pour chaque vue ayant une demande en
+	 * cours.
+	 */
+	private final Map<Object, Long> generations = new ConcurrentHashMap<>();
+
+	/**
+	 * La dernière tâche planifiée, pour chaque vue ayant une demande en cours.
+	 */
+	private final Map<Object, Future<?>> tasks = new ConcurrentHashMap<>();
+
+	/**
+	 * Les publications prêtes, en attente d'être exécutées ensemble.
+	 */
+	private final List<Runnable> batch = new ArrayList<>();
+
+	/**
+	 * Construit un planificateur des rafraîchissements.
+	 *
+	 * @param delay		Le délai d'attente avant de lancer un calcul, en
+	 * 					millisecondes.
+	 *
+	 * @param publisher	L'exécuteur des publications.
+	 */
+	RefreshScheduler(long delay, Executor publisher) {
+		this.delay = delay;
+		this.publisher = publisher;
+
+		ScheduledThreadPoolExecutor pool =
+				new ScheduledThreadPoolExecutor(THREADS, runnable -> {
+					Thread thread = new Thread(runnable, "Rafraîchissement");
+					thread.setDaemon(true);
+					return thread;
+				});
+		pool.setRemoveOnCancelPolicy(true);
+		executor = pool;
+	}
+
+	/**
+	 * Planifie le rafraîchissement d'une vue.
+	 * <p>
+	 * Les données nécessaires au calcul doivent être capturées par l'appelant
+	 * au moment de la demande, puisque le calcul s'exécute plus tard et dans un
+	 * autre fil.
+	 *
+	 * @param view			La vue à rafraîchir. Sert uniquement à regrouper
+	 * 						les demandes.
+	 *
+	 * @param computation	Le calcul à effectuer en tâche de fond.
+	 *
+	 * @param publication	La publication du résultat dans la vue. Elle n'est
+	 * 						pas exécutée si une demande plus récente a été
+	 * 						faite pour la même vue entre-temps.
+	 */
+	public <T> void schedule(Object view, Callable<T> computation,
+			Consumer<? super T> publication) {
+		long generation = counter.incrementAndGet();
+		generations.put(view, generation);
+		Future<?> previous = tasks.put(view, executor.schedule(
+				() -> compute(view, generation, computation, publication),
+				delay, TimeUnit.MILLISECONDS));
+
+		// Annuler la demande précédente si elle n'a pas encore commencé
+		if (previous != null)
+			previous.cancel(false);
+	}
+
+	/**
+	 * Annule la demande en cours pour une vue, qu'elle soit en attente ou en
+	 * cours de calcul.
+	 * <p>
+	 * Cette méthode est utile quand la vue a été mise à jour directement, pour
+	 * éviter qu'une publication obsolète ne vienne écraser l'affichage.
+	 *
+	 * @param view	La vue concernée.
+	 */
+	public void cancel(Object view) {
+		generations.remove(view);
+		Future<?> previous = tasks.remove(view);
+		if (previous != null)
+			previous.cancel(false);
+	}
+
+	/**
+	 * Désinscrit une vue fermée. Sa demande en cours est annulée, et le
+	 * planificateur ne garde plus aucune référence vers elle.
+	 *
+	 * @param view	La vue fermée.
+	 */
+	public void unregister(Object view) {
+		cancel(view);
+	}
+
+	/**
+	 * Oublie une vue dont la dernière demande a été traitée. Rien n'est fait
+	 * si une demande plus récente est arrivée entre-temps.
+	 *
+	 * @param view			La vue concernée.
+	 * @param generation	Le numéro de la demande traitée.
+	 */
+	private void release(Object view, long generation) {
+		if (generations.remove(view, generation))
+			tasks.remove(view);
+	}
+
+	/**
+	 * Renvoie le nombre de vues ayant une demande en cours.
+	 */
+	int size() {
+		return generations.size();
+	}
+
+	/**
+	 * Exécute un calcul et prépare la publication de son résultat.
+	 *
+	 * @param view			La vue à rafraîchir.
+	 * @param generation	Le numéro de la demande.
+	 * @param computation	Le calcul à effectuer.
+	 * @param publication	La publication du résultat.
+	 */
+	private <T> void compute(Object view, long generation,
+			Callable<T> computation, Consumer<? super T> publication) {
+		if (isStale(view, generation))
+			return;
+
+		T result;
+		try {
+			result = computation.call();
+		} catch (Exception e) {
+			Logger.getLogger(getClass().getName()).log(Level.SEVERE,
+					"Erreur pendant le calcul des données à afficher", e);
+			release(view, generation);
+			return;
+		}
+
+		// Publier, sauf si une demande plus récente est arrivée entre-temps
+		if (!isStale(view, generation)) {
+			publish(() -> {
+				try {
+					if (!isStale(view, generation))
+						publication.accept(result);
+				} finally {
+					release(view, generation);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Indique si une demande a été remplacée par une demande plus récente, ou
+	 * annulée.
+	 *
+	 * @param view			La vue concernée.
+	 * @param generation	Le numéro de la demande.
+	 */
+	private boolean isStale(Object view, long generation) {
+		Long last = generations.get(view);
+		return last == null || last != generation;
+	}
+
+	/**
+	 * Ajoute une publication au lot en attente, et programme l'exécution du
+	 * lot s'il ne l'était pas déjà.
+	 */
+	private void publish(Runnable runnable) {
+		synchronized (batch) {
+			batch.add(runnable);
+			if (batch.size() > 1)
+				return;						// Lot déjà programmé
+		}
+		publisher.execute(this::flush);
+	}
+
+	/**
+	 * Exécute toutes les publications en attente.
+	 */
+	private void flush() {
+		List<Runnable> runnables;
+		synchronized (batch) {
+			runnables = new ArrayList<>(batch);
+			batch.clear();
+		}
+		for (Runnable runnable : runnables)
+			runnable.run();
+	}
+}
@@ -4,14 +4,15 @@
 package haas.olivier.comptes.gui.diagram;
 
 import java.io.IOException;
-import java.math.BigDecimal;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Date;
 import java.util.List;
-import java.util.Map;
-import java.util.function.BiFunction;
 
 import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.ctrl.DailySoldes;
+import haas.olivier.comptes.ctrl.Previsions;
 import haas.olivier.comptes.dao.DAOFactory;
 import haas.olivier.diagram.DiagramAndAxisComponent;
 import haas.olivier.diagram.DiagramFactory;
@@ -27,6 +28,11 @@ import haas.olivier.util.Month;
  * @author Olivier Haas
  */
 public class ComptesDiagramFactory {
+	
+	/**
+	 * Le nombre de mois prévus par le diagramme prévisionnel.
+	 */
+	private static final int HORIZON = 24;
 
 	/**
 	 * Construit un diagramme affichant les moyennes glissantes des comptes
@@ -36,17 +42,19 @@ public class ComptesDiagramFactory {
 	 */
 	public static DiagramAndAxisComponent newMoyenne() throws IOException {
 		return DiagramFactory.newCourbe(newModel(false, "moyennes",
-				(c, month) -> {
-					BigDecimal montant = c.getMoyenne(month);
+				(c, from, count) -> {
+					double[] montants = c.getMoyennes(from, count);
 
 					// Pour les dépenses, on préfère des montants en positif
 					switch (c.getType()) {
 					case DEPENSES:
 					case DEPENSES_EN_EPARGNE:
-						return montant.negate();
+						for (int i = 0; i < montants.length; i++)
+							montants[i] = -montants[i];
+						break;
 					default:
-						return montant;
 					}
+					return montants;
 				}));
 	}
 	
@@ -58,7 +66,92 @@ public class ComptesDiagramFactory {
 	 */
 	public static DiagramAndAxisComponent newPatrimoine() throws IOException {
 		return DiagramFactory.newAire(newModel(true, "patrimoine",
-				(c, month) -> c.getSoldeAVue(month)));
+				Compte::getSoldesAVue));
+	}
+	
+	/**
+	 * Construit un diagramme affichant les soldes quotidiens des comptes
+	 * bancaires sous forme d'aires cumulées, depuis l'ouverture du plus ancien.
+	 * <p>
+	 * Les soldes de tous les comptes sont calculés en un seul parcours des
+	 * écritures. Les séries sont masquées et ordonnées comme dans le
+	 * diagramme mensuel du patrimoine.
+	 * 
+	 * @throws IOException
+	 */
+	public static DiagramAndAxisComponent newPatrimoineQuotidien()
+			throws IOException {
+		DAOFactory factory = DAOFactory.getFactory();
+		DailySoldes soldes = DailySoldes.forBancaires(new Date(), true);
+		
+		// Les jours en abscisses
+		DateFormat format = new SimpleDateFormat("dd/MM/yy");
+		Object[] days = new Object[soldes.getDayCount()];
+		for (int i = 0; i < days.length; i++)
+			days[i] = format.format(soldes.getDate(i));
+		
+		// Une série par compte bancaire
+		DiagramModel model = new SimpleDiagramModel(days);
+		for (Compte compte : factory.getCompteDAO().getAll()) {
+			double[] serie = soldes.getSoldes(compte);
+			if (serie != null) {
+				model.add(new Serie(compte.getId(), compte.getNom(),
+						compte.getColor(), true, days, serie));
+			}
+		}
+		
+		// Appliquer les propriétés
+		model.getOrdener().setMemento(
+				factory.getPropertiesDAO().getDiagramProperties("patrimoine"));
+		
+		return DiagramFactory.newAireDense(model);
+	}
+	
+	/**
+	 * Construit un diagramme prévisionnel des soldes des comptes bancaires,
+	 * sous forme d'aires cumulées.
+	 * <p>
+	 * Jusqu'au mois en cours, il s'agit des soldes théoriques enregistrés.
+	 * Pour les {@value #HORIZON} mois suivants, il s'agit des soldes prévus en
+	 * simulant les opérations permanentes, sans générer d'écritures.
+	 * 
+	 * @throws IOException
+	 */
+	public static DiagramAndAxisComponent newPrevisionnel() throws IOException {
+		DAOFactory factory = DAOFactory.getFactory();
+		Month debut = factory.getDebut();
+		Month today = Month.getInstance();
+		Previsions previsions =
+				Previsions.forBancaires(today.getNext(), HORIZON);
+		
+		// Les mois en abscisses, jusqu'à la fin des prévisions
+		List<Month> months = new ArrayList<>();
+		for (Month month = debut; !month.after(today); month = month.getNext())
+			months.add(month);
+		int past = months.size();
+		for (int i = 0; i < HORIZON; i++)
+			months.add(today.getTranslated(i + 1));
+		Object[] xValues = months.toArray();
+		
+		// Une série par compte bancaire : l'historique, puis les prévisions
+		DiagramModel model = new SimpleDiagramModel(xValues);
+		for (Compte compte : factory.getCompteDAO().getAll()) {
+			double[] prevus = previsions.getHistoriques(compte);
+			if (prevus == null)
+				continue;
+			double[] values = new double[xValues.length];
+			System.arraycopy(compte.getHistoriques(debut, past), 0,
+					values, 0, past);
+			System.arraycopy(prevus, 0, values, past, HORIZON);
+			model.add(new Serie(compte.getId(), compte.getNom(),
+					compte.getColor(), true, xValues, values));
+		}
+		
+		// Appliquer les propriétés
+		model.getOrdener().setMemento(
+				factory.getPropertiesDAO().getDiagramProperties("previsionnel"));
+		
+		return DiagramFactory.newAire(model);
 	}
 	
 	/**
@@ -78,16 +171,20 @@ public class ComptesDiagramFactory {
 	 * @throws IOException
 	 */
 	private static DiagramModel newModel(boolean bancaire, String name,
-			BiFunction<Compte, Month, BigDecimal> provider) throws IOException {
+			SuiviProvider provider) throws IOException {
 		
 		// Construire le modèle
 		DiagramModel model = newChronoModel();
 		DAOFactory factory = DAOFactory.getFactory();
+		Object[] months = model.getXValues();
 		for (Compte compte : factory.getCompteDAO().getAll()) {
 			if (compte.getType().isBancaire() == bancaire) {
+				
+				// Lire toute la série en une fois, alignée sur les mois
 				model.add(new Serie(
 						compte.getId(), compte.getNom(), compte.getColor(),
-						true, getSuivi(compte, provider)));
+						true, months, provider.getSuivis(
+								compte, factory.getDebut(), months.length)));
 			}
 		}
 		
@@ -112,27 +209,23 @@ public class ComptesDiagramFactory {
 	}
 	
 	/**
-	 * Renvoie une collection des suivis (les montants) d'un compte sur
-	 * l'ensemble de la période disponible.
-	 * 
-	 * @param compte	Le compte dont on veut collecter le suivi.
-	 * 
-	 * @param montantProvider
-	 * 					L'objet d'accès aux données de suivi souhaitées :
-	 * 					soldes à vue, soldes théoriques ou moyennes glissantes
-	 * 					selon le cas. 
-	 * 
-	 * @return			Une nouvelle collection contenant les données de suivi.
+	 * Un fournisseur de séries de suivis d'un compte.
+	 *
+	 * @author Olivier Haas
 	 */
-	private static Map<Object, Number> getSuivi(Compte compte,
-			BiFunction<Compte, Month, BigDecimal> montantProvider) {
-		Month debut = DAOFactory.getFactory().getDebut();
-		Month today = Month.getInstance();
-		
-		Map<Object, Number> suivi = new HashMap<>();
-		for (Month month = debut; !month.after(today); month = month.getNext())
-			suivi.put(month, montantProvider.apply(compte, month));
+	@FunctionalInterface
+	private interface SuiviProvider {
 		
-		return suivi;
+		/**
+		 * Renvoie les suivis d'un compte pour des mois consécutifs.
+		 * 
+		 * @param compte	Le compte.
+		 * @param from		Le premier mois.
+		 * @param count		Le nombre de mois.
+		 * 
+		 * @return			Les montants de chaque mois, dans l'ordre
+		 * 					chronologique.
+		 */
+		double[] getSuivis(Compte compte, Month from, int count);
 	}
 }
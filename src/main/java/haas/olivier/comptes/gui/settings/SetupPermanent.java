@@ -309,6 +309,7 @@ public class SetupPermanent {
 		DAOFactory.getFactory().getPermanentDAO().remove(permanent.getId());
 		controller.setPermanent(null);
 		fillPermanentList();
+		gui.permanentsModified();
 	}
 
 	/**
@@ -338,6 +339,7 @@ public class SetupPermanent {
 		
 		// Recharger la (nouvelle) liste des comptes
 		fillPermanentList();
+		gui.permanentsModified();
 		return true;
 	}
 
@@ -9,6 +9,7 @@ import haas.olivier.comptes.Ecriture;
 import haas.olivier.comptes.dao.DAOFactory;
 import haas.olivier.comptes.gui.actions.DataObservable;
 import haas.olivier.comptes.gui.actions.DataObserver;
+import haas.olivier.comptes.gui.actions.RefreshScheduler;
 import haas.olivier.util.Month;
 
 import java.awt.Color;
@@ -152,9 +153,25 @@ implements DataObserver {
 	
 	/**
 	 * Réactualise la liste des numéros de chèques à proposer en autocomplétion.
+	 * <p>
+	 * La liste est calculée en tâche de fond.
 	 */
 	@Override
 	public void dataModified() {
+		RefreshScheduler.getInstance().schedule(this, this::findNextNumbers,
+				values -> ((DefaultCompletionModel<Integer>) model)
+				.setValues(values));
+	}
+	
+	/**
+	 * Détermine les prochains numéros de chèques possibles, à partir des
+	 * numéros des écritures récentes.
+	 * 
+	 * @return	Une liste triée des numéros à suggérer.
+	 */
+	private List<Integer> findNextNumbers() {
+		List<Integer> values =						// Valeurs à suggérer
+				new ArrayList<Integer>();
 		try {
 			// Récupérer les écritures à lire
 			Iterable<Ecriture> ecritures =
@@ -169,8 +186,6 @@ implements DataObserver {
 			}
 			
 			// Déterminer les prochains numéros de chèques possibles
-			List<Integer> values =					// Valeurs à suggérer
-					new ArrayList<Integer>();
 			Iterator<Integer> it =					// Itérateur décroissant
 					nums.descendingIterator();
 			Integer prec = null;
@@ -183,13 +198,13 @@ implements DataObserver {
 				prec = num;							// Passer au suivant
 			}
 			
-			// Définir ces numéros comme valeurs d'autocomplétion
-			Collections.sort(values);				// Trier
-			((DefaultCompletionModel<Integer>) model).setValues(values);
+			// Trier ces numéros pour l'autocomplétion
+			Collections.sort(values);
 			
 		} catch (IOException e) {
 			e.printStackTrace();
 			// TODO Exceptino à gérer
 		}
+		return values;
 	}
 }
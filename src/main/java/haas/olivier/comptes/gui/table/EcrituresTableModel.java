@@ -7,6 +7,10 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,10 +28,17 @@ import haas.olivier.comptes.gui.actions.CompteObservable;
 import haas.olivier.comptes.gui.actions.DataObservable;
 import haas.olivier.comptes.gui.actions.DataObserver;
 import haas.olivier.comptes.gui.actions.MonthObservable;
+import haas.olivier.comptes.gui.actions.RefreshScheduler;
 
 /**
  * Un <code>TableModel</code> pour lister les écritures d'un compte sur une
  * période donnée.
+ * <p>
+ * Le modèle ne conserve que la liste des écritures à afficher. Les modèles de
+ * lignes ne sont construits qu'à la demande, pour les lignes affichées et
+ * leurs voisines, et seuls les plus récemment utilisés sont conservés.<br>
+ * Lors d'une mise à jour, seules les lignes qui ont changé sont signalées à la
+ * vue.
  * 
  * @author Olivier HAAS
  */
@@ -61,6 +72,17 @@ implements DataObserver {
 	 * Nombre minimum de lignes à afficher (sous réserve d'écritures dispo).
 	 */
 	private static final int LIGNES_MINI = 50; 
+	
+	/**
+	 * Nombre de lignes voisines dont les modèles sont construits en même temps
+	 * que celui d'une ligne demandée, de part et d'autre de celle-ci.
+	 */
+	private static final int PREFETCH = 40;
+	
+	/**
+	 * Nombre maximum de modèles de lignes conservés.
+	 */
+	private static final int CACHE_SIZE = 400;
 
 	/**
 	 * Drapeau indiquant si les écritures doivent être triées par pointage.
@@ -78,9 +100,50 @@ implements DataObserver {
 	}
 	
 	/**
-	 * Les modèles des écritures comptables à afficher.
+	 * Les écritures comptables à afficher, ligne par ligne.
+	 * <p>
+	 * La ligne de saisie est représentée par <code>null</code>.
+	 */
+	private final List<Ecriture> ecritures = new ArrayList<>();
+	
+	/**
+	 * Les modèles de lignes déjà construits, par identifiant d'écriture, du
+	 * moins récemment utilisé au plus récemment utilisé.
+	 * <p>
+	 * Au-delà de CACHE_SIZE modèles, le moins récemment utilisé est oublié,
+	 * sauf s'il contient une saisie non enregistrée.
+	 */
+	@SuppressWarnings("serial")
+	private final Map<Integer, EcritureRowModel> rowModels =
+			new LinkedHashMap<Integer, EcritureRowModel>(
+					CACHE_SIZE * 4 / 3, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<Integer, EcritureRowModel> eldest) {
+			if (size() <= CACHE_SIZE)
+				return false;
+			
+			// Oublier le plus ancien modèle sans saisie en cours
+			Iterator<EcritureRowModel> it = values().iterator();
+			while (it.hasNext()) {
+				if (!it.next().isDirty()) {
+					it.remove();
+					break;
+				}
+			}
+			return false;
+		}
+	};// classe anonyme LinkedHashMap
+	
+	/**
+	 * Le modèle de la ligne de saisie.
+	 */
+	private EcritureRowModel entryRowModel;
+	
+	/**
+	 * Le compte pour lequel les modèles de lignes ont été construits.
 	 */
-	protected final ArrayList<EcritureRowModel> rowModels = new ArrayList<>();
+	private Compte rowModelsCompte;
 
 	/**
 	 * Observable de changements de données.
@@ -134,33 +197,190 @@ implements DataObserver {
 	 */
 	@Override
 	public void update() {
-		LOGGER.config("Rafraîchissement des données...");
+		setRows(getDisposition(compte), loadEcritures(
+				compte, MonthObservable.getMonth(), triPointage));
+	}
+	
+	/**
+	 * Programme une mise à jour du modèle.
+	 * <p>
+	 * Les écritures sont lues en tâche de fond. L'affichage est mis à jour
+	 * ultérieurement, dans le fil d'événements de Swing.
+	 */
+	@Override
+	public void refresh() {
+		
+		// Capturer les paramètres de la vue au moment de la demande
+		Compte compte = this.compte;
+		Month month = MonthObservable.getMonth();
+		boolean triPointage = EcrituresTableModel.triPointage;
+		ColumnType[] newDisposition = getDisposition(compte);
+		
+		RefreshScheduler.getInstance().schedule(this,
+				() -> loadEcritures(compte, month, triPointage),
+				rows -> setRows(newDisposition, rows));
+	}
+	
+	/**
+	 * Renvoie la disposition des colonnes adaptée à un compte.
+	 * 
+	 * @param compte	Le compte à afficher.
+	 */
+	private static ColumnType[] getDisposition(Compte compte) {
+		return (compte != null && compte.getType() == TypeCompte.SUIVI_EPARGNE)
+				? epargneDisposition			// Onglet épargne
+				: normalDisposition;			// Disposition normale
+	}
+	
+	/**
+	 * Remplace les lignes affichées.
+	 * <p>
+	 * Si la disposition et le compte n'ont pas changé, seules les lignes
+	 * modifiées, insérées ou supprimées sont signalées à la vue.
+	 * 
+	 * @param newDisposition	La disposition des colonnes.
+	 * @param rows				Les écritures des nouvelles lignes, avec
+	 * 							<code>null</code> pour la ligne de saisie.
+	 */
+	void setRows(ColumnType[] newDisposition, List<Ecriture> rows) {
 		
 		// Ajuster la disposition des colonnes
-		if (compte != null && compte.getType() == TypeCompte.SUIVI_EPARGNE) {
-			// Onglet épargne
-			
-			// Utiliser la disposition spécifique pour l'épargne 
-			if (disposition != epargneDisposition) {
-				setDisposition(epargneDisposition);
-			}
-			
+		boolean structureChanged = (disposition != newDisposition);
+		if (structureChanged)
+			setDisposition(newDisposition);
+		
+		// Oublier les modèles de lignes construits pour un autre compte
+		boolean compteChanged = (compte != rowModelsCompte);
+		if (compteChanged) {
+			rowModels.clear();
+			rowModelsCompte = compte;
+		}
+		
+		// Nouvelle ligne de saisie
+		entryRowModel = new EcritureRowModel(null, compte);
+		
+		List<Ecriture> old = new ArrayList<>(ecritures);
+		ecritures.clear();
+		ecritures.addAll(rows);
+		
+		// Mettre à jour l'affichage
+		if (structureChanged || compteChanged) {
+			fireTableDataChanged();
 		} else {
+			fireRowsChanged(old, ecritures);
+		}
+	}
+	
+	/**
+	 * Signale à la vue les lignes qui diffèrent entre deux listes.
+	 * <p>
+	 * Les débuts et fins communs aux deux listes sont ignorés, à l'exception
+	 * de la ligne de saisie qui est toujours renouvelée. Le reste est signalé
+	 * comme modifié, complété selon le cas par des lignes insérées ou
+	 * supprimées.
+	 * 
+	 * @param old	Les anciennes écritures.
+	 * @param rows	Les nouvelles écritures.
+	 */
+	private void fireRowsChanged(List<Ecriture> old, List<Ecriture> rows) {
+		int oldSize = old.size(), newSize = rows.size();
+		int min = Math.min(oldSize, newSize);
+		
+		// Longueurs du début et de la fin communs
+		int prefix = 0;
+		while (prefix < min && old.get(prefix) == rows.get(prefix))
+			prefix++;
+		int suffix = 0;
+		while (suffix < min - prefix
+				&& old.get(oldSize - 1 - suffix)
+				== rows.get(newSize - 1 - suffix))
+			suffix++;
+		
+		// Lignes modifiées, puis insérées ou supprimées
+		int oldMiddle = oldSize - prefix - suffix;
+		int newMiddle = newSize - prefix - suffix;
+		int updated = Math.min(oldMiddle, newMiddle);
+		if (updated > 0)
+			fireTableRowsUpdated(prefix, prefix + updated - 1);
+		if (newMiddle > oldMiddle) {
+			fireTableRowsInserted(prefix + updated, prefix + newMiddle - 1);
+		} else if (oldMiddle > newMiddle) {
+			fireTableRowsDeleted(prefix + updated, prefix + oldMiddle - 1);
+		}
+		
+		// La ligne de saisie a été renouvelée
+		int entryRow = rows.indexOf(null);
+		if (entryRow >= 0 && (entryRow < prefix || entryRow >= prefix + updated))
+			fireTableRowsUpdated(entryRow, entryRow);
+	}
+	
+	/**
+	 * Renvoie le modèle d'une ligne, en le construisant si besoin.
+	 * <p>
+	 * Les modèles des lignes voisines sont construits en même temps, afin que
+	 * le défilement de la table ne les construise pas un par un.
+	 * 
+	 * @param row	L'index de la ligne.
+	 */
+	EcritureRowModel getRowModel(int row) {
+		Ecriture e = ecritures.get(row);
+		if (e == null)
+			return entryRowModel;
+		
+		EcritureRowModel rowModel = rowModels.get(e.id);
+		if (!isValid(rowModel, e)) {
+			rowModel = getEcritureRowModel(e);
 			
-			// Disposition normale
-			if (disposition != normalDisposition) {
-				setDisposition(normalDisposition);
+			// Construire les lignes voisines, puis celle-ci en dernier
+			int to = Math.min(ecritures.size(), row + PREFETCH + 1);
+			for (int i = Math.max(0, row - PREFETCH); i < to; i++) {
+				Ecriture voisine = ecritures.get(i);
+				if (voisine != null && i != row
+						&& !isValid(rowModels.get(voisine.id), voisine))
+					rowModels.put(voisine.id, getEcritureRowModel(voisine));
 			}
+			rowModels.put(e.id, rowModel);
 		}
-
-		Month month = MonthObservable.getMonth();	// Le mois sélectionné
+		return rowModel;
+	}
+	
+	/**
+	 * Indique si un modèle de ligne peut être utilisé pour afficher une
+	 * écriture.
+	 * <p>
+	 * Un modèle construit pour une version antérieure de l'écriture est
+	 * obsolète, sauf s'il contient une saisie non enregistrée : celle-ci est
+	 * conservée.
+	 * 
+	 * @param rowModel	Le modèle de ligne, ou <code>null</code>.
+	 * @param e			L'écriture à afficher.
+	 */
+	private static boolean isValid(EcritureRowModel rowModel, Ecriture e) {
+		return rowModel != null
+				&& (rowModel.getEcriture() == e || rowModel.isDirty());
+	}
+	
+	/**
+	 * Établit la liste des écritures à afficher.
+	 * 
+	 * @param compte		Le compte à afficher.
+	 * @param month			Le mois sélectionné.
+	 * @param triPointage	<code>true</code> pour trier les écritures par
+	 * 						pointage.
+	 * 
+	 * @return				Une nouvelle liste des écritures à afficher,
+	 * 						commençant par <code>null</code> pour la ligne de
+	 * 						saisie.
+	 */
+	private List<Ecriture> loadEcritures(Compte compte, Month month,
+			boolean triPointage) {
+		LOGGER.config("Rafraîchissement des données...");
 		Month today = Month.getInstance();			// Le mois actuel
+		List<Ecriture> rows = new ArrayList<>();
 
 		try {
-			// Créer les modèles des lignes d'écritures à afficher
-			rowModels.clear();						// Effacer l'existant
-			rowModels.add(							// Modèle de saisie
-					new EcritureRowModel(null, compte));
+			// Lister les écritures à afficher
+			rows.add(null);							// Ligne de saisie
 			
 			// Récupérer les écritures
 			EcritureDAO dao = DAOFactory.getFactory().getEcritureDAO();
@@ -190,10 +410,10 @@ implements DataObserver {
 							
 							// Et dans le mois cible ou pas assez d'écritures
 							&& (month.includes(date)
-									|| rowModels.size() < LIGNES_MINI)) {
+									|| rows.size() < LIGNES_MINI)) {
 					
 					// Ajouter cette écriture
-					rowModels.add(getEcritureRowModel(e));
+					rows.add(e);
 				}
 			}
 
@@ -201,19 +421,18 @@ implements DataObserver {
 			LOGGER.log(Level.SEVERE, "Impossible de lire les données", e);
 		}
 
-		// Mettre à jour l'affichage
-		fireTableDataChanged();
 		LOGGER.config("Prêt");
+		return rows;
 	}
 
 	@Override
 	public int getRowCount() {
-		return rowModels.size();
+		return ecritures.size();
 	}
 
 	@Override
 	public Object getValueAt(int row, int col) {
-		return rowModels.get(row).get(disposition[col]);
+		return getRowModel(row).get(disposition[col]);
 	}
 	
 	/**
@@ -232,7 +451,7 @@ implements DataObserver {
 
 		// Récupérer le modèle de la ligne d'écriture concernée
 		EcritureRowModel rowModel =					// Modèle de la ligne
-				rowModels.get(row);
+				getRowModel(row);
 
 		// Appliquer la modification
 		rowModel.set(newValue, disposition[col]);	// Effectuer la modification
@@ -240,6 +459,7 @@ implements DataObserver {
 		try {
 			// Tenter d'instancier une écriture et de l'ajouter au modèle
 			EcritureController.insert(rowModel.createEcriture());
+			rowModel.setClean();					// Saisie enregistrée
 			
 			/*
 			 * Prévenir du changement de données.
@@ -267,7 +487,7 @@ implements DataObserver {
 	 *         première ligne du modèle est toujours libre pour la saisie.
 	 */
 	public Ecriture getEcritureAt(int row) {
-		return rowModels.get(row).getEcriture();
+		return ecritures.get(row);
 	}
 
 	/**
@@ -299,7 +519,7 @@ implements DataObserver {
 
 	@Override
 	public void dataModified() {
-		update();			// Mettre à jour quand les données sont modifiées
+		refresh();			// Mettre à jour quand les données sont modifiées
 	}
 	
 	DataObservable getDataObservable() {
@@ -344,6 +564,12 @@ class EcritureRowModel {
 	 */
 	private final boolean visuBudget;
 	
+	/**
+	 * Drapeau indiquant si des données ont été saisies sans avoir encore pu
+	 * être enregistrées.
+	 */
+	private boolean dirty = false;
+	
 	/**
 	 * Construit un modèle de ligne d'écriture.
 	 * <p>
@@ -411,6 +637,7 @@ class EcritureRowModel {
 	 * @param type	Le type de la valeur modifiée.
 	 */
 	void set(Object value, ColumnType type) {
+		dirty = true;
 		switch (type) {
 		case CHEQUE:		draft.cheque	= (Integer) value;		break;
 		case DATE:			draft.date		= (Date) value;			break;
@@ -485,6 +712,21 @@ class EcritureRowModel {
 		return draft.createEcriture();
 	}
 	
+	/**
+	 * Indique si des données ont été saisies sans avoir encore pu être
+	 * enregistrées.
+	 */
+	boolean isDirty() {
+		return dirty;
+	}
+	
+	/**
+	 * Signale que les données saisies ont été enregistrées.
+	 */
+	void setClean() {
+		dirty = false;
+	}
+	
 	/**
 	 * Renvoie l'Ecriture contrôlée.
 	 */
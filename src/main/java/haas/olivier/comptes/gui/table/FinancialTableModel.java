@@ -9,6 +9,7 @@ import haas.olivier.comptes.gui.actions.CompteObservable;
 import haas.olivier.comptes.gui.actions.CompteObserver;
 import haas.olivier.comptes.gui.actions.MonthObservable;
 import haas.olivier.comptes.gui.actions.MonthObserver;
+import haas.olivier.comptes.gui.actions.RefreshScheduler;
 
 import java.math.BigDecimal;
 import java.util.Date;
@@ -65,6 +66,18 @@ abstract class FinancialTableModel extends AbstractTableModel implements
 	 */
 	// TODO utiliser plutôt fireTableDataChanged ?
 	abstract void update();
+	
+	/**
+	 * Programme une mise à jour des données.
+	 * <p>
+	 * Les demandes rapprochées sont regroupées en une seule mise à jour, dans
+	 * le fil d'événements de Swing. Les classes dérivées peuvent redéfinir
+	 * cette méthode pour effectuer les calculs en tâche de fond.
+	 */
+	public void refresh() {
+		RefreshScheduler.getInstance().schedule(this, () -> null,
+				v -> update());
+	}
 
 	/**
 	 * Renvoie la disposition actuelle des colonnes, sous forme d'un tableau de
@@ -158,7 +171,7 @@ abstract class FinancialTableModel extends AbstractTableModel implements
 	@Override
 	public void compteChanged(Compte compte) {
 		this.compte = compte;	// Changer le compte
-		update();				// Mettre à jour
+		refresh();				// Mettre à jour
 	}
 	
 	
@@ -168,7 +181,7 @@ abstract class FinancialTableModel extends AbstractTableModel implements
 	public void monthChanged(Month month) {
 		// Mettre à jour quand le mois est modifié
 		if (compte != null)	// Sauf s'il n'y a pas de compte !
-			update();
+			refresh();
 	}
 
 	@Override
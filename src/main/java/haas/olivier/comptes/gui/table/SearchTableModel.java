@@ -5,6 +5,9 @@ package haas.olivier.comptes.gui.table;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import javax.swing.event.DocumentEvent;
@@ -20,6 +23,7 @@ import haas.olivier.util.Month;
 import haas.olivier.comptes.dao.DAOFactory;
 import haas.olivier.comptes.gui.actions.DataObservable;
 import haas.olivier.comptes.gui.actions.MonthObservable;
+import haas.olivier.comptes.gui.actions.RefreshScheduler;
 
 /**
  * Un modèle de table gérant les résultats d'une recherche parmi les écritures.
@@ -110,7 +114,7 @@ implements DocumentListener {
 		} catch (BadLocationException e1) {
 			e1.printStackTrace();
 		}
-		update();										// Mettre à jour
+		refresh();										// Mettre à jour
 	}
 
 	/**
@@ -118,18 +122,54 @@ implements DocumentListener {
 	 */
 	@Override
 	public void update() {
-		rowModels.clear();							// Effacer l'existant
-		
-		// Si aucun texte de recherche n'est saisi, laisser vide
+		Pattern pattern = getPattern();
+		setRows(disposition, pattern == null
+				? Collections.emptyList()
+				: findEcritures(pattern, MonthObservable.getMonth()));
+	}// update
+	
+	/**
+	 * Programme une recherche des écritures contenant le texte précédemment
+	 * défini.
+	 * <p>
+	 * La recherche est effectuée en tâche de fond.
+	 */
+	@Override
+	public void refresh() {
+		Pattern pattern = getPattern();
+		Month month = MonthObservable.getMonth();	// Le mois sélectionné
+		RefreshScheduler.getInstance().schedule(this,
+				() -> pattern == null
+				? Collections.<Ecriture>emptyList()
+				: findEcritures(pattern, month),
+				rows -> setRows(disposition, rows));
+	}
+	
+	/**
+	 * Renvoie le motif correspondant au texte recherché.
+	 * 
+	 * @return	Le motif, ou <code>null</code> si aucun texte de recherche n'est
+	 * 			saisi.
+	 */
+	private static Pattern getPattern() {
 		if (text == null || text.isEmpty())
-			return;
-		
-		// Motif recherché
-		Pattern pattern = Pattern.compile(			// Expression compilée
+			return null;
+		return Pattern.compile(						// Expression compilée
 				text.toLowerCase());				// en minuscules
+	}
+	
+	/**
+	 * Recherche les écritures correspondant à un motif.
+	 * 
+	 * @param pattern	Le motif recherché.
+	 * @param month		Le mois sélectionné.
+	 * 
+	 * @return			Les écritures à afficher.
+	 */
+	private List<Ecriture> findEcritures(Pattern pattern, Month month) {
 		
 		// Obtenir les écritures contenant le motif recherché depuis 1 an
-		Month month = MonthObservable.getMonth();	// Le mois sélectionné
+		List<Ecriture> rows = new ArrayList<>();
 		try {
 			// Obtenir toutes les écritures
 			Iterable<Ecriture> ecritures =			// Toutes les écritures
@@ -140,16 +180,15 @@ implements DocumentListener {
 			// Tester le motif
 			for (Ecriture e : ecritures) {			// Tester chaque écriture
 				if (e.matches(pattern)) {			// Trouvé une
-					rowModels.add(					// Ajouter un contrôleur
-							getEcritureRowModel(e));
+					rows.add(e);					// Ajouter l'écriture
 				}// if matches
 			}// for all
 			
 		} catch (IOException e) {					// Erreur: ne rien renvoyer
 			// TODO Exception à traiter
 		}
-		fireTableDataChanged();
-	}// update
+		return rows;
+	}
 
 	/**
 	 * Met à jour les données dans tous les cas, alors que la classe mère ne se
@@ -157,7 +196,7 @@ implements DocumentListener {
 	 */
 	@Override
 	public void monthChanged(Month month) {
-		update();
+		refresh();
 	}
 
 	/**
@@ -174,7 +213,7 @@ implements DocumentListener {
 	@Override
 	public BigDecimal getMontantAt(int row) {
 		BigDecimal montant =
-				(BigDecimal) rowModels.get(row).get(ColumnType.MONTANT);
+				(BigDecimal) getRowModel(row).get(ColumnType.MONTANT);
 		return montant == null ? BigDecimal.ZERO : montant;
 	}
 	
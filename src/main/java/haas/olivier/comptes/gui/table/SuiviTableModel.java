@@ -102,7 +102,7 @@ implements SoldesObserver {
 
 	@Override
 	public void soldesChanged() {
-		update();					// Mettre à jour quand les soldes changent
+		refresh();					// Mettre à jour quand les soldes changent
 	}
 	
 	@Override
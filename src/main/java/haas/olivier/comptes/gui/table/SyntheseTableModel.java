@@ -9,6 +9,7 @@ import haas.olivier.comptes.dao.DAOFactory;
 import haas.olivier.comptes.gui.FilterCompte;
 import haas.olivier.comptes.gui.actions.CompteObservable;
 import haas.olivier.comptes.gui.actions.MonthObservable;
+import haas.olivier.comptes.gui.actions.RefreshScheduler;
 import haas.olivier.comptes.gui.actions.SoldesObservable;
 import haas.olivier.comptes.gui.actions.SoldesObserver;
 
@@ -16,7 +17,11 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Un <code>TableModel</code> donnant une vision synthétique des comptes d'un
@@ -40,21 +45,45 @@ implements SoldesObserver {
 	private static ColumnType[] dispositionBudget =
 		{ColumnType.COMPTE, ColumnType.HISTORIQUE, ColumnType.MOYENNE};
 	
+	/**
+	 * Le nombre maximum de synthèses mensuelles gardées en cache.
+	 */
+	private static final int CACHE_SIZE = 12;
+	
 	/**
 	 * Le filtre de comptes à utiliser pour savoir lesquels afficher.
 	 */
-	private FilterCompte filter;
+	private final FilterCompte filter;
 	
 	/**
-	 * Liste des comptes.
+	 * La synthèse affichée.
 	 */
-	private List<Compte> comptes = new ArrayList<>();
+	private Synthese synthese = new Synthese();
 	
-	private BigDecimal totalHistorique = BigDecimal.ZERO;
+	/**
+	 * Les synthèses déjà calculées, par mois.<br>
+	 * Les plus anciennement utilisées sont retirées au-delà de
+	 * <code>CACHE_SIZE</code>.
+	 */
+	private final Map<Month, Synthese> cache =
+			new LinkedHashMap<Month, Synthese>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Month, Synthese> eldest) {
+			return size() > CACHE_SIZE;
+		}
+	};
 	
-	private BigDecimal totalSoldeAVue = BigDecimal.ZERO;
+	/**
+	 * Le numéro de version des données en cache. Il est incrémenté à chaque
+	 * changement de soldes, pour écarter les synthèses calculées avant.
+	 */
+	private long version = 0;
 	
-	private BigDecimal totalMoyenne = BigDecimal.ZERO;
+	/**
+	 * L'objet servant à regrouper les demandes de précalcul des mois voisins
+	 * auprès du planificateur.
+	 */
+	private final Object prefetchKey = new Object();
 	
 	/**
 	 * Construit un modèle de table de synthèse des comptes.
@@ -94,78 +123,127 @@ implements SoldesObserver {
 
 	@Override
 	public int getRowCount() {
-		return comptes.size() + 1;			// Les comptes + la ligne de total
+		return synthese.comptes.length + 1;	// Les comptes + la ligne de total
 	}
 
 	@Override
 	public void update() {
+		Month month = MonthObservable.getMonth();			// Mois à utiliser
+		try {
+			setSynthese(getSynthese(month));
+		} catch (IOException e) {
+			Logger.getLogger(getClass().getName()).log(Level.SEVERE,
+					"Erreur pendant le calcul de la synthèse", e);
+		}
+	}
+	
+	/**
+	 * Programme une mise à jour de la liste des comptes et des totaux.
+	 * <p>
+	 * Si la synthèse du mois est déjà en cache, elle est affichée
+	 * immédiatement. Sinon, les calculs sont effectués en tâche de fond et
+	 * l'affichage est mis à jour ultérieurement, dans le fil d'événements de
+	 * Swing.
+	 */
+	@Override
+	public void refresh() {
+		Month month = MonthObservable.getMonth();			// Mois à utiliser
+		RefreshScheduler scheduler = RefreshScheduler.getInstance();
+		Synthese cached = getCached(month);
+		if (cached == null) {
+			scheduler.schedule(this,
+					() -> getSynthese(month), this::setSynthese);
+		} else {
+			scheduler.cancel(this);			// Plus rien à publier
+			setSynthese(cached);
+		}
+	}
+	
+	/**
+	 * Affiche une nouvelle synthèse, puis programme le précalcul des
+	 * synthèses des mois voisins.
+	 * 
+	 * @param synthese	La liste des comptes et leurs totaux.
+	 */
+	private void setSynthese(Synthese synthese) {
 		
 		// Récupérer la disposition statique au cas où elle ait changé. 
 		defineDisposition();
 		
-		// Remettre à zéro les totaux
-		totalHistorique = totalSoldeAVue = totalMoyenne = BigDecimal.ZERO;
-
-		Month month = MonthObservable.getMonth();			// Mois à utiliser
+		this.synthese = synthese;
 		
-		// Récupérer les comptes
-		comptes = new ArrayList<>();
-		try {
-			// Parcourir tous les comptes
-			for (Compte c :
-				DAOFactory.getFactory().getCompteDAO().getAll()) {
-				
-				// Si le type du compte correspond
-				if (filter.accepts(c)) {
-					
-					// Ajouter le compte
-					comptes.add(c);
-				
-					// Ajouter les soldes pour calculer les totaux
-					totalHistorique =					// Solde théorique
-							totalHistorique.add(c.getHistorique(month));
-					totalSoldeAVue =					// Solde à vue
-							totalSoldeAVue.add(c.getSoldeAVue(month));
-					if (c.getType().isBudgetaire()) {	// Si compte budgétaire
-						totalMoyenne =					// Moyenne
-								totalMoyenne.add(c.getMoyenne(month));
-					}
-				}
-			}
-			
-			// Trier la liste de comptes
-			Collections.sort(comptes);
-
-			// Recharger les données
-			fireTableDataChanged();
-
-		} catch (IOException e) {
-			// TODO Exception à traiter
+		// Recharger les données
+		fireTableDataChanged();
+		
+		// Préparer les mois voisins pour une navigation immédiate
+		Month month = synthese.month;
+		RefreshScheduler.getInstance().schedule(prefetchKey, () -> {
+			getSynthese(month.getPrevious());
+			getSynthese(month.getNext());
+			return null;
+		}, v -> {});
+	}
+	
+	/**
+	 * Renvoie la synthèse d'un mois si elle est en cache.
+	 * 
+	 * @param month	Le mois voulu.
+	 * @return		La synthèse du mois, ou <code>null</code> si elle n'a pas
+	 * 				encore été calculée.
+	 */
+	private synchronized Synthese getCached(Month month) {
+		return cache.get(month);
+	}
+	
+	/**
+	 * Renvoie la synthèse d'un mois, en la calculant si elle n'est pas en
+	 * cache.
+	 * 
+	 * @param month	Le mois voulu.
+	 * @return		La synthèse du mois.
+	 * 
+	 * @throws IOException
+	 */
+	private Synthese getSynthese(Month month) throws IOException {
+		long v;
+		synchronized (this) {
+			Synthese cached = cache.get(month);
+			if (cached != null)
+				return cached;
+			v = version;
+		}
+		
+		// Calculer en dehors du verrou
+		Synthese computed = new Synthese(month, filter);
+		
+		// Ne garder en cache que si les soldes n'ont pas changé entre-temps
+		synchronized (this) {
+			if (v == version)
+				cache.put(month, computed);
 		}
+		return computed;
 	}
 
 	@Override
 	public Object getValueAt(int row, int col) {
+		Synthese s = synthese;
 			
 		// Selon que c'est un total (dernière ligne) ou un compte
-		if (row < comptes.size()) {							// Ligne de compte
-			Compte c = comptes.get(row);					// Compte à utiliser
-			Month month = MonthObservable.getMonth();		// Mois à utiliser
-			
+		if (row < s.comptes.length) {						// Ligne de compte
 			switch (disposition[col]) {
-			case COMPTE :	return c;
-			case HISTORIQUE:return c.getHistorique(month);
-			case AVUE :		return c.getSoldeAVue(month);
-			case MOYENNE :	return c.getMoyenne(month);
+			case COMPTE :	return s.comptes[row];
+			case HISTORIQUE:return s.historiques[row];
+			case AVUE :		return s.soldesAVue[row];
+			case MOYENNE :	return s.moyennes[row];
 			default:		return null;
 			}
 			
 		} else {											// Ligne de total
 			switch (disposition[col]) {						// Selon la colonne
 			case COMPTE:	return "Total";					// Titre des totaux
-			case HISTORIQUE:return totalHistorique;			// Total théorique
-			case AVUE:		return totalSoldeAVue;			// Total à vue
-			case MOYENNE:	return totalMoyenne;			// Total moyenne
+			case HISTORIQUE:return s.totalHistorique;		// Total théorique
+			case AVUE:		return s.totalSoldeAVue;		// Total à vue
+			case MOYENNE:	return s.totalMoyenne;			// Total moyenne
 			default:		return null;
 			}
 		}
@@ -176,11 +254,11 @@ implements SoldesObserver {
 	 */
 	@Override
 	public BigDecimal getMontantAt(int row) {
-		if (row < comptes.size()) {	// La ligne est dans la liste des commptes
-			return comptes.get(row)	// Renvoyer le solde du compte à ce mois
-					.getSoldeAVue(MonthObservable.getMonth());
-		} else {					// Ligne de total
-			return totalSoldeAVue;	// Renvoyer le total des soldes à vue
+		Synthese s = synthese;
+		if (row < s.comptes.length) {	// La ligne est dans la liste des comptes
+			return s.soldesAVue[row];	// Renvoyer le solde du compte à ce mois
+		} else {						// Ligne de total
+			return s.totalSoldeAVue;	// Renvoyer le total des soldes à vue
 		}
 	}
 	
@@ -188,11 +266,121 @@ implements SoldesObserver {
 	 * Renvoie l'index de la ligne contenant le compte actuellement sélectionné.
 	 */
 	public int getActualCompteRow() {
-		return comptes.indexOf(compte);	// C'est l'index du compte dans la liste
+		Compte[] comptes = synthese.comptes;
+		for (int i = 0; i < comptes.length; i++) {
+			if (comptes[i].equals(compte))
+				return i;
+		}
+		return -1;
 	}
 
 	@Override
 	public void soldesChanged() {
-		update();					// Mettre à jour quand les soldes changent
+		
+		// Les synthèses en cache sont périmées
+		synchronized (this) {
+			version++;
+			cache.clear();
+		}
+		refresh();					// Mettre à jour quand les soldes changent
+	}
+	
+	/**
+	 * Une synthèse immuable des comptes et de leurs totaux pour un mois donné.
+	 * <p>
+	 * Les soldes sont calculés une seule fois, à la construction, et rangés
+	 * dans des tableaux alignés sur celui des comptes. L'affichage de la table
+	 * ne fait donc plus que lire ces tableaux.
+	 *
+	 * @author Olivier HAAS
+	 */
+	private static class Synthese {
+		
+		/**
+		 * Le mois de la synthèse.
+		 */
+		private final Month month;
+		
+		/**
+		 * Les comptes triés.
+		 */
+		private final Compte[] comptes;
+		
+		/**
+		 * Les soldes théoriques des comptes.
+		 */
+		private final BigDecimal[] historiques;
+		
+		/**
+		 * Les soldes à vue des comptes.
+		 */
+		private final BigDecimal[] soldesAVue;
+		
+		/**
+		 * Les moyennes des comptes.
+		 */
+		private final BigDecimal[] moyennes;
+		
+		private final BigDecimal totalHistorique;
+		
+		private final BigDecimal totalSoldeAVue;
+		
+		private final BigDecimal totalMoyenne;
+		
+		/**
+		 * Construit une synthèse vide.
+		 */
+		private Synthese() {
+			month = MonthObservable.getMonth();
+			comptes = new Compte[0];
+			historiques = soldesAVue = moyennes = new BigDecimal[0];
+			totalHistorique = totalSoldeAVue = totalMoyenne = BigDecimal.ZERO;
+		}
+		
+		/**
+		 * Calcule la liste des comptes, leurs soldes et les totaux en un seul
+		 * passage.
+		 * 
+		 * @param month		Le mois à utiliser.
+		 * @param filter	Le filtre déterminant les comptes à retenir.
+		 * 
+		 * @throws IOException
+		 */
+		private Synthese(Month month, FilterCompte filter) throws IOException {
+			this.month = month;
+			
+			// Les comptes acceptés par le filtre, triés
+			List<Compte> list = new ArrayList<>();
+			for (Compte c : DAOFactory.getFactory().getCompteDAO().getAll()) {
+				if (filter.accepts(c))
+					list.add(c);
+			}
+			Collections.sort(list);
+			comptes = list.toArray(new Compte[list.size()]);
+			
+			historiques = new BigDecimal[comptes.length];
+			soldesAVue = new BigDecimal[comptes.length];
+			moyennes = new BigDecimal[comptes.length];
+			BigDecimal sumHistorique = BigDecimal.ZERO;
+			BigDecimal sumSoldeAVue = BigDecimal.ZERO;
+			BigDecimal sumMoyenne = BigDecimal.ZERO;
+			
+			for (int i = 0; i < comptes.length; i++) {
+				Compte c = comptes[i];
+				historiques[i] = c.getHistorique(month);		// Théorique
+				soldesAVue[i] = c.getSoldeAVue(month);			// À vue
+				moyennes[i] = c.getMoyenne(month);				// Moyenne
+				
+				// Ajouter les soldes pour calculer les totaux
+				sumHistorique = sumHistorique.add(historiques[i]);
+				sumSoldeAVue = sumSoldeAVue.add(soldesAVue[i]);
+				if (c.getType().isBudgetaire())				// Compte budgétaire
+					sumMoyenne = sumMoyenne.add(moyennes[i]);
+			}
+			
+			totalHistorique = sumHistorique;
+			totalSoldeAVue = sumSoldeAVue;
+			totalMoyenne = sumMoyenne;
+		}
 	}
 }
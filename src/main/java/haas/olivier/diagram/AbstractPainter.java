@@ -3,6 +3,8 @@
  */
 package haas.olivier.diagram;
 
+import java.awt.Rectangle;
+
 /** Une classe abstraite de dessinateur de diagrammes.
  * 
  * @author Olivier HAAS
@@ -15,6 +17,9 @@ abstract class AbstractPainter implements Painter {
 	/** L'échelle du diagramme. */
 	private final Echelle echelle;
 	
+	/** L'index des ordonnées graphiques, construit au dernier rendu. */
+	private ProjectionIndex index;
+	
 	/** Construit un dessinateur abstrait de diagramme.
 	 * 
 	 * @param model		Le modèle de diagramme.
@@ -43,4 +48,24 @@ abstract class AbstractPainter implements Painter {
 	public Echelle getEchelle() {
 		return echelle;
 	}// getEchelle
+	
+	/** Renvoie l'index des ordonnées graphiques des séries.
+	 * <p>
+	 * L'index est reconstruit seulement si les données, l'échelle ou les
+	 * dimensions ont changé depuis le dernier appel.
+	 * 
+	 * @param series	Les séries à indexer.
+	 * @param bounds	Les dimensions de la zone graphique.
+	 * 
+	 * @return			Un index des séries.
+	 */
+	ProjectionIndex getProjectionIndex(Iterable<Serie> series, Rectangle bounds) {
+		long[] stamp = {model.getObservable().getVersion(),
+				echelle.getVersion(), bounds.width, bounds.height};
+		if (index == null || !index.isValid(stamp)) {
+			index = new ProjectionIndex(series, model.getXValues(), echelle,
+					bounds.width, bounds.height, stamp);
+		}
+		return index;
+	}// getProjectionIndex
 }
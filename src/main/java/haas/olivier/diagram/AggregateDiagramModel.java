@@ -3,10 +3,17 @@
  */
 package haas.olivier.diagram;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 
 /** Un modèle de diagramme qui donne une vue cumulée des séries pendant leur
  * itération.
+ * <p>
+ * Les séries cumulées sont calculées une seule fois, puis gardées jusqu'au
+ * prochain changement de données du modèle d'origine. Les dessins et les
+ * redimensionnements ne refont donc pas les cumuls.
  * 
  * @author Olivier Haas
  */
@@ -15,6 +22,14 @@ class AggregateDiagramModel implements DiagramModel, Iterable<Serie> {
 	/** Le modèle d'origine. */
 	private final DiagramModel delegate;
 	
+	/** Les séries cumulées, dans l'ordre des séries d'origine. */
+	private List<Serie> stacks;
+	
+	/** La version des données d'origine utilisée pour calculer
+	 * {@link #stacks}.
+	 */
+	private long version;
+	
 	/** Construit un modèle de diagramme présentant une vue cumulée d'un autre
 	 * modèle.
 	 * 
@@ -31,9 +46,44 @@ class AggregateDiagramModel implements DiagramModel, Iterable<Serie> {
 
 	@Override
 	public Iterator<Serie> iterator() {
-		return new AggregateSerieIterator(
-				delegate.getSeries().iterator(), delegate.getXValues());
+		return getStacks().iterator();
 	}// iterator
+	
+	/** Renvoie les séries cumulées, en les recalculant si les données
+	 * d'origine ont changé depuis le dernier calcul.
+	 */
+	private List<Serie> getStacks() {
+		long current = getObservable().getVersion();
+		if (stacks == null || version != current) {
+			stacks = computeStacks();
+			version = current;
+		}
+		return stacks;
+	}// getStacks
+	
+	/** Calcule les séries cumulées.
+	 * <p>
+	 * Chaque série cumulée contient, à chaque abscisse, la somme des valeurs
+	 * de la série d'origine et de toutes celles qui la précèdent. Les valeurs
+	 * non définies comptent pour zéro.
+	 */
+	private List<Serie> computeStacks() {
+		Object[] xValues = delegate.getXValues();
+		List<Serie> result = new ArrayList<>();
+		double[] cumul = new double[xValues.length];
+		for (Serie serie : delegate.getSeries()) {
+			double[] values = serie.getValues(xValues);
+			double[] next = cumul.clone();
+			for (int i=0; i<next.length; i++) {
+				if (!Double.isNaN(values[i]))
+					next[i] += values[i];
+			}
+			result.add(new Serie(serie.id, serie.toString(), serie.getColor(),
+					serie.isScaled(), xValues, next));
+			cumul = next;
+		}
+		return Collections.unmodifiableList(result);
+	}// computeStacks
 
 	@Override
 	public DiagramModel getAggregateView() {
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.diagram;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/** Une couche de dessin gardée en mémoire sous forme d'image.
+ * <p>
+ * Le contenu de la couche n'est redessiné que lorsque la zone à couvrir, le
+ * facteur d'échelle de l'écran ou l'état des données ont changé. Dans les
+ * autres cas, l'image précédente est simplement recopiée.
+ * 
+ * @author Olivier HAAS
+ */
+class CachedLayer {
+
+	/** L'image contenant le dernier rendu, ou <code>null</code>. */
+	private BufferedImage image;
+	
+	/** La zone couverte par {@link #image}. */
+	private Rectangle area;
+	
+	/** Le facteur d'échelle de l'écran utilisé pour {@link #image}. */
+	private double scale;
+	
+	/** Les numéros de version des données utilisées pour {@link #image}. */
+	private long[] stamp;
+	
+	/** Dessine la couche, en la recalculant seulement si nécessaire.
+	 * 
+	 * @param g			Le contexte graphique de destination.
+	 * @param area		La zone à couvrir, dans les coordonnées de
+	 * 					<code>g</code>.
+	 * @param renderer	Le dessin du contenu de la couche. Il reçoit un
+	 * 					contexte graphique dans les mêmes coordonnées que
+	 * 					<code>g</code>, limité à <code>area</code>.
+	 * @param stamp		Les numéros de version des données dessinées. La
+	 * 					couche est redessinée dès que l'un d'eux change.
+	 */
+	void paint(Graphics2D g, Rectangle area, Consumer<Graphics2D> renderer,
+			long... stamp) {
+		if (area.width <= 0 || area.height <= 0)
+			return;
+		
+		// Tenir compte des écrans haute densité
+		double scale = g.getTransform().getScaleX();
+		
+		if (image == null || !area.equals(this.area) || scale != this.scale
+				|| !Arrays.equals(stamp, this.stamp)) {
+			image = render(g.getDeviceConfiguration(), area, scale, renderer);
+			this.area = new Rectangle(area);
+			this.scale = scale;
+			this.stamp = stamp.clone();
+		}
+		
+		g.drawImage(image, area.x, area.y, area.width, area.height, null);
+	}// paint
+	
+	/** Oublie le rendu actuel, pour forcer un nouveau dessin. */
+	void invalidate() {
+		image = null;
+	}// invalidate
+	
+	/** Dessine le contenu de la couche dans une nouvelle image.
+	 * 
+	 * @param config	La configuration graphique de destination.
+	 * @param area		La zone à couvrir.
+	 * @param scale		Le facteur d'échelle de l'écran.
+	 * @param renderer	Le dessin du contenu de la couche.
+	 * 
+	 * @return			Une nouvelle image transparente.
+	 */
+	private static BufferedImage render(GraphicsConfiguration config,
+			Rectangle area, double scale, Consumer<Graphics2D> renderer) {
+		int width = (int) Math.ceil(area.width * scale);
+		int height = (int) Math.ceil(area.height * scale);
+		BufferedImage image = (config == null)
+				? new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB)
+				: config.createCompatibleImage(
+						width, height, Transparency.TRANSLUCENT);
+		
+		Graphics2D g = image.createGraphics();
+		try {
+			g.scale(scale, scale);
+			g.translate(-area.x, -area.y);
+			g.clipRect(area.x, area.y, area.width, area.height);
+			renderer.accept(g);
+		} finally {
+			g.dispose();
+		}
+		return image;
+	}// render
+}
@@ -3,28 +3,51 @@
  */
 package haas.olivier.diagram;
 
+import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Insets;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 
 import javax.swing.JComponent;
 import javax.swing.ToolTipManager;
 
 /** Un <code>JComponent</code> repréentant la zone graphique d'un diagramme.
+ * <p>
+ * Le dessin se fait en deux couches :
+ * <ul>
+ * <li>le diagramme lui-même (grille, séries et cadre), gardé en mémoire sous
+ * forme d'image et redessiné seulement quand les données, l'échelle ou la
+ * taille changent ;
+ * <li>le repère de survol de la souris, dessiné par-dessus à chaque fois.
+ * </ul>
+ * Les déplacements de la souris, les infobulles et autres rafraîchissements
+ * de la fenêtre se contentent donc de recopier l'image du diagramme.
  * 
  * @author Olivier HAAS
  */
 public class DiagramComponent extends JComponent
 implements DiagramModelObserver {
 	private static final long serialVersionUID = -4699134755056988055L;
+	
+	/** La couleur du repère de survol. */
+	private static final Color HOVER_COLOR = new Color(0, 0, 0, 64);
 
 	/** Le dessinateur de diagramme. */
 	private Painter painter;
 	
+	/** La couche contenant le dessin du diagramme. */
+	private final transient CachedLayer diagramLayer = new CachedLayer();
+	
+	/** L'abscisse du pointeur de la souris, ou -1 si la souris n'est pas sur
+	 * le diagramme.
+	 */
+	private int hoverX = -1;
+	
 	/** Construit un composant représentant la zone graphique d'un diagramme.
 	 * 
 	 * @param painter	Le dessinateur de la zone du diagramme.
@@ -34,6 +57,21 @@ implements DiagramModelObserver {
 		painter.getModel().getObservable().addObserver(this);
 		
 		ToolTipManager.sharedInstance().registerComponent(this);
+		
+		// Suivre la souris pour le repère de survol
+		MouseAdapter hoverListener = new MouseAdapter() {
+			@Override
+			public void mouseMoved(MouseEvent e) {
+				setHoverX(e.getX());
+			}
+			
+			@Override
+			public void mouseExited(MouseEvent e) {
+				setHoverX(-1);
+			}
+		};
+		addMouseListener(hoverListener);
+		addMouseMotionListener(hoverListener);
 	}// constructeur
 	
 	@Override
@@ -42,6 +80,31 @@ implements DiagramModelObserver {
 		repaint();
 	}// dataChanged
 	
+	/** Déplace le repère de survol et ne redessine que les bandes concernées.
+	 * 
+	 * @param x	La nouvelle abscisse du pointeur, ou -1 pour effacer le repère.
+	 */
+	private void setHoverX(int x) {
+		Rectangle inside = getInsideRect();
+		if (x != -1 && (x < inside.x || x >= inside.x + inside.width))
+			x = -1;									// Hors du diagramme
+		if (x == hoverX)
+			return;
+		
+		repaintHover(inside);						// Effacer l'ancien
+		hoverX = x;
+		repaintHover(inside);						// Dessiner le nouveau
+	}// setHoverX
+	
+	/** Demande à redessiner la bande verticale du repère de survol actuel.
+	 * 
+	 * @param inside	Le rectangle intérieur à la bordure.
+	 */
+	private void repaintHover(Rectangle inside) {
+		if (hoverX != -1)
+			repaint(hoverX - 1, inside.y, 3, inside.height);
+	}// repaintHover
+	
 	@Override
 	public String getToolTipText(MouseEvent e) {
 		Point p = e.getPoint();
@@ -53,18 +116,31 @@ implements DiagramModelObserver {
 	@Override
 	public void paintComponent(Graphics g) {
 		Graphics2D g2d = (Graphics2D) g.create();
-		GraphicHints.prepareGraphics(g2d);
-		
-		/* Limiter le dessin à la partie intérieure à la bordure.
-		 * On ajoute un clip pour éviter même que "le crayon déborde" sur la
-		 * bordure.
-		 */
 		Rectangle inside = getInsideRect();
-		g2d.clipRect(inside.x, inside.y, inside.width, inside.height);
 		
-		painter.paintDiagram(g2d, inside);
+		// Le diagramme, redessiné seulement si quelque chose a changé
+		diagramLayer.paint(g2d, inside, this::paintDiagram,
+				painter.getModel().getObservable().getVersion(),
+				painter.getEchelle().getVersion());
+		
+		// Le repère de survol
+		if (hoverX != -1) {
+			g2d.setColor(HOVER_COLOR);
+			g2d.drawLine(hoverX, inside.y, hoverX, inside.y + inside.height-1);
+		}
+		g2d.dispose();
 	}// paintComponent
 	
+	/** Dessine le diagramme lui-même.
+	 * 
+	 * @param g2d	Le contexte graphique, déjà limité à la partie intérieure à
+	 * 				la bordure.
+	 */
+	private void paintDiagram(Graphics2D g2d) {
+		GraphicHints.prepareGraphics(g2d);
+		painter.paintDiagram(g2d, getInsideRect());
+	}// paintDiagram
+	
 	/** Renvoie un rectangle du contenu du composant, hors bordures.
 	 * 
 	 * @return	Le rectangle intérieur à la bordure, dans les coordonnées du
@@ -38,6 +38,22 @@ public class DiagramFactory {
 		return newEdgeDiagram(new GridPainter(new PainterAire(model)));
 	}// newAire
 	
+	/** Crée un diagramme affichant des aires cumulées, adapté aux modèles
+	 * ayant un très grand nombre d'abscisses, par exemple une par jour.
+	 * <p>
+	 * Les étiquettes de l'axe des abscisses sont dessinées directement, à
+	 * intervalles réguliers, au lieu d'être des composants.
+	 * 
+	 * @param model	Le modèle de données à utiliser pour tracer une courbe.
+	 * 
+	 * @return		Un composant contenant le diagramme et les étiquettes des
+	 * 				axes.
+	 */
+	public static DiagramAndAxisComponent newAireDense(DiagramModel model) {
+		return newEdgeDiagram(new GridPainter(new PainterAire(model)),
+				new PaintedXLabels(model));
+	}// newAireDense
+	
 	/** Crée un diagramme utilisant dont chaque abscisse correspond à une
 	 * graduation.
 	 * 
@@ -48,6 +64,20 @@ public class DiagramFactory {
 	 */
 	private static DiagramAndAxisComponent newEdgeDiagram(
 			Painter painter) {
+		return newEdgeDiagram(painter,
+				new XLabels(painter.getModel(), new EdgeXLabelsLayout()));
+	}// newEdgeDiagram
+	
+	/** Crée un diagramme utilisant dont chaque abscisse correspond à une
+	 * graduation, avec les étiquettes des abscisses spécifiées.
+	 * 
+	 * @param painter	Le dessinateur de diagramme.
+	 * @param xLabels	Les étiquettes des abscisses.
+	 * 
+	 * @return			Un diagramme avec son contexte.
+	 */
+	private static DiagramAndAxisComponent newEdgeDiagram(
+			Painter painter, XLabels xLabels) {
 		DiagramModel model = painter.getModel();
 		
 		DiagramComponent zone = new DiagramComponent(painter);
@@ -55,7 +85,7 @@ public class DiagramFactory {
 		
 		return new DiagramAndAxisComponent(
 				zone,
-				new XLabels(model, new EdgeXLabelsLayout()),
+				xLabels,
 				new YLabels(painter.getEchelle()));
 	}// newEdgeDiagram
 }
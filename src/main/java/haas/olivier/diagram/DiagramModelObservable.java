@@ -10,10 +10,25 @@ import haas.olivier.util.Observable;
  * @author Olivier Haas
  */
 class DiagramModelObservable extends Observable<DiagramModelObserver> {
+	
+	/** Le numéro de version des données, incrémenté à chaque changement. */
+	private long version = 0;
 
 	/** Notifie un changement de données aux observateurs. */
 	public void dataChanged() {
+		version++;
 		for (DiagramModelObserver o : observers)
 			o.diagramChanged();
 	}// dataChanged
+	
+	/** Renvoie le numéro de version des données.
+	 * <p>
+	 * Le numéro change à chaque notification, avant que les observateurs ne
+	 * soient prévenus. Il permet aux calculs mis en cache de savoir s'ils sont
+	 * encore valables, quel que soit l'ordre dans lequel les observateurs sont
+	 * notifiés.
+	 */
+	long getVersion() {
+		return version;
+	}// getVersion
 }
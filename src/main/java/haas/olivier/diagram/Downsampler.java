@@ -0,0 +1,199 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.diagram;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/** Un réducteur de séries pour l'affichage.
+ * <p>
+ * Lorsqu'une série compte plus de valeurs que la largeur du diagramme en
+ * pixels, il est inutile de tracer un sommet par valeur. Pour chaque colonne
+ * de pixels, le réducteur ne garde que la première valeur, la dernière, la
+ * plus petite et la plus grande. Le tracé obtenu est identique à l'œil,
+ * pics compris, mais son coût dépend de la largeur et non plus du nombre de
+ * valeurs.
+ * <p>
+ * Les résultats sont gardés en cache pour chaque tableau de valeurs et chaque
+ * largeur. Les tableaux de valeurs des séries n'étant jamais modifiés, un
+ * changement de données se traduit par un nouveau tableau et donc par un
+ * nouveau calcul.
+ * 
+ * @author Olivier HAAS
+ */
+class Downsampler {
+	
+	/** Les tracés déjà calculés, pour chaque tableau de valeurs. */
+	private static final Map<double[], Polyline> cache =
+			Collections.synchronizedMap(new WeakHashMap<>());
+	
+	/** Renvoie le tracé d'une série pour une largeur donnée.
+	 * 
+	 * @param values	Les valeurs de la série, alignées sur les abscisses du
+	 * 					modèle. <code>Double.NaN</code> signifie qu'il n'y a pas
+	 * 					de valeur.
+	 * @param width		La largeur du diagramme en pixels.
+	 * 
+	 * @return			Le tracé à dessiner.
+	 */
+	static Polyline getPolyline(double[] values, int width) {
+		Polyline polyline = cache.get(values);
+		if (polyline == null || polyline.width != width) {
+			polyline = downsample(values, width);
+			cache.put(values, polyline);
+		}
+		return polyline;
+	}// getPolyline
+	
+	/** Calcule le tracé réduit d'une série.
+	 * 
+	 * @param values	Les valeurs de la série.
+	 * @param width		La largeur du diagramme en pixels.
+	 * 
+	 * @return			Un nouveau tracé.
+	 */
+	static Polyline downsample(double[] values, int width) {
+		int count = values.length;
+		Polyline polyline = new Polyline(width, Math.min(count, 4 * (width+1)));
+		
+		int column = -1;					// Colonne de pixels en cours
+		int first = -1, last = -1, min = -1, max = -1;	// Index retenus
+		for (int i=0; i<count; i++) {
+			int x = getXCoordinate(i, count, width);
+			
+			// Fin d'une colonne ou d'un segment : reporter les points retenus
+			if (x != column || Double.isNaN(values[i])) {
+				polyline.addColumn(values, column, first, min, max, last);
+				first = -1;
+				column = x;
+			}
+			
+			if (Double.isNaN(values[i])) {	// Pas de valeur : interruption
+				polyline.addBreak(x);
+				continue;
+			}
+			
+			// Mettre à jour les points retenus pour cette colonne
+			if (first == -1) {
+				first = last = min = max = i;
+			} else {
+				last = i;
+				if (values[i] < values[min])
+					min = i;
+				if (values[i] > values[max])
+					max = i;
+			}
+		}
+		polyline.addColumn(values, column, first, min, max, last);
+		return polyline;
+	}// downsample
+	
+	/** Calcule l'abscisse dans la fenêtre graphique, à partir de l'index de
+	 * l'abscisse selon le modèle.
+	 * 
+	 * @param index	Index de l'abscisse selon le modèle.
+	 * @param count	Nombre total d'abscisses selon le modèle.
+	 * @param width	Largeur de la zone graphique.
+	 * 
+	 * @return		L'abscisse à utiliser dans la zone graphique.
+	 */
+	static int getXCoordinate(int index, int count, int width) {
+		return (count < 2) ? 0 : (int) ((long) index * width / (count - 1));
+	}// getXCoordinate
+	
+	/** Un tracé de série, sous forme d'une suite de sommets.
+	 * <p>
+	 * Un sommet dont l'ordonnée est <code>Double.NaN</code> interrompt le
+	 * tracé.
+	 *
+	 * @author Olivier HAAS
+	 */
+	static class Polyline {
+		
+		/** La largeur pour laquelle le tracé a été calculé. */
+		private final int width;
+		
+		/** Les abscisses des sommets, en pixels. */
+		private int[] x;
+		
+		/** Les valeurs des sommets, au sens des données. */
+		private double[] y;
+		
+		/** Le nombre de sommets. */
+		private int size = 0;
+		
+		/** Construit un tracé vide.
+		 * 
+		 * @param width		La largeur pour laquelle le tracé est calculé.
+		 * @param capacity	Le nombre de sommets prévus.
+		 */
+		private Polyline(int width, int capacity) {
+			this.width = width;
+			x = new int[Math.max(capacity, 1)];
+			y = new double[x.length];
+		}// constructeur
+		
+		/** Ajoute un sommet. */
+		private void add(int xCoordinate, double value) {
+			if (size == x.length) {
+				x = Arrays.copyOf(x, size * 2);
+				y = Arrays.copyOf(y, size * 2);
+			}
+			x[size] = xCoordinate;
+			y[size] = value;
+			size++;
+		}// add
+		
+		/** Ajoute une interruption du tracé. */
+		private void addBreak(int xCoordinate) {
+			if (size > 0 && !Double.isNaN(y[size-1]))
+				add(xCoordinate, Double.NaN);
+		}// addBreak
+		
+		/** Ajoute les points retenus pour une colonne de pixels, dans l'ordre
+		 * de leurs index et sans doublon.
+		 * 
+		 * @param values	Les valeurs de la série.
+		 * @param column	L'abscisse de la colonne.
+		 * @param first		L'index de la première valeur de la colonne, ou -1
+		 * 					si la colonne est vide.
+		 * @param min		L'index de la plus petite valeur.
+		 * @param max		L'index de la plus grande valeur.
+		 * @param last		L'index de la dernière valeur.
+		 */
+		private void addColumn(double[] values, int column, int first,
+				int min, int max, int last) {
+			if (first == -1)
+				return;
+			
+			int[] indexes = {first, Math.min(min, max), Math.max(min, max),
+					last};
+			int previous = -1;
+			for (int index : indexes) {
+				if (index != previous)
+					add(column, values[index]);
+				previous = index;
+			}
+		}// addColumn
+		
+		/** Renvoie le nombre de sommets. */
+		int size() {
+			return size;
+		}// size
+		
+		/** Renvoie l'abscisse d'un sommet, en pixels. */
+		int getX(int i) {
+			return x[i];
+		}// getX
+		
+		/** Renvoie la valeur d'un sommet, ou <code>Double.NaN</code> s'il
+		 * s'agit d'une interruption.
+		 */
+		double getY(int i) {
+			return y[i];
+		}// getY
+	}
+}
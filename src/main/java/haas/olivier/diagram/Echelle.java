@@ -33,6 +33,12 @@ class Echelle {
 	/** Les graduations. */
 	private Collection<BigDecimal> graduations = new ArrayList<>();
 	
+	/** Les valeurs extrêmes utilisées pour le dernier calcul. */
+	private double lastMin = Double.NaN, lastMax = Double.NaN;
+	
+	/** Le numéro de version de l'échelle, incrémenté à chaque recalcul. */
+	private long version = 0;
+	
 	/** Construit une échelle.
 	 * <p>
 	 * Par convention, les valeurs extrêmes sont <code>0</code> et 
@@ -45,13 +51,22 @@ class Echelle {
 		updateGraduations();
 	}// constructeur
 
-	/** Recalcule l'échelle en fonction des valeurs extrêmes du modèle. */
+	/** Recalcule l'échelle en fonction des valeurs extrêmes du modèle.
+	 * <p>
+	 * Si les valeurs extrêmes n'ont pas changé, par exemple parce qu'une série
+	 * a seulement été masquée ou déplacée, l'échelle est conservée telle
+	 * quelle.
+	 */
 	public void updateGraduations() {
 		
 		// Les extrema
 		extrema.updateExtrema();
 		double min = extrema.getMin();
 		double max = extrema.getMax();
+		if (min == lastMin && max == lastMax)
+			return;								// Rien n'a changé
+		lastMin = min;
+		lastMax = max;
 		double range = max - min;
 		
 		// Définir les bornes de l'échelle
@@ -65,8 +80,18 @@ class Echelle {
 				g = g.add(step)) {
 			graduations.add(g);
 		}// for
+		version++;
 	}// createGraduations
 	
+	/** Renvoie le numéro de version de l'échelle.
+	 * <p>
+	 * Il change à chaque recalcul, ce qui permet de savoir si un dessin
+	 * gardé en cache a été fait avec l'échelle actuelle.
+	 */
+	public long getVersion() {
+		return version;
+	}// getVersion
+	
 	/** Renvoie le logarithme d'un nombre en base 10, arrondi à l'entier
 	 * inférieur.
 	 * <p>
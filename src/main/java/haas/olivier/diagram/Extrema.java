@@ -3,7 +3,18 @@
  */
 package haas.olivier.diagram;
 
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /** Un calculateur des valeurs extrêmes du modèle de diagramme.
+ * <p>
+ * Les valeurs extrêmes de chaque série sont calculées une seule fois et
+ * gardées en mémoire. Quand des séries sont masquées, affichées, ajoutées,
+ * retirées ou réordonnées, les extrêmes du modèle sont obtenus en combinant
+ * ces résumés, sans relire les données.<br>
+ * Les séries étant immuables, un changement de données se traduit par de
+ * nouvelles séries, qui sont alors lues une fois. C'est aussi le cas des
+ * séries cumulées d'une vue cumulée, qui sont recalculées à chaque changement.
  * 
  * @author Olivier Haas
  */
@@ -12,6 +23,9 @@ class Extrema {
 	/** Le modèle du diagramme. */
 	private final DiagramModel model;
 	
+	/** Les valeurs extrêmes déjà calculées, par série. */
+	private final Map<Serie, Summary> summaries = new WeakHashMap<>();
+	
 	/** La valeur minimale actuelle. */
 	private Number min;
 	
@@ -36,26 +50,22 @@ class Extrema {
 	 */
 	public void updateExtrema() {
 		min = max = null;
+		Object[] xValues = model.getXValues();
 		Iterable<Serie> series = model.getSeries();
 		for (Serie serie : series) {
 			
 			// Ne pas traiter les séries auxquelles l'échelle est insensible
 			if (!serie.isScaled())
 				continue;
-
-			for (Object x : model.getXValues()) {
-				Number value = serie.get(x);
-				
-				// Ne pas traiter les valeurs null
-				if (value == null)
-					continue;
-
-				double doubleValue = value.doubleValue();
-				if (min == null || min.doubleValue() > doubleValue)
-					min = doubleValue;
-				if (max == null || max.doubleValue() < doubleValue)
-					max = doubleValue;
-			}// for x
+			
+			// Combiner avec les extrêmes de la série
+			Summary summary = getSummary(serie, xValues);
+			if (summary.min != null) {
+				if (min == null || min.doubleValue() > summary.min)
+					min = summary.min;
+				if (max == null || max.doubleValue() < summary.max)
+					max = summary.max;
+			}
 			
 			// Valeurs par défaut s'il n'y avait aucune série
 			if (min == null) {
@@ -64,6 +74,21 @@ class Extrema {
 			}// if empty
 		}// for serie
 	}// updateExtrema
+	
+	/** Renvoie les valeurs extrêmes d'une série, en les calculant si elles ne
+	 * sont pas encore connues pour ces abscisses.
+	 * 
+	 * @param serie		La série.
+	 * @param xValues	Les abscisses du modèle.
+	 */
+	private Summary getSummary(Serie serie, Object[] xValues) {
+		Summary summary = summaries.get(serie);
+		if (summary == null || summary.xValues != xValues) {
+			summary = new Summary(serie, xValues);
+			summaries.put(serie, summary);
+		}
+		return summary;
+	}// getSummary
 
 	public double getMin() {
 		return min.doubleValue();
@@ -72,4 +97,49 @@ class Extrema {
 	public double getMax() {
 		return max.doubleValue();
 	}// getMax
+	
+	/** Les valeurs extrêmes d'une série.
+	 *
+	 * @author Olivier HAAS
+	 */
+	private static class Summary {
+		
+		/** Les abscisses pour lesquelles les extrêmes ont été calculés. */
+		private final Object[] xValues;
+		
+		/** La valeur minimale, ou <code>null</code> si la série n'a aucune
+		 * valeur.
+		 */
+		private final Double min;
+		
+		/** La valeur maximale, ou <code>null</code> si la série n'a aucune
+		 * valeur.
+		 */
+		private final Double max;
+		
+		/** Calcule les valeurs extrêmes d'une série.
+		 * 
+		 * @param serie		La série.
+		 * @param xValues	Les abscisses du modèle.
+		 */
+		private Summary(Serie serie, Object[] xValues) {
+			this.xValues = xValues;
+			Double lowest = null, highest = null;
+			for (Object x : xValues) {
+				Number value = serie.get(x);
+				
+				// Ne pas traiter les valeurs null
+				if (value == null)
+					continue;
+				
+				double doubleValue = value.doubleValue();
+				if (lowest == null || lowest > doubleValue)
+					lowest = doubleValue;
+				if (highest == null || highest < doubleValue)
+					highest = doubleValue;
+			}// for x
+			min = lowest;
+			max = highest;
+		}// constructeur
+	}// private static class Summary
 }
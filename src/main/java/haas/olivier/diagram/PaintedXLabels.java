@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.diagram;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+
+import javax.swing.UIManager;
+
+/** Un dessinateur des étiquettes des abscisses adapté aux diagrammes ayant un
+ * très grand nombre d'abscisses.
+ * <p>
+ * Contrairement à {@link XLabels}, aucun composant n'est créé par étiquette :
+ * les textes sont dessinés directement, et seulement une graduation sur
+ * plusieurs, avec un pas calculé pour que les étiquettes ne se chevauchent
+ * pas.
+ *
+ * @author Olivier HAAS
+ */
+class PaintedXLabels extends XLabels {
+	private static final long serialVersionUID = 4406385215011460921L;
+
+	/** La marge de part et d'autre de chaque étiquette, en pixels. */
+	private static final int PADDING = 5;
+
+	/** Les textes des étiquettes, ou <code>null</code> s'ils sont à
+	 * recalculer.
+	 */
+	private String[] texts;
+
+	/** La largeur de la plus grande étiquette, marges comprises. */
+	private int labelWidth;
+
+	/** Construit un dessinateur d'étiquettes des abscisses.
+	 *
+	 * @param model	Le modèle du diagramme à représenter.
+	 */
+	public PaintedXLabels(DiagramModel model) {
+		super(model, null);
+		setFont(UIManager.getFont("Label.font"));
+		setForeground(UIManager.getColor("Label.foreground"));
+	}// constructeur
+
+	/** Oublie les textes des étiquettes, qui seront recalculés au prochain
+	 * affichage.
+	 */
+	@Override
+	public void reloadXValues() {
+		texts = null;
+		repaint();
+	}// reloadXValues
+
+	@Override
+	public void setFont(Font font) {
+		super.setFont(font);
+		texts = null;							// Largeurs à recalculer
+	}// setFont
+
+	/** Renvoie les textes des étiquettes, en les calculant si besoin avec la
+	 * largeur de la plus grande.
+	 */
+	private String[] getTexts() {
+		if (texts == null) {
+			Object[] xValues = getModel().getXValues();
+			FontMetrics metrics = getFontMetrics(getFont());
+			String[] newTexts = new String[xValues.length];
+			int width = 0;
+			for (int i=0; i<xValues.length; i++) {
+				newTexts[i] = xValues[i].toString();
+				width = Math.max(width, metrics.stringWidth(newTexts[i]));
+			}// for
+			labelWidth = width + 2 * PADDING;
+			texts = newTexts;
+		}// if
+		return texts;
+	}// getTexts
+
+	@Override
+	public Dimension getPreferredSize() {
+		if (isPreferredSizeSet())
+			return super.getPreferredSize();
+		return new Dimension(0, getFontMetrics(getFont()).getHeight());
+	}// getPreferredSize
+
+	@Override
+	public int getLeftOverflow() {
+		return (getTexts().length == 0) ? 0 : (labelWidth + 1) / 2;
+	}// getLeftOverflow
+
+	@Override
+	public int getRightOverflow() {
+		return (getTexts().length == 0) ? 0 : labelWidth / 2;
+	}// getRightOverflow
+
+	/** Renvoie le nombre de graduations entre deux étiquettes dessinées, pour
+	 * qu'elles ne se chevauchent pas à la largeur actuelle.
+	 */
+	int getStep() {
+		int count = getTexts().length;
+		int diagramWidth = getWidth() - getLeftOverflow() - getRightOverflow();
+		if (count < 2 || diagramWidth <= 0)
+			return Math.max(1, count);
+		return Math.max(1, (int) Math.ceil(
+				(double) labelWidth * (count - 1) / diagramWidth));
+	}// getStep
+
+	@Override
+	protected void paintComponent(Graphics g) {
+		String[] labels = getTexts();
+		int count = labels.length;
+		if (count == 0)
+			return;
+
+		int leftOverflow = getLeftOverflow();
+		int diagramWidth = getWidth() - leftOverflow - getRightOverflow();
+		int step = getStep();
+		FontMetrics metrics = g.getFontMetrics(getFont());
+		g.setFont(getFont());
+		g.setColor(getForeground());
+
+		Rectangle clip = g.getClipBounds();
+		for (int i=0; i<count; i+=step) {
+
+			// Abscisse de la graduation proprement dite
+			int x = (count < 2)
+					? leftOverflow
+					: leftOverflow
+					+ (int) ((long) diagramWidth * i / (count - 1));
+
+			// Ne dessiner que les étiquettes visibles
+			if (clip != null && (x + labelWidth / 2 < clip.x
+					|| x - labelWidth / 2 > clip.x + clip.width))
+				continue;
+
+			String text = labels[i];
+			g.drawString(text, x - metrics.stringWidth(text) / 2,
+					metrics.getAscent());
+		}// for
+	}// paintComponent
+}
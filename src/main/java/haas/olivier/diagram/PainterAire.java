@@ -9,7 +9,6 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.Path2D;
-import java.util.Collections;
 
 public class PainterAire extends AbstractPainter {
 	
@@ -23,77 +22,66 @@ public class PainterAire extends AbstractPainter {
 		super(model, new Echelle(model.getAggregateView()));
 	}// constructeur
 	
-	/** Calcule l'abscisse dans la fenêtre graphique, à partir de l'index de
-	 * l'abscisse selon le modèle.
-	 * 
-	 * @param index	Index de l'abscisse selon le modèle.
-	 * @param count	Nombre total d'abscisses selon le modèle.
-	 * @param width	Largeur de la zone graphique.
-	 * 
-	 * @return		L'abscisse à utiliser dans la zone graphique.
-	 */
-	private static int getXCoordinate(int index, int count, int width) {
-		return index * width / (count - 1);
-	}// getXCoordinate
-
 	@Override
 	public void paintDiagram(Graphics2D g, Rectangle bounds) {
+		Object[] xValues = getModel().getXValues();
 		
-		// Une série sans valeurs à utiliser comme série de départ
-		Serie previous = new Serie(0, null, null, false,
-				Collections.<Object,Number>emptyMap());
+		// Des valeurs nulles à utiliser comme limite inférieure de départ
+		double[] previous = new double[xValues.length];
 		
 		for (Serie serie : getModel().getAggregateView().getSeries()) {
-			paintSerie(serie, previous, bounds, g);
-			previous = serie;
+			double[] values = serie.getValues(xValues);
+			paintSerie(serie.getColor(), values, previous, bounds, g);
+			previous = values;
 		}// for série
+		
+		// Préparer la recherche des aires pour les infobulles
+		getProjectionIndex(getModel().getAggregateView().getSeries(), bounds);
 	}// paintDiagram
 	
 	/** Dessine l'aire d'une série.
 	 * 
-	 * @param aggregate	La série à tracer, contenant des valeurs cumulées.
-	 * @param previous	La série précédente (pour la partie inférieure de l'aire
-	 * 					à tracer).
+	 * @param serieColor
+	 * 					La couleur de la série.
+	 * @param aggregate	Les valeurs cumulées de la série à tracer.
+	 * @param previous	Les valeurs cumulées de la série précédente (pour la
+	 * 					partie inférieure de l'aire à tracer).
 	 * @param bounds	Le rectangle dans lequel est dessiné le diagramme.
 	 * @param g			Le contexte graphique.
 	 */
-	private void paintSerie(Serie aggregate, Serie previous, Rectangle bounds,
-			Graphics2D g) {
+	private void paintSerie(Color serieColor, double[] aggregate,
+			double[] previous, Rectangle bounds, Graphics2D g) {
 		Echelle echelle = getEchelle();
 		
 		int height = bounds.height;
-		int width = bounds.width;
 		
-		Object[] xValues = getModel().getXValues();
-		int xCount = xValues.length;
+		// Les sommets des deux limites, réduits à la largeur du diagramme
+		Downsampler.Polyline upper =
+				Downsampler.getPolyline(aggregate, bounds.width);
+		Downsampler.Polyline lower =
+				Downsampler.getPolyline(previous, bounds.width);
 		
 		// Point de départ du polygone (en bas à gauche)
 		Path2D path = new Path2D.Double();
-		path.moveTo(
-				0,
-				echelle.getYFromValue(
-						previous.get(xValues[0]), height));
+		path.moveTo(0, echelle.getYFromValue(previous[0], height));
 		
 		// Définir la limite supérieur de l'aire
-		for (int i=0; i<xCount; i++) {
+		for (int i=0; i<upper.size(); i++) {
 			path.lineTo(
-					getXCoordinate(i, xCount, width),
-					echelle.getYFromValue(
-							aggregate.get(xValues[i]), height));
+					upper.getX(i),
+					echelle.getYFromValue(upper.getY(i), height));
 		}
 		
 		// Définir la limite inférieure, de droite à gauche
-		for (int i=xCount-1; i>=0; i--) {
+		for (int i=lower.size()-1; i>=0; i--) {
 			path.lineTo(
-					getXCoordinate(i, xCount, width),
-					echelle.getYFromValue(
-							previous.get(xValues[i]), height));
+					lower.getX(i),
+					echelle.getYFromValue(lower.getY(i), height));
 		}
 		
 		path.closePath();	// Par sécurité, parce normalement c'est inutile
 		
 		// Tracer le contour
-		Color serieColor = aggregate.getColor();
 		g.setColor(serieColor);
 		g.draw(path);
 		
@@ -124,18 +112,21 @@ public class PainterAire extends AbstractPainter {
 	public String getToolTipText(Point p, Rectangle bounds) {
 		Object[] xValues = getModel().getXValues();
 		
-		if (p.x >= bounds.width)
+		if (p.x >= bounds.width || xValues.length < 2)
 			return null;
 		
-		// Index non arrondi, proportionnel à l'abscisse du pointeur graphique
-		// NB: Point.getX() renvoie un double, donc le résultat est un double
-		double unroundedIndex = p.getX() * (xValues.length-1) / bounds.width;
+		ProjectionIndex index = getProjectionIndex(
+				getModel().getAggregateView().getSeries(), bounds);
+		
+		// Les colonnes qui encadrent le pointeur et la plus proche
+		int index1 = Math.min(index.getLeftColumn(p.x), xValues.length - 2);
+		int index2 = index1 + 1;
+		int roundedIndex = index.getNearestColumn(p.x);
+		int x1 = index.getX(index1);
+		int x2 = index.getX(index2);
 		
-		// Les index des valeurs à utiliser pour la suite
-		// NB: roundedIndex est égal soit à index1, soit à index2
-		int roundedIndex = (int) Math.rint(unroundedIndex);	// Index le + proche
-		int index1 = (int) Math.floor(unroundedIndex);		// Index juste avant
-		int index2 = index1 + 1;							// Index juste après
+		// Position relative du pointeur entre les deux colonnes
+		double ratio = (x2 == x1) ? 0 : (double) (p.x - x1) / (x2 - x1);
 		
 		/* Rechercher les aires qui recoupent le pointeur de souris.
 		 * On observe les lignes qui passent entre les abscisses index1 et
@@ -147,19 +138,14 @@ public class PainterAire extends AbstractPainter {
 		int y = p.y;					// Ordonnée du pointeur
 		double y1, y2 = Double.MAX_VALUE;// Ordonnée avant et après chaque série
 		String result = "";
-		for (Serie aggregate : getModel().getAggregateView().getSeries()) {
+		for (int s=0; s<index.getSerieCount(); s++) {
+			Serie aggregate = index.getSerie(s);
 			y1 = y2;
 			
-			/* Un calcul de barycentre pour savoir où la ligne coupe l'abscisse
-			 * du curseur.
-			 * NB : la somme des coefs = index2-index1 = 1 par hypothèse
-			 */
-			y2 = getEchelle().getYFromValue(
-					aggregate.get(xValues[index1]), bounds.height)
-					* (index2 - unroundedIndex)
-				+ getEchelle().getYFromValue(
-						aggregate.get(xValues[index2]), bounds.height)
-					* (unroundedIndex - index1);
+			// Un calcul de barycentre pour savoir où la ligne coupe l'abscisse
+			// du curseur
+			y2 = index.getY(index1, s) * (1 - ratio)
+					+ index.getY(index2, s) * ratio;
 			
 			// Si la ligne a franchi le curseur, la souris est dans cette aire
 			if ( (y1 < y) != (y2 < y) ) {
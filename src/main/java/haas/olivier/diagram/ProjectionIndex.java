@@ -0,0 +1,190 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.diagram;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/** Un index des ordonnées graphiques des séries, colonne par colonne.
+ * <p>
+ * Les valeurs de toutes les séries sont projetées une seule fois en
+ * coordonnées graphiques. La recherche de l'abscisse sous le pointeur de la
+ * souris se fait ensuite par dichotomie, et la recherche de la série la plus
+ * proche dans une colonne triée par ordonnées. Les infobulles n'ont ainsi plus
+ * besoin de parcourir les données.
+ * 
+ * @author Olivier HAAS
+ */
+class ProjectionIndex {
+	
+	/** L'ordonnée utilisée quand une série n'a pas de valeur. */
+	static final int MISSING = Integer.MIN_VALUE;
+	
+	/** Les marqueurs de l'état des données au moment de la construction. */
+	private final long[] stamp;
+	
+	/** Les séries indexées. */
+	private final Serie[] series;
+	
+	/** Les abscisses graphiques des colonnes. */
+	private final int[] x;
+	
+	/** Les ordonnées graphiques de chaque série, pour chaque colonne. */
+	private final int[][] y;
+	
+	/** Les index des séries ayant une valeur, triés par ordonnée croissante,
+	 * pour chaque colonne.
+	 */
+	private final int[][] sorted;
+	
+	/** Construit un index.
+	 * 
+	 * @param series	Les séries à indexer.
+	 * @param xValues	Les abscisses du modèle.
+	 * @param echelle	L'échelle du diagramme.
+	 * @param width		La largeur de la zone graphique.
+	 * @param height	La hauteur de la zone graphique.
+	 * @param stamp		Les marqueurs de l'état des données.
+	 */
+	ProjectionIndex(Iterable<Serie> series, Object[] xValues, Echelle echelle,
+			int width, int height, long... stamp) {
+		this.stamp = stamp;
+		List<Serie> list = new ArrayList<>();
+		series.forEach(list::add);
+		this.series = list.toArray(new Serie[list.size()]);
+		int count = xValues.length;
+		
+		x = new int[count];
+		for (int i=0; i<count; i++)
+			x[i] = Downsampler.getXCoordinate(i, count, width);
+		
+		// Projeter toutes les valeurs
+		y = new int[count][this.series.length];
+		for (int s=0; s<this.series.length; s++) {
+			double[] values = this.series[s].getValues(xValues);
+			for (int i=0; i<count; i++) {
+				y[i][s] = Double.isNaN(values[i])
+						? MISSING
+						: echelle.getYFromValue(values[i], height);
+			}
+		}
+		
+		// Trier chaque colonne par ordonnée
+		sorted = new int[count][];
+		for (int i=0; i<count; i++) {
+			int[] column = y[i];
+			sorted[i] = IntStream.range(0, column.length)
+					.filter(s -> column[s] != MISSING)
+					.boxed()
+					.sorted((s1, s2) -> Integer.compare(column[s1], column[s2]))
+					.mapToInt(Integer::intValue)
+					.toArray();
+		}
+	}// constructeur
+	
+	/** Indique si l'index correspond toujours à l'état des données.
+	 * 
+	 * @param stamp	Les marqueurs de l'état actuel des données.
+	 */
+	boolean isValid(long... stamp) {
+		return Arrays.equals(this.stamp, stamp);
+	}// isValid
+	
+	/** Renvoie le nombre de colonnes. */
+	int getColumnCount() {
+		return x.length;
+	}// getColumnCount
+	
+	/** Renvoie l'index de la dernière colonne située à gauche d'une abscisse
+	 * ou sur cette abscisse, ou 0 si l'abscisse est avant la première colonne.
+	 * 
+	 * @param px	L'abscisse graphique.
+	 */
+	int getLeftColumn(int px) {
+		
+		// Rechercher la dernière colonne d'abscisse <= px
+		int low = 0, high = x.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (x[mid] <= px) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}// getLeftColumn
+	
+	/** Renvoie l'index de la colonne la plus proche d'une abscisse.
+	 * 
+	 * @param px	L'abscisse graphique.
+	 */
+	int getNearestColumn(int px) {
+		int left = getLeftColumn(px);
+		if (left + 1 < x.length && x[left+1] - px < px - x[left])
+			return left + 1;
+		return left;
+	}// getNearestColumn
+	
+	/** Renvoie l'abscisse graphique d'une colonne. */
+	int getX(int column) {
+		return x[column];
+	}// getX
+	
+	/** Renvoie l'ordonnée graphique d'une série dans une colonne.
+	 * 
+	 * @param column	L'index de la colonne.
+	 * @param serie		L'index de la série.
+	 * 
+	 * @return			L'ordonnée graphique, ou <code>MISSING</code> si la
+	 * 					série n'a pas de valeur dans cette colonne.
+	 */
+	int getY(int column, int serie) {
+		return y[column][serie];
+	}// getY
+	
+	/** Renvoie le nombre de séries indexées. */
+	int getSerieCount() {
+		return series.length;
+	}// getSerieCount
+	
+	/** Renvoie une série indexée. */
+	Serie getSerie(int serie) {
+		return series[serie];
+	}// getSerie
+	
+	/** Renvoie la série dont l'ordonnée est la plus proche dans une colonne.
+	 * 
+	 * @param column	L'index de la colonne.
+	 * @param py		L'ordonnée graphique.
+	 * 
+	 * @return			L'index de la série la plus proche, ou -1 si aucune
+	 * 					série n'a de valeur dans cette colonne.
+	 */
+	int getNearestSerie(int column, int py) {
+		int[] order = sorted[column];
+		int[] ys = y[column];
+		if (order.length == 0)
+			return -1;
+		
+		// Première série dont l'ordonnée est >= py
+		int low = 0, high = order.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (ys[order[mid]] < py) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		
+		// Comparer avec la série juste au-dessus
+		if (low == order.length
+				|| (low > 0 && py - ys[order[low-1]] <= ys[order[low]] - py))
+			return order[low-1];
+		return order[low];
+	}// getNearestSerie
+}
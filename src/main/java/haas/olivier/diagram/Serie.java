@@ -4,9 +4,16 @@
 package haas.olivier.diagram;
 
 import java.awt.Color;
+import java.util.HashMap;
 import java.util.Map;
 
 /** Une série de données pour les diagrammes.
+ * <p>
+ * Les données peuvent être fournies sous forme d'une <code>Map</code> dont
+ * les clés sont les étiquettes en abscisses, ou sous forme d'un tableau de
+ * <code>double</code> aligné sur les étiquettes en abscisses du modèle. Dans
+ * les deux cas, les dessinateurs lisent les valeurs sous forme de tableau
+ * grâce à {@link #getValues(Object[])}.
  * 
  * @author Olivier HAAS
  */
@@ -34,9 +41,24 @@ public class Serie {
 	 */
 	private final boolean scaled;
 	
-	/** Les données. */
+	/** Les données par abscisse, ou <code>null</code> si les données ont été
+	 * fournies sous forme de tableau.
+	 */
 	private final Map<?,Number> data;
 	
+	/** Les abscisses auxquelles sont alignées {@link #values}. */
+	private Object[] xValues;
+	
+	/** Les données sous forme de tableau, alignées sur {@link #xValues}.<br>
+	 * <code>Double.NaN</code> signifie qu'aucune valeur n'est définie.
+	 */
+	private double[] values;
+	
+	/** L'index de chaque abscisse dans {@link #values}, construit à la
+	 * première recherche par abscisse.
+	 */
+	private Map<Object, Integer> index;
+	
 	/** Construit une série de données.
 	 * 
 	 * @param id			L'identifiant de la série.
@@ -56,15 +78,99 @@ public class Serie {
 		this.data = data;
 	}// constructeur
 	
+	/** Construit une série de données à partir d'un tableau de valeurs.
+	 * 
+	 * @param id			L'identifiant de la série.
+	 * @param name			Le nom de la série de données.
+	 * @param color			La couleur de la série.
+	 * @param scaled		<code>true</code> si l'échelle doit tenir compte des
+	 * 						valeurs de la série, <code>false</code> sinon.
+	 * @param xValues		Les étiquettes en abscisses, normalement celles du
+	 * 						modèle de diagramme.
+	 * @param values		Les données, dans le même ordre que
+	 * 						<code>xValues</code>. <code>Double.NaN</code>
+	 * 						signifie qu'aucune valeur n'est définie à cette
+	 * 						abscisse.
+	 */
+	public Serie(int id, String name, Color color, boolean scaled,
+			Object[] xValues, double[] values) {
+		if (xValues.length != values.length) {
+			throw new IllegalArgumentException(
+					"Le nombre de valeurs ne correspond pas aux abscisses");
+		}
+		this.id = id;
+		this.name = name;
+		this.color = color;
+		this.scaled = scaled;
+		this.data = null;
+		this.xValues = xValues;
+		this.values = values;
+	}// constructeur tableau
+	
 	/** Renvoie la valeur de la série à l'abscisse spécifiée.
 	 * 
 	 * @return	La valeur de la série à cette abscisse, ou <code>null</code> si
 	 * 			aucune valeur n'a été définie dans la série pour cette abscisse.
 	 */
 	public Number get(Object xValue) {
-		return data.get(xValue);
+		if (data != null)
+			return data.get(xValue);
+		
+		Integer i = getIndex().get(xValue);
+		return (i == null || Double.isNaN(values[i])) ? null : values[i];
 	}// get
 	
+	/** Renvoie l'index de chaque abscisse dans le tableau des valeurs.
+	 * <p>
+	 * Cette méthode n'est utilisée que si les données ont été fournies sous
+	 * forme de tableau.
+	 */
+	private Map<Object, Integer> getIndex() {
+		if (index == null) {
+			index = new HashMap<>();
+			for (int i=0; i<xValues.length; i++)
+				index.put(xValues[i], i);
+		}
+		return index;
+	}// getIndex
+	
+	/** Renvoie les valeurs de la série, alignées sur les abscisses
+	 * spécifiées.
+	 * <p>
+	 * Le tableau est calculé une seule fois pour un même tableau d'abscisses,
+	 * de sorte que les dessins successifs ne font ni recherche ni conversion.
+	 * Il ne doit pas être modifié par l'appelant.
+	 * 
+	 * @param xValues	Les étiquettes en abscisses du modèle.
+	 * 
+	 * @return			Un tableau de même longueur que <code>xValues</code>,
+	 * 					contenant <code>Double.NaN</code> aux abscisses qui
+	 * 					n'ont pas de valeur.
+	 */
+	public double[] getValues(Object[] xValues) {
+		if (xValues == this.xValues)
+			return values;
+		
+		// Construire un tableau aligné sur les nouvelles abscisses
+		double[] result = new double[xValues.length];
+		for (int i=0; i<xValues.length; i++) {
+			if (data == null) {
+				Integer j = getIndex().get(xValues[i]);
+				result[i] = (j == null) ? Double.NaN : values[j];
+			} else {
+				Number value = data.get(xValues[i]);
+				result[i] = (value == null) ? Double.NaN : value.doubleValue();
+			}
+		}
+		
+		// Garder le résultat pour les prochains appels
+		if (data != null) {
+			this.xValues = xValues;
+			values = result;
+		}
+		return result;
+	}// getValues
+	
 	/** Renvoie la couleur de la série. */
 	Color getColor() {
 		return color;
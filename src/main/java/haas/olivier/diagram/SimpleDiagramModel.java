@@ -15,6 +15,11 @@ public class SimpleDiagramModel implements DiagramModel {
 	/** L'ordonnateur des séries du modèle. */
 	private SeriesOrdener ordener;
 	
+	/** La vue cumulée du modèle, créée à la première demande. Elle est gardée
+	 * pour conserver ses cumuls d'un dessin à l'autre.
+	 */
+	private DiagramModel aggregateView;
+	
 	/** Construit un nouveau modèle de diagramme.
 	 * 
 	 * @param xValues	Les objets à utiliser comme étiquettes des abscisses.
@@ -62,6 +67,8 @@ public class SimpleDiagramModel implements DiagramModel {
 
 	@Override
 	public DiagramModel getAggregateView() {
-		return new AggregateDiagramModel(this);
+		if (aggregateView == null)
+			aggregateView = new AggregateDiagramModel(this);
+		return aggregateView;
 	}// getAggregateView
 }
\ No newline at end of file
@@ -32,6 +32,11 @@ class XLabels extends JComponent {
 		reloadXValues();
 	}// constructeur
 	
+	/** Renvoie le modèle du diagramme. */
+	DiagramModel getModel() {
+		return model;
+	}// getModel
+	
 	/** Crée une nouvelle étiquette.
 	 * 
 	 * @param text	Le texte de la nouvelle étiquette.
@@ -3,196 +3,416 @@
  */
 package haas.olivier.gui.table;
 
+import java.awt.Font;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.swing.JTable;
 import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 import javax.swing.table.TableColumnModel;
+import javax.swing.table.TableModel;
 
 /**
  * Un optimiseur des largeurs de colonnes.
  * <p>
- * L'optimisation des colonnes est un algorithme qui se peut se révéler
- * chronophage si la table est grande ou si les Renderer sont complexes. Il
- * risque donc de provoquer un gel de l'interface graphique et doit donc être
- * exécuté en environnement multi-thread.<br>
- * Cela étant, l'algorithme utilise en permanence des objets Swing (
+ * L'optimisation des colonnes utilise en permanence des objets Swing (
  * <code>JTable</code>, <code>TableModel</code>, <code>TableCellRenderer</code>,
- * etc) qui ne peuvent être accédés que par l'Event Dispatch Thread ; sinon on
- * risque de provoquer des erreurs de concurrence, donc des exceptions ou des
- * erreurs de données.
+ * etc) qui ne peuvent être accédés que par l'Event Dispatch Thread. Pour ne
+ * pas geler l'interface sur les grandes tables, l'algorithme ne mesure pas
+ * toutes les lignes, mais seulement un échantillon borné :
+ * <ul>
+ * <li>les premières et les dernières lignes,
+ * <li>des lignes réparties régulièrement dans la table,
+ * <li>les lignes dont les valeurs ont les représentations textuelles les plus
+ * longues, qui sont les meilleures candidates à la plus grande largeur.
+ * </ul>
+ * Les longueurs des représentations textuelles sont mémorisées par modèle,
+ * ligne et colonne. Elles ne sont recalculées que pour les lignes signalées
+ * comme modifiées par les <code>TableModelEvent</code>s du modèle, de sorte
+ * que les optimisations suivantes ne relisent pas toute la table.
  * <p>
- * La solution adoptée ici consiste à morceler l'algorithme en petites tâches
- * indépendantes, à savoir l'optimisation d'<i>une</i> colonne. Ces tâches sont
- * exécutées dans l'EDT.<br>
- * Toutefois, elles ne doivent pas être programmées toutes en même temps, sinon
- * elles s'exécuteront l'une après l'autre de manière quasi-ininterrompue dans
- * l'EDT et provoqueront donc un gel de l'interface. Pour que l'interface puisse
- * fonctionner normalement, il faut permettre à d'autres tâches Swing de
- * s'intercaler entre deux traitements de colonnes. Pour cela, on ne programme
- * l'optimisation d'une colonne dans l'EDT qu'une fois que la précédente est
- * terminée, grâce à {@link javax.swing.SwingUtilities#invokeAndWait(Runnable)}.
+ * Pour les types de colonnes dont la largeur ne dépend pas des données (dates,
+ * booléens), la largeur mesurée est mémorisée par type et par police, et n'est
+ * plus recalculée ensuite.
  * <p>
- * La classe hérite de <code>Thread</code>, parce qu'il faut bien mobiliser un
- * thread à part entière pour programmer les tâches Swing d'optimisation des
- * colonnes.<br>
- * Cet algorithme ne peut pas être exécuté dans un <code>SwingWorker</code>.
- * Celui-ci est prévu pour exécuter une tâche unique en arrière-plan puis dans
- * l'EDT, et ne permet pas de récupérer la main à la fin de l'exécution de la
- * tâche dans l'EDT. Il autorise des tâches Swing successives, mais celles-ci
- * sont programmées sur le mode de fonctionnement de
- * <code>SwingUtilities.invokeLater(Runnable)</code>, c'est-à-dire que toutes
- * les tâches Swing risqueraient d'être programmées quasi en même temps, et non
- * au fur et à mesure de l'achèvement des précédentes.
- * 
+ * Les demandes sont traitées l'une après l'autre par un fil d'exécution unique
+ * partagé par toutes les tables. Les demandes répétées pour une même table
+ * pendant qu'elle attend son tour sont fusionnées. Toutes les colonnes d'une
+ * table sont ensuite mesurées et redimensionnées en une seule tâche Swing.
+ *
  * @author Olivier HAAS
  */
-public class ColumnOptimizer extends Thread {
-	
+public class ColumnOptimizer {
+
 	/**
-	 * Une collection des instances en cours pour chaque table.
+	 * Le nombre de lignes mesurées au début et à la fin de la table.
 	 */
-	private static Map<JTable, ColumnOptimizer> working =
-			new HashMap<JTable, ColumnOptimizer>();
+	private static final int EDGE_ROWS = 5;
 
 	/**
-	 * La table à optimiser.
+	 * Le nombre de lignes mesurées, réparties régulièrement dans la table.
 	 */
-	private final JTable table;
-	
+	private static final int STRATIFIED_ROWS = 10;
+
 	/**
-	 * Le modèle des colonnes.
-	 */ 
-	private final TableColumnModel cm;
-	
+	 * Le nombre de lignes mesurées parmi celles dont les valeurs ont les
+	 * représentations textuelles les plus longues.
+	 */
+	private static final int WIDEST_ROWS = 10;
+
 	/**
-	 * La tâche de redimensionnement utilisée pour chaque colonne.
+	 * Le nombre maximum de lignes parcourues pour trouver les valeurs aux
+	 * représentations textuelles les plus longues.
 	 */
-	private final ColumnOptimizerTask task;
-	
+	private static final int MAX_SCAN = 2000;
+
 	/**
-	 * L'index de la colonne en cours d'optimisation.
+	 * Le nombre maximum de largeurs mémorisées pour les colonnes dont la
+	 * largeur ne dépend pas des données.
 	 */
-	private int index;
+	private static final int MAX_FIXED_WIDTHS = 64;
 
 	/**
-	 * Construit un optimiseur de largeurs de colonnes.
-	 * 
-	 * @param table	La table à optimiser.
+	 * Les classes de colonnes dont la largeur ne dépend pas des données.
 	 */
-	private ColumnOptimizer(JTable table) {
-		this.table = table;
-		this.cm = table.getColumnModel();
-		this.task = new ColumnOptimizerTask();
-	}
-	
+	private static final Set<Class<?>> FIXED_WIDTH_CLASSES =
+			new HashSet<>(Arrays.asList(Boolean.class, Date.class));
+
 	/**
-	 * Optimise en arrière-plan les largeurs de colonnes d'une table.<br>
-	 * Si une tâche d'optimisation est en cours pour la même table, elle est
-	 * arrêtée.
-	 * 
-	 * @param table	La table à optimiser.
+	 * Les longueurs des représentations textuelles déjà calculées, par
+	 * modèle.<br>
+	 * N'est accédée que depuis l'Event Dispatch Thread.
 	 */
-	public static synchronized void optimize(JTable table) {
-		new ColumnOptimizer(table).start();
-	}
+	private static final Map<TableModel, LengthCache> lengths =
+			new WeakHashMap<>();
 
 	/**
-	 * Enregistrer une instance auprès de la classe.
-	 * 
-	 * La synchronisation <b>au niveau de la classe</b> est nécessaire non
-	 * seulement parce que <code>HashMap</code> n'est pas synchronisée, mais
-	 * aussi pour éviter qu'une autre instance ne s'enregistre entre la
-	 * consultation de la map et l'insertion de l'instance concernée.
-	 * 
-	 * @param optimizer	L'instance à enregistrer.
-	 */
-	private static synchronized void register(ColumnOptimizer optimizer) {
-	
-		// Arrêter une éventuelle tâche en cours sur la même table
-		ColumnOptimizer co = working.get(optimizer.table);
-		if (co != null)
-			co.interrupt();
-	
-		// Enregistrer l'instance
-		working.put(optimizer.table, optimizer);
-	}
+	 * Le fil d'exécution unique qui traite les demandes.
+	 */
+	private static final ExecutorService EXECUTOR =
+			Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread =
+						new Thread(runnable, "Optimisation des colonnes");
+				thread.setDaemon(true);
+				return thread;
+			});
 
 	/**
-	 * Désenregistre une instance si elle est toujours associée à la table
-	 * correspondante.
-	 * 
-	 * @param optimizer	L'instance à désenregistrer.
+	 * Les tables en attente d'optimisation.
 	 */
-	private static synchronized void unregister(ColumnOptimizer optimizer) {
-		if (working.get(optimizer.table) == optimizer)
-			working.remove(optimizer.table);
+	private static final Set<JTable> pending =
+			Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+	/**
+	 * Les largeurs déjà mesurées pour les colonnes dont la largeur ne dépend
+	 * pas des données, par type de colonne, police et en-tête.<br>
+	 * Au-delà de MAX_FIXED_WIDTHS largeurs, la moins récemment utilisée est
+	 * oubliée.<br>
+	 * N'est accédée que depuis l'Event Dispatch Thread.
+	 */
+	@SuppressWarnings("serial")
+	private static final Map<WidthKey, Integer> fixedWidths =
+			new LinkedHashMap<WidthKey, Integer>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(
+				Map.Entry<WidthKey, Integer> eldest) {
+			return size() > MAX_FIXED_WIDTHS;
+		}
+	};// classe anonyme LinkedHashMap
+
+	/**
+	 * Optimise en arrière-plan les largeurs de colonnes d'une table.<br>
+	 * Si une optimisation est déjà en attente pour la même table, la demande
+	 * est fusionnée avec elle.
+	 *
+	 * @param table	La table à optimiser.
+	 */
+	public static void optimize(JTable table) {
+		if (pending.add(table))
+			EXECUTOR.execute(() -> run(table));
 	}
 
 	/**
-	 * Optimise les largeurs de colonnes par tâches successives dans l'EDT.
+	 * Optimise les largeurs de colonnes d'une table en une seule tâche dans
+	 * l'EDT, et attend la fin de cette tâche avant de traiter la demande
+	 * suivante.
+	 *
+	 * @param table	La table à optimiser.
 	 */
-	@Override
-	public void run() {
+	private static void run(JTable table) {
+		pending.remove(table);
 		try {
-			register(this);
-			int nbCols = cm.getColumnCount();
-			for (index = 0; index < nbCols && !isInterrupted() ; index++) {
-				
-				/*
-				 * invokeAndWait permet de garantir la cohérence de index,
-				 * contrairement à invokeLater.
-				 */
-				SwingUtilities.invokeAndWait(task);
-			}
-			
+			SwingUtilities.invokeAndWait(() -> apply(table));
+
 		} catch (InterruptedException e) {
-			interrupt();
+			Thread.currentThread().interrupt();
 		} catch (InvocationTargetException e) {
 			Logger.getLogger(ColumnOptimizer.class.getName()).log(
 					Level.WARNING,
 					"Erreur pendant l'ajustement des colonnes",
 					e);
+		}
+	}
 
-		} finally {
-			unregister(this);
+	/**
+	 * Mesure toutes les colonnes de la table, puis leur applique les largeurs
+	 * mesurées.
+	 *
+	 * @param table	La table à optimiser.
+	 */
+	private static void apply(JTable table) {
+		TableColumnModel cm = table.getColumnModel();
+		int[] widths = new int[cm.getColumnCount()];
+		for (int col = 0; col < widths.length; col++)
+			widths[col] = measure(table, col);
+
+		for (int col = 0; col < widths.length; col++)
+			cm.getColumn(col).setPreferredWidth(widths[col]);
+	}
+
+	/**
+	 * Mesure la largeur utile d'une colonne.
+	 *
+	 * @param table	La table.
+	 * @param col	L'index de la colonne (index de la vue).
+	 *
+	 * @return		La largeur utile de la colonne.
+	 */
+	private static int measure(JTable table, int col) {
+		int modelCol = table.convertColumnIndexToModel(col);
+		Class<?> columnClass = table.getModel().getColumnClass(modelCol);
+
+		// Largeur indépendante des données : utiliser le cache si possible
+		if (FIXED_WIDTH_CLASSES.contains(columnClass)) {
+			WidthKey key = new WidthKey(columnClass, table.getFont(),
+					table.getColumnModel().getColumn(col).getHeaderValue());
+			Integer width = fixedWidths.get(key);
+			if (width == null) {
+				width = SmartTable.getLargeurUtileColonne(table, col,
+						getSample(table.getModel(), modelCol).stream()
+						.mapToInt(Integer::intValue));
+				fixedWidths.put(key, width);
+			}
+			return width;
 		}
+
+		return SmartTable.getLargeurUtileColonne(table, col,
+				getSample(table.getModel(), modelCol).stream()
+				.mapToInt(Integer::intValue));
 	}
-	
+
 	/**
-	 * Une tâche de d'optimisation de colonne. Elle optimise une colonne à la
-	 * fois.
+	 * Choisit les lignes à mesurer dans une colonne.
 	 * <p>
-	 * On pourrait utiliser une classe à instancier pour chaque colonne, mais
-	 * c'est une perte de performance inutile. Il est préférable d'instancier un
-	 * objet unique capable de traiter n'importe quel index de colonne.
-	 * <p>
-	 * Dans la mesure où cet objet n'est exécuté que par un thread à la fois (en
-	 * l'occurrence l'Event Dispatch Thread, chaque exécution n'étant au surplus
-	 * programmée qu'après la fin de l'exécution précédente), il n'y a aucun
-	 * problème de concurrence sur l'index de colonne à utiliser.
+	 * Cette méthode doit être appelée depuis l'Event Dispatch Thread.
+	 *
+	 * @param model	Le modèle de table.
+	 * @param col	L'index de la colonne dans le modèle.
+	 *
+	 * @return		Les index des lignes à mesurer, triés et sans doublons.
+	 */
+	static NavigableSet<Integer> getSample(TableModel model, int col) {
+		int rowCount = model.getRowCount();
+		NavigableSet<Integer> rows = new TreeSet<>();
+
+		// Premières et dernières lignes
+		for (int i = 0; i < EDGE_ROWS && i < rowCount; i++) {
+			rows.add(i);
+			rows.add(rowCount - 1 - i);
+		}
+
+		// Lignes réparties régulièrement
+		for (int i = 0; i < STRATIFIED_ROWS && rowCount > 0; i++)
+			rows.add((int) ((long) i * rowCount / STRATIFIED_ROWS));
+
+		// Lignes dont les valeurs ont les textes les plus longs
+		LengthCache cache = lengths.computeIfAbsent(model, m -> {
+			LengthCache c = new LengthCache();
+			m.addTableModelListener(c);
+			return c;
+		});
+		PriorityQueue<int[]> widest =			// {longueur, ligne}
+				new PriorityQueue<>((a, b) -> Integer.compare(a[0], b[0]));
+		int step = Math.max(1, rowCount / MAX_SCAN);
+		for (int row = 0; row < rowCount; row += step) {
+			int length = cache.getLength(model, row, col);
+			if (widest.size() < WIDEST_ROWS) {
+				widest.add(new int[] {length, row});
+			} else if (length > widest.peek()[0]) {
+				widest.poll();
+				widest.add(new int[] {length, row});
+			}
+		}
+		for (int[] candidate : widest)
+			rows.add(candidate[1]);
+
+		return rows;
+	}
+
+	/**
+	 * Les longueurs des représentations textuelles des valeurs d'un modèle,
+	 * tenues à jour d'après les événements du modèle.
 	 *
 	 * @author Olivier HAAS
 	 */
-	private class ColumnOptimizerTask implements Runnable {
+	private static class LengthCache implements TableModelListener {
+
+		/**
+		 * Les longueurs de chaque colonne du modèle, par ligne. Une valeur
+		 * négative signifie que la longueur n'est pas connue.
+		 */
+		private final Map<Integer, int[]> columns = new HashMap<>();
 
 		/**
-		 * Optimise la largeur de la colonne portant l'index en cours, s'il est
-		 * toujours valable.
-		 * <p>
-		 * Si le modèle de table a changé entre deux invocations, l'index peut
-		 * être obsolète.
+		 * Renvoie la longueur de la représentation textuelle d'une valeur,
+		 * en la calculant si elle n'est pas connue.
+		 *
+		 * @param model	Le modèle de table.
+		 * @param row	L'index de la ligne dans le modèle.
+		 * @param col	L'index de la colonne dans le modèle.
+		 *
+		 * @return		La longueur de la représentation textuelle de la
+		 * 				valeur, ou 0 si elle est <code>null</code>.
+		 */
+		private int getLength(TableModel model, int row, int col) {
+			int[] column = columns.get(col);
+			if (column == null || column.length != model.getRowCount()) {
+				column = unknown(model.getRowCount());
+				columns.put(col, column);
+			}
+			if (column[row] < 0) {
+				Object value = model.getValueAt(row, col);
+				column[row] = (value == null) ? 0 : value.toString().length();
+			}
+			return column[row];
+		}
+
+		/**
+		 * Oublie les longueurs des lignes modifiées, et décale celles des
+		 * lignes suivantes en cas d'insertion ou de suppression.
 		 */
 		@Override
-		public void run() {
-			if (index < cm.getColumnCount()) {
-				cm.getColumn(index).setPreferredWidth(
-						SmartTable.getLargeurUtileColonne(table, index));
+		public void tableChanged(TableModelEvent e) {
+			int first = e.getFirstRow(), last = e.getLastRow();
+			if (first == TableModelEvent.HEADER_ROW
+					|| last == Integer.MAX_VALUE) {
+				columns.clear();				// Tout a pu changer
+				return;
+			}
+
+			for (Map.Entry<Integer, int[]> entry : columns.entrySet()) {
+				int[] column = entry.getValue();
+				if (first < 0 || first > last || first > column.length) {
+					entry.setValue(new int[0]);	// Incohérent : tout oublier
+					continue;
+				}
+				int count = last - first + 1;
+				switch (e.getType()) {
+				case TableModelEvent.INSERT:
+					int[] inserted = unknown(column.length + count);
+					System.arraycopy(column, 0, inserted, 0, first);
+					System.arraycopy(column, first, inserted, first + count,
+							column.length - first);
+					entry.setValue(inserted);
+					break;
+
+				case TableModelEvent.DELETE:
+					count = Math.min(count, column.length - first);
+					int[] deleted = new int[column.length - count];
+					System.arraycopy(column, 0, deleted, 0, first);
+					System.arraycopy(column, first + count, deleted, first,
+							deleted.length - first);
+					entry.setValue(deleted);
+					break;
+
+				default:
+					if (e.getColumn() == TableModelEvent.ALL_COLUMNS
+							|| e.getColumn() == entry.getKey()) {
+						Arrays.fill(column, first,
+								Math.min(last + 1, column.length), -1);
+					}
+				}
 			}
 		}
+
+		/**
+		 * Renvoie un tableau de longueurs inconnues.
+		 *
+		 * @param size	Le nombre de lignes.
+		 */
+		private static int[] unknown(int size) {
+			int[] column = new int[size];
+			Arrays.fill(column, -1);
+			return column;
+		}
+	}
+
+	/**
+	 * Une clé identifiant une colonne dont la largeur ne dépend pas des
+	 * données.
+	 *
+	 * @author Olivier HAAS
+	 */
+	private static class WidthKey {
+
+		/**
+		 * La classe des valeurs de la colonne.
+		 */
+		private final Class<?> columnClass;
+
+		/**
+		 * La police de la table.
+		 */
+		private final Font font;
+
+		/**
+		 * L'en-tête de la colonne, dont la largeur compte aussi.
+		 */
+		private final Object header;
+
+		/**
+		 * Construit une clé.
+		 */
+		private WidthKey(Class<?> columnClass, Font font, Object header) {
+			this.columnClass = columnClass;
+			this.font = font;
+			this.header = header;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof WidthKey))
+				return false;
+			WidthKey key = (WidthKey) obj;
+			return columnClass == key.columnClass
+					&& Objects.equals(font, key.font)
+					&& Objects.equals(header, key.header);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(columnClass, font, header);
+		}
 	}
-}
\ No newline at end of file
+}
@@ -8,6 +8,9 @@ import java.awt.Insets;
 import java.awt.Point;
 import java.awt.event.MouseEvent;
 
+import java.util.PrimitiveIterator;
+import java.util.stream.IntStream;
+
 import javax.swing.JComponent;
 import javax.swing.JLabel;
 import javax.swing.JTable;
@@ -48,6 +51,22 @@ public class SmartTable extends JTable {
 	 * @param col	L'index de la colonne à examiner (index de la vue).
 	 */
 	public static int getLargeurUtileColonne(JTable table, int col) {
+		return getLargeurUtileColonne(table, col,
+				IntStream.range(0, table.getModel().getRowCount()));
+	}// getLargeurUtileColonne
+	
+	/** Renvoie la largeur minimale d'une <code>TableColumn</code> pour que le
+	 * texte de l'en-tête et des cellules spécifiées puisse être affiché en
+	 * entier.
+	 * 
+	 * @param table	La table dans laquelle se trouve la colonne à examiner.
+	 * 
+	 * @param col	L'index de la colonne à examiner (index de la vue).
+	 * 
+	 * @param rows	Les index des lignes à examiner (index du modèle).
+	 */
+	public static int getLargeurUtileColonne(JTable table, int col,
+			IntStream rows) {
 		TableModel model = table.getModel();				// Modèle de table
 		TableColumn column =								// Colonne concernée
 				table.getColumnModel().getColumn(col);
@@ -68,7 +87,9 @@ public class SmartTable extends JTable {
 		}// if header
 		
 		// Comparer avec la largeur préférée de chaque ligne
-		for (int row = 0; row < model.getRowCount(); row++) {
+		PrimitiveIterator.OfInt it = rows.iterator();
+		while (it.hasNext()) {
+			int row = it.nextInt();
 			
 			// Le composant graphique de la cellule
 			Component comp = table.getCellRenderer(row, col)// Renderer
@@ -0,0 +1,134 @@
+package haas.olivier.comptes;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import haas.olivier.comptes.dao.CompteDAO;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.comptes.dao.EcritureDAO;
+import haas.olivier.comptes.dao.cache.CacheDAOFactory;
+import haas.olivier.comptes.dao.csv.CsvDAO;
+import haas.olivier.util.Month;
+
+public class CommandLineTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * L'archive utilisée.
+	 */
+	private File file;
+
+	/**
+	 * La sortie standard simulée.
+	 */
+	private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+
+	@Before
+	public void setUp() throws Exception {
+		file = new File(folder.getRoot(), "comptes.zip");
+		CacheDAOFactory cache = new CacheDAOFactory(CsvDAO.newInstance(file));
+
+		CompteDAO cDAO = cache.getCompteDAO();
+		Compte banque = cDAO.createAndAdd(TypeCompte.COMPTE_COURANT);
+		banque.setNom("Banque; principale");
+		Compte depenses = cDAO.createAndAdd(TypeCompte.DEPENSES);
+		depenses.setNom("Dépenses");
+
+		EcritureDAO eDAO = cache.getEcritureDAO();
+		Month janvier = Month.getInstance(2020, 1);
+		eDAO.add(new Ecriture(null, janvier.getFirstDay(),
+				janvier.getFirstDay(), depenses, banque, new BigDecimal("100"),
+				null, null, null));
+		eDAO.add(new Ecriture(null, janvier.getNext().getFirstDay(), null,
+				banque, depenses, new BigDecimal("30.5"), null, null, null));
+		cache.save();
+	}
+
+	private int run(String... args) {
+		return CommandLine.run(args, new PrintStream(stdout));
+	}
+
+	@Test
+	public void testSoldes() throws Exception {
+		assertEquals(0, run(file.getPath(), "suivis", "soldes", "2020-02"));
+		String[] lines = new String(stdout.toByteArray(),
+				StandardCharsets.UTF_8).split("\\R");
+		assertEquals(2, lines.length);
+		assertEquals("\"Banque; principale\";2020-02;69.5;100", lines[1]);
+	}
+
+	@Test
+	public void testExportEtSave() throws Exception {
+		File export = new File(folder.getRoot(), "soldes.csv");
+		assertEquals(0, run("-out", export.getPath(), file.getPath(),
+				"suivis", "2020-01", "soldes", "2020-01", "save"));
+		assertEquals(0, stdout.size());
+
+		List<String> lines =
+				Files.readAllLines(export.toPath(), StandardCharsets.UTF_8);
+		assertEquals("\"Banque; principale\";2020-01;100;100",
+				lines.get(1));
+		assertFalse(new File(file.getPath() + ".bak").exists());
+	}
+
+	@Test
+	public void testCodesDeSortie() {
+		assertEquals(CommandLine.EXIT_USAGE, run());
+		assertEquals(CommandLine.EXIT_NO_INPUT,
+				run(new File(folder.getRoot(), "absent.zip").getPath()));
+		assertEquals(CommandLine.EXIT_USAGE,
+				run(file.getPath(), "inconnue"));
+		assertEquals(CommandLine.EXIT_USAGE,
+				run(file.getPath(), "permanents", "2020-01"));
+	}
+
+	@Test
+	public void testPermanentsEchec() throws Exception {
+		
+		// Une opération permanente dont le planning commence trop tard
+		CacheDAOFactory cache = new CacheDAOFactory(CsvDAO.newInstance(file));
+		Compte banque = null, depenses = null;
+		for (Compte compte : cache.getCompteDAO().getAll()) {
+			if (compte.getType() == TypeCompte.COMPTE_COURANT) {
+				banque = compte;
+			} else {
+				depenses = compte;
+			}
+		}
+		Month juin = Month.getInstance(2020, 6);
+		Permanent permanent = new Permanent(null, "Loyer", banque, depenses,
+				"Loyer", "Bailleur", false, Collections.singletonMap(juin, 5));
+		permanent.setState(new PermanentFixe(
+				Collections.singletonMap(juin, BigDecimal.TEN)));
+		cache.getPermanentDAO().add(permanent);
+		cache.save();
+		
+		File export = new File(folder.getRoot(), "soldes.csv");
+		assertEquals(CommandLine.EXIT_ERROR, run("-out", export.getPath(),
+				file.getPath(), "permanents", "2020-03", "2020-04", "soldes",
+				"2020-04"));
+		
+		// Ni écriture générée, ni commande suivante exécutée
+		int count = 0;
+		for (@SuppressWarnings("unused") Ecriture e :
+				DAOFactory.getFactory().getEcritureDAO().getAll())
+			count++;
+		assertEquals(2, count);
+		assertEquals(0, export.length());
+	}
+}
@@ -8,6 +8,7 @@ import static org.mockito.Mockito.*;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.util.Arrays;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -17,6 +18,8 @@ import org.junit.Test;
 
 import haas.olivier.comptes.dao.DAOFactory;
 import haas.olivier.comptes.dao.SuiviDAO;
+import haas.olivier.comptes.dao.cache.CacheSuiviDAO;
+import haas.olivier.comptes.dao.cache.Solde;
 import haas.olivier.util.Month;
 
 public class CompteBancaireStateTest {
@@ -124,6 +127,35 @@ public class CompteBancaireStateTest {
 				state.getSuivi(compte, suivi, month)));
 	}
 
+	/**
+	 * Teste que la série reporte les derniers suivis connus comme le fait
+	 * <code>getSuivi</code> mois par mois.
+	 */
+	@Test
+	public void testGetSuivis() {
+		Month from = month.getTranslated(-10);
+		
+		SuiviDAO suivi = new CacheSuiviDAO(Arrays.asList(
+				new Solde(month.getTranslated(-8), compte, BigDecimal.ONE),
+				new Solde(month.getTranslated(-3), compte, BigDecimal.TEN))
+				.iterator());
+		
+		CompteBancaireState state =
+				new CompteBancaireState(TypeCompte.COMPTE_COURANT, null);
+		double[] soldes = state.getSuivis(compte, suivi, from, 11);
+		
+		assertEquals(11, soldes.length);
+		Month m = from;
+		for (int i = 0; i < soldes.length; i++) {
+			assertEquals(state.getSuivi(compte, suivi, m).doubleValue(),
+					soldes[i], 0.0);
+			m = m.getNext();
+		}
+		assertEquals(0.0, soldes[1], 0.0);
+		assertEquals(1.0, soldes[2], 0.0);
+		assertEquals(10.0, soldes[10], 0.0);
+	}
+
 	@Test
 	public void testAddHistorique() throws IOException {
 		SuiviDAO suivi = mock(SuiviDAO.class);
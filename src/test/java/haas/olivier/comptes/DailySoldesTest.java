@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import haas.olivier.comptes.ctrl.DailySoldes;
+import haas.olivier.comptes.dao.CompteDAO;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.comptes.dao.EcritureDAO;
+
+public class DailySoldesTest {
+
+	private static final SimpleDateFormat df = new SimpleDateFormat("dd/MM/yy");
+	
+	@Mock
+	private DAOFactory factory;
+	
+	@Mock
+	private EcritureDAO eDAO;
+	
+	@Mock
+	private CompteDAO cDAO;
+	
+	private final Compte compte1 = new Compte(1, TypeCompte.COMPTE_COURANT);
+	private final Compte compte2 = new Compte(2, TypeCompte.COMPTE_EPARGNE);
+	private final Compte depenses = new Compte(3, TypeCompte.DEPENSES);
+	
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		DAOFactory.setFactory(factory);
+		when(factory.getEcritureDAO()).thenReturn(eDAO);
+		
+		when(eDAO.getAll()).thenReturn(Arrays.asList(
+				
+				// Avant la période : solde de départ
+				new Ecriture(1, df.parse("15/12/17"), df.parse("20/12/17"),
+						depenses, compte1, new BigDecimal("100.00"),
+						null, null, null),
+				
+				// Virement d'un compte à l'autre pendant la période
+				new Ecriture(2, df.parse("03/01/18"), df.parse("05/01/18"),
+						compte1, compte2, new BigDecimal("30.50"),
+						null, null, null),
+				
+				// Dépense non pointée
+				new Ecriture(3, df.parse("04/01/18"), null,
+						compte1, depenses, new BigDecimal("12.25"),
+						null, null, null),
+				
+				// Après la période
+				new Ecriture(4, df.parse("10/01/18"), df.parse("10/01/18"),
+						compte1, depenses, BigDecimal.TEN, null, null, null)));
+	}
+
+	@Test
+	public void testSoldesTheoriques() throws Exception {
+		DailySoldes soldes = new DailySoldes(Arrays.asList(compte1, compte2),
+				df.parse("01/01/18"), df.parse("07/01/18"), false);
+		
+		assertEquals(7, soldes.getDayCount());
+		assertEquals(df.parse("03/01/18"), soldes.getDate(2));
+		assertArrayEquals(
+				new double[] {100, 100, 69.5, 57.25, 57.25, 57.25, 57.25},
+				soldes.getSoldes(compte1), 0.001);
+		assertArrayEquals(
+				new double[] {0, 0, 30.5, 30.5, 30.5, 30.5, 30.5},
+				soldes.getSoldes(compte2), 0.001);
+		assertEquals(0, new BigDecimal("57.25").compareTo(
+				soldes.getSoldeAt(compte1, df.parse("06/01/18"))));
+		
+		// Compte non calculé, date hors période
+		assertNull(soldes.getSoldes(depenses));
+		assertNull(soldes.getSoldeAt(compte1, df.parse("08/01/18")));
+	}
+	
+	@Test
+	public void testSoldesPointes() throws Exception {
+		DailySoldes soldes = new DailySoldes(Arrays.asList(compte1),
+				df.parse("01/01/18"), df.parse("07/01/18"), true);
+		assertArrayEquals(
+				new double[] {100, 100, 100, 100, 69.5, 69.5, 69.5},
+				soldes.getSoldes(compte1), 0.001);
+	}
+	
+	@Test
+	public void testForBancairesDepuisOuverture() throws Exception {
+		when(factory.getCompteDAO()).thenReturn(cDAO);
+		when(cDAO.getAll()).thenReturn(
+				Arrays.asList(compte1, compte2, depenses));
+		compte1.setOuverture(df.parse("03/01/18"));
+		compte2.setOuverture(df.parse("02/01/18"));
+		depenses.setOuverture(df.parse("01/12/17"));
+		
+		// Le calcul commence à l'ouverture du plus ancien compte bancaire
+		DailySoldes soldes =
+				DailySoldes.forBancaires(df.parse("07/01/18"), false);
+		assertEquals(6, soldes.getDayCount());
+		assertEquals(df.parse("02/01/18"), soldes.getDate(0));
+		assertArrayEquals(
+				new double[] {100, 69.5, 57.25, 57.25, 57.25, 57.25},
+				soldes.getSoldes(compte1), 0.001);
+		assertNull(soldes.getSoldes(depenses));
+	}
+}
@@ -8,8 +8,12 @@ import static org.mockito.Mockito.*;
 
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.TreeSet;
 
+import javax.swing.event.TableModelEvent;
+
 import haas.olivier.comptes.Compte;
 import haas.olivier.comptes.Ecriture;
 import haas.olivier.util.Month;
@@ -115,4 +119,88 @@ public class EcrituresTableModelTest {
 		assertEquals(0, b.compareTo(model.getMontantAt(3)));
 		assertEquals(0, a.negate().compareTo(model.getMontantAt(4)));
 	}
+
+	@Test
+	public void testUpdateFiresRowEvents() {
+		monthObservable.setMonth(mai11);
+		EcrituresTableModel model = new EcrituresTableModel(monthObservable,
+				compteObservable, dataObservable);
+		model.update();
+		
+		// Écouter les événements de la mise à jour suivante
+		List<TableModelEvent> events = new ArrayList<>();
+		model.addTableModelListener(events::add);
+		
+		// Supprimer une écriture au milieu de la liste
+		ecrituresToutes.remove(e3);
+		model.update();
+		
+		// La ligne de saisie est renouvelée, la ligne de e3 est supprimée
+		assertEquals(2, events.size());
+		TableModelEvent deletion = events.get(0);
+		assertEquals(TableModelEvent.DELETE, deletion.getType());
+		assertEquals(2, deletion.getFirstRow());
+		assertEquals(2, deletion.getLastRow());
+		TableModelEvent entry = events.get(1);
+		assertEquals(TableModelEvent.UPDATE, entry.getType());
+		assertEquals(0, entry.getFirstRow());
+		assertEquals(0, entry.getLastRow());
+		
+		assertEquals(5, model.getRowCount());
+		assertEquals(0, b.compareTo(model.getMontantAt(2)));
+		assertEquals(0, a.negate().compareTo(model.getMontantAt(3)));
+	}
+	
+	/**
+	 * Renvoie l'index de la colonne portant le nom spécifié.
+	 */
+	private static int column(EcrituresTableModel model, String name) {
+		for (int col=0; col<model.getColumnCount(); col++) {
+			if (name.equals(model.getColumnName(col)))
+				return col;
+		}
+		throw new IllegalArgumentException(name);
+	}
+	
+	@Test
+	public void testUpdateRefreshesModifiedEcriture() throws Exception {
+		monthObservable.setMonth(mai11);
+		EcrituresTableModel model = new EcrituresTableModel(monthObservable,
+				compteObservable, dataObservable);
+		model.update();
+		int libelle = column(model, "Commentaire");
+		assertNull(model.getValueAt(1, libelle));
+		
+		// Une nouvelle version de e4, égale à l'ancienne au sens de equals
+		Ecriture e4bis = new Ecriture(4, e4.date, null, compte2, compte, a,
+				"modifié", null, null);
+		assertEquals(e4, e4bis);
+		ecrituresToutes.remove(e4);
+		ecrituresToutes.add(e4bis);
+		model.update();
+		
+		assertEquals("modifié", model.getValueAt(1, libelle));
+	}
+	
+	@Test
+	public void testUpdateKeepsDirtyRow() throws Exception {
+		monthObservable.setMonth(mai11);
+		EcrituresTableModel model = new EcrituresTableModel(monthObservable,
+				compteObservable, dataObservable);
+		model.update();
+		int date = column(model, "Date");
+		
+		// Une saisie incomplète, donc non enregistrée
+		model.setValueAt(null, 1, date);
+		
+		// Une nouvelle version de e4 arrive
+		Ecriture e4bis = new Ecriture(4, e4.date, null, compte2, compte, a,
+				"modifié", null, null);
+		ecrituresToutes.remove(e4);
+		ecrituresToutes.add(e4bis);
+		model.update();
+		
+		// La saisie en cours est conservée
+		assertNull(model.getValueAt(1, date));
+	}
 }
@@ -10,10 +10,13 @@ import haas.olivier.comptes.Compte;
 import haas.olivier.comptes.Ecriture;
 import haas.olivier.util.Month;
 import haas.olivier.comptes.Permanent;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.comptes.dao.cache.CacheDAOFactory;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.text.SimpleDateFormat;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.After;
@@ -144,4 +147,105 @@ public class PermanentTest {
 		} catch (Exception e1) {
 		}
 	}
+
+	@Test
+	public void testPlanningNonModifieALaLecture() throws Exception {
+		Month ancien = Month.getInstance(2010, 1);
+		Map<Month, Integer> plan = new HashMap<Month, Integer>(jours);
+		plan.put(ancien, 5);
+		Map<Month, BigDecimal> montants = new HashMap<Month, BigDecimal>();
+		montants.put(ancien, BigDecimal.ONE);
+		montants.put(juin, BigDecimal.TEN);
+		
+		Permanent perm = new Permanent(
+				7, "", debit, credit, libelle, tiers, false, plan);
+		PermanentFixe state = new PermanentFixe(montants);
+		perm.setState(state);
+		
+		// Générer plusieurs fois ne modifie pas les plannings
+		perm.createEcriture(aout);
+		perm.createEcriture(aout);
+		assertEquals(5, perm.getJours().size());
+		assertEquals(2, state.getMontantsByMonth().size());
+		assertEquals(df.parse("05/03/11"),
+				perm.getDatePrevue(Month.getInstance(2011, 3)));
+		
+		// Les mois sont parcourus dans l'ordre chronologique
+		assertEquals(ancien, perm.getJours().keySet().iterator().next());
+		
+		// La purge explicite supprime les mois obsolètes
+		perm.purge(aout);
+		assertEquals(4, perm.getJours().size());
+		assertFalse(perm.getJours().containsKey(ancien));
+		assertEquals(1, state.getMontantsByMonth().size());
+		try {
+			perm.getDatePrevue(Month.getInstance(2011, 3));
+			fail("Doit lever une exception");
+		} catch (InconsistentArgumentsException e) {
+		}
+	}
+
+	/**
+	 * Crée une base en mémoire contenant un compte bancaire, un compte de
+	 * dépenses et un loyer mensuel de 100 entre les deux.
+	 */
+	private static CacheDAOFactory createLoyer() throws Exception {
+		CacheDAOFactory factory = new CacheDAOFactory(null);
+		DAOFactory.setFactory(factory);
+		Compte banque = factory.getCompteDAO().createAndAdd(
+				TypeCompte.COMPTE_COURANT);
+		banque.setOuverture(avril.getFirstDay());
+		Compte depenses = factory.getCompteDAO().createAndAdd(
+				TypeCompte.DEPENSES);
+		
+		Map<Month, BigDecimal> montants = new HashMap<Month, BigDecimal>();
+		montants.put(avril, new BigDecimal("100"));
+		Map<Month, Integer> loyerJours = new HashMap<Month, Integer>();
+		loyerJours.put(avril, 5);
+		Permanent loyer = new Permanent(1, "loyer", banque, depenses, null,
+				null, false, loyerJours);
+		loyer.setState(new PermanentFixe(montants));
+		factory.getPermanentDAO().add(loyer);
+		return factory;
+	}
+	
+	private static int count(Iterable<Ecriture> ecritures) {
+		int n = 0;
+		for (@SuppressWarnings("unused") Ecriture e : ecritures)
+			n++;
+		return n;
+	}
+
+	@Test
+	public void testCreateAllEcrituresPeriode() throws Exception {
+		CacheDAOFactory factory = createLoyer();
+		
+		List<String> echecs = Permanent.createAllEcritures(mai, juillet);
+		
+		assertTrue(echecs.isEmpty());
+		assertEquals(3, count(factory.getEcritureDAO().getAll()));
+	}
+
+	@Test
+	public void testCreateAllEcrituresEchec() throws Exception {
+		CacheDAOFactory factory = createLoyer();
+		
+		// Une opération dont le planning commence plus tard
+		Map<Month, Integer> tardifs = new HashMap<Month, Integer>();
+		tardifs.put(aout, 1);
+		Map<Month, BigDecimal> montants = new HashMap<Month, BigDecimal>();
+		montants.put(aout, BigDecimal.ONE);
+		Compte banque = factory.getPermanentDAO().get(1).getDebit();
+		Permanent tardif = new Permanent(2, "tardif", banque,
+				factory.getPermanentDAO().get(1).getCredit(), null, null, false,
+				tardifs);
+		tardif.setState(new PermanentFixe(montants));
+		factory.getPermanentDAO().add(tardif);
+		
+		List<String> echecs = Permanent.createAllEcritures(mai, juillet);
+		
+		// Toutes les erreurs sont signalées, et rien n'est généré
+		assertEquals(3, echecs.size());
+		assertEquals(0, count(factory.getEcritureDAO().getAll()));
+	}
 }
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import haas.olivier.comptes.ctrl.Previsions;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.comptes.dao.SuiviDAO;
+import haas.olivier.util.Month;
+
+public class PrevisionsTest {
+
+	/** Le premier mois prévu. */
+	private static final Month DEBUT = Month.getInstance(2020, 1);
+	
+	/** Des mois anciens servant à définir les plannings. */
+	private static final Month ANCIEN = Month.getInstance(2014, 1),
+			RECENT = Month.getInstance(2016, 1);
+	
+	@Mock
+	private DAOFactory factory;
+	
+	@Mock
+	private SuiviDAO hDAO, sDAO;
+	
+	private final Compte courant = new Compte(1, TypeCompte.COMPTE_COURANT);
+	private final Compte epargne = new Compte(2, TypeCompte.COMPTE_EPARGNE);
+	private final Compte carte = new Compte(3, TypeCompte.COMPTE_CARTE);
+	private final Compte recettes = new Compte(4, TypeCompte.RECETTES);
+	
+	private Permanent salaire, versement, soldeur;
+	
+	@Before
+	public void setUp() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		DAOFactory.setFactory(factory);
+		when(factory.getDebut()).thenReturn(Month.getInstance(2010, 1));
+		when(factory.getHistoriqueDAO()).thenReturn(hDAO);
+		when(factory.getSoldeAVueDAO()).thenReturn(sDAO);
+		
+		// Soldes de départ
+		for (SuiviDAO dao : new SuiviDAO[] {hDAO, sDAO}) {
+			when(dao.get(eq(courant), any())).thenReturn(new BigDecimal(1000));
+			when(dao.get(eq(epargne), any())).thenReturn(BigDecimal.ZERO);
+			when(dao.get(eq(carte), any())).thenReturn(new BigDecimal(-300));
+		}
+		
+		// Un salaire fixe, dont le planning contient des mois obsolètes
+		Map<Month, Integer> jours = new HashMap<>();
+		jours.put(ANCIEN, 1);
+		jours.put(RECENT, 1);
+		Map<Month, BigDecimal> montants = new HashMap<>();
+		montants.put(ANCIEN, new BigDecimal(1500));
+		montants.put(RECENT, new BigDecimal(2000));
+		salaire = new Permanent(1, "salaire", recettes, courant, null, null,
+				true, jours);
+		salaire.setState(new PermanentFixe(montants));
+		
+		// Un versement de 10 % du salaire sur l'épargne
+		versement = new Permanent(2, "versement", courant, epargne, null,
+				null, true, jours);
+		versement.setState(
+				new PermanentProport(salaire, new BigDecimal(10)));
+		
+		// Le solde de la carte
+		soldeur = new Permanent(3, "carte", carte, courant, null, null, true,
+				jours);
+		soldeur.setState(new PermanentSoldeur(soldeur));
+	}
+
+	@Test
+	public void testPrevisions() {
+		Previsions previsions = new Previsions(
+				Arrays.asList(courant, epargne, carte),
+				Arrays.asList(versement, soldeur, salaire), DEBUT, 2);
+		
+		// 1000 + 2000 - 200 - 300, puis + 2000 - 200
+		assertArrayEquals(new double[] {2500, 4300},
+				previsions.getHistoriques(courant), 0.001);
+		assertArrayEquals(new double[] {200, 400},
+				previsions.getHistoriques(epargne), 0.001);
+		assertArrayEquals(new double[] {0, 0},
+				previsions.getHistoriques(carte), 0.001);
+		assertEquals(0, new BigDecimal(2500).compareTo(
+				previsions.getSoldeAVue(courant, DEBUT)));
+		assertNull(previsions.getHistoriques(recettes));
+		
+		assertEquals(3, previsions.getEcritures(DEBUT).size());
+		assertTrue(previsions.getEcritures(DEBUT.getTranslated(2)).isEmpty());
+		
+		// Les plannings n'ont pas été purgés
+		assertEquals(2, salaire.getJours().size());
+		assertEquals(2, ((PermanentFixe) salaire.getState())
+				.getMontantsByMonth().size());
+	}
+	
+	@Test
+	public void testEcrituresDejaSaisies() {
+		
+		// Une dépense par carte déjà pointée en janvier
+		when(sDAO.get(carte, DEBUT)).thenReturn(new BigDecimal(-350));
+		when(sDAO.get(carte, DEBUT.getNext())).thenReturn(
+				new BigDecimal(-350));
+		
+		Previsions previsions = new Previsions(Arrays.asList(courant, carte),
+				Arrays.asList(soldeur), DEBUT, 2);
+		
+		// Janvier solde décembre, février solde la dépense de janvier
+		assertEquals(0, new BigDecimal(-50).compareTo(
+				previsions.getSoldeAVue(carte, DEBUT)));
+		assertEquals(0, BigDecimal.ZERO.compareTo(
+				previsions.getSoldeAVue(carte, DEBUT.getNext())));
+		assertEquals(0, new BigDecimal(650).compareTo(
+				previsions.getSoldeAVue(courant, DEBUT.getNext())));
+		assertTrue(previsions.getEchecs().isEmpty());
+	}
+	
+	@Test
+	public void testPermanentsDejaGeneres() throws Exception {
+		
+		// Le salaire de janvier a déjà été généré, puis porté à 2500
+		Ecriture generee = new Ecriture(null, DEBUT.getFirstDay(), null,
+				recettes, courant, new BigDecimal(2500), null, null, null);
+		when(hDAO.get(courant, DEBUT)).thenReturn(new BigDecimal(3500));
+		
+		Previsions previsions = new Previsions(
+				Arrays.asList(courant, epargne),
+				Arrays.asList(versement, salaire), DEBUT, 1,
+				Arrays.asList(generee));
+		
+		// Seul le versement est prévu, à 10 % du salaire enregistré
+		assertEquals(1, previsions.getEcritures(DEBUT).size());
+		assertEquals(0, new BigDecimal(250).compareTo(
+				previsions.getEcritures(DEBUT).get(0).montant));
+		assertArrayEquals(new double[] {3250},
+				previsions.getHistoriques(courant), 0.001);
+		assertArrayEquals(new double[] {250},
+				previsions.getHistoriques(epargne), 0.001);
+	}
+	
+	@Test
+	public void testDependanceCirculaire() {
+		Permanent p1 = new Permanent(5, "un", courant, epargne, null, null,
+				false, salaire.getJours());
+		Permanent p2 = new Permanent(6, "deux", epargne, courant, null, null,
+				false, salaire.getJours());
+		p1.setState(new PermanentProport(p2, BigDecimal.TEN));
+		p2.setState(new PermanentProport(p1, BigDecimal.TEN));
+		
+		Previsions previsions = new Previsions(Arrays.asList(courant),
+				Arrays.asList(p1, p2, salaire), DEBUT, 1);
+		
+		// Seul le salaire est prévu
+		assertEquals(1, previsions.getEcritures(DEBUT).size());
+		assertEquals(2, previsions.getEchecs().size());
+		assertArrayEquals(new double[] {3000},
+				previsions.getHistoriques(courant), 0.001);
+	}
+}
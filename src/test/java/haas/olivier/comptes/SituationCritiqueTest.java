@@ -12,6 +12,8 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -22,8 +24,11 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import haas.olivier.comptes.ctrl.SituationCritique;
+import haas.olivier.comptes.ctrl.SituationsCritiques;
+import haas.olivier.comptes.dao.CompteDAO;
 import haas.olivier.comptes.dao.DAOFactory;
 import haas.olivier.comptes.dao.EcritureDAO;
+import haas.olivier.comptes.dao.PermanentDAO;
 import haas.olivier.comptes.dao.SuiviDAO;
 import haas.olivier.util.Month;
 
@@ -239,4 +244,125 @@ public class SituationCritiqueTest {
 		assertEquals("montant maximal du découvert aujourd'hui",
 				0, new BigDecimal(-3).compareTo(critique.getSoldeMini()));
 	}
+	
+	@Test
+	public void testSituationsCritiquesPlusieursComptes() throws EcritureMissingArgumentException, InconsistentArgumentsException, IOException {
+		Compte compte3 = new Compte(3, TypeCompte.COMPTE_COURANT);
+		
+		// Un virement de 10€ vers compte3, puis un crédit de 1€ sur compte
+		Ecriture e1 = new Ecriture(1, nextMonthDay1, null, compte, compte3, BigDecimal.TEN, null, null, null);
+		Ecriture e2 = new Ecriture(2, nextMonthDay5, nextMonthDay5, compte2, compte, BigDecimal.ONE, null, null, null);
+		
+		// Les soldes de fin de mois
+		when(hDAO.get(compte, MONTH)).thenReturn(new BigDecimal(16));
+		when(hDAO.get(compte, MONTH_NEXT)).thenReturn(new BigDecimal(7));
+		when(hDAO.get(compte3, MONTH)).thenReturn(new BigDecimal(-4));
+		when(hDAO.get(compte3, MONTH_NEXT)).thenReturn(new BigDecimal(6));
+		
+		// Les écritures de la période, lues en une seule fois
+		when(eDAO.getAllBetween(MONTH, MONTH_NEXT)).thenReturn(
+				Arrays.asList(new Ecriture[] {e2, e1}));
+		
+		// Méthode testée
+		SituationsCritiques situations = new SituationsCritiques(
+				Arrays.asList(compte, compte3), new Date());
+		
+		SituationCritique critique = situations.get(compte);
+		assertEquals(nextMonthDay1, critique.getDateCritique());
+		assertEquals(0, new BigDecimal(6).compareTo(critique.getSoldeMini()));
+		
+		SituationCritique critique3 = situations.get(compte3);
+		assertEquals("Déjà à découvert aujourd'hui",
+				today, critique3.getDateCritique());
+		assertEquals(0, new BigDecimal(-4).compareTo(critique3.getSoldeMini()));
+		
+		assertNull(situations.get(compte2));
+		verify(eDAO, never()).getAllTo(any());
+	}
+	
+	@Test
+	public void testSituationsCritiquesPrevisions() throws IOException {
+		Compte depenses = new Compte(4, TypeCompte.DEPENSES);
+		CompteDAO cDAO = mock(CompteDAO.class);
+		PermanentDAO pDAO = mock(PermanentDAO.class);
+		SuiviDAO sDAO = mock(SuiviDAO.class);
+		when(factory.getCompteDAO()).thenReturn(cDAO);
+		when(factory.getPermanentDAO()).thenReturn(pDAO);
+		when(factory.getSoldeAVueDAO()).thenReturn(sDAO);
+		when(cDAO.getAll()).thenReturn(Arrays.asList(compte, depenses));
+		
+		// Aucune écriture enregistrée, un solde stable de 16€
+		when(hDAO.get(eq(compte), any())).thenReturn(new BigDecimal(16));
+		when(sDAO.get(eq(compte), any())).thenReturn(new BigDecimal(16));
+		when(eDAO.getAllBetween(MONTH, MONTH_NEXT)).thenReturn(
+				Collections.emptyList());
+		
+		// Un loyer de 20€ prévu le 3 du mois prochain
+		Map<Month, Integer> jours = new HashMap<>();
+		jours.put(MONTH_NEXT, 3);
+		Map<Month, BigDecimal> montants = new HashMap<>();
+		montants.put(MONTH_NEXT, new BigDecimal(20));
+		Permanent loyer = new Permanent(1, "loyer", compte, depenses, null,
+				null, false, jours);
+		loyer.setState(new PermanentFixe(montants));
+		when(pDAO.getAll()).thenReturn(Arrays.asList(loyer));
+		
+		// Méthode testée
+		SituationsCritiques situations =
+				SituationsCritiques.forBancaires(new Date());
+		
+		// Le loyer prévu met le compte à découvert
+		Calendar cal = Calendar.getInstance();
+		cal.setTime(nextMonthDay1);
+		cal.set(Calendar.DAY_OF_MONTH, 3);
+		SituationCritique critique = situations.get(compte);
+		assertEquals(cal.getTime(), critique.getDateCritique());
+		assertEquals(0, new BigDecimal(-4).compareTo(critique.getSoldeMini()));
+		assertNull(situations.get(depenses));
+	}
+	
+	@Test
+	public void testSituationsCritiquesPermanentsGeneres() throws IOException,
+			EcritureMissingArgumentException, InconsistentArgumentsException {
+		Compte depenses = new Compte(4, TypeCompte.DEPENSES);
+		CompteDAO cDAO = mock(CompteDAO.class);
+		PermanentDAO pDAO = mock(PermanentDAO.class);
+		SuiviDAO sDAO = mock(SuiviDAO.class);
+		when(factory.getCompteDAO()).thenReturn(cDAO);
+		when(factory.getPermanentDAO()).thenReturn(pDAO);
+		when(factory.getSoldeAVueDAO()).thenReturn(sDAO);
+		when(cDAO.getAll()).thenReturn(Arrays.asList(compte, depenses));
+		
+		// Un loyer de 20€ le 3 du mois prochain
+		Map<Month, Integer> jours = new HashMap<>();
+		jours.put(MONTH_NEXT, 3);
+		Map<Month, BigDecimal> montants = new HashMap<>();
+		montants.put(MONTH_NEXT, new BigDecimal(20));
+		Permanent loyer = new Permanent(1, "loyer", compte, depenses,
+				"Loyer", "Bailleur", false, jours);
+		loyer.setState(new PermanentFixe(montants));
+		when(pDAO.getAll()).thenReturn(Arrays.asList(loyer));
+		
+		// Le loyer a déjà été généré : 16€ ce mois-ci, -4€ le mois prochain
+		Ecriture generee = loyer.createEcriture(MONTH_NEXT);
+		when(hDAO.get(compte, MONTH)).thenReturn(new BigDecimal(16));
+		when(hDAO.get(compte, MONTH_NEXT)).thenReturn(new BigDecimal(-4));
+		when(sDAO.get(eq(compte), any())).thenReturn(new BigDecimal(16));
+		when(eDAO.getAllBetween(MONTH, MONTH_NEXT)).thenReturn(
+				Arrays.asList(generee));
+		when(eDAO.getAllBetween(MONTH_NEXT, MONTH_NEXT)).thenReturn(
+				Arrays.asList(generee));
+		
+		// Méthode testée
+		SituationsCritiques situations =
+				SituationsCritiques.forBancaires(new Date());
+		
+		// Le loyer n'est compté qu'une fois
+		Calendar cal = Calendar.getInstance();
+		cal.setTime(nextMonthDay1);
+		cal.set(Calendar.DAY_OF_MONTH, 3);
+		SituationCritique critique = situations.get(compte);
+		assertEquals(cal.getTime(), critique.getDateCritique());
+		assertEquals(0, new BigDecimal(-4).compareTo(critique.getSoldeMini()));
+	}
 }
@@ -0,0 +1,144 @@
+package haas.olivier.comptes.ctrl.releve;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.TypeCompte;
+import haas.olivier.comptes.ctrl.EcritureController;
+import haas.olivier.comptes.ctrl.releve.Rapprochement.Resultat;
+import haas.olivier.comptes.dao.CompteDAO;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.comptes.dao.EcritureDAO;
+import haas.olivier.comptes.dao.cache.CacheDAOFactory;
+import haas.olivier.util.Month;
+
+public class RapprochementTest {
+
+	private final SimpleDateFormat parser = new SimpleDateFormat("dd/MM/yyyy");
+
+	private Compte banque, depenses;
+
+	private EcritureDAO eDAO;
+
+	@Before
+	public void setUp() throws Exception {
+		CacheDAOFactory factory = new CacheDAOFactory(null);
+		DAOFactory.setFactory(factory);
+
+		CompteDAO cDAO = factory.getCompteDAO();
+		banque = cDAO.createAndAdd(TypeCompte.COMPTE_COURANT);
+		banque.setOuverture(date("01/12/2019"));
+		depenses = cDAO.createAndAdd(TypeCompte.DEPENSES);
+
+		eDAO = factory.getEcritureDAO();
+		EcritureController.add(Arrays.asList(
+				ecriture(1, "30/12/2019", null, "12.30", "Boulangerie", null),
+				ecriture(2, "03/01/2020", null, "12.30", "Garage Martin",
+						null),
+				ecriture(3, "05/01/2020", null, "50", null, 1234),
+				ecriture(4, "05/01/2020", null, "50", null, 1235),
+				ecriture(5, "02/01/2020", "02/01/2020", "20", "Pharmacie",
+						null)));
+	}
+
+	private Date date(String s) throws Exception {
+		return parser.parse(s);
+	}
+
+	private Ecriture ecriture(Integer id, String date, String pointage,
+			String montant, String tiers, Integer cheque) throws Exception {
+		return new Ecriture(id, date(date),
+				pointage == null ? null : date(pointage), banque, depenses,
+				new BigDecimal(montant), null, tiers, cheque);
+	}
+
+	private LigneReleve ligne(String date, String montant, String tiers,
+			Integer cheque) throws Exception {
+		return new LigneReleve(date(date), new BigDecimal(montant), tiers,
+				null, cheque);
+	}
+
+	@Test
+	public void testRapprocher() throws Exception {
+		Resultat resultat = new Rapprochement(banque).rapprocher(
+				Arrays.asList(
+						ligne("02/01/2020", "-12.3", "CB GARAGE MARTIN", null),
+						ligne("02/01/2020", "-12.30", "CB BOULANGERIE", null),
+						ligne("08/01/2020", "-50.00", null, 1235),
+						ligne("08/01/2020", "-50.00", null, 9999),
+						ligne("02/01/2020", "-20", "Pharmacie", null))
+				.iterator());
+
+		assertEquals(3, resultat.correspondances.size());
+		assertEquals(2, resultat.correspondances.get(0).ecriture.id
+				.intValue());
+		assertEquals(1, resultat.correspondances.get(1).ecriture.id
+				.intValue());
+		assertEquals(4, resultat.correspondances.get(2).ecriture.id
+				.intValue());
+
+		// Chèque inconnu, et écriture déjà pointée
+		assertEquals(2, resultat.orphelines.size());
+
+		// Rien n'est encore modifié
+		assertNull(eDAO.get(1).pointage);
+	}
+
+	@Test
+	public void testAppliquer() throws Exception {
+		Rapprochement rapprochement = new Rapprochement(banque);
+		Resultat resultat = rapprochement.rapprocher(Arrays.asList(
+				ligne("02/01/2020", "-12.30", "Boulangerie", null),
+				ligne("02/01/2020", "-12.30", "Garage", null))
+				.iterator());
+		assertEquals(2, rapprochement.appliquer(resultat));
+
+		assertEquals(date("02/01/2020"), eDAO.get(1).pointage);
+
+		// Pas de pointage antérieur à la date de l'écriture
+		assertEquals(date("03/01/2020"), eDAO.get(2).pointage);
+
+		assertEquals(0, BigDecimal.ZERO.compareTo(
+				banque.getSoldeAVue(Month.getInstance(2019, 12))));
+		assertEquals(0, new BigDecimal("-44.6").compareTo(
+				banque.getSoldeAVue(Month.getInstance(2020, 1))));
+	}
+
+	@Test
+	public void testFenetre() throws Exception {
+		Rapprochement rapprochement = new Rapprochement(banque);
+		rapprochement.setFenetre(1);
+		Resultat resultat = rapprochement.rapprocher(Arrays.asList(
+				ligne("07/01/2020", "-50", null, null)).iterator());
+		assertTrue(resultat.correspondances.isEmpty());
+		assertEquals(1, resultat.orphelines.size());
+	}
+
+	@Test
+	public void testChequeHorsFenetre() throws Exception {
+		EcritureController.add(Arrays.asList(
+				ecriture(6, "10/12/2019", null, "75", null, 4321)));
+
+		// Le chèque est encaissé près d'un mois après son émission
+		Resultat resultat = new Rapprochement(banque).rapprocher(
+				Arrays.asList(
+						ligne("06/01/2020", "-75", "Retrait", null),
+						ligne("06/01/2020", "-75", null, 4321))
+				.iterator());
+		assertEquals(1, resultat.correspondances.size());
+		assertEquals(4321, resultat.correspondances.get(0).ligne.cheque
+				.intValue());
+		assertEquals(6, resultat.correspondances.get(0).ecriture.id
+				.intValue());
+		assertEquals(1, resultat.orphelines.size());
+	}
+}
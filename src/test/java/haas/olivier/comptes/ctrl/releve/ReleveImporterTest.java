@@ -0,0 +1,130 @@
+package haas.olivier.comptes.ctrl.releve;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.TypeCompte;
+import haas.olivier.comptes.ctrl.EcritureController;
+import haas.olivier.comptes.ctrl.releve.ReleveImporter.Resultat;
+import haas.olivier.comptes.dao.CompteDAO;
+import haas.olivier.comptes.dao.DAOFactory;
+import haas.olivier.comptes.dao.EcritureDAO;
+import haas.olivier.comptes.dao.cache.CacheDAOFactory;
+import haas.olivier.util.Month;
+
+public class ReleveImporterTest {
+
+	private final SimpleDateFormat parser = new SimpleDateFormat("dd/MM/yyyy");
+
+	private Compte banque, attente, depenses;
+
+	private EcritureDAO eDAO;
+
+	@Before
+	public void setUp() throws Exception {
+		CacheDAOFactory factory = new CacheDAOFactory(null);
+		DAOFactory.setFactory(factory);
+
+		CompteDAO cDAO = factory.getCompteDAO();
+		banque = cDAO.createAndAdd(TypeCompte.COMPTE_COURANT);
+		banque.setOuverture(date("01/12/2019"));
+		attente = cDAO.createAndAdd(TypeCompte.DEPENSES);
+		depenses = cDAO.createAndAdd(TypeCompte.DEPENSES);
+
+		// Deux écritures déjà saisies
+		eDAO = factory.getEcritureDAO();
+		EcritureController.add(Arrays.asList(
+				new Ecriture(null, date("31/12/2019"), null, banque, depenses,
+						new BigDecimal("12.3"), null, "Boulangerie Dupont",
+						null),
+				new Ecriture(null, date("04/01/2020"), null, banque, depenses,
+						new BigDecimal("50"), null, null, 1234)));
+	}
+
+	private Date date(String s) throws Exception {
+		return parser.parse(s);
+	}
+
+	private LigneReleve ligne(String date, String montant, String tiers,
+			String libelle) throws Exception {
+		return new LigneReleve(date(date), new BigDecimal(montant), tiers,
+				libelle, null);
+	}
+
+	@Test
+	public void testImporter() throws Exception {
+		Resultat resultat = new ReleveImporter(banque, attente).importer(
+				Arrays.asList(
+						ligne("02/01/2020", "-12.30", "BOULANGERIE DUPONT",
+								"CB 02/01"),
+						ligne("02/01/2020", "-12.30", "Boulangerie  Dupont",
+								"CB 02/01"),
+						ligne("06/01/2020", "-50.00", null, "Chèque 1234"),
+						ligne("10/01/2020", "2000", null, "Virement salaire"))
+				.iterator());
+
+		assertEquals(2, resultat.doublons.size());
+		assertTrue(resultat.rejetees.isEmpty());
+		assertEquals(2, resultat.importees.size());
+
+		// Le second achat à la boulangerie n'était pas saisi
+		Ecriture achat = resultat.importees.get(0);
+		assertSame(banque, achat.debit);
+		assertSame(attente, achat.credit);
+		assertEquals(0, new BigDecimal("12.3").compareTo(achat.montant));
+		assertEquals(date("02/01/2020"), achat.pointage);
+		assertEquals("Boulangerie  Dupont", achat.tiers);
+		assertEquals("CB 02/01", achat.libelle);
+
+		// Le salaire, sans tiers, prend le libellé comme tiers
+		Ecriture salaire = resultat.importees.get(1);
+		assertSame(attente, salaire.debit);
+		assertSame(banque, salaire.credit);
+		assertEquals("Virement salaire", salaire.tiers);
+		assertNull(salaire.libelle);
+
+		// Les suivis ont été mis à jour
+		assertEquals(0, new BigDecimal("1925.40").compareTo(
+				banque.getHistorique(Month.getInstance(2020, 1))));
+	}
+
+	@Test
+	public void testFenetre() throws Exception {
+		ReleveImporter importer = new ReleveImporter(banque, attente);
+		importer.setFenetre(1);
+		Resultat resultat = importer.importer(Arrays.asList(
+				ligne("02/01/2020", "-12.30", "Boulangerie Dupont", null))
+				.iterator());
+		assertTrue(resultat.doublons.isEmpty());
+		assertEquals(1, resultat.importees.size());
+	}
+
+	@Test
+	public void testRejetees() throws Exception {
+		Resultat resultat = new ReleveImporter(banque, banque).importer(
+				Arrays.asList(ligne("15/01/2020", "10", "Dupont", null))
+				.iterator());
+		assertEquals(1, resultat.rejetees.size());
+		assertTrue(resultat.importees.isEmpty());
+		int n = 0;
+		for (@SuppressWarnings("unused") Ecriture e : eDAO.getAll())
+			n++;
+		assertEquals(2, n);
+	}
+
+	@Test
+	public void testNormalize() {
+		assertEquals("CREDIT AGRICOLE N 12", ReleveImporter.normalize(
+				" Crédit-Agricole   n°12"));
+		assertEquals("", ReleveImporter.normalize(null));
+	}
+}
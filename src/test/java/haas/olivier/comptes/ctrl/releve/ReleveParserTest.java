@@ -0,0 +1,160 @@
+package haas.olivier.comptes.ctrl.releve;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ReleveParserTest {
+
+	private final SimpleDateFormat iso = new SimpleDateFormat("yyyy-MM-dd");
+
+	private static List<LigneReleve> read(ReleveParser parser) {
+		List<LigneReleve> lignes = new ArrayList<>();
+		parser.forEachRemaining(lignes::add);
+		return lignes;
+	}
+
+	private void check(LigneReleve ligne, String date, String montant,
+			String tiers, String libelle, Integer cheque) {
+		assertEquals(date, iso.format(ligne.date));
+		assertEquals(0, new BigDecimal(montant).compareTo(ligne.montant));
+		assertEquals(tiers, ligne.tiers);
+		assertEquals(libelle, ligne.libelle);
+		assertEquals(cheque, ligne.cheque);
+	}
+
+	@Test
+	public void testParseMontant() {
+		assertEquals(new BigDecimal("-1234.56"),
+				ReleveParser.parseMontant("-1 234,56"));
+		assertEquals(new BigDecimal("1234.56"),
+				ReleveParser.parseMontant("1,234.56"));
+		assertEquals(new BigDecimal("1234.56"),
+				ReleveParser.parseMontant("+1.234,56"));
+		assertNull(ReleveParser.parseMontant(" "));
+	}
+
+	@Test
+	public void testCsvDebitCredit() throws Exception {
+		List<LigneReleve> lignes = read(new CsvReleveParser(new StringReader(
+				"Date;Libellé;Débit;Crédit;N° chèque\n"
+				+ "02/01/2020;Boulangerie;12,30;;\n"
+				+ "03/01/2020;Virement salaire;;2 000,00;\n"
+				+ ";Solde;;;\n"
+				+ "05/01/2020;Chèque;50,00;;1234\n"), ';', "dd/MM/yyyy"));
+		assertEquals(3, lignes.size());
+		check(lignes.get(0), "2020-01-02", "-12.30", null, "Boulangerie",
+				null);
+		check(lignes.get(1), "2020-01-03", "2000", null, "Virement salaire",
+				null);
+		check(lignes.get(2), "2020-01-05", "-50", null, "Chèque", null);
+	}
+
+	@Test
+	public void testCsvMontant() throws Exception {
+		List<LigneReleve> lignes = read(new CsvReleveParser(new StringReader(
+				"date,amount,payee,memo,check\n"
+				+ "2020-01-02,-12.30,Dupont,\"Pain, croissants\",\n"
+				+ "2020-01-05,-50,,,1234\n"), ',', "yyyy-MM-dd"));
+		assertEquals(2, lignes.size());
+		check(lignes.get(0), "2020-01-02", "-12.30", "Dupont",
+				"Pain, croissants", null);
+		check(lignes.get(1), "2020-01-05", "-50", null, null, 1234);
+	}
+
+	@Test
+	public void testCsvSansMontant() {
+		try {
+			read(new CsvReleveParser(new StringReader(
+					"date;libelle\n02/01/2020;Boulangerie\n"), ';',
+					"dd/MM/yyyy"));
+			fail("Le relevé sans montant aurait dû être refusé");
+		} catch (ReleveFormatException e) {
+			assertEquals(1, e.getLineNumber());
+		}
+	}
+
+	@Test
+	public void testCsvLigneMalformee() {
+		ReleveParser parser = new CsvReleveParser(new StringReader(
+				"Date;Libellé;Montant\n"
+				+ "02/01/2020;Boulangerie;-12,30\n"
+				+ "32/01/2020;Garage;-40,00\n"
+				+ "05/01/2020;Pharmacie;-20,00\n"), ';', "dd/MM/yyyy");
+		assertTrue(parser.hasNext());
+		parser.next();
+		try {
+			parser.hasNext();
+			fail("La date invalide aurait dû être signalée");
+		} catch (ReleveFormatException e) {
+			assertEquals(3, e.getLineNumber());
+		}
+
+		// Le parcours est terminé
+		assertFalse(parser.hasNext());
+	}
+
+	@Test
+	public void testQifLigneMalformee() {
+		ReleveParser parser = new QifReleveParser(new StringReader(
+				"!Type:Bank\n"
+				+ "D02/01/2020\nT-12,30\n^\n"
+				+ "D03/01/2020\nTdouze\n^\n"
+				+ "D05/01/2020\nT-50\n^\n"));
+		parser.next();
+		try {
+			parser.next();
+			fail("Le montant illisible aurait dû être signalé");
+		} catch (ReleveFormatException e) {
+			assertEquals(7, e.getLineNumber());	// Fin de l'opération
+		}
+		assertFalse(parser.hasNext());
+	}
+
+	@Test
+	public void testOfxSgml() {
+		List<LigneReleve> lignes = read(new OfxReleveParser(new StringReader(
+				"OFXHEADER:100\nDATA:OFXSGML\n\n<OFX><BANKMSGSRSV1><STMTTRNRS>"
+				+ "<STMTRS><BANKTRANLIST>\n"
+				+ "<STMTTRN>\n<TRNTYPE>DEBIT\n<DTPOSTED>20200102\n"
+				+ "<TRNAMT>-12.30\n<FITID>1\n<NAME>Dupont &amp; fils\n"
+				+ "<MEMO>Boulangerie\n</STMTTRN>\n"
+				+ "<STMTTRN>\n<TRNTYPE>CHECK\n<DTPOSTED>20200105120000\n"
+				+ "<TRNAMT>-50,00\n<CHECKNUM>1234\n</STMTTRN>\n"
+				+ "</BANKTRANLIST></STMTRS></STMTTRNRS></BANKMSGSRSV1></OFX>")));
+		assertEquals(2, lignes.size());
+		check(lignes.get(0), "2020-01-02", "-12.30", "Dupont & fils",
+				"Boulangerie", null);
+		check(lignes.get(1), "2020-01-05", "-50", null, null, 1234);
+	}
+
+	@Test
+	public void testOfxXml() {
+		List<LigneReleve> lignes = read(new OfxReleveParser(new StringReader(
+				"<?xml version=\"1.0\"?><OFX><STMTTRN><DTPOSTED>"
+				+ "20200103000000[+1:CET]</DTPOSTED><TRNAMT>2000.00</TRNAMT>"
+				+ "<NAME>Employeur</NAME></STMTTRN></OFX>")));
+		assertEquals(1, lignes.size());
+		check(lignes.get(0), "2020-01-03", "2000", "Employeur", null, null);
+	}
+
+	@Test
+	public void testQif() {
+		List<LigneReleve> lignes = read(new QifReleveParser(new StringReader(
+				"!Type:Bank\n"
+				+ "D02/01'2020\nT-12,30\nPDupont\nMBoulangerie\n^\n"
+				+ "D05/01/2020\nU-50.00\nN1234\n^\n"
+				+ "D06/01/2020\nT1 000,00\nPEmployeur")));
+		assertEquals(3, lignes.size());
+		check(lignes.get(0), "2020-01-02", "-12.30", "Dupont", "Boulangerie",
+				null);
+		check(lignes.get(1), "2020-01-05", "-50", null, null, 1234);
+		check(lignes.get(2), "2020-01-06", "1000", "Employeur", null, null);
+	}
+}
@@ -7,6 +7,7 @@ import static org.junit.Assert.*;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
@@ -236,6 +237,51 @@ public class CacheEcritureDAOTest {
 		check(dao.getAll(), e3, e1bis, e1, e2bis);		// A remplacé e2
 	}
 
+	@Test
+	public void testUpdateAll() throws EcritureMissingArgumentException, InconsistentArgumentsException {
+		Iterable<Ecriture> all = dao.getAll();
+		
+		Ecriture e2bis = new Ecriture(2, date1, null, c2, c1, BigDecimal.TEN, "libelle2", "tiers2", 3);
+		Ecriture e3bis = new Ecriture(3, date3, date3, c1, c2, BigDecimal.TEN, "libelle3", "tiers3", null);
+		dao.updateAll(Arrays.asList(e2bis, e3bis));
+		
+		check(dao.getAllBetween(month1, month1), e2bis, e1bis, e1);
+		check(dao.getAllBetween(month2, month2));
+		check(dao.getAllBetween(month3, month3), e3bis);
+		assertSame(e2bis, dao.get(2));
+		
+		// Les itérables déjà obtenus ne voient pas les modifications
+		check(all, e3, e2, e1bis, e1);
+	}
+	
+	@Test
+	public void testAddAll() throws EcritureMissingArgumentException, InconsistentArgumentsException {
+		Ecriture e4 = new Ecriture(null, date2, null, c1, c2, BigDecimal.ONE, null, null, null);
+		Ecriture e5 = new Ecriture(5, date2, null, c1, c2, BigDecimal.TEN, null, null, null);
+		dao.addAll(Arrays.asList(e4, e5));
+		
+		assertSame(e5, dao.get(5));
+		Ecriture e4bis = dao.get(4);
+		assertNotNull(e4bis);
+		check(dao.getAllBetween(month2, month2), e2, e5, e4bis);
+	}
+	
+	@Test
+	public void testSnapshot() throws EcritureMissingArgumentException, InconsistentArgumentsException {
+		
+		// Itérables obtenus avant les modifications
+		Iterable<Ecriture> all = dao.getAll();
+		Iterable<Ecriture> pointages = dao.getPointagesTo(month3);
+		
+		// Modifier les données
+		dao.remove(2);
+		dao.add(new Ecriture(5, date2, date3, c2, c1, BigDecimal.TEN, "libellé5", "tiers5", 9));
+		
+		// Les itérables déjà obtenus ne voient pas les modifications
+		check(all, e3, e2, e1bis, e1);
+		check(pointages, e3, e1bis, e2, e1);
+	}
+
 	@Test
 	public void testErase() {
 		dao.erase();
@@ -149,6 +149,53 @@ public class CacheSuiviDAOTest {
 		assertEquals(BigDecimal.ONE, dao.get(COMPTE2, MONTH1));
 	}
 
+	@Test
+	public void testGetAllSnapshot() {
+		Iterator<Solde> suivisIterator = dao.getAll();
+		
+		// Modifier les données pendant le parcours
+		dao.set(COMPTE1, MONTH2, BigDecimal.ONE);
+		dao.removeFrom(MONTH3);
+		
+		// L'itérateur parcourt les données telles qu'elles étaient
+		Set<Solde> daoSuivis = new HashSet<>();
+		while (suivisIterator.hasNext())
+			daoSuivis.add(suivisIterator.next());
+		assertEquals(SUIVIS, daoSuivis);
+	}
+
+	@Test
+	public void testBatch() throws Exception {
+		dao.beginBatch();
+		dao.removeFrom(MONTH2);
+		dao.set(COMPTE1, MONTH3, BigDecimal.ONE);
+		
+		// Le thread qui modifie les données voit ses modifications
+		assertEquals(BigDecimal.ONE, dao.get(COMPTE1, MONTH3));
+		assertNull(dao.get(COMPTE2, MONTH3));
+		
+		// Les autres threads ne voient que la dernière version publiée
+		BigDecimal[] seen = new BigDecimal[2];
+		Thread reader = new Thread(() -> {
+			seen[0] = dao.get(COMPTE1, MONTH3);
+			seen[1] = dao.get(COMPTE2, MONTH3);
+		});
+		reader.start();
+		reader.join();
+		assertEquals(BigDecimal.ZERO, seen[0]);
+		assertEquals(new BigDecimal("200"), seen[1]);
+		
+		dao.endBatch();
+		reader = new Thread(() -> {
+			seen[0] = dao.get(COMPTE1, MONTH3);
+			seen[1] = dao.get(COMPTE2, MONTH3);
+		});
+		reader.start();
+		reader.join();
+		assertEquals(BigDecimal.ONE, seen[0]);
+		assertNull(seen[1]);
+	}
+
 	@Test
 	public void testErase() throws IOException {
 		dao.erase();								// Méthode testée
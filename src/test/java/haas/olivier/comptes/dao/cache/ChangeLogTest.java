@@ -0,0 +1,93 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.dao.cache;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.TypeCompte;
+
+public class ChangeLogTest {
+
+	/**
+	 * Objet testé.
+	 */
+	private ChangeLog changes;
+	
+	@Before
+	public void setUp() {
+		changes = new ChangeLog();
+	}
+	
+	@Test
+	public void testAddedThenRemoved() {
+		changes.added(1);
+		changes.removed(1);
+		assertTrue(changes.getAdded().isEmpty());
+		assertTrue(changes.getRemoved().isEmpty());
+	}
+	
+	@Test
+	public void testRemovedThenAdded() {
+		changes.removed(1);
+		changes.added(1);
+		assertTrue(changes.getAdded().isEmpty());
+		assertEquals(Collections.singleton(1), changes.getUpdated());
+		assertTrue(changes.getRemoved().isEmpty());
+	}
+	
+	@Test
+	public void testAddedThenUpdated() {
+		changes.added(1);
+		changes.updated(1);
+		assertEquals(Collections.singleton(1), changes.getAdded());
+		assertTrue(changes.getUpdated().isEmpty());
+	}
+	
+	@Test
+	public void testUpdatedThenRemoved() {
+		changes.updated(1);
+		changes.removed(1);
+		assertTrue(changes.getUpdated().isEmpty());
+		assertEquals(Collections.singleton(1), changes.getRemoved());
+	}
+	
+	@Test
+	public void testErased() {
+		changes.added(1);
+		changes.erased();
+		assertFalse(changes.isComplete());
+		assertTrue(changes.getAdded().isEmpty());
+		
+		changes.clear();
+		assertTrue(changes.isComplete());
+	}
+	
+	@Test
+	public void testCacheEcritureDAOUpdate() throws Exception {
+		CacheEcritureDAO eDAO =
+				new CacheEcritureDAO(Collections.emptyIterator());
+		Compte c1 = new Compte(1, TypeCompte.COMPTE_COURANT);
+		Compte c2 = new Compte(2, TypeCompte.DEPENSES);
+		Ecriture e = new Ecriture(7, new Date(), null, c1, c2,
+				BigDecimal.ONE, null, null, null);
+		eDAO.add(e);
+		assertEquals(Collections.singleton(7), eDAO.getChanges().getAdded());
+		eDAO.setSaved();
+		
+		// Une modification remplace l'instance
+		eDAO.update(e);
+		assertTrue(eDAO.getChanges().getAdded().isEmpty());
+		assertEquals(Collections.singleton(7), eDAO.getChanges().getUpdated());
+		assertTrue(eDAO.getChanges().getRemoved().isEmpty());
+	}
+}
@@ -0,0 +1,287 @@
+package haas.olivier.comptes.dao.cache;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.AdditionalAnswers;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.TypeCompte;
+import haas.olivier.comptes.dao.CompteDAO;
+import haas.olivier.comptes.dao.EcritureDAO;
+import haas.olivier.comptes.dao.cache.hibernate.HibernateCacheableDAO;
+import haas.olivier.comptes.dao.csv.CsvDAO;
+import haas.olivier.comptes.dao.hibernate.HibernateDAOFactory;
+import haas.olivier.util.Month;
+
+public class MigrationTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * L'archive CSV source.
+	 */
+	private File sourceFile;
+
+	/**
+	 * Les identifiants des écritures de la source.
+	 */
+	private final Set<Integer> ids = new TreeSet<>();
+
+	@Before
+	public void setUp() throws Exception {
+		sourceFile = new File(folder.getRoot(), "source.zip");
+		CacheDAOFactory cache =
+				new CacheDAOFactory(CsvDAO.newInstance(sourceFile));
+
+		CompteDAO cDAO = cache.getCompteDAO();
+		Compte banque = cDAO.createAndAdd(TypeCompte.COMPTE_COURANT);
+		banque.setNom("Banque");
+		Compte depenses = cDAO.createAndAdd(TypeCompte.DEPENSES);
+		depenses.setNom("Dépenses");
+
+		EcritureDAO eDAO = cache.getEcritureDAO();
+		Month month = Month.getInstance(2020, 1);
+		for (int i = 1; i <= 5; i++) {
+			eDAO.add(new Ecriture(null, month.getFirstDay(), null, depenses,
+					banque, new BigDecimal(i + ".50"), "libellé " + i, null,
+					null));
+			month = month.getNext();
+		}
+		for (Ecriture e : eDAO.getAll())
+			ids.add(e.id);
+		cache.save();
+	}
+
+	/**
+	 * Renvoie les identifiants des écritures d'une source.
+	 */
+	private static Set<Integer> idsOf(CacheableDAOFactory dao)
+			throws Exception {
+		Set<Integer> result = new TreeSet<>();
+		Iterator<Ecriture> it = dao.getEcritures();
+		while (it.hasNext())
+			result.add(it.next().id);
+		return result;
+	}
+
+	@Test
+	public void testRunCsv() throws Exception {
+		File destinationFile = new File(folder.getRoot(), "destination.zip");
+		CacheableDAOFactory source = CsvDAO.newInstance(sourceFile);
+		Migration migration = new Migration(
+				source, CsvDAO.newInstance(destinationFile));
+		migration.setBatchSize(2);
+
+		assertEquals(5, migration.run());
+		assertEquals(ids, idsOf(CsvDAO.newInstance(destinationFile)));
+		assertEquals(Collections.emptyList(), Migration.verify(
+				source, CsvDAO.newInstance(destinationFile)));
+	}
+
+	@Test
+	public void testRunHibernateConserveIdentifiants() throws Exception {
+		HibernateCacheableDAO destination = new HibernateCacheableDAO(
+				"jdbc:hsqldb:mem:migration", "org.hsqldb.jdbc.JDBCDriver");
+		try {
+			Migration migration = new Migration(
+					CsvDAO.newInstance(sourceFile), destination);
+			migration.setBatchSize(2);
+
+			assertEquals(5, migration.run());
+			assertEquals(ids, idsOf(destination));
+			assertTrue(Migration.verify(
+					CsvDAO.newInstance(sourceFile), destination).isEmpty());
+		} finally {
+			destination.close();
+		}
+	}
+
+	@Test
+	public void testNouvelleEcritureApresMigration() throws Exception {
+		String url = "jdbc:hsqldb:mem:identifiants";
+		HibernateCacheableDAO destination = new HibernateCacheableDAO(
+				url, "org.hsqldb.jdbc.JDBCDriver");
+		try {
+			new Migration(CsvDAO.newInstance(sourceFile), destination).run();
+		} finally {
+			destination.close();
+		}
+
+		// Une écriture sans identifiant reçoit un identifiant libre
+		HibernateDAOFactory factory =
+				new HibernateDAOFactory(url, "org.hsqldb.jdbc.JDBCDriver");
+		try {
+			Compte banque = null, depenses = null;
+			for (Compte compte : factory.getCompteDAO().getAll()) {
+				if (compte.getType() == TypeCompte.COMPTE_COURANT) {
+					banque = compte;
+				} else {
+					depenses = compte;
+				}
+			}
+			Ecriture e = new Ecriture(null, Month.getInstance(2021, 1)
+					.getFirstDay(), null, depenses, banque, BigDecimal.ONE,
+					null, null, null);
+			factory.getEcritureDAO().add(e);
+			factory.save();
+
+			assertFalse(ids.contains(e.id));
+			assertTrue(e.id > Collections.max(ids));
+			int count = 0;
+			for (@SuppressWarnings("unused") Ecriture ecriture :
+					factory.getEcritureDAO().getAll())
+				count++;
+			assertEquals(ids.size() + 1, count);
+		} finally {
+			factory.close();
+		}
+	}
+
+	@Test
+	public void testReprise() throws Exception {
+		File destinationFile = new File(folder.getRoot(), "destination.zip");
+		File checkpoint = new File(folder.getRoot(), "migration.properties");
+		CacheableDAOFactory source = CsvDAO.newInstance(sourceFile);
+
+		// Une source qui échoue à la 4ème écriture
+		CacheableDAOFactory failing = mock(CacheableDAOFactory.class,
+				AdditionalAnswers.delegatesTo(source));
+		Iterator<Ecriture> ecritures = source.getEcritures();
+		Iterator<Ecriture> interrupted = new Iterator<Ecriture>() {
+			private int n = 0;
+
+			@Override
+			public boolean hasNext() {
+				return ecritures.hasNext();
+			}
+
+			@Override
+			public Ecriture next() {
+				if (++n > 3)
+					throw new IllegalStateException("Interruption");
+				return ecritures.next();
+			}
+		};
+		doReturn(interrupted).when(failing).getEcritures();
+
+		Migration migration = new Migration(
+				failing, CsvDAO.newInstance(destinationFile));
+		migration.setBatchSize(2);
+		migration.setCheckpoint(checkpoint);
+		try {
+			migration.run();
+			fail("La migration aurait dû échouer");
+		} catch (IllegalStateException e) {
+			// Attendu
+		}
+		assertTrue(checkpoint.exists());
+		assertEquals(2, idsOf(CsvDAO.newInstance(destinationFile)).size());
+
+		// Reprendre avec une nouvelle instance de la destination
+		Migration reprise = new Migration(
+				source, CsvDAO.newInstance(destinationFile));
+		reprise.setBatchSize(2);
+		reprise.setCheckpoint(checkpoint);
+		assertEquals(3, reprise.run());
+		assertFalse(checkpoint.exists());
+		assertEquals(ids, idsOf(CsvDAO.newInstance(destinationFile)));
+		assertTrue(Migration.verify(
+				source, CsvDAO.newInstance(destinationFile)).isEmpty());
+	}
+
+	@Test
+	public void testRepriseHibernate() throws Exception {
+		File checkpoint = new File(folder.getRoot(), "migration.properties");
+		CacheableDAOFactory source = CsvDAO.newInstance(sourceFile);
+
+		// Une source qui échoue à la 4ème écriture
+		CacheableDAOFactory failing = mock(CacheableDAOFactory.class,
+				AdditionalAnswers.delegatesTo(source));
+		Iterator<Ecriture> ecritures = source.getEcritures();
+		doReturn(new Iterator<Ecriture>() {
+			private int n = 0;
+
+			@Override
+			public boolean hasNext() {
+				return ecritures.hasNext();
+			}
+
+			@Override
+			public Ecriture next() {
+				if (++n > 3)
+					throw new IllegalStateException("Interruption");
+				return ecritures.next();
+			}
+		}).when(failing).getEcritures();
+
+		HibernateCacheableDAO destination = new HibernateCacheableDAO(
+				"jdbc:hsqldb:mem:reprise", "org.hsqldb.jdbc.JDBCDriver");
+		try {
+			Migration migration = new Migration(failing, destination);
+			migration.setBatchSize(2);
+			migration.setCheckpoint(checkpoint);
+			try {
+				migration.run();
+				fail("La migration aurait dû échouer");
+			} catch (IllegalStateException e) {
+				// Attendu
+			}
+			assertEquals(2, idsOf(destination).size());
+
+			// Les lots déjà enregistrés ne sont pas repris
+			Migration reprise = new Migration(source, destination);
+			reprise.setBatchSize(2);
+			reprise.setCheckpoint(checkpoint);
+			assertEquals(3, reprise.run());
+			assertEquals(ids, idsOf(destination));
+
+			// Les suivis sont calculés à la fin
+			BigDecimal solde = null;
+			Iterator<Solde> historique = destination.getHistorique();
+			while (historique.hasNext()) {
+				Solde h = historique.next();
+				if (h.month.equals(Month.getInstance(2020, 5))
+						&& h.compte.getType() == TypeCompte.COMPTE_COURANT)
+					solde = h.montant;
+			}
+			assertEquals(0, new BigDecimal("17.5").compareTo(solde));
+		} finally {
+			destination.close();
+		}
+	}
+
+	@Test
+	public void testVerifyDifferences() throws Exception {
+		File destinationFile = new File(folder.getRoot(), "destination.zip");
+		CacheDAOFactory cache =
+				new CacheDAOFactory(CsvDAO.newInstance(sourceFile));
+		cache.getEcritureDAO().remove(ids.iterator().next());
+
+		// Écrire la destination avec une écriture en moins
+		CacheDAOFactory copie = new CacheDAOFactory(
+				new WriteOnlyCacheableDAOFactory(
+						CsvDAO.newInstance(destinationFile)));
+		for (Compte c : cache.getCompteDAO().getAll())
+			copie.getCompteDAO().add(c);
+		for (Ecriture e : cache.getEcritureDAO().getAll())
+			copie.getEcritureDAO().add(e);
+		copie.save();
+
+		assertEquals(3, Migration.verify(CsvDAO.newInstance(sourceFile),
+				CsvDAO.newInstance(destinationFile)).size());
+	}
+}
@@ -12,6 +12,7 @@ import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 import haas.olivier.comptes.Compte;
 import haas.olivier.comptes.Ecriture;
@@ -23,6 +24,8 @@ import haas.olivier.comptes.dao.CompteDAO;
 import haas.olivier.comptes.dao.EcritureDAO;
 import haas.olivier.comptes.dao.cache.CacheDAOFactory;
 import haas.olivier.comptes.dao.cache.CachePermanentDAO;
+import haas.olivier.comptes.dao.cache.ChangeLog;
+import haas.olivier.comptes.dao.cache.Solde;
 import haas.olivier.comptes.dao.cache.hibernate.HibernateCacheableDAO;
 import haas.olivier.util.Month;
 
@@ -192,6 +195,32 @@ public class HibernateCacheableDAOTest {
 		assertFalse(ecrituresIterator.hasNext());
 	}
 	
+	@Test
+	public void testReloadUneRequeteParType() throws IOException {
+		when(cacheCompteDAO.getAll()).thenReturn(
+				Arrays.asList(new Compte[] {compte1, compte2}));
+		when(cacheEcritureDAO.getAll()).thenReturn(
+				Arrays.asList(new Ecriture[] {ecriture1, ecriture2}));
+		when(cachePermanentDAO.getAll()).thenReturn(Arrays.asList(
+				permanentFixe, permanentProport, permanentSoldeur));
+		factory.save(cacheDAO);
+		
+		// Méthode testée
+		factory.getStatistics().setStatisticsEnabled(true);
+		factory.getStatistics().clear();
+		factory.reload();
+		
+		assertEquals(3, factory.getStatistics().getPrepareStatementCount());
+		Iterator<Permanent> permanents =
+				factory.getPermanents(cachePermanentDAO);
+		int n = 0;
+		while (permanents.hasNext()) {
+			assertEquals(1, permanents.next().getJours().size());
+			n++;
+		}
+		assertEquals(3, n);
+	}
+	
 	@Test
 	public void testSaveComptes() throws IOException {
 		Compte[] comptes = {compte1, compte2};
@@ -394,6 +423,175 @@ public class HibernateCacheableDAOTest {
 				new Permanent[] {permanentSoldeur});
 	}
 	
+	@Test
+	public void testSaveChangesAdd() throws IOException {
+		mockChanges(null, null, null);
+		when(cacheCompteDAO.getAll()).thenReturn(
+				Arrays.asList(new Compte[] {compte1, compte2}));
+		when(cachePermanentDAO.getAll()).thenReturn(
+				Collections.singleton(permanentFixe));
+		
+		// Méthode testée
+		factory.save(cacheDAO);
+		
+		checkCollection(factory.getComptes(), new Compte[] {compte1, compte2});
+		checkCollection(factory.getPermanents(cachePermanentDAO),
+				new Permanent[] {permanentFixe});
+	}
+	
+	@Test
+	public void testSaveChangesUpdateEcriture() throws Exception {
+		when(cacheCompteDAO.getAll()).thenReturn(
+				Arrays.asList(new Compte[] {compte1, compte2}));
+		when(cacheEcritureDAO.getAll()).thenReturn(
+				Arrays.asList(new Ecriture[] {ecriture1, ecriture2}));
+		factory.save(cacheDAO);
+		
+		// Une nouvelle instance remplace l'écriture 1 dans le cache
+		Ecriture modifiee = new Ecriture(ecriture1.id, ecriture1.date,
+				ecriture1.pointage, ecriture1.debit, ecriture1.credit,
+				ecriture1.montant, "libellé modifié", ecriture1.tiers,
+				ecriture1.cheque);
+		when(cacheEcritureDAO.get(ecriture1.id)).thenReturn(modifiee);
+		mockChanges(null, Collections.singleton(ecriture1.id), null);
+		
+		// Méthode testée
+		factory.save(cacheDAO);
+		
+		factory.reload();
+		Map<Integer, Ecriture> ecritures = new HashMap<>();
+		Iterator<Ecriture> it = factory.getEcritures();
+		while (it.hasNext()) {
+			Ecriture e = it.next();
+			ecritures.put(e.id, e);
+		}
+		assertEquals(2, ecritures.size());
+		assertEquals("libellé modifié", ecritures.get(ecriture1.id).libelle);
+		assertEquals("libellé 2", ecritures.get(ecriture2.id).libelle);
+	}
+	
+	@Test
+	public void testSaveChangesDeleteEcriture() throws IOException {
+		when(cacheCompteDAO.getAll()).thenReturn(
+				Arrays.asList(new Compte[] {compte1, compte2}));
+		when(cacheEcritureDAO.getAll()).thenReturn(
+				Arrays.asList(new Ecriture[] {ecriture1, ecriture2}));
+		factory.save(cacheDAO);
+		
+		mockChanges(null, null, Collections.singleton(ecriture1.id));
+		
+		// Méthode testée
+		factory.save(cacheDAO);
+		
+		// L'écriture est supprimée, mais pas les comptes
+		Iterator<Ecriture> ecritures = factory.getEcritures();
+		assertTrue(ecritures.hasNext());
+		assertEquals(ecriture2.id, ecritures.next().id);
+		assertFalse(ecritures.hasNext());
+		
+		Iterator<Compte> comptes = factory.getComptes();
+		comptes.next();
+		comptes.next();
+		assertFalse(comptes.hasNext());
+	}
+	
+	@Test
+	public void testSuivis() throws Exception {
+		Compte epargne = new Compte(null, TypeCompte.COMPTE_EPARGNE);
+		Month janvier = Month.getInstance(ecriture1.date);
+		Month fevrier = janvier.getNext();
+		Ecriture versement = new Ecriture(null, fevrier.getFirstDay(), null,
+				compte1, epargne, new BigDecimal(100), null, null, null);
+		when(cacheCompteDAO.getAll()).thenReturn(
+				Arrays.asList(new Compte[] {compte1, compte2, epargne}));
+		when(cacheEcritureDAO.getAll()).thenReturn(Arrays.asList(
+				new Ecriture[] {ecriture1, ecriture2, versement}));
+		
+		// Méthode testée (les suivis sont calculés par la base)
+		factory.save(cacheDAO);
+		
+		Map<String, BigDecimal> historique = soldes(factory.getHistorique());
+		assertEquals(new BigDecimal("9.00"), historique.get(compte1.getId()
+				+ " " + janvier));
+		assertEquals(new BigDecimal("-91.00"), historique.get(compte1.getId()
+				+ " " + fevrier));
+		assertEquals(new BigDecimal("9.00"), historique.get(compte2.getId()
+				+ " " + janvier));
+		assertEquals(new BigDecimal("100.00"), historique.get(epargne.getId()
+				+ " " + fevrier));
+		assertEquals(new BigDecimal("100.00"), historique.get("-1 " + fevrier));
+		assertEquals(5, historique.size());
+		
+		// Seules les écritures pointées comptent dans les soldes à vue
+		Map<String, BigDecimal> soldesAVue = soldes(factory.getSoldesAVue());
+		assertEquals(new BigDecimal("9.00"), soldesAVue.get(compte1.getId()
+				+ " " + janvier));
+		assertEquals(1, soldesAVue.size());
+		
+		// Moyennes sur 12 mois des comptes budgétaires et de l'épargne
+		Map<String, BigDecimal> moyennes = soldes(factory.getMoyennes());
+		assertEquals(new BigDecimal("0.75"), moyennes.get(compte2.getId()
+				+ " " + janvier.getTranslated(11)));
+		assertNull(moyennes.get(compte2.getId() + " "
+				+ janvier.getTranslated(12)));
+		assertEquals(new BigDecimal("8.33"), moyennes.get("-1 " + fevrier));
+		assertEquals(24, moyennes.size());
+	}
+	
+	/**
+	 * Rassemble des soldes par compte et par mois.
+	 * 
+	 * @return	Les montants, indexés par l'identifiant du compte suivi d'un
+	 * 			espace et du mois.
+	 */
+	private static Map<String, BigDecimal> soldes(Iterator<Solde> it) {
+		Map<String, BigDecimal> soldes = new HashMap<>();
+		while (it.hasNext()) {
+			Solde solde = it.next();
+			soldes.put(solde.compte.getId() + " " + solde.month,
+					solde.montant);
+		}
+		return soldes;
+	}
+	
+	/**
+	 * Fait fournir par le cache des journaux de modifications complets.
+	 * <p>
+	 * Les comptes et les opérations permanentes n'ont aucune modification
+	 * notée.
+	 * 
+	 * @param added		Les identifiants des écritures ajoutées, ou
+	 * 					<code>null</code>.
+	 * @param updated	Les identifiants des écritures modifiées, ou
+	 * 					<code>null</code>.
+	 * @param removed	Les identifiants des écritures supprimées, ou
+	 * 					<code>null</code>.
+	 */
+	private void mockChanges(Set<Integer> added, Set<Integer> updated,
+			Set<Integer> removed) {
+		ChangeLog empty = mockChangeLog(null, null, null);
+		ChangeLog ecritureChanges = mockChangeLog(added, updated, removed);
+		when(cacheDAO.getCompteChanges()).thenReturn(empty);
+		when(cacheDAO.getPermanentChanges()).thenReturn(empty);
+		when(cacheDAO.getEcritureChanges()).thenReturn(ecritureChanges);
+	}
+	
+	/**
+	 * Crée un journal de modifications complet.
+	 */
+	private static ChangeLog mockChangeLog(Set<Integer> added,
+			Set<Integer> updated, Set<Integer> removed) {
+		ChangeLog changes = mock(ChangeLog.class);
+		when(changes.isComplete()).thenReturn(true);
+		when(changes.getAdded()).thenReturn(
+				added == null ? Collections.emptySet() : added);
+		when(changes.getUpdated()).thenReturn(
+				updated == null ? Collections.emptySet() : updated);
+		when(changes.getRemoved()).thenReturn(
+				removed == null ? Collections.emptySet() : removed);
+		return changes;
+	}
+	
 	/**
 	 * Vérifie que l'itérateur spécifié contient exactement les éléments
 	 * attendus. L'ordre n'a pas d'importance.
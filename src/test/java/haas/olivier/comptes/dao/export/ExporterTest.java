@@ -0,0 +1,113 @@
+package haas.olivier.comptes.dao.export;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.TypeCompte;
+import haas.olivier.comptes.dao.EcritureDAO;
+import haas.olivier.comptes.dao.cache.CacheDAOFactory;
+import haas.olivier.comptes.dao.cache.CacheSuiviDAO;
+import haas.olivier.comptes.dao.cache.Solde;
+import haas.olivier.comptes.dao.export.Exporter.Format;
+import haas.olivier.util.Month;
+
+public class ExporterTest {
+
+	private final Compte banque = new Compte(1, TypeCompte.COMPTE_COURANT);
+	private final Compte depenses = new Compte(2, TypeCompte.DEPENSES);
+	private final Compte salaire = new Compte(3, TypeCompte.RECETTES);
+
+	private final Month janvier = Month.getInstance(2020, 1);
+	private final Month fevrier = janvier.getNext();
+
+	private EcritureDAO eDAO;
+
+	private CacheSuiviDAO suiviDAO;
+
+	private final StringWriter out = new StringWriter();
+
+	@Before
+	public void setUp() throws Exception {
+		banque.setNom("Banque");
+		depenses.setNom("Dépenses");
+		salaire.setNom("Salaire");
+
+		eDAO = new CacheDAOFactory(null).getEcritureDAO();
+		eDAO.add(new Ecriture(1, janvier.getFirstDay(), janvier.getFirstDay(),
+				depenses, banque, new BigDecimal("12.30"),
+				"Boulangerie \"Au pain\"", "Dupont", null));
+		eDAO.add(new Ecriture(2, fevrier.getFirstDay(), null, depenses,
+				banque, new BigDecimal("50"), "Chèque", null, 1234));
+		eDAO.add(new Ecriture(3, fevrier.getFirstDay(), fevrier.getFirstDay(),
+				banque, salaire, new BigDecimal("2000"), "Paie", "Employeur",
+				null));
+
+		suiviDAO = new CacheSuiviDAO(Arrays.asList(
+				new Solde(janvier, banque, new BigDecimal("-12.30")),
+				new Solde(fevrier, banque, new BigDecimal("1937.70")),
+				new Solde(fevrier, depenses, new BigDecimal("50")))
+				.iterator());
+	}
+
+	@Test
+	public void testCsvFiltrePointage() throws Exception {
+		try (Exporter exporter = new Exporter(out, Format.CSV)) {
+			assertEquals(2, exporter.exportEcritures(new ExportFilter()
+					.withCompte(depenses).select(eDAO)));
+		}
+		assertEquals("id,date,pointage,debit,credit,libelle,tiers,cheque,"
+				+ "montant\n"
+				+ "2,2020-02-01,,Dépenses,Banque,Chèque,,1234,50\n"
+				+ "1,2020-01-01,2020-01-01,Dépenses,Banque,"
+				+ "\"Boulangerie \"\"Au pain\"\"\",Dupont,,12.30\n",
+				out.toString());
+	}
+
+	@Test
+	public void testJsonLinesFiltres() throws Exception {
+		try (Exporter exporter = new Exporter(out, Format.JSON_LINES)) {
+			assertEquals(1, exporter.exportEcritures(new ExportFilter()
+					.withPeriode(janvier, janvier)
+					.withPointage(true)
+					.withTexte("AU PAIN")
+					.select(eDAO)));
+		}
+		assertEquals("{\"id\":1,\"date\":\"2020-01-01\","
+				+ "\"pointage\":\"2020-01-01\",\"debit\":\"Dépenses\","
+				+ "\"credit\":\"Banque\","
+				+ "\"libelle\":\"Boulangerie \\\"Au pain\\\"\","
+				+ "\"tiers\":\"Dupont\",\"cheque\":null,\"montant\":12.30}\n",
+				out.toString());
+	}
+
+	@Test
+	public void testFiltreNonPointees() throws Exception {
+		try (Exporter exporter = new Exporter(out, Format.JSON_LINES)) {
+			assertEquals(1, exporter.exportEcritures(new ExportFilter()
+					.withPeriode(fevrier, null)
+					.withPointage(false)
+					.select(eDAO)));
+		}
+		assertTrue(out.toString().startsWith("{\"id\":2,"));
+	}
+
+	@Test
+	public void testSoldes() throws Exception {
+		try (Exporter exporter = new Exporter(out, Format.CSV)) {
+			assertEquals(1, exporter.exportSoldes(new ExportFilter()
+					.withCompte(banque)
+					.withPeriode(fevrier, null)
+					.select(suiviDAO)));
+		}
+		assertEquals("mois,compte,montant\n2020-02,Banque,1937.70\n",
+				out.toString());
+	}
+}
@@ -0,0 +1,210 @@
+package haas.olivier.comptes.dao.hibernate;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import haas.olivier.comptes.Compte;
+import haas.olivier.comptes.Ecriture;
+import haas.olivier.comptes.TypeCompte;
+import haas.olivier.comptes.dao.EcritureDAO;
+import haas.olivier.util.Month;
+
+public class HibernateDAOFactoryTest {
+
+	/**
+	 * Objet testé.
+	 */
+	private HibernateDAOFactory factory;
+
+	private Compte compte1, compte2;
+
+	private Ecriture janvier, fevrier, fevrierCheque, mars;
+
+	private final Month moisJanvier = Month.getInstance(2019, 1);
+
+	@Before
+	public void setUp() throws Exception {
+		factory = new HibernateDAOFactory(
+				"jdbc:hsqldb:mem:direct", "org.hsqldb.jdbc.JDBCDriver");
+
+		compte1 = factory.getCompteDAO().createAndAdd(
+				TypeCompte.COMPTE_COURANT);
+		compte2 = factory.getCompteDAO().createAndAdd(TypeCompte.DEPENSES);
+
+		Month moisFevrier = moisJanvier.getNext();
+		Month moisMars = moisFevrier.getNext();
+		janvier = new Ecriture(null, moisJanvier.getFirstDay(),
+				moisMars.getFirstDay(), compte2, compte1, BigDecimal.ONE,
+				"libellé", "tiers", null);
+		fevrier = new Ecriture(null, moisFevrier.getFirstDay(),
+				moisFevrier.getFirstDay(), compte2, compte1, BigDecimal.TEN,
+				"libellé", "autre tiers", null);
+		fevrierCheque = new Ecriture(null, moisFevrier.getFirstDay(), null,
+				compte2, compte1, BigDecimal.TEN, null, null, 12);
+		mars = new Ecriture(null, moisMars.getFirstDay(), null, compte1,
+				compte2, BigDecimal.ONE, "libellé", null, null);
+
+		EcritureDAO eDAO = factory.getEcritureDAO();
+		for (Ecriture e : new Ecriture[] {mars, fevrierCheque, janvier, fevrier})
+			eDAO.add(e);
+		factory.save();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		factory.erase();
+		factory.save();
+		factory.close();
+	}
+
+	private static List<Ecriture> list(Iterable<Ecriture> ecritures) {
+		List<Ecriture> list = new ArrayList<>();
+		for (Ecriture e : ecritures)
+			list.add(e);
+		return list;
+	}
+
+	@Test
+	public void testGetAll() throws IOException {
+		assertEquals(2, factory.getCompteDAO().getAll().size());
+		assertEquals(
+				Arrays.asList(mars, fevrierCheque, fevrier, janvier),
+				list(factory.getEcritureDAO().getAll()));
+		assertEquals(moisJanvier, factory.getDebut());
+	}
+
+	@Test
+	public void testGetAllBetween() throws IOException {
+		Month fevrierMois = moisJanvier.getNext();
+		assertEquals(Arrays.asList(fevrierCheque, fevrier),
+				list(factory.getEcritureDAO().getAllBetween(
+						fevrierMois, fevrierMois)));
+		assertEquals(Arrays.asList(fevrier, fevrierCheque, mars),
+				list(factory.getEcritureDAO().getAllSince(fevrierMois)));
+		assertEquals(Arrays.asList(fevrierCheque, fevrier, janvier),
+				list(factory.getEcritureDAO().getAllTo(fevrierMois)));
+	}
+
+	@Test
+	public void testGetPointages() throws IOException {
+		Month fevrierMois = moisJanvier.getNext();
+		assertEquals(Arrays.asList(fevrier),
+				list(factory.getEcritureDAO().getPointagesTo(fevrierMois)));
+
+		// Les écritures non pointées sont rattachées au mois en cours
+		assertEquals(Arrays.asList(fevrier, janvier, fevrierCheque, mars),
+				list(factory.getEcritureDAO().getPointagesSince(fevrierMois)));
+		assertTrue(list(factory.getEcritureDAO().getPointagesSince(
+				Month.getInstance().getNext())).isEmpty());
+	}
+
+	@Test
+	public void testUpdateAndRemove() throws Exception {
+		EcritureDAO eDAO = factory.getEcritureDAO();
+		Ecriture modifiee = new Ecriture(mars.id, mars.date, mars.date,
+				mars.debit, mars.credit, new BigDecimal("2.5"), null, null,
+				null);
+		eDAO.update(modifiee);
+		assertTrue(factory.mustBeSaved());
+		assertEquals(0, new BigDecimal("2.5").compareTo(
+				eDAO.get(mars.id).montant));
+
+		eDAO.remove(janvier.id);
+		factory.save();
+		assertFalse(factory.mustBeSaved());
+		assertNull(eDAO.get(janvier.id));
+		assertEquals(3, list(eDAO.getAll()).size());
+	}
+
+	@Test
+	public void testConstructCommentIndex() throws IOException {
+		Map<String, Integer> index =
+				factory.getEcritureDAO().constructCommentIndex();
+		assertEquals(Integer.valueOf(3), index.get("libellé"));
+		assertEquals(Integer.valueOf(1), index.get("tiers"));
+		assertEquals(Integer.valueOf(1), index.get("autre tiers"));
+	}
+
+	@Test
+	public void testGetDebutSansEcriture() throws Exception {
+		factory.erase();
+		assertEquals(Month.getInstance(), factory.getDebut());
+		assertFalse(factory.getEcritureDAO().getAll().iterator().hasNext());
+		assertTrue(factory.mustBeSaved());
+	}
+
+	@Test
+	public void testGetDebutSansRequete() throws Exception {
+		assertEquals(moisJanvier, factory.getDebut());
+		Statistics statistics = factory.getEntityManager()
+				.getEntityManagerFactory().unwrap(SessionFactory.class)
+				.getStatistics();
+		statistics.setStatisticsEnabled(true);
+		statistics.clear();
+
+		// Le mois de début est gardé en mémoire
+		assertEquals(moisJanvier, factory.getDebut());
+		assertEquals(0, statistics.getPrepareStatementCount());
+
+		// Une écriture plus ancienne le modifie
+		Month moisAncien = moisJanvier.getTranslated(-5);
+		Ecriture ancienne = new Ecriture(null, moisAncien.getFirstDay(),
+				null, compte1, compte2, BigDecimal.ONE, null, null, null);
+		factory.getEcritureDAO().add(ancienne);
+		statistics.clear();
+		assertEquals(moisAncien, factory.getDebut());
+		assertEquals(0, statistics.getPrepareStatementCount());
+
+		// Sa suppression le rétablit
+		factory.getEcritureDAO().remove(ancienne.id);
+		assertEquals(moisJanvier, factory.getDebut());
+		statistics.setStatisticsEnabled(false);
+	}
+
+	@Test
+	public void testDetachement() throws IOException {
+		assertEquals(4, list(factory.getEcritureDAO().getAll()).size());
+
+		// Les écritures parcourues ne restent pas dans la session
+		assertFalse(factory.getEntityManager().contains(janvier));
+		assertFalse(factory.getEntityManager().contains(mars));
+		assertTrue(factory.getEntityManager().contains(compte1));
+	}
+
+	@Test
+	public void testSuivisAOuverture() throws Exception {
+		HibernateDAOFactory other = new HibernateDAOFactory(
+				"jdbc:hsqldb:mem:direct", "org.hsqldb.jdbc.JDBCDriver");
+		try {
+			Compte banque = null;
+			for (Compte compte : other.getCompteDAO().getAll()) {
+				if (compte.getId() == compte1.getId())
+					banque = compte;
+			}
+			Month moisFevrier = moisJanvier.getNext();
+			Month moisMars = moisFevrier.getNext();
+			assertEquals(0, new BigDecimal("21").compareTo(
+					other.getHistoriqueDAO().get(banque, moisFevrier)));
+			assertEquals(0, new BigDecimal("20").compareTo(
+					other.getHistoriqueDAO().get(banque, moisMars)));
+			assertEquals(0, BigDecimal.TEN.compareTo(
+					other.getSoldeAVueDAO().get(banque, moisFevrier)));
+			assertEquals(0, new BigDecimal("11").compareTo(
+					other.getSoldeAVueDAO().get(banque, moisMars)));
+		} finally {
+			other.close();
+		}
+	}
+}
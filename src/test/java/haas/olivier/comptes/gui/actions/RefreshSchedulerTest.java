@@ -0,0 +1,151 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.comptes.gui.actions;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RefreshSchedulerTest {
+
+	/**
+	 * Les valeurs publiées.
+	 */
+	private final List<Integer> published = new CopyOnWriteArrayList<>();
+	
+	/**
+	 * Objet testé. Les publications sont exécutées directement.
+	 */
+	private RefreshScheduler scheduler;
+	
+	@Before
+	public void setUp() {
+		scheduler = new RefreshScheduler(50, Runnable::run);
+	}
+	
+	@Test
+	public void testScheduleCoalesces() throws InterruptedException {
+		Object view = new Object();
+		AtomicInteger computations = new AtomicInteger();
+		CountDownLatch latch = new CountDownLatch(1);
+		
+		// Une rafale de demandes pour la même vue
+		for (int i=0; i<10; i++) {
+			int value = i;
+			scheduler.schedule(view,
+					() -> {
+						computations.incrementAndGet();
+						return value;
+					},
+					v -> {
+						published.add(v);
+						latch.countDown();
+					});
+		}
+		
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		
+		// Seule la dernière demande a été calculée et publiée
+		assertEquals(1, computations.get());
+		assertEquals(1, published.size());
+		assertEquals(Integer.valueOf(9), published.get(0));
+	}
+	
+	@Test
+	public void testScheduleDiscardsStaleResult() throws InterruptedException {
+		Object view = new Object();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch done = new CountDownLatch(1);
+		
+		// Un calcul long
+		scheduler.schedule(view,
+				() -> {
+					started.countDown();
+					release.await();
+					return 1;
+				},
+				published::add);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		
+		// Une nouvelle demande pendant le calcul
+		scheduler.schedule(view, () -> 2, v -> {
+			published.add(v);
+			done.countDown();
+		});
+		release.countDown();
+		
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		Thread.sleep(100);
+		
+		// Le résultat du premier calcul n'a pas été publié
+		assertEquals(1, published.size());
+		assertEquals(Integer.valueOf(2), published.get(0));
+	}
+	
+	@Test
+	public void testScheduleSeparateViews() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(2);
+		
+		// Deux vues différentes ne s'annulent pas
+		scheduler.schedule(new Object(), () -> 1, v -> {
+			published.add(v);
+			latch.countDown();
+		});
+		scheduler.schedule(new Object(), () -> 2, v -> {
+			published.add(v);
+			latch.countDown();
+		});
+		
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		assertTrue(published.contains(1));
+		assertTrue(published.contains(2));
+	}
+	
+	@Test
+	public void testScheduleReleasesView() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		scheduler.schedule(new Object(), () -> 1, v -> latch.countDown());
+		assertEquals(1, scheduler.size());
+		
+		// La vue est oubliée une fois le résultat publié
+		assertTrue(latch.await(5, TimeUnit.SECONDS));
+		for (int i=0; i<50 && scheduler.size() > 0; i++)
+			Thread.sleep(10);
+		assertEquals(0, scheduler.size());
+	}
+	
+	@Test
+	public void testUnregister() throws InterruptedException {
+		Object view = new Object();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		scheduler.schedule(view,
+				() -> {
+					started.countDown();
+					release.await();
+					return 1;
+				},
+				published::add);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		
+		// La vue est fermée pendant le calcul
+		scheduler.unregister(view);
+		assertEquals(0, scheduler.size());
+		release.countDown();
+		Thread.sleep(100);
+		
+		// Le résultat n'a pas été publié
+		assertTrue(published.isEmpty());
+		assertEquals(0, scheduler.size());
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.diagram;
+
+import static org.junit.Assert.*;
+
+import java.awt.Color;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AggregateDiagramModelTest {
+
+	/** Des valeurs quelconques pour servir d'étiquettes des abscisses. */
+	private final Object[] xValues = {"a", "b", "c"};
+	
+	/** Le modèle d'origine. */
+	private final SimpleDiagramModel model = new SimpleDiagramModel(xValues);
+	
+	/** Une série sous forme de tableau. */
+	private final Serie serie1 = new Serie(1, "un", Color.RED, true, xValues,
+			new double[] {1.0, Double.NaN, 3.0});
+	
+	/** Une série sous forme de Map. */
+	private Serie serie2;
+	
+	@Before
+	public void setUp() throws Exception {
+		Map<Object, Number> data = new HashMap<>();
+		data.put("a", 10);
+		data.put("b", 20);
+		serie2 = new Serie(2, "deux", Color.BLUE, true, data);
+		
+		model.add(serie1);
+		model.add(serie2);
+	}// setUp
+
+	@Test
+	public void testGetSeries() {
+		Iterator<Serie> it = model.getAggregateView().getSeries().iterator();
+		
+		assertArrayEquals(new double[] {1.0, 0.0, 3.0},
+				it.next().getValues(xValues), 0.0);
+		
+		Serie cumul = it.next();
+		assertEquals(2, cumul.id);
+		assertArrayEquals(new double[] {11.0, 20.0, 3.0},
+				cumul.getValues(xValues), 0.0);
+		assertEquals(20.0, cumul.get("b").doubleValue(), 0.0);
+		
+		assertFalse(it.hasNext());
+	}// testGetSeries
+	
+	@Test
+	public void testCacheInvalidation() {
+		DiagramModel view = model.getAggregateView();
+		assertSame(view, model.getAggregateView());
+		
+		// Sans changement, les mêmes séries cumulées sont réutilisées
+		Serie first = view.getSeries().iterator().next();
+		assertSame(first, view.getSeries().iterator().next());
+		
+		// Après un changement, les cumuls sont recalculés
+		model.remove(serie1);
+		Iterator<Serie> it = view.getSeries().iterator();
+		assertArrayEquals(new double[] {10.0, 20.0, 0.0},
+				it.next().getValues(xValues), 0.0);
+		assertFalse(it.hasNext());
+	}// testCacheInvalidation
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.diagram;
+
+import static org.junit.Assert.*;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CachedLayerTest {
+
+	/** Une image de destination. */
+	private final BufferedImage target =
+			new BufferedImage(50, 50, BufferedImage.TYPE_INT_ARGB);
+	
+	/** Le contexte graphique de destination. */
+	private Graphics2D g;
+	
+	/** Le nombre de rendus effectués. */
+	private final AtomicInteger renders = new AtomicInteger();
+	
+	/** Un rendu qui se contente de se compter. */
+	private final Consumer<Graphics2D> renderer =
+			g2d -> renders.incrementAndGet();
+	
+	/** L'objet testé. */
+	private final CachedLayer layer = new CachedLayer();
+	
+	@Before
+	public void setUp() throws Exception {
+		g = target.createGraphics();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		g.dispose();
+	}
+
+	@Test
+	public void testPaint() {
+		Rectangle area = new Rectangle(5, 5, 40, 30);
+		
+		// Premier dessin, puis simple recopie
+		layer.paint(g, area, renderer, 1L, 1L);
+		layer.paint(g, area, renderer, 1L, 1L);
+		assertEquals(1, renders.get());
+		
+		// Changement de version
+		layer.paint(g, area, renderer, 2L, 1L);
+		assertEquals(2, renders.get());
+		
+		// Changement de taille
+		layer.paint(g, new Rectangle(5, 5, 41, 30), renderer, 2L, 1L);
+		assertEquals(3, renders.get());
+		
+		// Invalidation explicite
+		layer.invalidate();
+		layer.paint(g, new Rectangle(5, 5, 41, 30), renderer, 2L, 1L);
+		assertEquals(4, renders.get());
+	}
+	
+	@Test
+	public void testPaintEmptyArea() {
+		layer.paint(g, new Rectangle(0, 0, 0, 10), renderer, 1L);
+		assertEquals(0, renders.get());
+	}
+}
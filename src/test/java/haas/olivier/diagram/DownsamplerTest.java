@@ -0,0 +1,66 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.diagram;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class DownsamplerTest {
+
+	@Test
+	public void testDownsampleKeepsPeaks() {
+		double[] values = new double[10_000];
+		for (int i=0; i<values.length; i++)
+			values[i] = i % 2;
+		values[5_000] = 100;						// Un pic isolé
+		values[7_000] = -100;						// Un creux isolé
+		
+		Downsampler.Polyline polyline = Downsampler.downsample(values, 100);
+		
+		// Au plus 4 sommets par colonne de pixels
+		assertTrue(polyline.size() <= 4 * 101);
+		
+		// Les extrêmes sont conservés
+		double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+		for (int i=0; i<polyline.size(); i++) {
+			min = Math.min(min, polyline.getY(i));
+			max = Math.max(max, polyline.getY(i));
+		}
+		assertEquals(-100, min, 0);
+		assertEquals(100, max, 0);
+		
+		// Premier et dernier points, abscisses croissantes
+		assertEquals(0, polyline.getX(0));
+		assertEquals(100, polyline.getX(polyline.size()-1));
+		assertEquals(values[values.length-1],
+				polyline.getY(polyline.size()-1), 0);
+		for (int i=1; i<polyline.size(); i++)
+			assertTrue(polyline.getX(i-1) <= polyline.getX(i));
+	}
+	
+	@Test
+	public void testDownsampleShortSerie() {
+		double[] values = {1, 2, Double.NaN, 4};
+		Downsampler.Polyline polyline = Downsampler.downsample(values, 300);
+		
+		// Tous les points, avec une interruption
+		assertEquals(4, polyline.size());
+		assertEquals(1, polyline.getY(0), 0);
+		assertEquals(2, polyline.getY(1), 0);
+		assertTrue(Double.isNaN(polyline.getY(2)));
+		assertEquals(4, polyline.getY(3), 0);
+		assertEquals(0, polyline.getX(0));
+		assertEquals(100, polyline.getX(1));
+		assertEquals(300, polyline.getX(3));
+	}
+	
+	@Test
+	public void testGetPolylineCache() {
+		double[] values = {1, 2, 3};
+		Downsampler.Polyline polyline = Downsampler.getPolyline(values, 10);
+		assertSame(polyline, Downsampler.getPolyline(values, 10));
+		assertNotSame(polyline, Downsampler.getPolyline(values, 20));
+	}
+}
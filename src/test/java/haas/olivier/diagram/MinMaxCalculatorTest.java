@@ -83,4 +83,25 @@ public class MinMaxCalculatorTest {
 		
 		assertEquals(10, (int) minMax.getMax());
 	}// testCalculateMinMax
+	
+	@Test
+	public void testHideDoesNotRescan() {
+		clearInvocations(serie1, serie2, serie3);
+		
+		// Masquer la série contenant le maximum
+		model.getOrdener().setHidden(serie1, true);
+		minMax.updateExtrema();
+		assertEquals(10, (int) minMax.getMax());
+		
+		// La réafficher
+		model.getOrdener().setHidden(serie1, false);
+		minMax.updateExtrema();
+		assertEquals(10000, (int) minMax.getMax());
+		assertEquals(-200, (int) minMax.getMin());
+		
+		// Les données n'ont pas été relues
+		verify(serie1, never()).get(any());
+		verify(serie2, never()).get(any());
+		verify(serie3, never()).get(any());
+	}// testHideDoesNotRescan
 }
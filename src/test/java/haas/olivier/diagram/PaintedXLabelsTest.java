@@ -0,0 +1,57 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.diagram;
+
+import static org.junit.Assert.*;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import org.junit.Test;
+
+public class PaintedXLabelsTest {
+
+	/** Crée un modèle ayant le nombre d'abscisses spécifié. */
+	private static DiagramModel newModel(int count) {
+		Object[] xValues = new Object[count];
+		for (int i=0; i<count; i++)
+			xValues[i] = String.format("%05d", i);
+		return new SimpleDiagramModel(xValues);
+	}
+	
+	@Test
+	public void testNoComponent() {
+		PaintedXLabels labels = new PaintedXLabels(newModel(3650));
+		assertEquals(0, labels.getComponentCount());
+		assertTrue(labels.getLeftOverflow() > 0);
+		assertTrue(labels.getPreferredSize().height > 0);
+	}
+	
+	@Test
+	public void testStep() {
+		PaintedXLabels labels = new PaintedXLabels(newModel(3650));
+		labels.setSize(800, 20);
+		int step = labels.getStep();
+		assertTrue(step > 1);
+		
+		// L'écart entre deux étiquettes dessinées suffit à les séparer
+		int labelWidth = labels.getLeftOverflow() + labels.getRightOverflow();
+		int width = 800 - labelWidth;
+		assertTrue((double) width * step / (3650 - 1) >= labelWidth - 1);
+		
+		// Le dessin fonctionne
+		BufferedImage image =
+				new BufferedImage(800, 20, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		labels.paint(g);
+		g.dispose();
+	}
+	
+	@Test
+	public void testStepFewValues() {
+		PaintedXLabels labels = new PaintedXLabels(newModel(3));
+		labels.setSize(800, 20);
+		assertEquals(1, labels.getStep());
+	}
+}
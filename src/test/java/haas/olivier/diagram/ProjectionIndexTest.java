@@ -0,0 +1,74 @@
+/*
+ * Copyright 2013-2018 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.diagram;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProjectionIndexTest {
+
+	/** Des valeurs quelconques pour servir d'étiquettes des abscisses. */
+	private final Object[] xValues = {"a", "b", "c", "d"};
+	
+	private final Serie serie1 = new Serie(1, "un", Color.RED, true, xValues,
+			new double[] {10, 20, Double.NaN, 40});
+	
+	private final Serie serie2 = new Serie(2, "deux", Color.BLUE, true,
+			xValues, new double[] {50, 5, 30, 0});
+	
+	/** L'objet testé. */
+	private ProjectionIndex index;
+	
+	@Before
+	public void setUp() throws Exception {
+		
+		// Une échelle qui projette les valeurs telles quelles
+		Echelle echelle = mock(Echelle.class);
+		when(echelle.getYFromValue(anyDouble(), anyInt())).thenAnswer(
+				invocation -> (int) (double) invocation.getArgument(0));
+		
+		index = new ProjectionIndex(Arrays.asList(serie1, serie2), xValues,
+				echelle, 300, 100, 1L, 2L);
+	}// setUp
+
+	@Test
+	public void testColumns() {
+		assertEquals(4, index.getColumnCount());
+		assertEquals(0, index.getX(0));
+		assertEquals(300, index.getX(3));
+		
+		assertEquals(0, index.getLeftColumn(-5));
+		assertEquals(1, index.getLeftColumn(199));
+		assertEquals(2, index.getLeftColumn(200));
+		assertEquals(3, index.getLeftColumn(1000));
+		
+		assertEquals(1, index.getNearestColumn(149));
+		assertEquals(2, index.getNearestColumn(151));
+	}// testColumns
+	
+	@Test
+	public void testGetNearestSerie() {
+		assertEquals(0, index.getNearestSerie(0, 0));
+		assertEquals(0, index.getNearestSerie(0, 29));
+		assertEquals(1, index.getNearestSerie(0, 31));
+		assertEquals(1, index.getNearestSerie(0, 1000));
+		
+		// Série sans valeur dans la colonne
+		assertEquals(ProjectionIndex.MISSING, index.getY(2, 0));
+		assertEquals(1, index.getNearestSerie(2, 0));
+	}// testGetNearestSerie
+	
+	@Test
+	public void testIsValid() {
+		assertTrue(index.isValid(1L, 2L));
+		assertFalse(index.isValid(1L, 3L));
+	}// testIsValid
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013-2021 Olivier HAAS. All rights reserved.
+ */
+package haas.olivier.gui.table;
+
+import static org.junit.Assert.*;
+
+import java.util.NavigableSet;
+
+import javax.swing.table.DefaultTableModel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColumnOptimizerTest {
+
+	/**
+	 * Un modèle qui compte les lectures de valeurs.
+	 */
+	@SuppressWarnings("serial")
+	private static class CountingModel extends DefaultTableModel {
+
+		private int reads = 0;
+
+		private CountingModel(int rows) {
+			super(rows, 1);
+			for (int row = 0; row < rows; row++)
+				setValueAt("ligne " + row, row, 0);
+		}
+
+		@Override
+		public Object getValueAt(int row, int column) {
+			reads++;
+			return super.getValueAt(row, column);
+		}
+	}
+
+	/**
+	 * Le modèle de table.
+	 */
+	private CountingModel model;
+
+	@Before
+	public void setUp() {
+		model = new CountingModel(100);
+	}
+
+	@Test
+	public void testSampleLonguesValeurs() {
+		model.setValueAt("une valeur beaucoup plus longue", 42, 0);
+		NavigableSet<Integer> rows = ColumnOptimizer.getSample(model, 0);
+		assertTrue(rows.contains(0));
+		assertTrue(rows.contains(99));
+		assertTrue(rows.contains(42));
+	}
+
+	@Test
+	public void testLongueursEnCache() {
+		ColumnOptimizer.getSample(model, 0);
+		assertEquals(100, model.reads);
+
+		// Rien n'est relu
+		model.reads = 0;
+		ColumnOptimizer.getSample(model, 0);
+		assertEquals(0, model.reads);
+
+		// Seule la ligne modifiée est relue
+		model.setValueAt("une valeur beaucoup plus longue", 42, 0);
+		model.reads = 0;
+		assertTrue(ColumnOptimizer.getSample(model, 0).contains(42));
+		assertEquals(1, model.reads);
+	}
+
+	@Test
+	public void testLongueursDecalees() {
+		model.setValueAt("une valeur beaucoup plus longue", 42, 0);
+		ColumnOptimizer.getSample(model, 0);
+
+		// Les lignes insérées ou supprimées décalent les longueurs connues
+		model.insertRow(10, new Object[] {"nouvelle"});
+		model.insertRow(10, new Object[] {"nouvelle"});
+		model.removeRow(0);
+		model.reads = 0;
+		assertTrue(ColumnOptimizer.getSample(model, 0).contains(43));
+		assertEquals(2, model.reads);
+	}
+}